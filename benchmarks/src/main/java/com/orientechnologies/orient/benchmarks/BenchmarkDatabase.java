@@ -0,0 +1,53 @@
+package com.orientechnologies.orient.benchmarks;
+
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import java.io.File;
+
+/**
+ * Disk based database used by the benchmarks, created from scratch in the build directory (system
+ * property "buildDirectory", "./target" by default) and dropped on close.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+  private final String name;
+  private final File directory;
+  private final OrientDB orientDB;
+  private final ODatabaseDocumentInternal session;
+
+  public BenchmarkDatabase(String name) {
+    this.name = name;
+    this.directory =
+        new File(
+            System.getProperty("buildDirectory", "." + File.separator + "target"),
+            "benchmarks" + File.separator + name);
+    OFileUtils.deleteRecursively(directory);
+
+    orientDB =
+        new OrientDB("plocal:" + directory.getAbsolutePath(), OrientDBConfig.defaultConfig());
+    orientDB.create(name, ODatabaseType.PLOCAL);
+    session = (ODatabaseDocumentInternal) orientDB.open(name, "admin", "admin");
+  }
+
+  /** @return the session of the database, bound to the current thread */
+  public ODatabaseDocumentInternal getSession() {
+    session.activateOnCurrentThread();
+    return session;
+  }
+
+  public OAbstractPaginatedStorage getStorage() {
+    return (OAbstractPaginatedStorage) session.getStorage();
+  }
+
+  @Override
+  public void close() {
+    session.activateOnCurrentThread();
+    session.close();
+    orientDB.drop(name);
+    orientDB.close();
+    OFileUtils.deleteRecursively(directory);
+  }
+}
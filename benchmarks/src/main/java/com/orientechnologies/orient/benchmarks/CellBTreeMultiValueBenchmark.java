@@ -0,0 +1,129 @@
+package com.orientechnologies.orient.benchmarks;
+
+import com.orientechnologies.common.serialization.types.OUTF8Serializer;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperationsManager;
+import com.orientechnologies.orient.core.storage.index.sbtree.multivalue.v2.CellBTreeMultiValueV2;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Put, lookup and range scan of a {@link CellBTreeMultiValueV2} with string keys, each one
+ * associated to several values (the typical content of a not unique index).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(1)
+public class CellBTreeMultiValueBenchmark {
+  private static final int OPERATIONS = 1 << 16;
+  private static final int RANGE_SIZE = 10;
+
+  @Param({"100000"})
+  private int keys;
+
+  @Param({"10"})
+  private int valuesPerKey;
+
+  private BenchmarkDatabase database;
+  private OAtomicOperationsManager atomicOperationsManager;
+  private CellBTreeMultiValueV2<String> tree;
+
+  private String[] loadedKeys;
+  private String[] sortedKeys;
+  private int[] accessSequence;
+  private int operation = 0;
+  private int inserted = 0;
+
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include("CellBTreeMultiValueBenchmark.*")
+            .jvmArgs("-server", "-Xmx4G", "-Xms1G")
+            .build();
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    database = new BenchmarkDatabase("multiValueTreeBenchmark");
+    final OAbstractPaginatedStorage storage = database.getStorage();
+    atomicOperationsManager = storage.getAtomicOperationsManager();
+
+    tree = new CellBTreeMultiValueV2<>("multiValueTree", ".sbt", ".nbt", ".mdt", storage);
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null,
+        atomicOperation -> tree.create(OUTF8Serializer.INSTANCE, null, 1, null, atomicOperation));
+
+    loadedKeys = WorkloadFixtures.stringKeys(keys, WorkloadFixtures.SEED);
+    for (int n = 0; n < valuesPerKey; n++) {
+      for (int i = 0; i < loadedKeys.length; i++) {
+        final String key = loadedKeys[i];
+        final ORID value = new ORecordId(n, i);
+        atomicOperationsManager.executeInsideAtomicOperation(
+            null, atomicOperation -> tree.put(atomicOperation, key, value));
+      }
+    }
+    sortedKeys = loadedKeys.clone();
+    Arrays.sort(sortedKeys);
+    accessSequence = WorkloadFixtures.uniformIndexes(OPERATIONS, keys, WorkloadFixtures.SEED);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  /** adds a new value to one of the existing keys */
+  @Benchmark
+  public void put() throws IOException {
+    final String key = loadedKeys[nextIndex()];
+    final ORID value = new ORecordId(valuesPerKey + inserted / keys, inserted++ % keys);
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null, atomicOperation -> tree.put(atomicOperation, key, value));
+  }
+
+  @Benchmark
+  public long get() {
+    try (Stream<ORID> stream = tree.get(loadedKeys[nextIndex()])) {
+      return stream.count();
+    }
+  }
+
+  @Benchmark
+  public long range() {
+    final int from = Math.min(nextIndex(), sortedKeys.length - RANGE_SIZE);
+    try (Stream<?> stream =
+        tree.iterateEntriesBetween(
+            sortedKeys[from], true, sortedKeys[from + RANGE_SIZE - 1], true, true)) {
+      return stream.count();
+    }
+  }
+
+  private int nextIndex() {
+    return accessSequence[operation++ & (OPERATIONS - 1)];
+  }
+}
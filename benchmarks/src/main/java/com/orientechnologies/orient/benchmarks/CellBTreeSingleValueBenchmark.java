@@ -0,0 +1,123 @@
+package com.orientechnologies.orient.benchmarks;
+
+import com.orientechnologies.common.serialization.types.OUTF8Serializer;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperationsManager;
+import com.orientechnologies.orient.core.storage.index.sbtree.singlevalue.v3.CellBTreeSingleValueV3;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Put, point lookup and range scan of a {@link CellBTreeSingleValueV3} with string keys. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(1)
+public class CellBTreeSingleValueBenchmark {
+  private static final int OPERATIONS = 1 << 16;
+  private static final int RANGE_SIZE = 100;
+
+  @Param({"1000000"})
+  private int keys;
+
+  private BenchmarkDatabase database;
+  private OAtomicOperationsManager atomicOperationsManager;
+  private CellBTreeSingleValueV3<String> tree;
+
+  private String[] loadedKeys;
+  private String[] sortedKeys;
+  private String[] newKeys;
+  private int[] accessSequence;
+  private int operation = 0;
+  private int inserted = 0;
+
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include("CellBTreeSingleValueBenchmark.*")
+            .jvmArgs("-server", "-Xmx4G", "-Xms1G")
+            .build();
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    database = new BenchmarkDatabase("singleValueTreeBenchmark");
+    final OAbstractPaginatedStorage storage = database.getStorage();
+    atomicOperationsManager = storage.getAtomicOperationsManager();
+
+    tree = new CellBTreeSingleValueV3<>("singleValueTree", ".sbt", ".nbt", storage);
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null,
+        atomicOperation -> tree.create(atomicOperation, OUTF8Serializer.INSTANCE, null, 1, null));
+
+    // the keys added by the put benchmark follow the loaded ones in the same generated sequence
+    final String[] allKeys = WorkloadFixtures.stringKeys(keys * 2, WorkloadFixtures.SEED);
+    loadedKeys = Arrays.copyOfRange(allKeys, 0, keys);
+    newKeys = Arrays.copyOfRange(allKeys, keys, allKeys.length);
+    for (int i = 0; i < loadedKeys.length; i++) {
+      final String key = loadedKeys[i];
+      final ORID value = new ORecordId(i % 32_000, i);
+      atomicOperationsManager.executeInsideAtomicOperation(
+          null, atomicOperation -> tree.put(atomicOperation, key, value));
+    }
+    sortedKeys = loadedKeys.clone();
+    Arrays.sort(sortedKeys);
+    accessSequence = WorkloadFixtures.uniformIndexes(OPERATIONS, keys, WorkloadFixtures.SEED);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  @Benchmark
+  public void put() throws IOException {
+    final int index = inserted++ % newKeys.length;
+    final String key = newKeys[index];
+    final ORID value = new ORecordId(index % 32_000, index);
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null, atomicOperation -> tree.put(atomicOperation, key, value));
+  }
+
+  @Benchmark
+  public ORID get() {
+    return tree.get(loadedKeys[nextIndex()]);
+  }
+
+  @Benchmark
+  public long range() {
+    final int from = Math.min(nextIndex(), sortedKeys.length - RANGE_SIZE);
+    try (Stream<?> stream =
+        tree.iterateEntriesBetween(
+            sortedKeys[from], true, sortedKeys[from + RANGE_SIZE - 1], true, true)) {
+      return stream.count();
+    }
+  }
+
+  private int nextIndex() {
+    return accessSequence[operation++ & (OPERATIONS - 1)];
+  }
+}
@@ -0,0 +1,117 @@
+package com.orientechnologies.orient.benchmarks;
+
+import com.orientechnologies.common.types.OModifiableBoolean;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.cache.OCachePointer;
+import com.orientechnologies.orient.core.storage.cache.OReadCache;
+import com.orientechnologies.orient.core.storage.cache.OWriteCache;
+import com.orientechnologies.orient.core.storage.cache.chm.AsyncReadCache;
+import com.orientechnologies.orient.core.storage.cache.local.OWOWCache;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Load and release of pages through the disk cache of a storage: the read cache ({@link
+ * AsyncReadCache}) and the write cache ({@link OWOWCache}) which reads the pages from the file
+ * system. Pages are accessed with a Zipfian distribution, as hot pages (eg. the roots of the
+ * indexes) are much more frequently accessed than the others.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(1)
+public class PageCacheBenchmark {
+  private static final int OPERATIONS = 1 << 16;
+
+  @Param({"16384"})
+  private int pages;
+
+  private BenchmarkDatabase database;
+  private OReadCache readCache;
+  private OWriteCache writeCache;
+  private long fileId;
+
+  private int[] accessSequence;
+  private int operation = 0;
+
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include("PageCacheBenchmark.*")
+            .jvmArgs("-server", "-Xmx4G", "-Xms1G")
+            .build();
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    database = new BenchmarkDatabase("pageCacheBenchmark");
+    final OAbstractPaginatedStorage storage = database.getStorage();
+    readCache = storage.getReadCache();
+    writeCache = storage.getWriteCache();
+
+    fileId = readCache.addFile("pageCacheBenchmark.pcb", writeCache);
+    for (int i = 0; i < pages; i++) {
+      final OCacheEntry cacheEntry = readCache.allocateNewPage(fileId, writeCache, null);
+      readCache.releaseFromWrite(cacheEntry, writeCache, true);
+    }
+    writeCache.flush();
+
+    accessSequence =
+        WorkloadFixtures.zipfianIndexes(OPERATIONS, pages, 0.99, WorkloadFixtures.SEED);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    readCache.deleteFile(fileId, writeCache);
+    database.close();
+  }
+
+  @Benchmark
+  public OCacheEntry readCacheLoadForRead() throws IOException {
+    final OCacheEntry cacheEntry =
+        readCache.loadForRead(fileId, nextPage(), false, writeCache, true);
+    readCache.releaseFromRead(cacheEntry, writeCache);
+    return cacheEntry;
+  }
+
+  @Benchmark
+  public OCacheEntry readCacheLoadForWrite() throws IOException {
+    final OCacheEntry cacheEntry =
+        readCache.loadForWrite(fileId, nextPage(), false, writeCache, true, null);
+    readCache.releaseFromWrite(cacheEntry, writeCache, true);
+    return cacheEntry;
+  }
+
+  @Benchmark
+  public OCachePointer writeCacheLoad() throws IOException {
+    final OCachePointer cachePointer =
+        writeCache.load(fileId, nextPage(), new OModifiableBoolean(), true);
+    cachePointer.decrementReadersReferrer();
+    return cachePointer;
+  }
+
+  private int nextPage() {
+    return accessSequence[operation++ & (OPERATIONS - 1)];
+  }
+}
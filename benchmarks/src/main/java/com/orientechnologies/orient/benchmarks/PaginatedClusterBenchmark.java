@@ -0,0 +1,113 @@
+package com.orientechnologies.orient.benchmarks;
+
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.cluster.v2.OPaginatedClusterV2;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperationsManager;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Creation, read and update of records in a {@link OPaginatedClusterV2}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(1)
+public class PaginatedClusterBenchmark {
+  private static final int RECORDS = 100_000;
+  private static final int OPERATIONS = 1 << 16;
+
+  @Param({"128", "4096", "100000"})
+  private int recordSize;
+
+  private BenchmarkDatabase database;
+  private OAtomicOperationsManager atomicOperationsManager;
+  private OPaginatedClusterV2 cluster;
+
+  private byte[] content;
+  private long[] positions;
+  private int[] accessSequence;
+  private int operation = 0;
+
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include("PaginatedClusterBenchmark.*")
+            .jvmArgs("-server", "-Xmx4G", "-Xms1G")
+            .build();
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    database = new BenchmarkDatabase("paginatedClusterBenchmark");
+    final OAbstractPaginatedStorage storage = database.getStorage();
+    atomicOperationsManager = storage.getAtomicOperationsManager();
+
+    cluster = new OPaginatedClusterV2("benchmarkCluster", storage);
+    cluster.configure(42, "benchmarkCluster");
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null, atomicOperation -> cluster.create(atomicOperation));
+
+    content = WorkloadFixtures.recordContent(recordSize, WorkloadFixtures.SEED);
+    // the total amount of data is bounded, so that the big records do not fill the disk
+    final int records = (int) Math.min(RECORDS, 512L * 1024 * 1024 / recordSize);
+    positions = new long[records];
+    for (int i = 0; i < records; i++) {
+      positions[i] = createRecord();
+    }
+    accessSequence = WorkloadFixtures.uniformIndexes(OPERATIONS, records, WorkloadFixtures.SEED);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  @Benchmark
+  public long create() throws IOException {
+    return createRecord();
+  }
+
+  @Benchmark
+  public ORawBuffer read() throws IOException {
+    return cluster.readRecord(nextPosition(), false);
+  }
+
+  @Benchmark
+  public void update() throws IOException {
+    final long position = nextPosition();
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null,
+        atomicOperation -> cluster.updateRecord(position, content, 2, (byte) 'b', atomicOperation));
+  }
+
+  private long createRecord() throws IOException {
+    return atomicOperationsManager.calculateInsideAtomicOperation(
+        null,
+        atomicOperation ->
+            cluster.createRecord(content, 1, (byte) 'b', null, atomicOperation).clusterPosition);
+  }
+
+  private long nextPosition() {
+    return positions[accessSequence[operation++ & (OPERATIONS - 1)]];
+  }
+}
@@ -0,0 +1,105 @@
+package com.orientechnologies.orient.benchmarks;
+
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.BytesContainer;
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.ORecordSerializerBinaryV1;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Serialization and deserialization of documents with {@link ORecordSerializerBinaryV1}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(1)
+public class RecordSerializerBenchmark {
+  private static final int DOCUMENTS = 1024;
+
+  private final ORecordSerializerBinaryV1 serializer = new ORecordSerializerBinaryV1();
+
+  private BenchmarkDatabase database;
+  private ODatabaseDocumentInternal session;
+  private ODocument[] documents;
+  private byte[][] serializedDocuments;
+  private int operation = 0;
+
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include("RecordSerializerBenchmark.*")
+            .jvmArgs("-server", "-Xmx4G", "-Xms1G")
+            .build();
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    database = new BenchmarkDatabase("recordSerializerBenchmark");
+    session = database.getSession();
+
+    final Random random = new Random(WorkloadFixtures.SEED);
+    documents = new ODocument[DOCUMENTS];
+    serializedDocuments = new byte[DOCUMENTS][];
+    for (int i = 0; i < DOCUMENTS; i++) {
+      documents[i] = WorkloadFixtures.document(random);
+      final BytesContainer bytes = new BytesContainer();
+      serializer.serialize(documents[i], bytes);
+      serializedDocuments[i] = bytes.fitBytes();
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void activateSession() {
+    session.activateOnCurrentThread();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    final BytesContainer bytes = new BytesContainer();
+    serializer.serialize(documents[nextDocument()], bytes);
+    return bytes.bytes;
+  }
+
+  @Benchmark
+  public ODocument deserialize() {
+    final ODocument document = new ODocument();
+    serializer.deserialize(document, new BytesContainer(serializedDocuments[nextDocument()]));
+    return document;
+  }
+
+  /** deserialization of a single field, as done to evaluate a condition on a record */
+  @Benchmark
+  public ODocument deserializeField() {
+    final ODocument document = new ODocument();
+    serializer.deserializePartial(
+        document, new BytesContainer(serializedDocuments[nextDocument()]), new String[] {"age"});
+    return document;
+  }
+
+  private int nextDocument() {
+    return operation++ & (DOCUMENTS - 1);
+  }
+}
@@ -0,0 +1,131 @@
+package com.orientechnologies.orient.benchmarks;
+
+import com.orientechnologies.orient.core.command.OBasicCommandContext;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.sql.OSQLEngine;
+import com.orientechnologies.orient.core.sql.executor.OInternalExecutionPlan;
+import com.orientechnologies.orient.core.sql.executor.OSelectExecutionPlanner;
+import com.orientechnologies.orient.core.sql.parser.OSelectStatement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Planning of SELECT statements by the {@link OSelectExecutionPlanner}, without and with the
+ * execution plan cache. The statements are parsed once, only the planning is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(1)
+public class SelectPlannerBenchmark {
+  private static final int PERSONS = 10_000;
+
+  private static final Map<String, String> QUERIES = new HashMap<>();
+
+  static {
+    QUERIES.put("fullScan", "select from Person where surname like 'surname1%'");
+    QUERIES.put("indexed", "select from Person where name = 'name1'");
+    QUERIES.put(
+        "compositeIndex",
+        "select name, surname from Person where city = 'Rome' and age > 30 order by age desc");
+    QUERIES.put("or", "select from Person where name = 'name1' or age = 20 or surname = 'x'");
+    QUERIES.put(
+        "groupBy",
+        "select city, count(*), avg(age) from Person where age > 18 group by city order by city");
+    QUERIES.put(
+        "subquery",
+        "select from (select from Person where age < 30) where city in ['Rome', 'Paris'] limit 10");
+  }
+
+  @Param({"fullScan", "indexed", "compositeIndex", "or", "groupBy", "subquery"})
+  private String query;
+
+  private BenchmarkDatabase database;
+  private ODatabaseDocumentInternal session;
+  private OSelectStatement statement;
+
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include("SelectPlannerBenchmark.*")
+            .jvmArgs("-server", "-Xmx4G", "-Xms1G")
+            .build();
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    database = new BenchmarkDatabase("selectPlannerBenchmark");
+    session = database.getSession();
+
+    session.command("create class Person").close();
+    session.command("create property Person.name STRING").close();
+    session.command("create property Person.surname STRING").close();
+    session.command("create property Person.age INTEGER").close();
+    session.command("create property Person.city STRING").close();
+    session.command("create index Person.name on Person (name) NOTUNIQUE").close();
+    session.command("create index Person.city_age on Person (city, age) NOTUNIQUE").close();
+
+    final Random random = new Random(WorkloadFixtures.SEED);
+    session.begin();
+    for (int i = 0; i < PERSONS; i++) {
+      final ODocument person = new ODocument("Person");
+      person.field("name", "name" + random.nextInt(PERSONS));
+      person.field("surname", "surname" + random.nextInt(PERSONS));
+      person.field("age", random.nextInt(100));
+      person.field("city", WorkloadFixtures.city(random));
+      session.save(person);
+    }
+    session.commit();
+
+    statement = (OSelectStatement) OSQLEngine.parse(QUERIES.get(query), session);
+  }
+
+  @Setup(Level.Iteration)
+  public void activateSession() {
+    session.activateOnCurrentThread();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.close();
+  }
+
+  @Benchmark
+  public OInternalExecutionPlan plan() {
+    return statement.createExecutionPlanNoCache(newContext(), false);
+  }
+
+  @Benchmark
+  public OInternalExecutionPlan planWithCache() {
+    return statement.createExecutionPlan(newContext(), false);
+  }
+
+  private OBasicCommandContext newContext() {
+    final OBasicCommandContext ctx = new OBasicCommandContext();
+    ctx.setDatabase(session);
+    return ctx;
+  }
+}
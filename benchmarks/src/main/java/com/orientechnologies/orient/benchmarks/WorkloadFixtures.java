@@ -0,0 +1,133 @@
+package com.orientechnologies.orient.benchmarks;
+
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generators of the data used by the benchmarks. All the data is derived from a seed, so that the
+ * same workload is executed by every run and results of different releases can be compared.
+ */
+public final class WorkloadFixtures {
+  public static final long SEED = 42;
+
+  private static final String[] CITIES = {
+    "Rome", "London", "Berlin", "Paris", "Madrid", "Vienna", "Prague", "Lisbon", "Dublin", "Oslo"
+  };
+
+  private WorkloadFixtures() {}
+
+  /** @return <code>count</code> distinct keys of 10 to 20 characters, in random order */
+  public static String[] stringKeys(int count, long seed) {
+    final Random random = new Random(seed);
+    final String[] keys = new String[count];
+    for (int i = 0; i < count; i++) {
+      // the index guarantees the uniqueness, the random prefix the random order
+      keys[i] =
+          Integer.toString(random.nextInt(Integer.MAX_VALUE), 36)
+              + "-"
+              + Integer.toString(i, 36)
+              + Integer.toString(random.nextInt(36), 36);
+    }
+    return keys;
+  }
+
+  /** @return <code>count</code> indexes uniformly distributed in [0, bound) */
+  public static int[] uniformIndexes(int count, int bound, long seed) {
+    final Random random = new Random(seed);
+    final int[] indexes = new int[count];
+    for (int i = 0; i < count; i++) {
+      indexes[i] = random.nextInt(bound);
+    }
+    return indexes;
+  }
+
+  /**
+   * @return <code>count</code> indexes in [0, bound) following a Zipfian distribution with the
+   *     given skew, ie. few "hot" indexes are returned much more often than the others. The hot
+   *     indexes are scattered across the range.
+   */
+  public static int[] zipfianIndexes(int count, int bound, double skew, long seed) {
+    final double[] cumulative = new double[bound];
+    double sum = 0;
+    for (int i = 0; i < bound; i++) {
+      sum += 1 / Math.pow(i + 1, skew);
+      cumulative[i] = sum;
+    }
+
+    final int[] permutation = new int[bound];
+    for (int i = 0; i < bound; i++) {
+      permutation[i] = i;
+    }
+    final Random random = new Random(seed);
+    for (int i = bound - 1; i > 0; i--) {
+      final int j = random.nextInt(i + 1);
+      final int tmp = permutation[i];
+      permutation[i] = permutation[j];
+      permutation[j] = tmp;
+    }
+
+    final int[] indexes = new int[count];
+    for (int i = 0; i < count; i++) {
+      int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      if (rank < 0) {
+        rank = -rank - 1;
+      }
+      indexes[i] = permutation[Math.min(rank, bound - 1)];
+    }
+    return indexes;
+  }
+
+  public static byte[] recordContent(int size, long seed) {
+    final Random random = new Random(seed);
+    final byte[] content = new byte[size];
+    random.nextBytes(content);
+    return content;
+  }
+
+  /**
+   * @return a document with the shape of a typical application record: scalar fields of the most
+   *     common types, an embedded list, an embedded map and an embedded document
+   */
+  public static ODocument document(Random random) {
+    final ODocument document = new ODocument();
+    document.field("name", "name" + random.nextInt(100_000));
+    document.field("surname", "surname" + random.nextInt(100_000));
+    document.field("age", random.nextInt(100));
+    document.field("id", random.nextLong());
+    document.field("score", random.nextDouble() * 100);
+    document.field("active", random.nextBoolean());
+    document.field("birthDate", new Date(random.nextInt(Integer.MAX_VALUE) * 1000L));
+
+    final List<String> tags = new ArrayList<>();
+    final int tagCount = random.nextInt(10);
+    for (int i = 0; i < tagCount; i++) {
+      tags.add("tag" + random.nextInt(50));
+    }
+    document.field("tags", tags);
+
+    final Map<String, Integer> counters = new HashMap<>();
+    for (int i = 0; i < 5; i++) {
+      counters.put("counter" + i, random.nextInt(1000));
+    }
+    document.field("counters", counters);
+
+    final ODocument address = new ODocument();
+    address.field("city", city(random));
+    address.field("street", "street" + random.nextInt(1000));
+    address.field("number", random.nextInt(200));
+    document.field("address", address, OType.EMBEDDED);
+
+    return document;
+  }
+
+  public static String city(Random random) {
+    return CITIES[random.nextInt(CITIES.length)];
+  }
+}
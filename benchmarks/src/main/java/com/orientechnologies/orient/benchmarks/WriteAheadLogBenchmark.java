@@ -0,0 +1,114 @@
+package com.orientechnologies.orient.benchmarks;
+
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OHighLevelTransactionChangeRecord;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.cas.CASDiskWriteAheadLog;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Logging of records to a {@link CASDiskWriteAheadLog} configured as the one of a disk storage,
+ * with and without waiting for the records to be flushed (as done at the commit of a transaction).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 3, time = 2)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+  @Param({"64", "1024", "16384"})
+  private int recordSize;
+
+  private Path walPath;
+  private CASDiskWriteAheadLog writeAheadLog;
+  private byte[] content;
+  private long operationUnitId = 0;
+
+  public static void main(String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include("WriteAheadLogBenchmark.*")
+            .jvmArgs("-server", "-Xmx4G", "-Xms1G")
+            .build();
+    new Runner(opt).run();
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    walPath =
+        new File(
+                System.getProperty("buildDirectory", "." + File.separator + "target"),
+                "benchmarks" + File.separator + "writeAheadLogBenchmark")
+            .toPath();
+    OFileUtils.deleteRecursively(walPath.toFile());
+    Files.createDirectories(walPath);
+
+    writeAheadLog =
+        new CASDiskWriteAheadLog(
+            "writeAheadLogBenchmark",
+            walPath,
+            walPath,
+            OGlobalConfiguration.WAL_CACHE_SIZE.getValueAsInteger(),
+            OGlobalConfiguration.WAL_BUFFER_SIZE.getValueAsInteger(),
+            null,
+            null,
+            OGlobalConfiguration.WAL_SEGMENTS_INTERVAL.getValueAsLong() * 60 * 1_000_000_000L,
+            OGlobalConfiguration.WAL_MAX_SEGMENT_SIZE.getValueAsInteger() * 1024 * 1024L,
+            10,
+            true,
+            Locale.US,
+            -1,
+            OGlobalConfiguration.DISK_CACHE_FREE_SPACE_LIMIT.getValueAsLong() * 1024 * 1024,
+            OGlobalConfiguration.WAL_COMMIT_TIMEOUT.getValueAsInteger(),
+            OGlobalConfiguration.WAL_ALLOW_DIRECT_IO.getValueAsBoolean(),
+            false,
+            OGlobalConfiguration.STORAGE_CALL_FSYNC.getValueAsBoolean(),
+            false,
+            10);
+
+    content = WorkloadFixtures.recordContent(recordSize, WorkloadFixtures.SEED);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    writeAheadLog.delete();
+    OFileUtils.deleteRecursively(walPath.toFile());
+  }
+
+  @Benchmark
+  public OLogSequenceNumber log() {
+    return writeAheadLog.log(new OHighLevelTransactionChangeRecord(operationUnitId++, content));
+  }
+
+  @Benchmark
+  public OLogSequenceNumber logAndFlush() {
+    final OLogSequenceNumber lsn =
+        writeAheadLog.log(new OHighLevelTransactionChangeRecord(operationUnitId++, content));
+    writeAheadLog.flush();
+    return lsn;
+  }
+}
@@ -0,0 +1,424 @@
+/*
+ *
+ *  *  Copyright 2010-2016 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.common.collection;
+
+import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.common.io.OIOException;
+import com.orientechnologies.common.log.OLogManager;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts a sequence of elements which does not fit in heap.
+ *
+ * <p>Only limited amount of elements is kept in heap, once buffer of elements is full it is sorted
+ * and written into the temporary file (a run). A file is open only while the run is written or
+ * merged. Runs are merged while elements are added, at most <code>maxFanIn</code> runs at a time,
+ * so the number of files and of open files stays bounded whatever is the amount of elements.
+ * Elements which can not be serialized by the codec are kept in heap.
+ *
+ * <p>Equal elements which are written into the files are returned in the order they were added,
+ * they precede equal elements kept in heap.
+ *
+ * @param <T> type of sorted elements
+ */
+public final class OExternalSorter<T> implements AutoCloseable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Converts elements into the binary form stored in the temporary files and back. */
+  public interface Codec<T> {
+    /** @return binary form of the element or <code>null</code> if it has to be kept in heap. */
+    byte[] serialize(T element);
+
+    T deserialize(byte[] bytes);
+  }
+
+  private final Comparator<? super T> comparator;
+  private final Codec<T> codec;
+  private final int runSize;
+  private final int maxFanIn;
+  private final File directory;
+  private final String prefix;
+
+  private List<T> buffer = new ArrayList<>();
+  private final List<T> pinned = new ArrayList<>();
+  private final List<Run> runs = new ArrayList<>();
+  private final List<DataInputStream> inputs = new ArrayList<>();
+
+  /**
+   * @param comparator order of elements
+   * @param codec converts elements into the content of temporary files
+   * @param runSize amount of elements buffered in heap before they are written into a file, zero or
+   *     negative value means that all elements are kept in heap
+   * @param maxFanIn maximum amount of runs merged at once, so maximum amount of open files
+   * @param directory directory of temporary files
+   * @param prefix prefix of names of temporary files
+   */
+  public OExternalSorter(
+      final Comparator<? super T> comparator,
+      final Codec<T> codec,
+      final int runSize,
+      final int maxFanIn,
+      final File directory,
+      final String prefix) {
+    if (maxFanIn < 2) {
+      throw new IllegalArgumentException("At least two runs should be merged at once");
+    }
+
+    this.comparator = comparator;
+    this.codec = codec;
+    this.runSize = runSize;
+    this.maxFanIn = maxFanIn;
+    this.directory = directory;
+    this.prefix = prefix;
+  }
+
+  public void add(final T element) throws IOException {
+    buffer.add(element);
+
+    if (runSize > 0 && buffer.size() >= runSize) {
+      writeRun();
+    }
+  }
+
+  /** @return Amount of elements which are kept in heap. */
+  public long heapSize() {
+    return buffer.size() + pinned.size();
+  }
+
+  /**
+   * Completes the sort, elements can not be added after this call. Temporary files are deleted once
+   * iterator is exhausted or sorter is closed.
+   *
+   * @return Iterator over all added elements in ascending order.
+   */
+  public Iterator<T> sortedIterator() throws IOException {
+    while (runs.size() >= maxFanIn) {
+      // one slot is left for the elements kept in heap
+      mergeTail(Math.min(maxFanIn, runs.size() - maxFanIn + 2));
+    }
+
+    final List<T> heap = new ArrayList<>(pinned);
+    heap.addAll(buffer);
+    heap.sort(comparator);
+    pinned.clear();
+    buffer = new ArrayList<>();
+
+    if (runs.isEmpty()) {
+      return heap.iterator();
+    }
+
+    final List<Cursor> cursors = new ArrayList<>(runs.size() + 1);
+    for (final Run run : runs) {
+      //noinspection ObjectAllocationInLoop
+      cursors.add(new Cursor(cursors.size(), openInput(run.file), run.size, null));
+    }
+    cursors.add(new Cursor(cursors.size(), null, 0, heap.iterator()));
+
+    final Merger merger = new Merger(cursors);
+    return new Iterator<T>() {
+      @Override
+      public boolean hasNext() {
+        try {
+          if (merger.hasNext()) {
+            return true;
+          }
+        } catch (IOException e) {
+          throw readError(e);
+        }
+
+        close();
+        return false;
+      }
+
+      @Override
+      public T next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        try {
+          return merger.next().current;
+        } catch (IOException e) {
+          throw readError(e);
+        }
+      }
+    };
+  }
+
+  private RuntimeException readError(final IOException e) {
+    close();
+    return OException.wrapException(
+        new OIOException("Cannot read sorted elements from temporary file"), e);
+  }
+
+  private void writeRun() throws IOException {
+    buffer.sort(comparator);
+
+    Run run = null;
+    DataOutputStream output = null;
+    try {
+      for (final T element : buffer) {
+        final byte[] bytes = codec.serialize(element);
+        if (bytes == null) {
+          pinned.add(element);
+          continue;
+        }
+
+        if (run == null) {
+          run = newRun(0);
+          output = openOutput(run.file);
+        }
+
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        run.size++;
+      }
+    } catch (IOException | RuntimeException e) {
+      if (output != null) {
+        output.close();
+        deleteFile(run.file);
+      }
+      throw e;
+    }
+
+    if (output != null) {
+      output.close();
+    }
+
+    buffer = new ArrayList<>();
+
+    if (run != null) {
+      runs.add(run);
+
+      // runs of the same level are merged into the single run of the next level, so at most
+      // maxFanIn - 1 runs of each level exist
+      while (runs.size() >= maxFanIn
+          && runs.get(runs.size() - maxFanIn).level == runs.get(runs.size() - 1).level) {
+        mergeTail(maxFanIn);
+      }
+    }
+  }
+
+  /** Merges the last runs into the single one, so merged runs keep their order. */
+  private void mergeTail(final int count) throws IOException {
+    final List<Run> tail = runs.subList(runs.size() - count, runs.size());
+
+    int level = 0;
+    final List<Cursor> cursors = new ArrayList<>(count);
+    for (final Run run : tail) {
+      level = Math.max(level, run.level + 1);
+      //noinspection ObjectAllocationInLoop
+      cursors.add(new Cursor(cursors.size(), openInput(run.file), run.size, null));
+    }
+
+    final Run merged = newRun(level);
+    try (final DataOutputStream output = openOutput(merged.file)) {
+      final Merger merger = new Merger(cursors);
+      while (merger.hasNext()) {
+        final Cursor cursor = merger.next();
+
+        output.writeInt(cursor.bytes.length);
+        output.write(cursor.bytes);
+        merged.size++;
+      }
+    } catch (IOException | RuntimeException e) {
+      deleteFile(merged.file);
+      throw e;
+    }
+
+    for (final Run run : tail) {
+      deleteFile(run.file);
+    }
+    tail.clear();
+    runs.add(merged);
+  }
+
+  private Run newRun(final int level) throws IOException {
+    if (!directory.exists()) {
+      //noinspection ResultOfMethodCallIgnored
+      directory.mkdirs();
+    }
+
+    return new Run(File.createTempFile(prefix, ".sort", directory), level);
+  }
+
+  private static DataOutputStream openOutput(final File file) throws IOException {
+    return new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+  }
+
+  private DataInputStream openInput(final File file) throws IOException {
+    final DataInputStream input =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    inputs.add(input);
+    return input;
+  }
+
+  private void closeInput(final DataInputStream input) {
+    inputs.remove(input);
+    try {
+      input.close();
+    } catch (IOException e) {
+      OLogManager.instance().error(this, "Cannot close temporary file of sorted elements", e);
+    }
+  }
+
+  private void deleteFile(final File file) {
+    if (!file.delete()) {
+      OLogManager.instance().warn(this, "Cannot delete temporary file %s", file);
+    }
+  }
+
+  /** Deletes temporary files and releases elements kept in heap. */
+  @Override
+  public void close() {
+    for (final DataInputStream input : new ArrayList<>(inputs)) {
+      closeInput(input);
+    }
+
+    for (final Run run : runs) {
+      deleteFile(run.file);
+    }
+    runs.clear();
+    buffer = new ArrayList<>();
+    pinned.clear();
+  }
+
+  private static final class Run {
+    private final File file;
+    private final int level;
+    private long size;
+
+    private Run(final File file, final int level) {
+      this.file = file;
+      this.level = level;
+    }
+  }
+
+  /** Current element of a run, runs are read from file or, for elements kept in heap, from list. */
+  private final class Cursor {
+    private final int index;
+    private final DataInputStream input;
+    private final Iterator<T> elements;
+    private long remaining;
+
+    private byte[] bytes;
+    private T current;
+
+    private Cursor(
+        final int index,
+        final DataInputStream input,
+        final long size,
+        final Iterator<T> elements) {
+      this.index = index;
+      this.input = input;
+      this.remaining = size;
+      this.elements = elements;
+    }
+
+    private boolean advance() throws IOException {
+      if (input == null) {
+        if (elements.hasNext()) {
+          current = elements.next();
+          return true;
+        }
+
+        current = null;
+        return false;
+      }
+
+      if (remaining == 0) {
+        closeInput(input);
+        bytes = null;
+        current = null;
+        return false;
+      }
+      remaining--;
+
+      bytes = new byte[input.readInt()];
+      input.readFully(bytes);
+      current = codec.deserialize(bytes);
+      return true;
+    }
+  }
+
+  /**
+   * Merges sorted runs, equal elements are returned in the order of runs. Cursor returned by {@link
+   * #next()} is valid till the next call.
+   */
+  private final class Merger {
+    private final PriorityQueue<Cursor> queue;
+    private Cursor last;
+
+    private Merger(final List<Cursor> cursors) throws IOException {
+      queue =
+          new PriorityQueue<>(
+              cursors.size(),
+              (one, two) -> {
+                final int result = comparator.compare(one.current, two.current);
+                return result != 0 ? result : Integer.compare(one.index, two.index);
+              });
+
+      for (final Cursor cursor : cursors) {
+        if (cursor.advance()) {
+          queue.add(cursor);
+        }
+      }
+    }
+
+    private boolean hasNext() throws IOException {
+      advanceLast();
+      return !queue.isEmpty();
+    }
+
+    private Cursor next() throws IOException {
+      advanceLast();
+
+      last = queue.poll();
+      if (last == null) {
+        throw new NoSuchElementException();
+      }
+      return last;
+    }
+
+    private void advanceLast() throws IOException {
+      if (last != null) {
+        final Cursor cursor = last;
+        last = null;
+        if (cursor.advance()) {
+          queue.add(cursor);
+        }
+      }
+    }
+  }
+}
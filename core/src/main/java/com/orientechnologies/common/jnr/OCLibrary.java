@@ -22,4 +22,12 @@ public interface OCLibrary {
   int getpagesize() throws LastErrorException;
 
   int pathconf(String path, int name) throws LastErrorException;
+
+  long syscall(long number, long arg1, long arg2, long arg3, long arg4, long arg5, long arg6)
+      throws LastErrorException;
+
+  long mmap(long address, long length, int protection, int flags, int fd, long offset)
+      throws LastErrorException;
+
+  int munmap(long address, long length) throws LastErrorException;
 }
@@ -86,6 +86,18 @@ public class ONative {
   public static final int MCL_CURRENT = 1;
   public static final int MCL_FUTURE = 2;
 
+  public static final int EINTR = 4;
+
+  /** Numbers of io_uring system calls, they are the same on all architectures. */
+  private static final long SYS_IO_URING_SETUP = 425;
+
+  private static final long SYS_IO_URING_ENTER = 426;
+
+  private static final int PROT_READ = 0x1;
+  private static final int PROT_WRITE = 0x2;
+  private static final int MAP_SHARED = 0x01;
+  private static final int MAP_POPULATE = 0x08000;
+
   private static volatile POSIX posix;
 
   public static ONative instance() {
@@ -339,6 +351,57 @@ public class ONative {
     return limit;
   }
 
+  /**
+   * Creates io_uring instance.
+   *
+   * @param entries Requested amount of entries in submission queue.
+   * @param params Address of <code>io_uring_params</code> structure, which is filled by kernel.
+   * @return File descriptor of created io_uring instance.
+   */
+  public int ioUringSetup(int entries, long params) throws LastErrorException {
+    final long fd = C_LIBRARY.syscall(SYS_IO_URING_SETUP, entries, params, 0, 0, 0, 0);
+    if (fd < 0) {
+      checkLastError();
+    }
+
+    return (int) fd;
+  }
+
+  /**
+   * Submits requests added to the submission queue of io_uring instance and/or waits for their
+   * completion.
+   *
+   * @return Amount of submitted requests.
+   */
+  public int ioUringEnter(int ringFd, int toSubmit, int minComplete, int flags)
+      throws LastErrorException {
+    final long submitted =
+        C_LIBRARY.syscall(SYS_IO_URING_ENTER, ringFd, toSubmit, minComplete, flags, 0, 0);
+    if (submitted < 0) {
+      checkLastError();
+    }
+
+    return (int) submitted;
+  }
+
+  /** Maps region of file into the memory which is shared with kernel and other processes. */
+  public long mmapShared(int fd, long offset, long length) throws LastErrorException {
+    final long address =
+        C_LIBRARY.mmap(0, length, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, fd, offset);
+    if (address == -1) {
+      checkLastError();
+    }
+
+    return address;
+  }
+
+  public void munmap(long address, long length) throws LastErrorException {
+    final int res = C_LIBRARY.munmap(address, length);
+    if (res == -1) {
+      checkLastError();
+    }
+  }
+
   public void fsync(int fd) throws IOException {
     try {
       final int res = posix.fsync(fd);
@@ -197,6 +197,29 @@ public enum OGlobalConfiguration { // ENVIRONMENT
       Integer.class,
       5),
 
+  DISK_CACHE_READ_AHEAD_PAGES(
+      "storage.diskCache.readAheadPages",
+      "Maximum amount of pages which are read ahead of the current position "
+          + "when sequential access to the file is detected by disk cache, 0 disables read-ahead",
+      Integer.class,
+      64),
+
+  DISK_CACHE_SCAN_RING_PAGES(
+      "storage.diskCache.scanRingPages",
+      "Maximum amount of pages which are kept in disk cache for operations which scan data, "
+          + "like export of database or rebuild of index. Such pages are evicted before pages "
+          + "of other operations, cache may not use more than 10% of its size for them",
+      Integer.class,
+      256),
+
+  DISK_CACHE_SEGMENTS(
+      "storage.diskCache.segments",
+      "Amount of segments of disk cache, each segment has own eviction policy and lock. "
+          + "Should be power of two, 0 means that amount of segments is chosen depending on "
+          + "amount of CPU cores and size of the cache",
+      Integer.class,
+      0),
+
   @Deprecated
   DISK_WRITE_CACHE_USE_ASYNC_IO(
       "storage.diskCache.useAsyncIO",
@@ -264,14 +287,25 @@ public enum OGlobalConfiguration { // ENVIRONMENT
 
   /**
    * Keep disk cache state between moment when storage is closed and moment when it is opened again.
-   * <code>true</code> by default.
+   * List of pages which are kept in disk cache is stored on close and periodically and those pages
+   * are loaded in background once storage is opened again. <code>false</code> by default.
    */
   STORAGE_KEEP_DISK_CACHE_STATE(
       "storage.diskCache.keepState",
-      "Keep disk cache state between moment when storage is closed and moment when it is opened again. true by default",
+      "Keep disk cache state between moment when storage is closed and moment when it is opened "
+          + "again. Pages which were kept in disk cache are loaded in background once storage is "
+          + "opened. false by default",
       Boolean.class,
       false),
 
+  STORAGE_KEEP_DISK_CACHE_STATE_INTERVAL(
+      "storage.diskCache.keepStateInterval",
+      "Interval in seconds between stores of disk cache state if it is kept between sessions of "
+          + "storage, so state is not lost if storage is not closed properly. 0 means that state "
+          + "is stored only on close",
+      Integer.class,
+      300),
+
   STORAGE_CHECKSUM_MODE(
       "storage.diskCache.checksumMode",
       "Controls the per-page checksum storage and verification done by "
@@ -393,6 +427,22 @@ public enum OGlobalConfiguration { // ENVIRONMENT
       Integer.class,
       256),
 
+  STORAGE_USE_IO_URING(
+      "storage.useIOUring",
+      "Use io_uring (Linux 5.6+) to read and write pages of data files, so pages flushed "
+          + "together are submitted to the kernel by a single system call. If io_uring is not "
+          + "supported by the system usual asynchronous file channels are used",
+      Boolean.class,
+      false),
+
+  STORAGE_PAGE_COMPRESSION_FILE_EXTENSIONS(
+      "storage.pageCompression.fileExtensions",
+      "Comma separated list of extensions of data files (for example '.pcl,.cbt') pages of which are "
+          + "compressed by LZ4 before they are written to the disk. Applied to newly created files only, "
+          + "files of encrypted storages are never compressed. Empty value (default) means that pages are not compressed",
+      String.class,
+      ""),
+
   STORAGE_TRACK_PAGE_OPERATIONS_IN_TX(
       "storage.trackOperationsInTx",
       "If this flag switched on, transaction features will be implemented "
@@ -464,6 +514,13 @@ public enum OGlobalConfiguration { // ENVIRONMENT
       Boolean.class,
       true),
 
+  WAL_SYNC_ON_COMMIT(
+      "storage.wal.syncOnCommit",
+      "Indicates whether commit of transaction waits till its records are synced to the disk. "
+          + "Commits which are performed concurrently are synced together by single fsync",
+      Boolean.class,
+      false),
+
   WAL_CACHE_SIZE(
       "storage.wal.cacheSize",
       "Maximum size of WAL cache (in amount of WAL pages, each page is 4k) If set to 0, caching will be disabled",
@@ -561,6 +618,14 @@ public enum OGlobalConfiguration { // ENVIRONMENT
       Integer.class,
       1000),
 
+  WAL_RESTORE_THREADS(
+      "storage.wal.restore.threads",
+      "Amount of threads which apply changes of pages during a restore procedure. "
+          + "Changes of the same page are always applied by the same thread in order of WAL, "
+          + "1 means that data are restored in the thread which opens the storage",
+      Integer.class,
+      Math.min(8, Runtime.getRuntime().availableProcessors())),
+
   @Deprecated
   WAL_READ_CACHE_SIZE(
       "storage.wal.readCacheSize",
@@ -587,6 +652,21 @@ public enum OGlobalConfiguration { // ENVIRONMENT
       String.class,
       null),
 
+  WAL_SEGMENT_COMPRESSION(
+      "storage.wal.segmentCompression",
+      "Compress WAL segments using LZ4 in background once they are filled and synced to the disk."
+          + " Segments of encrypted storages are not compressed",
+      Boolean.class,
+      false),
+
+  WAL_ARCHIVE_PATH(
+      "storage.wal.archivePath",
+      "Path to the directory to which WAL segments are moved instead of deletion once they are"
+          + " not needed by storage anymore. Segments are placed in subdirectory named after the"
+          + " storage. By default, segments are deleted",
+      String.class,
+      null),
+
   DISK_CACHE_PAGE_SIZE(
       "storage.diskCache.pageSize",
       "Size of page of disk buffer (in kilobytes). !!! NEVER CHANGE THIS VALUE !!!",
@@ -855,6 +935,41 @@ public enum OGlobalConfiguration { // ENVIRONMENT
   INDEX_CURSOR_PREFETCH_SIZE(
       "index.stream.prefetchSize", "Default prefetch size of index stream", Integer.class, 10),
 
+  INDEX_BULK_LOAD(
+      "index.bulkLoad",
+      "Indicates whether entries are sorted and loaded in batches during index build and rebuild "
+          + "instead of being added one by one (true by default)",
+      Boolean.class,
+      true),
+
+  INDEX_BULK_LOAD_SORT_BUFFER_SIZE(
+      "index.bulkLoad.sortBufferSize",
+      "Amount of index entries which are sorted in memory during index build, "
+          + "once the buffer is full sorted entries are written to the temporary file",
+      Integer.class,
+      500_000),
+
+  INDEX_BULK_LOAD_BATCH_SIZE(
+      "index.bulkLoad.batchSize",
+      "Amount of sorted index entries which are loaded into the index inside of single atomic "
+          + "operation during index build",
+      Integer.class,
+      10_000),
+
+  INDEX_BATCH_LOOKUP_SIZE(
+      "index.batchLookupSize",
+      "Amount of keys which are looked up in the index at once when several keys are requested, "
+          + "keys of the batch are found during single pass over the index",
+      Integer.class,
+      1_000),
+
+  INDEX_CELL_BTREE_PREFIX_COMPRESSION(
+      "index.cellBTree.prefixCompression",
+      "Indicates whether new CellBTree indexes store keys of leaf pages with prefix compression. "
+          + "Such indexes can not be opened by versions which do not support it (false by default)",
+      Boolean.class,
+      false),
+
   // SBTREE
   SBTREE_MAX_DEPTH(
       "sbtree.maxDepth",
@@ -1305,6 +1420,19 @@ public enum OGlobalConfiguration { // ENVIRONMENT
       Integer.class,
       20000),
 
+  QUERY_PARALLEL_MAX_THREADS(
+      "query.parallelMaxThreads",
+      "Maximum number of threads used to execute the branches of a single parallel query (eg. UNION of sub-plans or OR conditions on multiple indexes)",
+      Integer.class,
+      Runtime.getRuntime().availableProcessors()),
+
+  QUERY_PARALLEL_CONSUMER_TIMEOUT(
+      "query.parallelConsumerTimeout",
+      "Time in milliseconds after which the threads of a parallel query stop and release their "
+          + "resources, if their results are not consumed and the result set is not closed",
+      Long.class,
+      300000),
+
   QUERY_SCAN_PREFETCH_PAGES(
       "query.scanPrefetchPages",
       "Pages to prefetch during scan. Setting this value higher makes scans faster, because it reduces the number of I/O operations, though it consumes more memory. (Use 0 to disable)",
@@ -1338,6 +1466,27 @@ public enum OGlobalConfiguration { // ENVIRONMENT
       Long.class,
       500_000),
 
+  QUERY_ORDER_BY_SPILL_THRESHOLD(
+      "query.orderBySpillThreshold",
+      "Number of elements (records) an ORDER BY without LIMIT keeps in heap before sorting them and moving them to a temporary file. "
+          + "Temporary files are merged when the sorted result is returned. Zero or negative number means that the ORDER BY is executed in heap only",
+      Integer.class,
+      100_000),
+
+  QUERY_GROUP_BY_SPILL_THRESHOLD(
+      "query.groupBySpillThreshold",
+      "Number of groups a GROUP BY keeps in heap. When exceeded, the records of the new groups are partitioned to temporary files "
+          + "and aggregated afterwards, one partition at a time. Zero or negative number means that the GROUP BY is executed in heap only",
+      Integer.class,
+      100_000),
+
+  QUERY_DISTINCT_SPILL_THRESHOLD(
+      "query.distinctSpillThreshold",
+      "Number of distinct projections a SELECT DISTINCT keeps track of in heap. When exceeded, the remaining results are written to temporary files "
+          + "and checked for duplicates when they are all received. Zero or negative number means that the DISTINCT is executed in heap only",
+      Integer.class,
+      1_000_000),
+
   QUERY_LIVE_SUPPORT(
       "query.live.support",
       "Enable/Disable the support of live query. (Use false to disable)",
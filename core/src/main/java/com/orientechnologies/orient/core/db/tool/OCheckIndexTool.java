@@ -26,6 +26,7 @@ import com.orientechnologies.orient.core.iterator.ORecordIteratorCluster;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.storage.cache.OPageAccessIntent;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -57,11 +58,16 @@ public class OCheckIndexTool extends ODatabaseTool {
 
   @Override
   public void run() {
-    for (OIndex index : database.getMetadata().getIndexManagerInternal().getIndexes(database)) {
-      if (!canCheck(index)) {
-        continue;
+    final OPageAccessIntent prevIntent = setPageAccessIntent(OPageAccessIntent.SCAN);
+    try {
+      for (OIndex index : database.getMetadata().getIndexManagerInternal().getIndexes(database)) {
+        if (!canCheck(index)) {
+          continue;
+        }
+        checkIndex(index);
       }
-      checkIndex(index);
+    } finally {
+      setPageAccessIntent(prevIntent);
     }
     message("Total errors found on indexes: " + getTotalErrors());
   }
@@ -43,6 +43,7 @@ import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.serialization.serializer.OJSONWriter;
 import com.orientechnologies.orient.core.serialization.serializer.record.string.ORecordSerializerJSON;
 import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
+import com.orientechnologies.orient.core.storage.cache.OPageAccessIntent;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -127,6 +128,8 @@ public class ODatabaseExport extends ODatabaseImpExpAbstract {
   }
 
   public ODatabaseExport exportDatabase() {
+    // whole database is read once, so its pages should not flush working set from the disk cache
+    final OPageAccessIntent prevIntent = setPageAccessIntent(OPageAccessIntent.SCAN);
     try {
       listener.onMessage(
           "\nStarted export of database '" + database.getName() + "' to " + fileName + "...");
@@ -150,6 +153,7 @@ public class ODatabaseExport extends ODatabaseImpExpAbstract {
       throw new ODatabaseExportException(
           "Error on exporting database '" + database.getName() + "' to: " + fileName, e);
     } finally {
+      setPageAccessIntent(prevIntent);
       close();
     }
     return this;
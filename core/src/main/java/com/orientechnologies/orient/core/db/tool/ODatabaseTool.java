@@ -23,6 +23,9 @@ import com.orientechnologies.common.io.OIOUtils;
 import com.orientechnologies.orient.core.command.OCommandOutputListener;
 import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
 import com.orientechnologies.orient.core.serialization.serializer.OStringSerializerHelper;
+import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.cache.OPageAccessIntent;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
 import java.util.Collections;
 import java.util.List;
 
@@ -42,6 +45,21 @@ public abstract class ODatabaseTool implements Runnable {
     if (output != null) output.onMessage(String.format(iMessage, iArgs));
   }
 
+  /**
+   * Sets intent of access to the pages of the database storage by the current thread, tools which
+   * read whole database use {@link OPageAccessIntent#SCAN} intent to not flush disk cache.
+   *
+   * @return Intent which was set before the call.
+   */
+  protected OPageAccessIntent setPageAccessIntent(final OPageAccessIntent intent) {
+    final OStorage storage = database.getStorage().getUnderlying();
+    if (storage instanceof OAbstractPaginatedStorage) {
+      return ((OAbstractPaginatedStorage) storage).setPageAccessIntent(intent);
+    }
+
+    return OPageAccessIntent.NORMAL;
+  }
+
   public ODatabaseTool setOptions(final String iOptions) {
     if (iOptions != null) {
       final List<String> options = OStringSerializerHelper.smartSplit(iOptions, ' ');
@@ -28,6 +28,8 @@ import com.orientechnologies.common.exception.OException;
 import com.orientechnologies.common.io.OIOUtils;
 import com.orientechnologies.common.jnr.ONative;
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.profiler.OProfiler;
+import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.engine.OEngineAbstract;
 import com.orientechnologies.orient.core.engine.OMemoryAndLocalPaginatedEnginesInitializer;
@@ -49,6 +51,9 @@ import jnr.posix.POSIXFactory;
 public class OEngineLocalPaginated extends OEngineAbstract {
   public static final String NAME = "plocal";
 
+  /** Minimum amount of pages in segment of read cache if amount of segments is chosen by engine. */
+  private static final int MIN_READ_CACHE_SEGMENT_PAGES = 16 * 1024;
+
   private volatile OReadCache readCache;
 
   protected final OClosableLinkedContainer<Long, OFile> files =
@@ -112,7 +117,84 @@ public class OEngineLocalPaginated extends OEngineAbstract {
       pages.clear();
     }
 
-    readCache = new AsyncReadCache(OByteBufferPool.instance(null), diskCacheSize, pageSize, false);
+    final AsyncReadCache asyncReadCache =
+        new AsyncReadCache(
+            OByteBufferPool.instance(null),
+            diskCacheSize,
+            pageSize,
+            OGlobalConfiguration.PROFILER_ENABLED.getValueAsBoolean(),
+            OGlobalConfiguration.DISK_CACHE_READ_AHEAD_PAGES.getValueAsInteger(),
+            OGlobalConfiguration.DISK_CACHE_SCAN_RING_PAGES.getValueAsInteger(),
+            calculateReadCacheSegments(diskCacheSize / pageSize));
+    registerProfilerHooks(asyncReadCache);
+
+    readCache = asyncReadCache;
+  }
+
+  /**
+   * @param cachePages Maximum amount of pages in read cache.
+   * @return Amount of segments of read cache, power of two.
+   */
+  private static int calculateReadCacheSegments(final long cachePages) {
+    final int segments = OGlobalConfiguration.DISK_CACHE_SEGMENTS.getValueAsInteger();
+    if (segments > 0) {
+      return Integer.highestOneBit(segments);
+    }
+
+    // segment per each 4 cores, but segments should be big enough to keep frequently used pages
+    int result = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+    while (result > 1 && cachePages / result < MIN_READ_CACHE_SEGMENT_PAGES) {
+      result >>= 1;
+    }
+
+    return result;
+  }
+
+  private static void registerProfilerHooks(final AsyncReadCache readCache) {
+    final OProfiler profiler = Orient.instance().getProfiler();
+
+    for (int i = 0; i < readCache.getSegments(); i++) {
+      final int segment = i;
+      final String prefix = "diskCache.segment." + segment;
+
+      profiler.registerHookValue(
+          prefix + ".hits",
+          "Number of requests of pages which were found in the segment of disk cache",
+          OProfiler.METRIC_TYPE.COUNTER,
+          () -> readCache.getHits(segment),
+          "diskCache.segment.*.hits");
+      profiler.registerHookValue(
+          prefix + ".misses",
+          "Number of requests of pages which were loaded into the segment of disk cache",
+          OProfiler.METRIC_TYPE.COUNTER,
+          () -> readCache.getMisses(segment),
+          "diskCache.segment.*.misses");
+      profiler.registerHookValue(
+          prefix + ".evictions",
+          "Number of pages which were evicted from the segment of disk cache",
+          OProfiler.METRIC_TYPE.COUNTER,
+          () -> readCache.getEvictions(segment),
+          "diskCache.segment.*.evictions");
+      profiler.registerHookValue(
+          prefix + ".size",
+          "Number of pages which are cached in the segment of disk cache",
+          OProfiler.METRIC_TYPE.SIZE,
+          () -> readCache.getSize(segment),
+          "diskCache.segment.*.size");
+    }
+  }
+
+  private static void unregisterProfilerHooks(final AsyncReadCache readCache) {
+    final OProfiler profiler = Orient.instance().getProfiler();
+
+    for (int i = 0; i < readCache.getSegments(); i++) {
+      final String prefix = "diskCache.segment." + i;
+
+      profiler.unregisterHookValue(prefix + ".hits");
+      profiler.unregisterHookValue(prefix + ".misses");
+      profiler.unregisterHookValue(prefix + ".evictions");
+      profiler.unregisterHookValue(prefix + ".size");
+    }
   }
 
   private static long calculateReadCacheMaxMemory(final long cacheSize) {
@@ -179,6 +261,10 @@ public class OEngineLocalPaginated extends OEngineAbstract {
     try {
       readCache.clear();
       files.clear();
+
+      if (readCache instanceof AsyncReadCache) {
+        unregisterProfilerHooks((AsyncReadCache) readCache);
+      }
     } finally {
       super.shutdown();
     }
@@ -16,11 +16,15 @@
 package com.orientechnologies.orient.core.index;
 
 import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.exception.OConfigurationException;
 import com.orientechnologies.orient.core.index.engine.OBaseIndexEngine;
 import com.orientechnologies.orient.core.index.engine.v1.OCellBTreeIndexEngine;
 import com.orientechnologies.orient.core.index.engine.v1.OCellBTreeMultiValueIndexEngine;
 import com.orientechnologies.orient.core.index.engine.v1.OCellBTreeSingleValueIndexEngine;
+import com.orientechnologies.orient.core.index.engine.v1.ONormalizedKeyBTreeIndexEngine;
+import com.orientechnologies.orient.core.index.engine.v1.ONormalizedKeyBTreeMultiValueIndexEngine;
+import com.orientechnologies.orient.core.index.engine.v1.ONormalizedKeyBTreeSingleValueIndexEngine;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.storage.OStorage;
@@ -49,6 +53,7 @@ public class ODefaultIndexFactory implements OIndexFactory {
   static final String SBTREE_BONSAI_VALUE_CONTAINER = "SBTREEBONSAISET";
   public static final String NONE_VALUE_CONTAINER = "NONE";
   static final String CELL_BTREE_ALGORITHM = "CELL_BTREE";
+  static final String NKBTREE_ALGORITHM = "NKBTREE";
 
   private static final Set<String> TYPES;
   private static final Set<String> ALGORITHMS;
@@ -66,6 +71,7 @@ public class ODefaultIndexFactory implements OIndexFactory {
     final Set<String> algorithms = new HashSet<>();
     algorithms.add(SBTREE_ALGORITHM);
     algorithms.add(CELL_BTREE_ALGORITHM);
+    algorithms.add(NKBTREE_ALGORITHM);
 
     ALGORITHMS = Collections.unmodifiableSet(algorithms);
   }
@@ -194,7 +200,12 @@ public class ODefaultIndexFactory implements OIndexFactory {
       case SBTREE_ALGORITHM:
         return OSBTreeIndexEngine.VERSION;
       case CELL_BTREE_ALGORITHM:
+        if (OGlobalConfiguration.INDEX_CELL_BTREE_PREFIX_COMPRESSION.getValueAsBoolean()) {
+          return OCellBTreeIndexEngine.PREFIX_COMPRESSION_VERSION;
+        }
         return OCellBTreeIndexEngine.VERSION;
+      case NKBTREE_ALGORITHM:
+        return ONormalizedKeyBTreeIndexEngine.VERSION;
     }
 
     throw new IllegalStateException("Invalid algorithm name " + algorithm);
@@ -242,6 +253,17 @@ public class ODefaultIndexFactory implements OIndexFactory {
                       indexId, name, (OAbstractPaginatedStorage) storage, version);
             }
             break;
+          case NKBTREE_ALGORITHM:
+            if (multiValue) {
+              indexEngine =
+                  new ONormalizedKeyBTreeMultiValueIndexEngine(
+                      indexId, name, (OAbstractPaginatedStorage) storage, version);
+            } else {
+              indexEngine =
+                  new ONormalizedKeyBTreeSingleValueIndexEngine(
+                      indexId, name, (OAbstractPaginatedStorage) storage, version);
+            }
+            break;
           default:
             throw new IllegalStateException("Invalid name of algorithm :'" + "'");
         }
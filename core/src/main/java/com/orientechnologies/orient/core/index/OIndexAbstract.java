@@ -44,6 +44,7 @@ import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.record.impl.ODocumentInternal;
 import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.cache.OPageAccessIntent;
 import com.orientechnologies.orient.core.storage.cache.OReadCache;
 import com.orientechnologies.orient.core.storage.cache.OWriteCache;
 import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
@@ -54,17 +55,20 @@ import com.orientechnologies.orient.core.tx.OTransactionIndexChanges;
 import com.orientechnologies.orient.core.tx.OTransactionIndexChangesPerKey;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -571,6 +575,8 @@ public abstract class OIndexAbstract implements OIndexInternal {
 
   private long fillIndex(final OProgressListener iProgressListener, final boolean rebuild) {
     long documentIndexed = 0;
+    // all records of indexed clusters are read once, they should not flush disk cache
+    final OPageAccessIntent prevIntent = storage.setPageAccessIntent(OPageAccessIntent.SCAN);
     try {
       long documentNum = 0;
       long documentTotal = 0;
@@ -580,19 +586,35 @@ public abstract class OIndexAbstract implements OIndexInternal {
 
       if (iProgressListener != null) iProgressListener.onBegin(this, documentTotal, rebuild);
 
-      // INDEX ALL CLUSTERS
-      for (final String clusterName : clustersToIndex) {
-        final long[] metrics =
-            indexCluster(
-                clusterName, iProgressListener, documentNum, documentIndexed, documentTotal);
-        documentNum = metrics[0];
-        documentIndexed = metrics[1];
+      try (final OIndexEntrySorter sorter = createEntrySorter()) {
+        // INDEX ALL CLUSTERS
+        for (final String clusterName : clustersToIndex) {
+          final long[] metrics =
+              indexCluster(
+                  clusterName,
+                  iProgressListener,
+                  documentNum,
+                  documentIndexed,
+                  documentTotal,
+                  sorter);
+          documentNum = metrics[0];
+          documentIndexed = metrics[1];
+        }
+
+        if (sorter != null) {
+          bulkLoad(sorter);
+        }
+      } catch (final IOException e) {
+        throw OException.wrapException(
+            new OIndexException("Error during sorting of entries of index '" + name + "'"), e);
       }
 
       if (iProgressListener != null) iProgressListener.onCompletition(this, true);
     } catch (final RuntimeException e) {
       if (iProgressListener != null) iProgressListener.onCompletition(this, false);
       throw e;
+    } finally {
+      storage.setPageAccessIntent(prevIntent);
     }
     return documentIndexed;
   }
@@ -750,7 +772,7 @@ public abstract class OIndexAbstract implements OIndexInternal {
         updateConfiguration();
 
         // INDEX SINGLE CLUSTER
-        indexCluster(clusterName, null, 0, 0, 0);
+        indexCluster(clusterName, null, 0, 0, 0, null);
       }
 
       return this;
@@ -939,14 +961,142 @@ public abstract class OIndexAbstract implements OIndexInternal {
 
   protected abstract OBinarySerializer determineValueSerializer();
 
-  private void populateIndex(ODocument doc, Object fieldValue) {
+  private void populateIndex(ODocument doc, Object fieldValue, OIndexEntrySorter sorter)
+      throws IOException {
     if (fieldValue instanceof Collection) {
       for (final Object fieldValueItem : (Collection<?>) fieldValue) {
-        put(fieldValueItem, doc);
+        populateIndexEntry(doc, fieldValueItem, sorter);
       }
+    } else populateIndexEntry(doc, fieldValue, sorter);
+  }
+
+  private void populateIndexEntry(ODocument doc, Object fieldValue, OIndexEntrySorter sorter)
+      throws IOException {
+    final Object key = sorter != null ? getCollatingValue(fieldValue) : null;
+    if (key != null) {
+      sorter.add(key, doc.getIdentity());
     } else put(fieldValue, doc);
   }
 
+  /**
+   * @return Sorter of entries of the index if they can be loaded in sorted batches or <code>null
+   *     </code> if every entry should be put into the index once it is read.
+   */
+  private OIndexEntrySorter createEntrySorter() {
+    final OType[] keyTypes = indexDefinition != null ? indexDefinition.getTypes() : null;
+    if (!OGlobalConfiguration.INDEX_BULK_LOAD.getValueAsBoolean()
+        || apiVersion != 1
+        || !isBulkLoadSupported()
+        || !OIndexEntrySorter.isSupported(keyTypes)) {
+      return null;
+    }
+
+    return new OIndexEntrySorter(
+        keyTypes, OGlobalConfiguration.INDEX_BULK_LOAD_SORT_BUFFER_SIZE.getValueAsInteger());
+  }
+
+  /**
+   * Looks up keys of the index by batches of {@link OGlobalConfiguration#INDEX_BATCH_LOOKUP_SIZE}
+   * keys, every batch is looked up by single call to the index engine. Supported only by indexes
+   * which use index engines of the API version 1.
+   *
+   * @return Entries of found keys, entries are returned in the same order as keys are passed.
+   */
+  protected Stream<ORawPair<Object, ORID>> streamEntriesByBatches(final List<?> keys) {
+    final int batchSize = OGlobalConfiguration.INDEX_BATCH_LOOKUP_SIZE.getValueAsInteger();
+
+    //noinspection resource
+    return IntStream.range(0, (keys.size() + batchSize - 1) / batchSize)
+        .mapToObj(
+            (batch) -> {
+              final int batchEnd = Math.min(keys.size(), (batch + 1) * batchSize);
+              final List<Object> collatedKeys = new ArrayList<>(batchEnd - batch * batchSize);
+              for (final Object key : keys.subList(batch * batchSize, batchEnd)) {
+                collatedKeys.add(getCollatingValue(key));
+              }
+
+              acquireSharedLock();
+              try {
+                while (true) {
+                  try {
+                    return storage.getIndexEntries(indexId, collatedKeys);
+                  } catch (OInvalidIndexEngineIdException ignore) {
+                    doReloadIndexEngine();
+                  }
+                }
+              } finally {
+                releaseSharedLock();
+              }
+            })
+        .flatMap((entries) -> entries);
+  }
+
+  /**
+   * Indicates whether entries of the index may be loaded in sorted batches once all records of
+   * indexed clusters are read, instead of the put of every entry when record is read.
+   */
+  protected boolean isBulkLoadSupported() {
+    return false;
+  }
+
+  /** @return Validator of entries which keys are already present in the index during bulk load. */
+  protected OBaseIndexEngine.Validator<Object, ORID> getBulkLoadValidator() {
+    return null;
+  }
+
+  /**
+   * Loads sorted entries into the index by batches, every batch is loaded inside of single atomic
+   * operation. If batch can not be loaded its entries are put one by one, so only broken entries
+   * are skipped.
+   */
+  private void bulkLoad(final OIndexEntrySorter sorter) throws IOException {
+    final int batchSize = OGlobalConfiguration.INDEX_BULK_LOAD_BATCH_SIZE.getValueAsInteger();
+    final OBaseIndexEngine.Validator<Object, ORID> validator = getBulkLoadValidator();
+
+    final Iterator<ORawPair<Object, ORID>> entries = sorter.sortedEntries();
+    final List<ORawPair<Object, ORID>> batch = new ArrayList<>(batchSize);
+    while (entries.hasNext()) {
+      batch.add(entries.next());
+
+      if (batch.size() >= batchSize || !entries.hasNext()) {
+        try {
+          while (true) {
+            try {
+              storage.bulkLoadIndex(indexId, batch, validator);
+              break;
+            } catch (OInvalidIndexEngineIdException ignore) {
+              doReloadIndexEngine();
+            }
+          }
+        } catch (OTooBigIndexKeyException | OIndexException e) {
+          for (final ORawPair<Object, ORID> entry : batch) {
+            try {
+              while (true) {
+                try {
+                  doPut(storage, entry.first, entry.second);
+                  break;
+                } catch (OInvalidIndexEngineIdException ignore) {
+                  doReloadIndexEngine();
+                }
+              }
+            } catch (OTooBigIndexKeyException | OIndexException ex) {
+              OLogManager.instance()
+                  .error(
+                      this,
+                      "Exception during index rebuild. Exception was caused by following key/ value pair - key %s, value %s."
+                          + " Rebuild will continue from this point",
+                      ex,
+                      entry.first,
+                      entry.second);
+            }
+          }
+        }
+
+        batch.clear();
+      }
+    }
+  }
+
   public Object getCollatingValue(final Object key) {
     if (key != null && indexDefinition != null) return indexDefinition.getCollate().transform(key);
     return key;
@@ -1028,7 +1178,8 @@ public abstract class OIndexAbstract implements OIndexInternal {
       final OProgressListener iProgressListener,
       long documentNum,
       long documentIndexed,
-      long documentTotal) {
+      long documentTotal,
+      final OIndexEntrySorter sorter) {
     try {
       for (final ORecord record : getDatabase().browseCluster(clusterName)) {
         if (Thread.interrupted())
@@ -1049,7 +1200,11 @@ public abstract class OIndexAbstract implements OIndexInternal {
 
           if (fieldValue != null || !indexDefinition.isNullValuesIgnored()) {
             try {
-              populateIndex(doc, fieldValue);
+              populateIndex(doc, fieldValue, sorter);
+            } catch (IOException e) {
+              throw OException.wrapException(
+                  new OIndexException("Error during sorting of entries of index '" + name + "'"),
+                  e);
             } catch (OTooBigIndexKeyException | OIndexException e) {
               OLogManager.instance()
                   .error(
@@ -0,0 +1,135 @@
+package com.orientechnologies.orient.core.index;
+
+import com.orientechnologies.common.collection.OExternalSorter;
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.serialization.serializer.binary.OBinarySerializerFactory;
+import com.orientechnologies.orient.core.serialization.serializer.binary.impl.index.OCompositeKeySerializer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Sorts entries of the index which is filled by records of indexed clusters, so they can be loaded
+ * into the index in ascending order of keys.
+ *
+ * <p>Entries are sorted by {@link OExternalSorter}, so only limited amount of entries is kept in
+ * memory and the rest of them are written into temporary files as pairs of serialized key and
+ * record id.
+ */
+final class OIndexEntrySorter implements AutoCloseable {
+  private static final int MAX_MERGE_FAN_IN = 64;
+
+  private static final int RID_SIZE = Short.BYTES + Long.BYTES;
+
+  private static final Comparator<ORawPair<Object, ORID>> ENTRY_COMPARATOR =
+      (entryOne, entryTwo) -> {
+        final int result = ODefaultComparator.INSTANCE.compare(entryOne.first, entryTwo.first);
+        if (result != 0) {
+          return result;
+        }
+
+        return entryOne.second.compareTo(entryTwo.second);
+      };
+
+  private final OExternalSorter<ORawPair<Object, ORID>> sorter;
+
+  OIndexEntrySorter(final OType[] keyTypes, final int sortBufferSize) {
+    this.sorter =
+        new OExternalSorter<>(
+            ENTRY_COMPARATOR,
+            new EntryCodec(keyTypes),
+            sortBufferSize,
+            MAX_MERGE_FAN_IN,
+            new File(Orient.getTempPath()),
+            "index-");
+  }
+
+  /** @return <code>true</code> if keys of given types can be written into temporary files. */
+  static boolean isSupported(final OType[] keyTypes) {
+    if (keyTypes == null || keyTypes.length == 0) {
+      return false;
+    }
+
+    final OBinarySerializerFactory factory = OBinarySerializerFactory.getInstance();
+    for (final OType keyType : keyTypes) {
+      if (keyType == null || factory.getObjectSerializer(keyType) == null) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  void add(final Object key, final ORID rid) throws IOException {
+    //noinspection ObjectAllocationInLoop
+    sorter.add(new ORawPair<>(key, rid));
+  }
+
+  /** @return Iterator over all added entries sorted by keys and then by record ids. */
+  Iterator<ORawPair<Object, ORID>> sortedEntries() throws IOException {
+    return sorter.sortedIterator();
+  }
+
+  /** Deletes temporary files of sorted runs. */
+  @Override
+  public void close() {
+    sorter.close();
+  }
+
+  /**
+   * Entry is stored as flag of composite key, key serialized as composite one and cluster id and
+   * position of the record.
+   */
+  private static final class EntryCodec implements OExternalSorter.Codec<ORawPair<Object, ORID>> {
+    private final OType[] keyTypes;
+
+    private EntryCodec(final OType[] keyTypes) {
+      this.keyTypes = keyTypes;
+    }
+
+    @Override
+    public byte[] serialize(final ORawPair<Object, ORID> entry) {
+      final boolean composite = entry.first instanceof OCompositeKey;
+      final OCompositeKey compositeKey;
+      if (composite) {
+        compositeKey = (OCompositeKey) entry.first;
+      } else {
+        compositeKey = new OCompositeKey();
+        compositeKey.addKey(entry.first);
+      }
+
+      //noinspection RedundantCast
+      final byte[] serializedKey =
+          OCompositeKeySerializer.INSTANCE.serializeNativeAsWhole(
+              compositeKey, (Object[]) keyTypes);
+
+      final ByteBuffer buffer = ByteBuffer.allocate(1 + serializedKey.length + RID_SIZE);
+      buffer.put(composite ? (byte) 1 : (byte) 0);
+      buffer.put(serializedKey);
+      buffer.putShort((short) entry.second.getClusterId());
+      buffer.putLong(entry.second.getClusterPosition());
+      return buffer.array();
+    }
+
+    @Override
+    public ORawPair<Object, ORID> deserialize(final byte[] bytes) {
+      final boolean composite = bytes[0] != 0;
+      final OCompositeKey compositeKey =
+          OCompositeKeySerializer.INSTANCE.deserializeNativeObject(bytes, 1);
+      final Object key = composite ? compositeKey : compositeKey.getKeys().get(0);
+
+      final ByteBuffer buffer = ByteBuffer.wrap(bytes, bytes.length - RID_SIZE, RID_SIZE);
+      final int clusterId = buffer.getShort();
+      final long clusterPosition = buffer.getLong();
+
+      return new ORawPair<>(key, new ORecordId(clusterId, clusterPosition));
+    }
+  }
+}
@@ -398,6 +398,10 @@ public abstract class OIndexMultiValues extends OIndexAbstract {
 
     sortedKeys.sort(comparator);
 
+    if (apiVersion == 1) {
+      return IndexStreamSecurityDecorator.decorateStream(this, streamEntriesByBatches(sortedKeys));
+    }
+
     //noinspection resource
     return IndexStreamSecurityDecorator.decorateStream(
         this,
@@ -55,6 +55,11 @@ public class OIndexNotUnique extends OIndexMultiValues {
     return true;
   }
 
+  @Override
+  protected boolean isBulkLoadSupported() {
+    return true;
+  }
+
   @Override
   public boolean supportsOrderedIterations() {
     while (true) {
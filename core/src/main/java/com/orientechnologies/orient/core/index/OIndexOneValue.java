@@ -136,6 +136,10 @@ public abstract class OIndexOneValue extends OIndexAbstract {
 
     sortedKeys.sort(comparator);
 
+    if (apiVersion == 1) {
+      return IndexStreamSecurityDecorator.decorateStream(this, streamEntriesByBatches(sortedKeys));
+    }
+
     //noinspection resource
     return IndexStreamSecurityDecorator.decorateStream(
         this,
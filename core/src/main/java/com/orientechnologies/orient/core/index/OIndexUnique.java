@@ -113,6 +113,16 @@ public class OIndexUnique extends OIndexOneValue {
     storage.validatedPutIndexValue(indexId, key, rid, uniqueValidator);
   }
 
+  @Override
+  protected boolean isBulkLoadSupported() {
+    return true;
+  }
+
+  @Override
+  protected OBaseIndexEngine.Validator<Object, ORID> getBulkLoadValidator() {
+    return uniqueValidator;
+  }
+
   @Override
   public boolean canBeUsedInEqualityOperators() {
     return true;
@@ -1,8 +1,10 @@
 package com.orientechnologies.orient.core.index.engine;
 
+import com.orientechnologies.common.util.ORawPair;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperation;
 import java.io.IOException;
+import java.util.List;
 
 public interface OSingleValueIndexEngine extends OV1IndexEngine {
   boolean validatedPut(
@@ -10,6 +12,16 @@ public interface OSingleValueIndexEngine extends OV1IndexEngine {
 
   boolean remove(OAtomicOperation atomicOperation, Object key) throws IOException;
 
+  @Override
+  default void bulkLoad(
+      OAtomicOperation atomicOperation,
+      List<ORawPair<Object, ORID>> entries,
+      Validator<Object, ORID> validator) {
+    for (final ORawPair<Object, ORID> entry : entries) {
+      validatedPut(atomicOperation, entry.first, entry.second, validator);
+    }
+  }
+
   @Override
   default boolean isMultiValue() {
     return false;
@@ -1,10 +1,12 @@
 package com.orientechnologies.orient.core.index.engine;
 
 import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.util.ORawPair;
 import com.orientechnologies.orient.core.encryption.OEncryption;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperation;
+import java.util.List;
 import java.util.stream.Stream;
 
 public interface OV1IndexEngine extends OBaseIndexEngine {
@@ -14,6 +16,32 @@ public interface OV1IndexEngine extends OBaseIndexEngine {
 
   Stream<ORID> get(Object key);
 
+  /**
+   * Looks up several keys at once. Engines which store keys in B-tree find all keys during single
+   * pass over the tree.
+   *
+   * @return Entries of found keys, entries are returned in the same order as keys are passed.
+   */
+  default Stream<ORawPair<Object, ORID>> getAll(List<Object> keys) {
+    return keys.stream().flatMap((key) -> get(key).map((rid) -> new ORawPair<>(key, rid)));
+  }
+
+  /**
+   * Puts entries sorted in ascending order of keys into the index. Engines which store keys in
+   * B-tree add such entries to the end of the tree and fill pages of the tree completely.
+   *
+   * @param validator Validator of entries which keys are already present in the index, may be
+   *     <code>null</code>.
+   */
+  default void bulkLoad(
+      OAtomicOperation atomicOperation,
+      List<ORawPair<Object, ORID>> entries,
+      Validator<Object, ORID> validator) {
+    for (final ORawPair<Object, ORID> entry : entries) {
+      put(atomicOperation, entry.first, entry.second);
+    }
+  }
+
   @Override
   default int getEngineAPIVersion() {
     return API_VERSION;
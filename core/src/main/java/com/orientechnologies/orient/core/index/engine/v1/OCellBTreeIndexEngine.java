@@ -1,7 +1,15 @@
 package com.orientechnologies.orient.core.index.engine.v1;
 
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.index.engine.OV1IndexEngine;
 
 public interface OCellBTreeIndexEngine extends OV1IndexEngine {
   int VERSION = 4;
+
+  /**
+   * Version of the indexes which store keys of leaf pages with prefix compression. It is used for
+   * new indexes only if {@link OGlobalConfiguration#INDEX_CELL_BTREE_PREFIX_COMPRESSION} is set,
+   * because previous versions can not open such indexes.
+   */
+  int PREFIX_COMPRESSION_VERSION = 5;
 }
@@ -22,7 +22,9 @@ import com.orientechnologies.orient.core.storage.index.sbtree.multivalue.OCellBT
 import com.orientechnologies.orient.core.storage.index.sbtree.multivalue.v2.CellBTreeMultiValueV2;
 import com.orientechnologies.orient.core.storage.index.sbtree.singlevalue.OCellBTreeSingleValue;
 import com.orientechnologies.orient.core.storage.index.sbtree.singlevalue.v3.CellBTreeSingleValueV3;
+import com.orientechnologies.orient.core.storage.index.sbtree.singlevalue.v4.CellBTreeSingleValueV4;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Spliterators;
@@ -73,6 +75,14 @@ public final class OCellBTreeMultiValueIndexEngine
       nullTree =
           new CellBTreeSingleValueV3<>(
               nullTreeName, DATA_FILE_EXTENSION, NULL_BUCKET_FILE_EXTENSION, storage);
+    } else if (version == 5) {
+      mvTree = null;
+      svTree =
+          new CellBTreeSingleValueV4<>(
+              name, DATA_FILE_EXTENSION, NULL_BUCKET_FILE_EXTENSION, storage);
+      nullTree =
+          new CellBTreeSingleValueV4<>(
+              nullTreeName, DATA_FILE_EXTENSION, NULL_BUCKET_FILE_EXTENSION, storage);
     } else {
       throw new IllegalStateException("Invalid tree version " + version);
     }
@@ -437,6 +447,48 @@ public final class OCellBTreeMultiValueIndexEngine
     }
   }
 
+  @Override
+  public void bulkLoad(
+      OAtomicOperation atomicOperation,
+      List<ORawPair<Object, ORID>> entries,
+      Validator<Object, ORID> validator) {
+    if (mvTree != null) {
+      OMultiValueIndexEngine.super.bulkLoad(atomicOperation, entries, validator);
+      return;
+    }
+
+    assert svTree != null;
+    assert nullTree != null;
+
+    // entries sorted by key and rid are sorted by composite keys of single value tree too
+    final List<ORawPair<OCompositeKey, ORID>> treeEntries = new ArrayList<>(entries.size());
+    try {
+      for (final ORawPair<Object, ORID> entry : entries) {
+        if (entry.first != null) {
+          //noinspection ObjectAllocationInLoop
+          treeEntries.add(
+              new ORawPair<>(createCompositeKey(entry.first, entry.second), entry.second));
+        } else {
+          nullTree.put(atomicOperation, entry.second, entry.second);
+        }
+      }
+
+      int index = 0;
+      while (index < treeEntries.size()) {
+        index += svTree.append(atomicOperation, treeEntries.subList(index, treeEntries.size()));
+
+        if (index < treeEntries.size()) {
+          final ORawPair<OCompositeKey, ORID> entry = treeEntries.get(index);
+          svTree.put(atomicOperation, entry.first, entry.second);
+          index++;
+        }
+      }
+    } catch (IOException e) {
+      throw OException.wrapException(
+          new OIndexException("Error during bulk load of entries into index " + name), e);
+    }
+  }
+
   @Override
   public Stream<ORawPair<Object, ORID>> iterateEntriesBetween(
       Object rangeFrom,
@@ -15,7 +15,10 @@ import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoper
 import com.orientechnologies.orient.core.storage.index.sbtree.singlevalue.OCellBTreeSingleValue;
 import com.orientechnologies.orient.core.storage.index.sbtree.singlevalue.v1.CellBTreeSingleValueV1;
 import com.orientechnologies.orient.core.storage.index.sbtree.singlevalue.v3.CellBTreeSingleValueV3;
+import com.orientechnologies.orient.core.storage.index.sbtree.singlevalue.v4.CellBTreeSingleValueV4;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
@@ -41,6 +44,10 @@ public final class OCellBTreeSingleValueIndexEngine
       this.sbTree =
           new CellBTreeSingleValueV3<>(
               name, DATA_FILE_EXTENSION, NULL_BUCKET_FILE_EXTENSION, storage);
+    } else if (version == 5) {
+      this.sbTree =
+          new CellBTreeSingleValueV4<>(
+              name, DATA_FILE_EXTENSION, NULL_BUCKET_FILE_EXTENSION, storage);
     } else {
       throw new IllegalStateException("Invalid tree version " + version);
     }
@@ -158,6 +165,22 @@ public final class OCellBTreeSingleValueIndexEngine
     return Stream.of(rid);
   }
 
+  @Override
+  public Stream<ORawPair<Object, ORID>> getAll(List<Object> keys) {
+    final List<ORID> rids = sbTree.getAll(keys);
+
+    final List<ORawPair<Object, ORID>> entries = new ArrayList<>(keys.size());
+    for (int i = 0; i < rids.size(); i++) {
+      final ORID rid = rids.get(i);
+      if (rid != null) {
+        //noinspection ObjectAllocationInLoop
+        entries.add(new ORawPair<>(keys.get(i), rid));
+      }
+    }
+
+    return entries.stream();
+  }
+
   @Override
   public Stream<ORawPair<Object, ORID>> stream(ValuesTransformer valuesTransformer) {
     final Object firstKey = sbTree.firstKey();
@@ -204,6 +227,29 @@ public final class OCellBTreeSingleValueIndexEngine
     }
   }
 
+  @Override
+  public void bulkLoad(
+      OAtomicOperation atomicOperation,
+      List<ORawPair<Object, ORID>> entries,
+      Validator<Object, ORID> validator) {
+    try {
+      int index = 0;
+      while (index < entries.size()) {
+        // keys which are appended are absent in the tree, so they do not need validation
+        index += sbTree.append(atomicOperation, entries.subList(index, entries.size()));
+
+        if (index < entries.size()) {
+          final ORawPair<Object, ORID> entry = entries.get(index);
+          sbTree.validatedPut(atomicOperation, entry.first, entry.second, validator);
+          index++;
+        }
+      }
+    } catch (IOException e) {
+      throw OException.wrapException(
+          new OIndexException("Error during bulk load of entries into index " + name), e);
+    }
+  }
+
   @Override
   public Stream<ORawPair<Object, ORID>> iterateEntriesBetween(
       Object rangeFrom,
@@ -0,0 +1,9 @@
+package com.orientechnologies.orient.core.index.engine.v1;
+
+import com.orientechnologies.orient.core.index.engine.OV1IndexEngine;
+
+public interface ONormalizedKeyBTreeIndexEngine extends OV1IndexEngine {
+  int VERSION = 1;
+
+  String DATA_FILE_EXTENSION = ".nkt";
+}
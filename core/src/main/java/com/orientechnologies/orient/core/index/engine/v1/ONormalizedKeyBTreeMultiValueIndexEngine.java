@@ -0,0 +1,295 @@
+package com.orientechnologies.orient.core.index.engine.v1;
+
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.encryption.OEncryption;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.index.engine.OMultiValueIndexEngine;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperation;
+import com.orientechnologies.orient.core.storage.index.nkbtree.NormalizedKeyBTree;
+import com.orientechnologies.orient.core.storage.index.nkbtree.NormalizedKeyBTreeV1;
+import com.orientechnologies.orient.core.storage.index.nkbtree.NormalizedKeyEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Not unique index engine which stores keys in {@link NormalizedKeyBTree}. Key of the tree is
+ * normalized form of the key of the index followed by record id, so all record ids of the key are
+ * found by prefix search. Value of the tree contains list of serialized original keys, usually it
+ * contains single key but may contain several ones if different keys have the same normalized
+ * form.
+ *
+ * <p>Order of normalized keys differs from the order of the keys defined by {@link
+ * ODefaultComparator}, so engine does not report support of range queries and is used by query
+ * planner only for lookups of the keys.
+ */
+public final class ONormalizedKeyBTreeMultiValueIndexEngine
+    implements OMultiValueIndexEngine, ONormalizedKeyBTreeIndexEngine {
+  private final NormalizedKeyBTree tree;
+  private final String name;
+  private final int id;
+
+  private volatile NormalizedKeyEncoder encoder;
+
+  public ONormalizedKeyBTreeMultiValueIndexEngine(
+      int id, String name, OAbstractPaginatedStorage storage, int version) {
+    this.name = name;
+    this.id = id;
+
+    if (version == 1) {
+      this.tree = new NormalizedKeyBTreeV1(name, DATA_FILE_EXTENSION, storage);
+    } else {
+      throw new IllegalStateException("Invalid tree version " + version);
+    }
+  }
+
+  @Override
+  public int getId() {
+    return id;
+  }
+
+  @Override
+  public void init(
+      String indexName,
+      String indexType,
+      OIndexDefinition indexDefinition,
+      boolean isAutomatic,
+      ODocument metadata) {}
+
+  @Override
+  public void flush() {}
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public void create(
+      OAtomicOperation atomicOperation,
+      OBinarySerializer valueSerializer,
+      boolean isAutomatic,
+      OType[] keyTypes,
+      boolean nullPointerSupport,
+      OBinarySerializer keySerializer,
+      int keySize,
+      Map<String, String> engineProperties,
+      OEncryption encryption) {
+    if (!NormalizedKeyEncoder.isSupported(keyTypes)) {
+      throw new OIndexException(
+          "Keys of types " + Arrays.toString(keyTypes) + " are not supported by index " + name);
+    }
+
+    //noinspection unchecked
+    encoder = new NormalizedKeyEncoder(keyTypes, keySerializer);
+    tree.create(atomicOperation);
+  }
+
+  @Override
+  public void delete(OAtomicOperation atomicOperation) {
+    doClearTree(atomicOperation);
+    tree.delete(atomicOperation);
+  }
+
+  private void doClearTree(OAtomicOperation atomicOperation) {
+    try (Stream<ORawPair<byte[], byte[]>> stream =
+        tree.iterateEntriesBetween(null, true, null, true, true)) {
+      stream.forEach((pair) -> tree.remove(atomicOperation, pair.first));
+    }
+  }
+
+  @Override
+  public void load(
+      String indexName,
+      final int keySize,
+      final OType[] keyTypes,
+      final OBinarySerializer keySerializer,
+      final OEncryption encryption) {
+    //noinspection unchecked
+    encoder = new NormalizedKeyEncoder(keyTypes, keySerializer);
+    tree.load();
+  }
+
+  @Override
+  public boolean remove(OAtomicOperation atomicOperation, Object key, ORID value) {
+    final Object preprocessedKey = encoder.preprocess(key);
+
+    return tree.update(
+        atomicOperation,
+        NormalizedKeyEncoder.appendRid(encoder.normalize(preprocessedKey), value),
+        (keys) -> {
+          if (keys == null) {
+            return null;
+          }
+
+          final int keyPosition = findKey(keys, preprocessedKey);
+          if (keyPosition < 0) {
+            return keys;
+          }
+
+          final int keySize = NormalizedKeyEncoder.serializedSize(keys, keyPosition);
+          if (keySize == keys.length) {
+            return null;
+          }
+
+          final byte[] newKeys = new byte[keys.length - keySize];
+          System.arraycopy(keys, 0, newKeys, 0, keyPosition);
+          System.arraycopy(
+              keys,
+              keyPosition + keySize,
+              newKeys,
+              keyPosition,
+              keys.length - keyPosition - keySize);
+          return newKeys;
+        });
+  }
+
+  @Override
+  public void clear(OAtomicOperation atomicOperation) {
+    doClearTree(atomicOperation);
+  }
+
+  @Override
+  public void close() {
+    tree.close();
+  }
+
+  @Override
+  public Stream<ORID> get(Object key) {
+    final Object preprocessedKey = encoder.preprocess(key);
+    final byte[] normalizedKey = encoder.normalize(preprocessedKey);
+
+    return tree.iterateEntriesBetween(
+            normalizedKey, true, NormalizedKeyEncoder.successor(normalizedKey), false, true)
+        .filter(
+            (entry) ->
+                entry.first.length == normalizedKey.length + NormalizedKeyEncoder.RID_SIZE
+                    && findKey(entry.second, preprocessedKey) >= 0)
+        .map((entry) -> NormalizedKeyEncoder.extractRid(entry.first));
+  }
+
+  @Override
+  public Stream<ORawPair<Object, ORID>> stream(ValuesTransformer valuesTransformer) {
+    return iterateEntriesBetween(null, true, null, true, true, valuesTransformer);
+  }
+
+  @Override
+  public Stream<ORawPair<Object, ORID>> descStream(ValuesTransformer valuesTransformer) {
+    return iterateEntriesBetween(null, true, null, true, false, valuesTransformer);
+  }
+
+  @Override
+  public Stream<Object> keyStream() {
+    return stream(null).map((entry) -> entry.first);
+  }
+
+  @Override
+  public void put(OAtomicOperation atomicOperation, Object key, ORID value) {
+    final Object preprocessedKey = encoder.preprocess(key);
+
+    tree.update(
+        atomicOperation,
+        NormalizedKeyEncoder.appendRid(encoder.normalize(preprocessedKey), value),
+        (keys) -> {
+          if (keys != null && findKey(keys, preprocessedKey) >= 0) {
+            return keys;
+          }
+
+          final byte[] serializedKey = encoder.serialize(preprocessedKey);
+          if (keys == null) {
+            return serializedKey;
+          }
+
+          final byte[] newKeys = Arrays.copyOf(keys, keys.length + serializedKey.length);
+          System.arraycopy(serializedKey, 0, newKeys, keys.length, serializedKey.length);
+          return newKeys;
+        });
+  }
+
+  @Override
+  public Stream<ORawPair<Object, ORID>> iterateEntriesBetween(
+      Object rangeFrom,
+      boolean fromInclusive,
+      Object rangeTo,
+      boolean toInclusive,
+      boolean ascSortOrder,
+      ValuesTransformer transformer) {
+    return encoder
+        .iterateEntriesBetween(tree, rangeFrom, fromInclusive, rangeTo, toInclusive, ascSortOrder)
+        .flatMap((entry) -> readEntries(entry.first, entry.second).stream());
+  }
+
+  @Override
+  public Stream<ORawPair<Object, ORID>> iterateEntriesMajor(
+      Object fromKey, boolean isInclusive, boolean ascSortOrder, ValuesTransformer transformer) {
+    return iterateEntriesBetween(fromKey, isInclusive, null, true, ascSortOrder, transformer);
+  }
+
+  @Override
+  public Stream<ORawPair<Object, ORID>> iterateEntriesMinor(
+      Object toKey, boolean isInclusive, boolean ascSortOrder, ValuesTransformer transformer) {
+    return iterateEntriesBetween(null, true, toKey, isInclusive, ascSortOrder, transformer);
+  }
+
+  /**
+   * Size of the tree is used as size of the index, so keys which have the same normalized form and
+   * point to the same record are counted only once.
+   */
+  @Override
+  public long size(final ValuesTransformer transformer) {
+    return tree.size();
+  }
+
+  @Override
+  public boolean hasRangeQuerySupport() {
+    return false;
+  }
+
+  @Override
+  public boolean acquireAtomicExclusiveLock(Object key) {
+    tree.acquireAtomicExclusiveLock();
+    return true;
+  }
+
+  @Override
+  public String getIndexNameByKey(Object key) {
+    return name;
+  }
+
+  /** @return Position of the given key inside of the list of keys or <code>-1</code>. */
+  private int findKey(final byte[] keys, final Object key) {
+    int position = 0;
+    while (position < keys.length) {
+      final Object entryKey = encoder.deserialize(keys, position);
+      if (ODefaultComparator.INSTANCE.compare(entryKey, key) == 0) {
+        return position;
+      }
+
+      position += NormalizedKeyEncoder.serializedSize(keys, position);
+    }
+
+    return -1;
+  }
+
+  private List<ORawPair<Object, ORID>> readEntries(final byte[] treeKey, final byte[] keys) {
+    final ORID rid = NormalizedKeyEncoder.extractRid(treeKey);
+    final List<ORawPair<Object, ORID>> entries = new ArrayList<>(1);
+
+    int position = 0;
+    while (position < keys.length) {
+      entries.add(new ORawPair<>(encoder.deserialize(keys, position), rid));
+      position += NormalizedKeyEncoder.serializedSize(keys, position);
+    }
+
+    return entries;
+  }
+}
@@ -0,0 +1,348 @@
+package com.orientechnologies.orient.core.index.engine.v1;
+
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.common.serialization.types.OShortSerializer;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.encryption.OEncryption;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.index.OIndexException;
+import com.orientechnologies.orient.core.index.engine.OSingleValueIndexEngine;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperation;
+import com.orientechnologies.orient.core.storage.index.nkbtree.NormalizedKeyBTree;
+import com.orientechnologies.orient.core.storage.index.nkbtree.NormalizedKeyBTreeV1;
+import com.orientechnologies.orient.core.storage.index.nkbtree.NormalizedKeyEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Unique index engine which stores keys in {@link NormalizedKeyBTree}. Value of the tree contains
+ * list of serialized original keys and their record ids, usually it contains single entry but may
+ * contain several ones if different keys have the same normalized form.
+ *
+ * <p>Order of normalized keys differs from the order of the keys defined by {@link
+ * ODefaultComparator}, so engine does not report support of range queries and is used by query
+ * planner only for lookups of the keys.
+ */
+public final class ONormalizedKeyBTreeSingleValueIndexEngine
+    implements OSingleValueIndexEngine, ONormalizedKeyBTreeIndexEngine {
+  private static final int RID_SIZE = OShortSerializer.SHORT_SIZE + OLongSerializer.LONG_SIZE;
+
+  private final NormalizedKeyBTree tree;
+  private final String name;
+  private final int id;
+
+  private volatile NormalizedKeyEncoder encoder;
+
+  public ONormalizedKeyBTreeSingleValueIndexEngine(
+      int id, String name, OAbstractPaginatedStorage storage, int version) {
+    this.name = name;
+    this.id = id;
+
+    if (version == 1) {
+      this.tree = new NormalizedKeyBTreeV1(name, DATA_FILE_EXTENSION, storage);
+    } else {
+      throw new IllegalStateException("Invalid tree version " + version);
+    }
+  }
+
+  @Override
+  public int getId() {
+    return id;
+  }
+
+  @Override
+  public void init(
+      String indexName,
+      String indexType,
+      OIndexDefinition indexDefinition,
+      boolean isAutomatic,
+      ODocument metadata) {}
+
+  @Override
+  public void flush() {}
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public void create(
+      OAtomicOperation atomicOperation,
+      OBinarySerializer valueSerializer,
+      boolean isAutomatic,
+      OType[] keyTypes,
+      boolean nullPointerSupport,
+      OBinarySerializer keySerializer,
+      int keySize,
+      Map<String, String> engineProperties,
+      OEncryption encryption) {
+    if (!NormalizedKeyEncoder.isSupported(keyTypes)) {
+      throw new OIndexException(
+          "Keys of types " + Arrays.toString(keyTypes) + " are not supported by index " + name);
+    }
+
+    //noinspection unchecked
+    encoder = new NormalizedKeyEncoder(keyTypes, keySerializer);
+    tree.create(atomicOperation);
+  }
+
+  @Override
+  public void delete(OAtomicOperation atomicOperation) {
+    doClearTree(atomicOperation);
+    tree.delete(atomicOperation);
+  }
+
+  private void doClearTree(OAtomicOperation atomicOperation) {
+    try (Stream<ORawPair<byte[], byte[]>> stream =
+        tree.iterateEntriesBetween(null, true, null, true, true)) {
+      stream.forEach((pair) -> tree.remove(atomicOperation, pair.first));
+    }
+  }
+
+  @Override
+  public void load(
+      String indexName,
+      final int keySize,
+      final OType[] keyTypes,
+      final OBinarySerializer keySerializer,
+      final OEncryption encryption) {
+    //noinspection unchecked
+    encoder = new NormalizedKeyEncoder(keyTypes, keySerializer);
+    tree.load();
+  }
+
+  @Override
+  public boolean remove(OAtomicOperation atomicOperation, Object key) {
+    final Object preprocessedKey = encoder.preprocess(key);
+
+    return tree.update(
+        atomicOperation,
+        encoder.normalize(preprocessedKey),
+        (value) -> {
+          if (value == null) {
+            return null;
+          }
+
+          final int entryPosition = findEntry(value, preprocessedKey);
+          if (entryPosition < 0) {
+            return value;
+          }
+
+          final int entrySize =
+              NormalizedKeyEncoder.serializedSize(value, entryPosition) + RID_SIZE;
+          if (entrySize == value.length) {
+            return null;
+          }
+
+          final byte[] newValue = new byte[value.length - entrySize];
+          System.arraycopy(value, 0, newValue, 0, entryPosition);
+          System.arraycopy(
+              value,
+              entryPosition + entrySize,
+              newValue,
+              entryPosition,
+              value.length - entryPosition - entrySize);
+          return newValue;
+        });
+  }
+
+  @Override
+  public void clear(OAtomicOperation atomicOperation) {
+    doClearTree(atomicOperation);
+  }
+
+  @Override
+  public void close() {
+    tree.close();
+  }
+
+  @Override
+  public Stream<ORID> get(Object key) {
+    final Object preprocessedKey = encoder.preprocess(key);
+    final byte[] value = tree.get(encoder.normalize(preprocessedKey));
+    if (value == null) {
+      return Stream.empty();
+    }
+
+    final int entryPosition = findEntry(value, preprocessedKey);
+    if (entryPosition < 0) {
+      return Stream.empty();
+    }
+
+    return Stream.of(
+        readRid(value, entryPosition + NormalizedKeyEncoder.serializedSize(value, entryPosition)));
+  }
+
+  @Override
+  public Stream<ORawPair<Object, ORID>> stream(ValuesTransformer valuesTransformer) {
+    return iterateEntriesBetween(null, true, null, true, true, valuesTransformer);
+  }
+
+  @Override
+  public Stream<ORawPair<Object, ORID>> descStream(ValuesTransformer valuesTransformer) {
+    return iterateEntriesBetween(null, true, null, true, false, valuesTransformer);
+  }
+
+  @Override
+  public Stream<Object> keyStream() {
+    return stream(null).map((entry) -> entry.first);
+  }
+
+  @Override
+  public void put(OAtomicOperation atomicOperation, Object key, ORID value) {
+    validatedPut(atomicOperation, key, value, null);
+  }
+
+  @Override
+  public boolean validatedPut(
+      OAtomicOperation atomicOperation, Object key, ORID value, Validator<Object, ORID> validator) {
+    final Object preprocessedKey = encoder.preprocess(key);
+
+    return tree.update(
+        atomicOperation,
+        encoder.normalize(preprocessedKey),
+        (oldValue) -> {
+          final int entryPosition = oldValue == null ? -1 : findEntry(oldValue, preprocessedKey);
+          int ridPosition;
+          final ORID oldRid;
+          if (entryPosition >= 0) {
+            ridPosition =
+                entryPosition + NormalizedKeyEncoder.serializedSize(oldValue, entryPosition);
+            oldRid = readRid(oldValue, ridPosition);
+          } else {
+            ridPosition = -1;
+            oldRid = null;
+          }
+
+          ORID rid = value;
+          if (validator != null) {
+            final Object result = validator.validate(preprocessedKey, oldRid, value);
+            if (result == Validator.IGNORE) {
+              return oldValue;
+            }
+
+            rid = (ORID) result;
+          }
+
+          final byte[] newValue;
+          if (entryPosition >= 0) {
+            newValue = oldValue.clone();
+          } else {
+            final byte[] serializedKey = encoder.serialize(preprocessedKey);
+            final int oldSize = oldValue == null ? 0 : oldValue.length;
+
+            newValue = new byte[oldSize + serializedKey.length + RID_SIZE];
+            if (oldValue != null) {
+              System.arraycopy(oldValue, 0, newValue, 0, oldSize);
+            }
+            System.arraycopy(serializedKey, 0, newValue, oldSize, serializedKey.length);
+            ridPosition = oldSize + serializedKey.length;
+          }
+
+          OShortSerializer.INSTANCE.serializeNative(
+              (short) rid.getClusterId(), newValue, ridPosition);
+          OLongSerializer.INSTANCE.serializeNative(
+              rid.getClusterPosition(), newValue, ridPosition + OShortSerializer.SHORT_SIZE);
+          return newValue;
+        });
+  }
+
+  @Override
+  public Stream<ORawPair<Object, ORID>> iterateEntriesBetween(
+      Object rangeFrom,
+      boolean fromInclusive,
+      Object rangeTo,
+      boolean toInclusive,
+      boolean ascSortOrder,
+      ValuesTransformer transformer) {
+    return encoder
+        .iterateEntriesBetween(tree, rangeFrom, fromInclusive, rangeTo, toInclusive, ascSortOrder)
+        .flatMap((entry) -> readEntries(entry.second).stream());
+  }
+
+  @Override
+  public Stream<ORawPair<Object, ORID>> iterateEntriesMajor(
+      Object fromKey, boolean isInclusive, boolean ascSortOrder, ValuesTransformer transformer) {
+    return iterateEntriesBetween(fromKey, isInclusive, null, true, ascSortOrder, transformer);
+  }
+
+  @Override
+  public Stream<ORawPair<Object, ORID>> iterateEntriesMinor(
+      Object toKey, boolean isInclusive, boolean ascSortOrder, ValuesTransformer transformer) {
+    return iterateEntriesBetween(null, true, toKey, isInclusive, ascSortOrder, transformer);
+  }
+
+  /**
+   * Size of the tree is used as size of the index, so keys which have the same normalized form are
+   * counted only once.
+   */
+  @Override
+  public long size(final ValuesTransformer transformer) {
+    return tree.size();
+  }
+
+  @Override
+  public boolean hasRangeQuerySupport() {
+    return false;
+  }
+
+  @Override
+  public boolean acquireAtomicExclusiveLock(Object key) {
+    tree.acquireAtomicExclusiveLock();
+    return true;
+  }
+
+  @Override
+  public String getIndexNameByKey(Object key) {
+    return name;
+  }
+
+  /** @return Position of the entry of the given key inside of value or <code>-1</code>. */
+  private int findEntry(final byte[] value, final Object key) {
+    int position = 0;
+    while (position < value.length) {
+      final Object entryKey = encoder.deserialize(value, position);
+      if (ODefaultComparator.INSTANCE.compare(entryKey, key) == 0) {
+        return position;
+      }
+
+      position += NormalizedKeyEncoder.serializedSize(value, position) + RID_SIZE;
+    }
+
+    return -1;
+  }
+
+  private List<ORawPair<Object, ORID>> readEntries(final byte[] value) {
+    final List<ORawPair<Object, ORID>> entries = new ArrayList<>(1);
+
+    int position = 0;
+    while (position < value.length) {
+      final Object key = encoder.deserialize(value, position);
+      position += NormalizedKeyEncoder.serializedSize(value, position);
+
+      entries.add(new ORawPair<>(key, readRid(value, position)));
+      position += RID_SIZE;
+    }
+
+    return entries;
+  }
+
+  private static ORID readRid(final byte[] value, final int position) {
+    final int clusterId = OShortSerializer.INSTANCE.deserializeNative(value, position);
+    final long clusterPosition =
+        OLongSerializer.INSTANCE.deserializeNative(value, position + OShortSerializer.SHORT_SIZE);
+
+    return new ORecordId(clusterId, clusterPosition);
+  }
+}
@@ -2,12 +2,16 @@ package com.orientechnologies.orient.core.sql.executor;
 
 import com.orientechnologies.common.concur.OTimeoutException;
 import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.sql.parser.OExpression;
 import com.orientechnologies.orient.core.sql.parser.OGroupBy;
 import com.orientechnologies.orient.core.sql.parser.OProjection;
 import com.orientechnologies.orient.core.sql.parser.OProjectionItem;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,14 +19,18 @@ import java.util.Optional;
 
 /** Created by luigidellaquila on 12/07/16. */
 public class AggregateProjectionCalculationStep extends ProjectionCalculationStep {
+  private static final int SPILL_PARTITIONS = 16;
+  private static final int MAX_SPILL_LEVEL = 4;
 
   private final OGroupBy groupBy;
 
   // the key is the GROUP BY key, the value is the (partially) aggregated value
   private Map<List, OResultInternal> aggregateResults = new LinkedHashMap<>();
-  private List<OResultInternal> finalResults = null;
+  private Iterator<OResultInternal> finalResults = null;
+
+  // records of the groups that did not fit in heap, to be aggregated after the current ones
+  private Deque<SpillPartition> spilledPartitions = new ArrayDeque<>();
 
-  private int nextItem = 0;
   private long cost = 0;
 
   public AggregateProjectionCalculationStep(
@@ -42,19 +50,21 @@ public class AggregateProjectionCalculationStep extends ProjectionCalculationSte
 
       @Override
       public boolean hasNext() {
-        if (localNext > nRecords || nextItem >= finalResults.size()) {
+        if (localNext > nRecords) {
           return false;
         }
-        return true;
+        while (!finalResults.hasNext() && !spilledPartitions.isEmpty()) {
+          executeSpilledAggregation(spilledPartitions.poll(), ctx);
+        }
+        return finalResults.hasNext();
       }
 
       @Override
       public OResult next() {
-        if (localNext > nRecords || nextItem >= finalResults.size()) {
+        if (!hasNext()) {
           throw new IllegalStateException();
         }
-        OResult result = finalResults.get(nextItem);
-        nextItem++;
+        OResult result = finalResults.next();
         localNext++;
         return result;
       }
@@ -80,17 +90,46 @@ public class AggregateProjectionCalculationStep extends ProjectionCalculationSte
           "Cannot execute an aggregation or a GROUP BY without a previous result");
     }
     OExecutionStepInternal prevStep = prev.get();
-    OResultSet lastRs = prevStep.syncPull(ctx, nRecords);
-    while (lastRs.hasNext()) {
-      aggregate(lastRs.next(), ctx);
-      if (!lastRs.hasNext()) {
-        lastRs = prevStep.syncPull(ctx, nRecords);
+    SpillPartition[] partitions = new SpillPartition[SPILL_PARTITIONS];
+    try {
+      OResultSet lastRs = prevStep.syncPull(ctx, nRecords);
+      while (lastRs.hasNext()) {
+        aggregate(lastRs.next(), ctx, partitions, 0);
+        if (!lastRs.hasNext()) {
+          lastRs = prevStep.syncPull(ctx, nRecords);
+        }
+      }
+    } catch (RuntimeException e) {
+      deletePartitions(partitions);
+      throw e;
+    }
+    completeAggregation(partitions);
+  }
+
+  /**
+   * Aggregates the records of a partition that was moved to a temporary file. The partition can be
+   * split again if its groups still do not fit in heap.
+   */
+  private void executeSpilledAggregation(SpillPartition partition, OCommandContext ctx) {
+    SpillPartition[] partitions = new SpillPartition[SPILL_PARTITIONS];
+    try {
+      Iterator<OResult> records = partition.records();
+      while (records.hasNext()) {
+        aggregate(records.next(), ctx, partitions, partition.level + 1);
       }
+    } catch (RuntimeException e) {
+      deletePartitions(partitions);
+      throw e;
+    } finally {
+      partition.delete();
     }
-    finalResults = new ArrayList<>();
-    finalResults.addAll(aggregateResults.values());
-    aggregateResults.clear();
-    for (OResultInternal item : finalResults) {
+    completeAggregation(partitions);
+  }
+
+  private void completeAggregation(SpillPartition[] partitions) {
+    List<OResultInternal> results = new ArrayList<>(aggregateResults.values());
+    aggregateResults = new LinkedHashMap<>();
+    for (OResultInternal item : results) {
       for (String name : item.getTemporaryProperties()) {
         Object prevVal = item.getTemporaryProperty(name);
         if (prevVal instanceof AggregationContext) {
@@ -98,9 +137,16 @@ public class AggregateProjectionCalculationStep extends ProjectionCalculationSte
         }
       }
     }
+    finalResults = results.iterator();
+    for (int i = partitions.length - 1; i >= 0; i--) {
+      if (partitions[i] != null) {
+        spilledPartitions.push(partitions[i]);
+      }
+    }
   }
 
-  private void aggregate(OResult next, OCommandContext ctx) {
+  private void aggregate(
+      OResult next, OCommandContext ctx, SpillPartition[] partitions, int level) {
     long begin = profilingEnabled ? System.nanoTime() : 0;
     try {
       List<Object> key = new ArrayList<>();
@@ -112,6 +158,15 @@ public class AggregateProjectionCalculationStep extends ProjectionCalculationSte
       }
       OResultInternal preAggr = aggregateResults.get(key);
       if (preAggr == null) {
+        if (isOverSpillThreshold(level)) {
+          // a new group that does not fit in heap: its records are aggregated later
+          int partition = spillPartition(key, level);
+          if (partitions[partition] == null) {
+            partitions[partition] = new SpillPartition(level);
+          }
+          partitions[partition].add(next);
+          return;
+        }
         preAggr = new OResultInternal();
         aggregateResults.put(key, preAggr);
       }
@@ -136,6 +191,93 @@ public class AggregateProjectionCalculationStep extends ProjectionCalculationSte
     }
   }
 
+  private boolean isOverSpillThreshold(int level) {
+    int threshold = OGlobalConfiguration.QUERY_GROUP_BY_SPILL_THRESHOLD.getValueAsInteger();
+    return threshold > 0 && level < MAX_SPILL_LEVEL && aggregateResults.size() >= threshold;
+  }
+
+  /** a different hash for each level, so that the groups of a partition are split again */
+  private static int spillPartition(List<Object> key, int level) {
+    int hash = key.hashCode() * 0x9E3779B9 + level;
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    hash ^= hash >>> 13;
+    return Math.floorMod(hash, SPILL_PARTITIONS);
+  }
+
+  private static void deletePartitions(SpillPartition[] partitions) {
+    for (SpillPartition partition : partitions) {
+      if (partition != null) {
+        partition.delete();
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    while (!spilledPartitions.isEmpty()) {
+      spilledPartitions.poll().delete();
+    }
+    super.close();
+  }
+
+  /**
+   * Records of a subset of the groups, stored in a temporary file. Records that cannot be written
+   * to a file (eg. records with changes not saved yet) are kept in heap, together with their
+   * position in the file, so that all the records are read back in the order they were added
+   */
+  private static class SpillPartition {
+    private final int level;
+    private final OResultSpillFile file = new OResultSpillFile();
+    private final Deque<PinnedRecord> pinned = new ArrayDeque<>();
+
+    private SpillPartition(int level) {
+      this.level = level;
+    }
+
+    private void add(OResult record) {
+      if (!file.write(record)) {
+        pinned.add(new PinnedRecord(record, file.size()));
+      }
+    }
+
+    private Iterator<OResult> records() {
+      OResultSpillFile.Reader fromFile = file.read();
+      return new Iterator<OResult>() {
+        @Override
+        public boolean hasNext() {
+          return !pinned.isEmpty() || fromFile.hasNext();
+        }
+
+        @Override
+        public OResult next() {
+          PinnedRecord nextPinned = pinned.peek();
+          if (nextPinned != null && nextPinned.filePosition <= fromFile.nextPosition()) {
+            pinned.poll();
+            return nextPinned.record;
+          }
+          return fromFile.next();
+        }
+      };
+    }
+
+    private void delete() {
+      file.delete();
+      pinned.clear();
+    }
+  }
+
+  private static class PinnedRecord {
+    private final OResult record;
+    // number of records written to the file before this one
+    private final long filePosition;
+
+    private PinnedRecord(OResult record, long filePosition) {
+      this.record = record;
+      this.filePosition = filePosition;
+    }
+  }
+
   @Override
   public String prettyPrint(int depth, int indent) {
     String spaces = OExecutionStepInternal.getIndent(depth, indent);
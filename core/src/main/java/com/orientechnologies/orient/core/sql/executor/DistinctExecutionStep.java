@@ -1,18 +1,38 @@
 package com.orientechnologies.orient.core.sql.executor;
 
 import com.orientechnologies.common.concur.OTimeoutException;
+import com.orientechnologies.common.hash.OMurmurHash3;
 import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.BytesContainer;
+import com.orientechnologies.orient.core.serialization.serializer.result.binary.OResultSerializerNetwork;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 
 /** Created by luigidellaquila on 08/07/16. */
 public class DistinctExecutionStep extends AbstractExecutionStep {
+  private static final OResultSerializerNetwork SERIALIZER = new OResultSerializerNetwork();
+  private static final int SPILL_PARTITIONS = 16;
 
+  // results that have no fingerprint (eg. embedded documents or collections with no fixed order)
   private Set<OResult> pastItems = new HashSet<>();
   private ORidSet pastRids = new ORidSet();
+  // hashes of the projections already returned
+  private FingerprintSet pastFingerprints = new FingerprintSet();
+
+  // all the results received after too many projections were returned
+  private DistinctSpill spill;
 
   private OResultSet lastResult = null;
   private OResult nextValue;
@@ -81,19 +101,34 @@ public class DistinctExecutionStep extends AbstractExecutionStep {
       if (nextValue != null) {
         return;
       }
+      if (spill != null && spill.isComplete()) {
+        nextValue = spill.next();
+        return;
+      }
       if (lastResult == null || !lastResult.hasNext()) {
         lastResult = getPrev().get().syncPull(ctx, nRecords);
       }
       if (lastResult == null || !lastResult.hasNext()) {
+        if (spill != null) {
+          spill.complete();
+          continue;
+        }
         return;
       }
       long begin = profilingEnabled ? System.nanoTime() : 0;
       try {
         nextValue = lastResult.next();
-        if (alreadyVisited(nextValue)) {
+        if (spill != null) {
+          spill.add(nextValue);
+          nextValue = null;
+        } else if (alreadyVisited(nextValue)) {
           nextValue = null;
         } else {
           markAsVisited(nextValue);
+          int threshold = OGlobalConfiguration.QUERY_DISTINCT_SPILL_THRESHOLD.getValueAsInteger();
+          if (threshold > 0 && pastFingerprints.size() >= threshold) {
+            spill = new DistinctSpill();
+          }
         }
       } finally {
         if (profilingEnabled) {
@@ -113,6 +148,11 @@ public class DistinctExecutionStep extends AbstractExecutionStep {
         return;
       }
     }
+    long[] fingerprint = fingerprint(nextValue);
+    if (fingerprint != null) {
+      pastFingerprints.add(fingerprint[0], fingerprint[1]);
+      return;
+    }
     pastItems.add(nextValue);
   }
 
@@ -125,14 +165,295 @@ public class DistinctExecutionStep extends AbstractExecutionStep {
         return pastRids.contains(identity);
       }
     }
+    long[] fingerprint = fingerprint(nextValue);
+    if (fingerprint != null) {
+      return pastFingerprints.contains(fingerprint[0], fingerprint[1]);
+    }
     return pastItems.contains(nextValue);
   }
 
+  /**
+   * 128 bit hash of the binary representation of a projection, with properties sorted by name.
+   *
+   * @return null if the result is not a projection or if it contains values that have no stable
+   *     binary representation (eg. sets, maps and embedded documents)
+   */
+  private static long[] fingerprint(OResult item) {
+    if (!(item instanceof OResultInternal) || !item.isProjection()) {
+      return null;
+    }
+    Set<String> names = item.getPropertyNames();
+    if (names.isEmpty()) {
+      return null;
+    }
+    OResultInternal sorted = new OResultInternal();
+    for (String name : new TreeSet<>(names)) {
+      Object value = ((OResultInternal) item).content.get(name);
+      if (!hasFingerprint(value)) {
+        return null;
+      }
+      sorted.content.put(name, value);
+    }
+    BytesContainer bytes = new BytesContainer();
+    try {
+      SERIALIZER.serialize(sorted, bytes);
+    } catch (RuntimeException e) {
+      return null;
+    }
+    byte[] content = bytes.fitBytes();
+    return new long[] {
+      OMurmurHash3.murmurHash3_x64_64(content, 0x9747b28c),
+      OMurmurHash3.murmurHash3_x64_64(content, 0x5bd1e995)
+    };
+  }
+
+  private static boolean hasFingerprint(Object value) {
+    if (value == null
+        || value instanceof String
+        || value instanceof Integer
+        || value instanceof Long
+        || value instanceof Short
+        || value instanceof Byte
+        || value instanceof Float
+        || value instanceof Double
+        || value instanceof BigDecimal
+        || value instanceof Boolean
+        || value instanceof Date
+        || value instanceof byte[]) {
+      return true;
+    }
+    if (value instanceof OIdentifiable) {
+      return ((OIdentifiable) value).getIdentity().isPersistent();
+    }
+    if (value instanceof List) {
+      for (Object item : (List<?>) value) {
+        if (!hasFingerprint(item)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Stores the results received after the projection fingerprints exceeded {@link
+   * OGlobalConfiguration#QUERY_DISTINCT_SPILL_THRESHOLD}. Results are written to a temporary file in
+   * the order they are received, while the fingerprints of the new projections are partitioned to
+   * other temporary files. When all the results are received, each partition is loaded in heap to
+   * find the first occurrence of each projection, then the results are read back in the original
+   * order, skipping the duplicates.
+   */
+  private class DistinctSpill {
+    private final OResultSpillFile results = new OResultSpillFile();
+    private final OResultSpillFile[] fingerprints = new OResultSpillFile[SPILL_PARTITIONS];
+    // results that cannot be written to file, with the position they have in the sequence
+    private final Deque<PinnedResult> pinned = new ArrayDeque<>();
+    // positions of the results that have to be checked against the fingerprints
+    private final PositionSet toCheck = new PositionSet();
+    // positions of the first occurrence of each fingerprint
+    private final PositionSet firstOccurrences = new PositionSet();
+    private long position = 0;
+
+    private OResultSpillFile.Reader reader;
+    private long pinnedReturned = 0;
+
+    private void add(OResult item) {
+      if (alreadyVisited(item)) {
+        return;
+      }
+      long[] fingerprint = fingerprint(item);
+      if (fingerprint == null) {
+        markAsVisited(item);
+      } else {
+        int partition =
+            Math.floorMod(Long.hashCode(fingerprint[0] ^ fingerprint[1]), SPILL_PARTITIONS);
+        if (fingerprints[partition] == null) {
+          fingerprints[partition] = new OResultSpillFile();
+        }
+        OResultInternal entry = new OResultInternal();
+        entry.setProperty("h1", fingerprint[0]);
+        entry.setProperty("h2", fingerprint[1]);
+        entry.setProperty("position", position);
+        fingerprints[partition].write(entry);
+        toCheck.add(position);
+      }
+      if (!results.write(item)) {
+        pinned.add(new PinnedResult(item, position, results.size()));
+      }
+      position++;
+    }
+
+    private boolean isComplete() {
+      return reader != null;
+    }
+
+    private void complete() {
+      pastFingerprints = new FingerprintSet();
+      for (OResultSpillFile partition : fingerprints) {
+        if (partition == null) {
+          continue;
+        }
+        FingerprintSet found = new FingerprintSet();
+        OResultSpillFile.Reader entries = partition.read();
+        while (entries.hasNext()) {
+          OResult entry = entries.next();
+          if (found.add(entry.getProperty("h1"), entry.getProperty("h2"))) {
+            firstOccurrences.add(entry.getProperty("position"));
+          }
+        }
+        partition.delete();
+      }
+      reader = results.read();
+    }
+
+    /** @return the next result that is not a duplicate, null if there are no more results */
+    private OResult next() {
+      while (true) {
+        OResult item;
+        long itemPosition;
+        PinnedResult nextPinned = pinned.peek();
+        if (nextPinned != null && nextPinned.filePosition <= reader.nextPosition()) {
+          pinned.poll();
+          pinnedReturned++;
+          item = nextPinned.result;
+          itemPosition = nextPinned.position;
+        } else if (reader.hasNext()) {
+          itemPosition = reader.nextPosition() + pinnedReturned;
+          item = reader.next();
+        } else {
+          delete();
+          return null;
+        }
+        if (!toCheck.contains(itemPosition) || firstOccurrences.contains(itemPosition)) {
+          return item;
+        }
+      }
+    }
+
+    private void delete() {
+      results.delete();
+      for (OResultSpillFile partition : fingerprints) {
+        if (partition != null) {
+          partition.delete();
+        }
+      }
+      pinned.clear();
+    }
+  }
+
+  private static class PinnedResult {
+    private final OResult result;
+    private final long position;
+    // number of results written to the file before this one
+    private final long filePosition;
+
+    private PinnedResult(OResult result, long position, long filePosition) {
+      this.result = result;
+      this.position = position;
+      this.filePosition = filePosition;
+    }
+  }
+
+  /**
+   * Set of positions in the sequence of results, as a bitmap split in pages that are allocated
+   * when the first position they cover is added
+   */
+  private static class PositionSet {
+    private static final int PAGE_BITS = 20;
+    private static final long OFFSET_MASK = (1L << PAGE_BITS) - 1;
+
+    private long[][] pages = new long[16][];
+
+    private void add(long position) {
+      int page = Math.toIntExact(position >>> PAGE_BITS);
+      if (page >= pages.length) {
+        pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+      }
+      if (pages[page] == null) {
+        pages[page] = new long[1 << (PAGE_BITS - 6)];
+      }
+      int offset = (int) (position & OFFSET_MASK);
+      pages[page][offset >>> 6] |= 1L << offset;
+    }
+
+    private boolean contains(long position) {
+      long page = position >>> PAGE_BITS;
+      if (page >= pages.length || pages[(int) page] == null) {
+        return false;
+      }
+      int offset = (int) (position & OFFSET_MASK);
+      return (pages[(int) page][offset >>> 6] & (1L << offset)) != 0;
+    }
+  }
+
+  /** Hash set of 128 bit fingerprints, with open addressing on a flat array of longs */
+  private static class FingerprintSet {
+    private long[] table = new long[2 * 1024];
+    private int size = 0;
+
+    private int size() {
+      return size;
+    }
+
+    private boolean contains(long h1, long h2) {
+      if (h1 == 0 && h2 == 0) {
+        h2 = 1;
+      }
+      int mask = table.length / 2 - 1;
+      for (int slot = (int) (h1 ^ (h1 >>> 32)) & mask; ; slot = (slot + 1) & mask) {
+        long t1 = table[2 * slot];
+        long t2 = table[2 * slot + 1];
+        if (t1 == 0 && t2 == 0) {
+          return false;
+        }
+        if (t1 == h1 && t2 == h2) {
+          return true;
+        }
+      }
+    }
+
+    /** @return true if the fingerprint was not in the set */
+    private boolean add(long h1, long h2) {
+      if (h1 == 0 && h2 == 0) {
+        h2 = 1;
+      }
+      if (contains(h1, h2)) {
+        return false;
+      }
+      if ((size + 1) * 4L > table.length) {
+        long[] oldTable = table;
+        table = new long[oldTable.length * 2];
+        for (int i = 0; i < oldTable.length; i += 2) {
+          if (oldTable[i] != 0 || oldTable[i + 1] != 0) {
+            insert(oldTable[i], oldTable[i + 1]);
+          }
+        }
+      }
+      insert(h1, h2);
+      size++;
+      return true;
+    }
+
+    private void insert(long h1, long h2) {
+      int mask = table.length / 2 - 1;
+      int slot = (int) (h1 ^ (h1 >>> 32)) & mask;
+      while (table[2 * slot] != 0 || table[2 * slot + 1] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[2 * slot] = h1;
+      table[2 * slot + 1] = h2;
+    }
+  }
+
   @Override
   public void sendTimeout() {}
 
   @Override
   public void close() {
+    if (spill != null) {
+      spill.delete();
+    }
     prev.ifPresent(x -> x.close());
   }
 
@@ -19,6 +19,9 @@ import com.orientechnologies.orient.core.sql.parser.OGtOperator;
 import com.orientechnologies.orient.core.sql.parser.OLeOperator;
 import com.orientechnologies.orient.core.sql.parser.OLtOperator;
 import com.orientechnologies.orient.core.sql.parser.ORid;
+import com.orientechnologies.orient.core.storage.OStorage;
+import com.orientechnologies.orient.core.storage.cache.OPageAccessIntent;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
 import java.util.Map;
 import java.util.Optional;
 
@@ -32,9 +35,23 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
   private int clusterId;
   private Object order;
 
+  /**
+   * first and last cluster position of the partition scanned by this step (inclusive), -1 if the
+   * partition is not bounded on that side
+   */
+  private long partitionStart = -1;
+
+  private long partitionEnd = -1;
+
   private ORecordIteratorCluster iterator;
   private long cost = 0;
 
+  /**
+   * storage which is read with {@link OPageAccessIntent#SCAN} intent, null if the whole cluster is
+   * not scanned or is small enough to be kept in disk cache
+   */
+  private OAbstractPaginatedStorage scanStorage;
+
   public FetchFromClusterExecutionStep(
       int clusterId, OCommandContext ctx, boolean profilingEnabled) {
     this(clusterId, null, ctx, profilingEnabled);
@@ -45,8 +62,29 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
       QueryPlanningInfo queryPlanning,
       OCommandContext ctx,
       boolean profilingEnabled) {
+    this(clusterId, -1, -1, queryPlanning, ctx, profilingEnabled);
+  }
+
+  /**
+   * fetches a partition of a cluster. When the partition is bounded on the upper side, the records
+   * created in current transaction are skipped: they are returned by the partition that includes
+   * the end of the cluster.
+   *
+   * @param clusterId the cluster id
+   * @param partitionStart the first cluster position of the partition, -1 for no lower bound
+   * @param partitionEnd the last cluster position of the partition, -1 for no upper bound
+   */
+  public FetchFromClusterExecutionStep(
+      int clusterId,
+      long partitionStart,
+      long partitionEnd,
+      QueryPlanningInfo queryPlanning,
+      OCommandContext ctx,
+      boolean profilingEnabled) {
     super(ctx, profilingEnabled);
     this.clusterId = clusterId;
+    this.partitionStart = partitionStart;
+    this.partitionEnd = partitionEnd;
     this.queryPlanning = queryPlanning;
   }
 
@@ -58,6 +96,13 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
       if (iterator == null) {
         long minClusterPosition = calculateMinClusterPosition();
         long maxClusterPosition = calculateMaxClusterPosition();
+        if (minClusterPosition < 0 && maxClusterPosition < 0) {
+          scanStorage = calculateScanStorage((ODatabaseDocumentInternal) ctx.getDatabase());
+        }
+        minClusterPosition = Math.max(minClusterPosition, partitionStart);
+        if (partitionEnd >= 0 && (maxClusterPosition < 0 || partitionEnd < maxClusterPosition)) {
+          maxClusterPosition = partitionEnd;
+        }
         iterator =
             new ORecordIteratorCluster(
                 (ODatabaseDocumentInternal) ctx.getDatabase(),
@@ -72,20 +117,26 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
           new OResultSet() {
 
             private int nFetched = 0;
+            private ORecord nextPersistentRecord;
 
             @Override
             public boolean hasNext() {
               long begin = profilingEnabled ? System.nanoTime() : 0;
+              OPageAccessIntent prevIntent = startScan();
               try {
                 if (nFetched >= nRecords) {
                   return false;
                 }
+                if (partitionEnd >= 0) {
+                  return fetchNextPersistentRecord();
+                }
                 if (ORDER_DESC.equals(order)) {
                   return iterator.hasPrevious();
                 } else {
                   return iterator.hasNext();
                 }
               } finally {
+                endScan(prevIntent);
                 if (profilingEnabled) {
                   cost += (System.nanoTime() - begin);
                 }
@@ -98,21 +149,30 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
                 throw new OCommandInterruptedException("The command has been interrupted");
               }
               long begin = profilingEnabled ? System.nanoTime() : 0;
+              OPageAccessIntent prevIntent = startScan();
               try {
                 if (nFetched >= nRecords) {
                   throw new IllegalStateException();
                 }
-                if (ORDER_DESC.equals(order) && !iterator.hasPrevious()) {
-                  throw new IllegalStateException();
-                } else if (!ORDER_DESC.equals(order) && !iterator.hasNext()) {
-                  throw new IllegalStateException();
-                }
-
                 ORecord record = null;
-                if (ORDER_DESC.equals(order)) {
-                  record = iterator.previous();
+                if (partitionEnd >= 0) {
+                  if (!fetchNextPersistentRecord()) {
+                    throw new IllegalStateException();
+                  }
+                  record = nextPersistentRecord;
+                  nextPersistentRecord = null;
                 } else {
-                  record = iterator.next();
+                  if (ORDER_DESC.equals(order) && !iterator.hasPrevious()) {
+                    throw new IllegalStateException();
+                  } else if (!ORDER_DESC.equals(order) && !iterator.hasNext()) {
+                    throw new IllegalStateException();
+                  }
+
+                  if (ORDER_DESC.equals(order)) {
+                    record = iterator.previous();
+                  } else {
+                    record = iterator.next();
+                  }
                 }
                 nFetched++;
                 OResultInternal result = new OResultInternal();
@@ -120,12 +180,28 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
                 ctx.setVariable("$current", result);
                 return result;
               } finally {
+                endScan(prevIntent);
                 if (profilingEnabled) {
                   cost += (System.nanoTime() - begin);
                 }
               }
             }
 
+            private boolean fetchNextPersistentRecord() {
+              while (nextPersistentRecord == null) {
+                boolean hasMore =
+                    ORDER_DESC.equals(order) ? iterator.hasPrevious() : iterator.hasNext();
+                if (!hasMore) {
+                  return false;
+                }
+                ORecord record = ORDER_DESC.equals(order) ? iterator.previous() : iterator.next();
+                if (record != null && record.getIdentity().isPersistent()) {
+                  nextPersistentRecord = record;
+                }
+              }
+              return true;
+            }
+
             @Override
             public void close() {}
 
@@ -147,6 +223,36 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
     }
   }
 
+  /**
+   * full scan of the cluster which does not fit into the quarter of disk cache is performed with
+   * {@link OPageAccessIntent#SCAN} intent, so it does not flush pages of other operations from the
+   * cache
+   */
+  private OAbstractPaginatedStorage calculateScanStorage(ODatabaseDocumentInternal db) {
+    OStorage storage = db.getStorage().getUnderlying();
+    if (!(storage instanceof OAbstractPaginatedStorage)) {
+      return null;
+    }
+    long cacheSize = ((OAbstractPaginatedStorage) storage).getReadCache().getMaxMemory();
+    if (storage.getClusterRecordsSizeById(clusterId) <= cacheSize / 4) {
+      return null;
+    }
+    return (OAbstractPaginatedStorage) storage;
+  }
+
+  private OPageAccessIntent startScan() {
+    if (scanStorage == null) {
+      return null;
+    }
+    return scanStorage.setPageAccessIntent(OPageAccessIntent.SCAN);
+  }
+
+  private void endScan(OPageAccessIntent prevIntent) {
+    if (prevIntent != null) {
+      scanStorage.setPageAccessIntent(prevIntent);
+    }
+  }
+
   private long calculateMinClusterPosition() {
     if (queryPlanning == null
         || queryPlanning.ridRangeConditions == null
@@ -234,6 +340,14 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
             + clusterId
             + " "
             + orderString;
+    if (partitionStart >= 0 || partitionEnd >= 0) {
+      result +=
+          " (positions "
+              + (partitionStart >= 0 ? partitionStart : "")
+              + ".."
+              + (partitionEnd >= 0 ? partitionEnd : "")
+              + ")";
+    }
     if (profilingEnabled) {
       result += " (" + getCostFormatted() + ")";
     }
@@ -254,6 +368,8 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
     OResultInternal result = OExecutionStepInternal.basicSerialize(this);
     result.setProperty("clusterId", clusterId);
     result.setProperty("order", order);
+    result.setProperty("partitionStart", partitionStart);
+    result.setProperty("partitionEnd", partitionEnd);
     return result;
   }
 
@@ -262,6 +378,10 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
     try {
       OExecutionStepInternal.basicDeserialize(fromResult, this);
       this.clusterId = fromResult.getProperty("clusterId");
+      Number partitionStart = fromResult.getProperty("partitionStart");
+      this.partitionStart = partitionStart == null ? -1 : partitionStart.longValue();
+      Number partitionEnd = fromResult.getProperty("partitionEnd");
+      this.partitionEnd = partitionEnd == null ? -1 : partitionEnd.longValue();
       Object orderProp = fromResult.getProperty("order");
       if (orderProp != null) {
         this.order = ORDER_ASC.equals(fromResult.getProperty("order")) ? ORDER_ASC : ORDER_DESC;
@@ -281,6 +401,8 @@ public class FetchFromClusterExecutionStep extends AbstractExecutionStep {
     FetchFromClusterExecutionStep result =
         new FetchFromClusterExecutionStep(
             this.clusterId,
+            this.partitionStart,
+            this.partitionEnd,
             this.queryPlanning == null ? null : this.queryPlanning.copy(),
             ctx,
             profilingEnabled);
@@ -420,24 +420,22 @@ public class FetchFromIndexStep extends AbstractExecutionStep {
 
     OIndexDefinition indexDef = index.getDefinition();
 
+    if (secondValueCombinations.size() > 1 && isEqualityOnAllFields(indexDef)) {
+      // all keys are looked up at once, so index is traversed only once for all of them
+      final List<Object> keys = toEqualityKeys(secondValueCombinations, indexDef);
+      if (keys != null) {
+        stream = index.streamEntries(keys, isOrderAsc());
+        storeAcquiredStream(stream);
+        cursorToIterator();
+        fetchNextEntry();
+        return;
+      }
+    }
+
     for (int i = 0; i < secondValueCombinations.size(); i++) {
 
-      Object secondValue = secondValueCombinations.get(i).execute((OResult) null, ctx);
-      if (secondValue instanceof List
-          && ((List) secondValue).size() == 1
-          && indexDef.getFields().size() == 1
-          && !(indexDef instanceof OIndexDefinitionMultiValue)) {
-        secondValue = ((List) secondValue).get(0);
-      }
-      secondValue = unboxOResult(secondValue);
-      Object thirdValue = thirdValueCombinations.get(i).execute((OResult) null, ctx);
-      if (thirdValue instanceof List
-          && ((List) thirdValue).size() == 1
-          && indexDef.getFields().size() == 1
-          && !(indexDef instanceof OIndexDefinitionMultiValue)) {
-        thirdValue = ((List) thirdValue).get(0);
-      }
-      thirdValue = unboxOResult(thirdValue);
+      Object secondValue = toIndexValue(secondValueCombinations.get(i), indexDef);
+      Object thirdValue = toIndexValue(thirdValueCombinations.get(i), indexDef);
 
       try {
         secondValue = convertToIndexDefinitionTypes(secondValue, indexDef.getTypes());
@@ -481,6 +479,70 @@ public class FetchFromIndexStep extends AbstractExecutionStep {
     }
   }
 
+  private Object toIndexValue(OCollection combination, OIndexDefinition indexDef) {
+    Object value = combination.execute((OResult) null, ctx);
+    if (value instanceof List
+        && ((List) value).size() == 1
+        && indexDef.getFields().size() == 1
+        && !(indexDef instanceof OIndexDefinitionMultiValue)) {
+      value = ((List) value).get(0);
+    }
+    return unboxOResult(value);
+  }
+
+  /**
+   * @return <code>true</code> if every field of the index is compared by equality or IN operator,
+   *     so all keys of the condition can be looked up at once.
+   */
+  private boolean isEqualityOnAllFields(OIndexDefinition indexDef) {
+    if (additionalRangeCondition != null
+        || indexDef instanceof OIndexDefinitionMultiValue
+        || isFullTextIndex(index)) {
+      return false;
+    }
+
+    final List<OBooleanExpression> subBlocks = ((OAndBlock) condition).getSubBlocks();
+    if (subBlocks.size() != indexDef.getFields().size()) {
+      return false;
+    }
+
+    for (OBooleanExpression exp : subBlocks) {
+      if (exp instanceof OBinaryCondition) {
+        if (!(((OBinaryCondition) exp).getOperator() instanceof OEqualsCompareOperator)) {
+          return false;
+        }
+      } else if (!(exp instanceof OInCondition)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return Keys of the index which match the given combinations of values or <code>null</code> if
+   *     one of the keys is <code>null</code>, such keys are looked up separately.
+   */
+  private List<Object> toEqualityKeys(List<OCollection> combinations, OIndexDefinition indexDef) {
+    final List<Object> keys = new ArrayList<>(combinations.size());
+    for (OCollection combination : combinations) {
+      Object value = toIndexValue(combination, indexDef);
+      try {
+        value = convertToIndexDefinitionTypes(value, indexDef.getTypes());
+      } catch (Exception e) {
+        // some problems in key conversion, so the params do not match the key types
+        continue;
+      }
+
+      for (Object key : toIndexKey(indexDef, value)) {
+        if (key == null) {
+          return null;
+        }
+        keys.add(key);
+      }
+    }
+    return keys;
+  }
+
   private void cursorToIterator() {
     if (stream != null) {
       indexIterator = stream.iterator();
@@ -12,7 +12,11 @@ import java.util.Optional;
 public class FilterStep extends AbstractExecutionStep {
   private OWhereClause whereClause;
 
-  private OResultSet prevResult = null;
+  // filtered records not returned yet
+  private OResultBatch pending = null;
+  private int pendingPosition = 0;
+
+  private Boolean batchEvaluation;
 
   private long cost;
 
@@ -26,81 +30,37 @@ public class FilterStep extends AbstractExecutionStep {
     if (!prev.isPresent()) {
       throw new IllegalStateException("filter step requires a previous step");
     }
-    OExecutionStepInternal prevStep = prev.get();
 
     return new OResultSet() {
-      public boolean finished = false;
-
-      private OResult nextItem = null;
+      private boolean finished = false;
       private int fetched = 0;
 
-      private void fetchNextItem() {
-        nextItem = null;
-        if (finished) {
-          return;
-        }
-        if (prevResult == null) {
-          prevResult = prevStep.syncPull(ctx, nRecords);
-          if (!prevResult.hasNext()) {
-            finished = true;
-            return;
-          }
-        }
-        while (!finished) {
-          while (!prevResult.hasNext()) {
-            prevResult = prevStep.syncPull(ctx, nRecords);
-            if (!prevResult.hasNext()) {
-              finished = true;
-              return;
-            }
-          }
-          nextItem = prevResult.next();
-          long begin = profilingEnabled ? System.nanoTime() : 0;
-          try {
-            if (whereClause.matchesFilters(nextItem, ctx)) {
-              break;
-            }
-
-            nextItem = null;
-          } finally {
-            if (profilingEnabled) {
-              cost += (System.nanoTime() - begin);
-            }
-          }
-        }
-      }
-
       @Override
       public boolean hasNext() {
-
         if (fetched >= nRecords || finished) {
           return false;
         }
-        if (nextItem == null) {
-          fetchNextItem();
-        }
-
-        if (nextItem != null) {
-          return true;
+        if (pending == null || pendingPosition >= pending.size()) {
+          pending = fetchNextBatch(ctx, nRecords);
+          pendingPosition = 0;
+          if (pending.isEmpty()) {
+            finished = true;
+            return false;
+          }
         }
-
-        return false;
+        return true;
       }
 
       @Override
       public OResult next() {
-        if (fetched >= nRecords || finished) {
-          throw new IllegalStateException();
-        }
-        if (nextItem == null) {
-          fetchNextItem();
-        }
-        if (nextItem == null) {
+        if (!hasNext()) {
           throw new IllegalStateException();
         }
-        OResult result = nextItem;
-        nextItem = null;
+        OResult result = pending.get(pendingPosition);
+        pending.set(pendingPosition++, null);
         fetched++;
+        // the upstream already moved to the following records
+        ctx.setVariable("$current", result);
         return result;
       }
 
@@ -121,6 +81,72 @@ public class FilterStep extends AbstractExecutionStep {
     };
   }
 
+  @Override
+  public OResultBatch syncPullBatch(OCommandContext ctx, int nRecords) throws OTimeoutException {
+    if (!prev.isPresent()) {
+      throw new IllegalStateException("filter step requires a previous step");
+    }
+    if (pending != null && pendingPosition < pending.size()) {
+      OResultBatch result = new OResultBatch(Math.min(nRecords, pending.size() - pendingPosition));
+      while (result.size() < nRecords && pendingPosition < pending.size()) {
+        result.add(pending.get(pendingPosition));
+        pending.set(pendingPosition++, null);
+      }
+      return result;
+    }
+    return fetchNextBatch(ctx, nRecords);
+  }
+
+  /**
+   * Pulls batches from the previous step until at least one record matches the condition
+   *
+   * @return the matching records of the last batch, empty if the previous step has no more records
+   */
+  private OResultBatch fetchNextBatch(OCommandContext ctx, int nRecords) {
+    OExecutionStepInternal prevStep = prev.get();
+    if (batchEvaluation == null) {
+      batchEvaluation = whereClause.isBatchEvaluable();
+    }
+    while (true) {
+      OResultBatch batch = prevStep.syncPullBatch(ctx, nRecords);
+      if (batch.isEmpty()) {
+        return batch;
+      }
+      long begin = profilingEnabled ? System.nanoTime() : 0;
+      try {
+        if (batchEvaluation) {
+          whereClause.filter(batch, ctx);
+        } else {
+          filterByRecord(batch, ctx);
+        }
+      } finally {
+        if (profilingEnabled) {
+          cost += (System.nanoTime() - begin);
+        }
+      }
+      if (!batch.isEmpty()) {
+        return batch;
+      }
+    }
+  }
+
+  /**
+   * Evaluates the condition one record at a time, with the record bound to the <code>$current
+   * </code> context variable
+   */
+  private void filterByRecord(OResultBatch batch, OCommandContext ctx) {
+    int[] matching = new int[batch.size()];
+    int matched = 0;
+    for (int i = 0; i < batch.size(); i++) {
+      OResult item = batch.get(i);
+      ctx.setVariable("$current", item);
+      if (whereClause.matchesFilters(item, ctx)) {
+        matching[matched++] = i;
+      }
+    }
+    batch.retain(matching, matched);
+  }
+
   @Override
   public String prettyPrint(int depth, int indent) {
     StringBuilder result = new StringBuilder();
@@ -0,0 +1,229 @@
+package com.orientechnologies.orient.core.sql.executor;
+
+import com.orientechnologies.common.concur.OTimeoutException;
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Builds results from keys of index entries, so records are not loaded. Each result contains values
+ * of the indexed fields, it is used by index-only plans, when projections of the query refer only
+ * to fields of the index.
+ */
+public class GetValueFromIndexKeyStep extends AbstractExecutionStep {
+
+  private final List<String> fields;
+  private final int[] filterClusterIds;
+  private final boolean distinct;
+
+  // runtime
+
+  private ORidSet pastRids;
+
+  private long cost = 0;
+
+  private OResultSet prevResult = null;
+
+  /**
+   * @param fields fields of the index, in the same order as they are stored in the keys
+   * @param filterClusterIds only extract values of records from these clusters. Pass null if no
+   *     filtering is needed
+   * @param distinct skip entries of records which were already returned, it is needed if the same
+   *     record can be found by several lookups of the index
+   * @param ctx the execution context
+   * @param profilingEnabled enable profiling
+   */
+  public GetValueFromIndexKeyStep(
+      List<String> fields,
+      int[] filterClusterIds,
+      boolean distinct,
+      OCommandContext ctx,
+      boolean profilingEnabled) {
+    super(ctx, profilingEnabled);
+    this.fields = fields;
+    this.filterClusterIds = filterClusterIds;
+    this.distinct = distinct;
+  }
+
+  @Override
+  public OResultSet syncPull(OCommandContext ctx, int nRecords) throws OTimeoutException {
+
+    if (!prev.isPresent()) {
+      throw new IllegalStateException("filter step requires a previous step");
+    }
+    OExecutionStepInternal prevStep = prev.get();
+
+    return new OResultSet() {
+
+      public boolean finished = false;
+
+      private OResult nextItem = null;
+      private int fetched = 0;
+
+      @Override
+      public boolean hasNext() {
+
+        if (fetched >= nRecords || finished) {
+          return false;
+        }
+        if (nextItem == null) {
+          fetchNextItem();
+        }
+
+        return nextItem != null;
+      }
+
+      @Override
+      public OResult next() {
+        if (fetched >= nRecords || finished) {
+          throw new IllegalStateException();
+        }
+        if (nextItem == null) {
+          fetchNextItem();
+        }
+        if (nextItem == null) {
+          throw new IllegalStateException();
+        }
+        OResult result = nextItem;
+        nextItem = null;
+        fetched++;
+        ctx.setVariable("$current", result);
+        return result;
+      }
+
+      private void fetchNextItem() {
+        nextItem = null;
+        if (finished) {
+          return;
+        }
+        if (prevResult == null) {
+          prevResult = prevStep.syncPull(ctx, nRecords);
+          if (!prevResult.hasNext()) {
+            finished = true;
+            return;
+          }
+        }
+        while (!finished) {
+          while (!prevResult.hasNext()) {
+            prevResult = prevStep.syncPull(ctx, nRecords);
+            if (!prevResult.hasNext()) {
+              finished = true;
+              return;
+            }
+          }
+          OResult val = prevResult.next();
+          long begin = profilingEnabled ? System.nanoTime() : 0;
+
+          try {
+            Object rid = val.getProperty("rid");
+            if (!(rid instanceof OIdentifiable)) {
+              continue;
+            }
+            ORID identity = ((OIdentifiable) rid).getIdentity();
+            if (filterClusterIds != null && !matchesClusters(identity)) {
+              continue;
+            }
+            if (distinct) {
+              if (pastRids == null) {
+                pastRids = new ORidSet();
+              }
+              if (!pastRids.add(identity)) {
+                continue;
+              }
+            }
+            nextItem = toResult(val.getProperty("key"));
+            break;
+          } finally {
+            if (profilingEnabled) {
+              cost += (System.nanoTime() - begin);
+            }
+          }
+        }
+      }
+
+      @Override
+      public void close() {}
+
+      @Override
+      public Optional<OExecutionPlan> getExecutionPlan() {
+        return Optional.empty();
+      }
+
+      @Override
+      public Map<String, Long> getQueryStats() {
+        return null;
+      }
+    };
+  }
+
+  private boolean matchesClusters(ORID rid) {
+    for (int filterClusterId : filterClusterIds) {
+      if (rid.getClusterId() < 0 || filterClusterId == rid.getClusterId()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private OResult toResult(Object key) {
+    OResultInternal result = new OResultInternal();
+    if (fields.size() == 1) {
+      result.setProperty(fields.get(0), key);
+    } else {
+      // keys of composite indexes are converted to lists by FetchFromIndexStep
+      List<?> keys = (List<?>) key;
+      for (int i = 0; i < fields.size(); i++) {
+        result.setProperty(fields.get(i), i < keys.size() ? keys.get(i) : null);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String prettyPrint(int depth, int indent) {
+    String spaces = OExecutionStepInternal.getIndent(depth, indent);
+    String result = spaces + "+ EXTRACT VALUE FROM INDEX KEY";
+    if (profilingEnabled) {
+      result += " (" + getCostFormatted() + ")";
+    }
+    result += "\n";
+    result += spaces;
+    result += "  fields [" + String.join(",", fields) + "]";
+    if (filterClusterIds != null) {
+      result += "\n";
+      result += spaces;
+      result += "  filtering clusters [";
+      result +=
+          Arrays.stream(filterClusterIds).boxed().map(x -> "" + x).collect(Collectors.joining(","));
+      result += "]";
+    }
+    if (distinct) {
+      result += "\n";
+      result += spaces;
+      result += "  distinct by record ids";
+    }
+    return result;
+  }
+
+  @Override
+  public long getCost() {
+    return cost;
+  }
+
+  @Override
+  public boolean canBeCached() {
+    return true;
+  }
+
+  @Override
+  public OExecutionStep copy(OCommandContext ctx) {
+    return new GetValueFromIndexKeyStep(
+        new ArrayList<>(fields), this.filterClusterIds, this.distinct, ctx, this.profilingEnabled);
+  }
+}
@@ -31,6 +31,21 @@ public interface OExecutionStepInternal extends OExecutionStep {
 
   OResultSet syncPull(OCommandContext ctx, int nRecords) throws OTimeoutException;
 
+  /**
+   * Batch version of {@link #syncPull(OCommandContext, int)}: returns the next block of at most
+   * nRecords results as an array, so that the consumer can process them in a tight loop.
+   *
+   * <p>Differently from <code>syncPull()</code>, the returned batch can have less than nRecords
+   * results also when the step can produce more (eg. a filter that discarded part of the records);
+   * an empty batch means that the step cannot produce any more records.
+   *
+   * <p>The default implementation collects the result of a <code>syncPull()</code>, steps that can
+   * process whole batches override it.
+   */
+  default OResultBatch syncPullBatch(OCommandContext ctx, int nRecords) throws OTimeoutException {
+    return OResultBatch.fromResultSet(syncPull(ctx, nRecords), nRecords);
+  }
+
   void sendTimeout();
 
   void setPrevious(OExecutionStepInternal step);
@@ -0,0 +1,91 @@
+package com.orientechnologies.orient.core.sql.executor;
+
+import java.util.Arrays;
+
+/**
+ * A block of results exchanged between execution steps that support batch execution (see {@link
+ * OExecutionStepInternal#syncPullBatch(com.orientechnologies.orient.core.command.OCommandContext,
+ * int)}).
+ *
+ * <p>Results are kept in a plain array, so that a step can process a whole batch in a tight loop
+ * instead of going through an {@link OResultSet} for every record.
+ */
+public class OResultBatch {
+  private static final int DEFAULT_CAPACITY = 128;
+
+  private OResult[] results;
+  private int size = 0;
+
+  public OResultBatch() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public OResultBatch(int capacity) {
+    this.results = new OResult[Math.max(capacity, 1)];
+  }
+
+  /**
+   * Collects up to <code>max</code> results from a result set
+   *
+   * @param resultSet the result set to read
+   * @param max the maximum number of results to collect
+   * @return a batch with the collected results, empty if the result set has no more results
+   */
+  public static OResultBatch fromResultSet(OResultSet resultSet, int max) {
+    OResultBatch result = new OResultBatch(Math.min(max, DEFAULT_CAPACITY));
+    while (result.size < max && resultSet.hasNext()) {
+      result.add(resultSet.next());
+    }
+    return result;
+  }
+
+  public void add(OResult item) {
+    if (size == results.length) {
+      results = Arrays.copyOf(results, size * 2);
+    }
+    results[size++] = item;
+  }
+
+  public OResult get(int i) {
+    if (i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+    }
+    return results[i];
+  }
+
+  public void set(int i, OResult item) {
+    if (i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+    }
+    results[i] = item;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the underlying array; only the first {@link #size()} elements are valid
+   */
+  public OResult[] getResults() {
+    return results;
+  }
+
+  /**
+   * Keeps only the results at the given positions, in the given order
+   *
+   * @param positions the positions of the results to keep, in ascending order
+   * @param count the number of valid elements in <code>positions</code>
+   */
+  public void retain(int[] positions, int count) {
+    for (int i = 0; i < count; i++) {
+      results[i] = results[positions[i]];
+    }
+    Arrays.fill(results, count, size, null);
+    size = count;
+  }
+}
@@ -0,0 +1,391 @@
+package com.orientechnologies.orient.core.sql.executor;
+
+import com.orientechnologies.common.collection.OExternalSorter;
+import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.OElement;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import com.orientechnologies.orient.core.record.impl.ODocumentInternal;
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.BytesContainer;
+import com.orientechnologies.orient.core.serialization.serializer.result.binary.OResultSerializerNetwork;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Temporary file that stores a sequence of results, used by the execution steps that cannot keep
+ * their whole working set in heap (eg. the partitions of a GROUP BY on a large result set).
+ *
+ * <p>Results are stored by value: a result that wraps a record is stored together with a copy of
+ * the record content, so it is read back as it was written, even if the record is changed or
+ * deleted in the meantime. Only the results accepted by {@link #isSpillable(OResult)} can be
+ * written.
+ */
+public class OResultSpillFile {
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final OResultSerializerNetwork SERIALIZER = new OResultSerializerNetwork();
+
+  /** Binary form of the results, as they are stored in spill files */
+  static final OExternalSorter.Codec<OResult> CODEC =
+      new OExternalSorter.Codec<OResult>() {
+        @Override
+        public byte[] serialize(OResult result) {
+          return OResultSpillFile.serialize(result);
+        }
+
+        @Override
+        public OResult deserialize(byte[] bytes) {
+          return OResultSpillFile.deserialize(bytes);
+        }
+      };
+
+  private final File file;
+  private DataOutputStream out;
+  private final List<Reader> readers = new ArrayList<>();
+  private long size = 0;
+  private boolean deleted = false;
+
+  public OResultSpillFile() {
+    try {
+      File dir = new File(Orient.getTempPath());
+      if (!dir.exists()) {
+        dir.mkdirs();
+      }
+      file = File.createTempFile("query-", ".spill", dir);
+    } catch (IOException e) {
+      throw OException.wrapException(
+          new OCommandExecutionException("Cannot create temporary file for query results"), e);
+    }
+  }
+
+  /**
+   * Tells if a result can be written to a spill file and read back without losing information. A
+   * result cannot be spilled if it is not a plain {@link OResultInternal}, if it wraps a record
+   * that is not a persistent document or has unsaved changes, or if one of its values would be
+   * read back as a different object (eg. a record nested in a projection, that is stored as a
+   * link) or has no binary representation.
+   */
+  public static boolean isSpillable(OResult result) {
+    if (result == null || result.getClass() != OResultInternal.class) {
+      return false;
+    }
+    OResultInternal item = (OResultInternal) result;
+    if (item.element != null) {
+      if (!(item.element instanceof ODocument)) {
+        return false;
+      }
+      ODocument document = (ODocument) item.element;
+      if (!document.getIdentity().isPersistent() || document.isDirty()) {
+        return false;
+      }
+    }
+    return isSpillable(item.content)
+        && isSpillable(item.temporaryContent)
+        && isSpillable(item.metadata);
+  }
+
+  private static boolean isSpillable(Map<?, ?> values) {
+    if (values == null) {
+      return true;
+    }
+    for (Map.Entry<?, ?> entry : values.entrySet()) {
+      if (!(entry.getKey() instanceof String) || !isSpillableValue(entry.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSpillableValue(Object value) {
+    if (value == null
+        || value instanceof String
+        || value instanceof Integer
+        || value instanceof Long
+        || value instanceof Short
+        || value instanceof Byte
+        || value instanceof Float
+        || value instanceof Double
+        || value instanceof BigDecimal
+        || value instanceof Boolean
+        || value instanceof Date
+        || value instanceof byte[]) {
+      return true;
+    }
+    if (value instanceof ORID) {
+      return ((ORID) value).isPersistent();
+    }
+    if (value instanceof OElement && !((OElement) value).getIdentity().isValid()) {
+      // embedded document, serialized as a projection
+      OElement element = (OElement) value;
+      for (String name : element.getPropertyNames()) {
+        if (!isSpillableValue(element.getProperty(name))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (value instanceof OResult) {
+      // results of records are serialized as links
+      return !((OResult) value).isElement() && isSpillable((OResult) value);
+    }
+    if (value instanceof List || value instanceof Set) {
+      for (Object item : (Collection<?>) value) {
+        if (!isSpillableValue(item)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (value instanceof Map) {
+      return isSpillable((Map<?, ?>) value);
+    }
+    return false;
+  }
+
+  /**
+   * Binary form of a result, that contains its values and the content of its record.
+   *
+   * @return null if the result cannot be spilled (see {@link #isSpillable(OResult)})
+   */
+  static byte[] serialize(OResult result) {
+    if (!isSpillable(result)) {
+      return null;
+    }
+    OResultInternal item = (OResultInternal) result;
+    OResultInternal properties = new OResultInternal();
+    properties.content = item.content;
+    properties.metadata = item.metadata;
+    OResultInternal temporaryProperties = new OResultInternal();
+    if (item.temporaryContent != null) {
+      temporaryProperties.content = new LinkedHashMap<>(item.temporaryContent);
+    }
+    BytesContainer values = new BytesContainer();
+    byte[] record = null;
+    try {
+      SERIALIZER.serialize(properties, values);
+      SERIALIZER.serialize(temporaryProperties, values);
+      if (item.element != null) {
+        record = ((ODocument) item.element).toStream();
+      }
+    } catch (RuntimeException e) {
+      // a value without binary representation, the result has to stay in heap
+      return null;
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(values.offset + 64);
+      DataOutputStream data = new DataOutputStream(bytes);
+      if (record == null) {
+        data.writeBoolean(false);
+      } else {
+        ODocument document = (ODocument) item.element;
+        data.writeBoolean(true);
+        data.writeByte(ORecordInternal.getRecordType(document));
+        data.writeInt(document.getIdentity().getClusterId());
+        data.writeLong(document.getIdentity().getClusterPosition());
+        data.writeInt(document.getVersion());
+        data.writeInt(record.length);
+        data.write(record);
+      }
+      data.write(values.bytes, 0, values.offset);
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      // not thrown by in-memory streams
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Restores a result from its binary form, the record it wraps is not loaded from the database */
+  static OResult deserialize(byte[] bytes) {
+    try {
+      DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+      OResultInternal result = new OResultInternal();
+      if (data.readBoolean()) {
+        byte recordType = data.readByte();
+        ORecordId rid = new ORecordId(data.readInt(), data.readLong());
+        int version = data.readInt();
+        byte[] record = new byte[data.readInt()];
+        data.readFully(record);
+
+        ODatabaseDocumentInternal db = ODatabaseRecordThreadLocal.instance().get();
+        ORecord document =
+            Orient.instance()
+                .getRecordFactoryManager()
+                .newInstance(recordType, rid.getClusterId(), db);
+        ORecordInternal.setRecordSerializer(document, db.getSerializer());
+        ORecordInternal.fill(document, rid, version, record, false, db);
+        if (document instanceof ODocument) {
+          ODocumentInternal.checkClass((ODocument) document, db);
+        }
+        result.setElement(document);
+      }
+      BytesContainer container = new BytesContainer(bytes, bytes.length - data.available());
+      OResultInternal properties = SERIALIZER.deserialize(container);
+      OResultInternal temporaryProperties = SERIALIZER.deserialize(container);
+      result.content = properties.content;
+      result.metadata = properties.metadata;
+      if (!temporaryProperties.content.isEmpty()) {
+        result.temporaryContent = temporaryProperties.content;
+      }
+      return result;
+    } catch (IOException e) {
+      // not thrown by in-memory streams
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Appends a result to the file.
+   *
+   * @return false if the result cannot be spilled (see {@link #isSpillable(OResult)}); in this case
+   *     the file is not modified
+   */
+  public boolean write(OResult result) {
+    byte[] bytes = serialize(result);
+    if (bytes == null) {
+      return false;
+    }
+    try {
+      if (out == null) {
+        out =
+            new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE));
+      }
+      out.writeInt(bytes.length);
+      out.write(bytes);
+      size++;
+      return true;
+    } catch (IOException e) {
+      throw OException.wrapException(
+          new OCommandExecutionException("Cannot write query results to temporary file " + file),
+          e);
+    }
+  }
+
+  /** Number of results written to the file */
+  public long size() {
+    return size;
+  }
+
+  /** Completes the writes and returns an iterator on the content of the file */
+  public Reader read() {
+    try {
+      if (out != null) {
+        out.close();
+        out = null;
+      }
+      Reader reader =
+          new Reader(
+              new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)),
+              size);
+      readers.add(reader);
+      return reader;
+    } catch (IOException e) {
+      throw OException.wrapException(
+          new OCommandExecutionException("Cannot read query results from temporary file " + file),
+          e);
+    }
+  }
+
+  /** Releases the file. Readers opened on this file are closed */
+  public void delete() {
+    if (deleted) {
+      return;
+    }
+    deleted = true;
+    for (Reader reader : readers) {
+      reader.close();
+    }
+    readers.clear();
+    try {
+      if (out != null) {
+        out.close();
+        out = null;
+      }
+    } catch (IOException e) {
+      // the file is deleted anyway
+    }
+    file.delete();
+  }
+
+  public class Reader implements Iterator<OResult> {
+    private DataInputStream in;
+    private final long entries;
+    private long entriesRead = 0;
+
+    private Reader(DataInputStream in, long entries) {
+      this.in = in;
+      this.entries = entries;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (in != null && entriesRead >= entries) {
+        close();
+      }
+      return in != null;
+    }
+
+    /**
+     * Position in the file (ie. number of results written before it) of the result that will be
+     * returned by the next call to {@link #next()}, or the number of results in the file if there
+     * are no more results to read.
+     */
+    public long nextPosition() {
+      return entriesRead;
+    }
+
+    @Override
+    public OResult next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      try {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        entriesRead++;
+        return deserialize(bytes);
+      } catch (IOException e) {
+        close();
+        throw OException.wrapException(
+            new OCommandExecutionException(
+                "Cannot read query results from temporary file " + file),
+            e);
+      }
+    }
+
+    public void close() {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // nothing to do, the file is read only
+        }
+        in = null;
+      }
+    }
+  }
+}
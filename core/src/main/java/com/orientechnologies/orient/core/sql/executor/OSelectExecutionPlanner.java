@@ -1,8 +1,12 @@
 package com.orientechnologies.orient.core.sql.executor;
 
 import com.orientechnologies.common.util.OPair;
+import com.orientechnologies.orient.core.collate.OCollate;
+import com.orientechnologies.orient.core.collate.ODefaultCollate;
 import com.orientechnologies.orient.core.command.OBasicCommandContext;
 import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OContextConfiguration;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.db.ODatabase;
 import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
 import com.orientechnologies.orient.core.db.ODatabaseInternal;
@@ -11,9 +15,12 @@ import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.index.OCompositeCollate;
+import com.orientechnologies.orient.core.index.OCompositeIndexDefinition;
 import com.orientechnologies.orient.core.index.OIndex;
 import com.orientechnologies.orient.core.index.OIndexAbstract;
 import com.orientechnologies.orient.core.index.OIndexDefinition;
+import com.orientechnologies.orient.core.index.OIndexDefinitionMultiValue;
 import com.orientechnologies.orient.core.metadata.OMetadataInternal;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OProperty;
@@ -21,6 +28,7 @@ import com.orientechnologies.orient.core.metadata.schema.OSchema;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.metadata.schema.OView;
 import com.orientechnologies.orient.core.metadata.security.OSecurityInternal;
+import com.orientechnologies.orient.core.metadata.security.OSecurityShared;
 import com.orientechnologies.orient.core.sql.OCommandExecutorSQLAbstract;
 import com.orientechnologies.orient.core.sql.parser.AggregateProjectionSplit;
 import com.orientechnologies.orient.core.sql.parser.OAndBlock;
@@ -1868,7 +1876,10 @@ public class OSelectExecutionPlanner {
 
     if (handleClassAsTargetWithIndex(
         plan, identifier, filterClusters, info, ctx, profilingEnabled)) {
-      plan.chain(new FilterByClassStep(identifier, ctx, profilingEnabled));
+      if (!info.indexOnlyPlan) {
+        // results of index-only plans are filtered by clusters of the class
+        plan.chain(new FilterByClassStep(identifier, ctx, profilingEnabled));
+      }
       return;
     }
 
@@ -1888,6 +1899,13 @@ public class OSelectExecutionPlanner {
     String className = identifier.getStringValue();
     OSchema schema = getSchemaFromContext(ctx);
 
+    if (orderByRidAsc == null
+        && schema.getClass(className) != null
+        && handleClassAsTargetWithParallelScan(
+            plan, filterClusters, schema.getClass(className), info, ctx, profilingEnabled)) {
+      return;
+    }
+
     AbstractExecutionStep fetcher;
     if (schema.getClass(className) != null) {
       fetcher =
@@ -1907,6 +1925,93 @@ public class OSelectExecutionPlanner {
     plan.chain(fetcher);
   }
 
+  /**
+   * Splits the full scan of a class in partitions (one or more ranges of cluster positions for each
+   * cluster). Each partition is fetched and filtered by its own sub-plan, so that a {@link
+   * ParallelExecStep} can scan, deserialize and filter them on multiple threads. This is done only
+   * if parallel queries are enabled and the class has at least {@link
+   * OGlobalConfiguration#QUERY_PARALLEL_MINIMUM_RECORDS} records.
+   *
+   * @return true if the parallel scan was added to the plan
+   */
+  private boolean handleClassAsTargetWithParallelScan(
+      OSelectExecutionPlan plan,
+      Set<String> filterClusters,
+      OClass clazz,
+      QueryPlanningInfo info,
+      OCommandContext ctx,
+      boolean profilingEnabled) {
+    ODatabaseDocumentInternal db = (ODatabaseDocumentInternal) ctx.getDatabase();
+    OContextConfiguration conf = db.getConfiguration();
+    if (profilingEnabled
+        || db.isRemote()
+        || info.whereClause == null
+        || info.perRecordLetClause != null
+        || info.serverToClusters.size() > 1
+        || !conf.getValueAsBoolean(OGlobalConfiguration.QUERY_PARALLEL_AUTO)) {
+      return false;
+    }
+    int maxThreads = conf.getValueAsInteger(OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS);
+    if (maxThreads < 2) {
+      return false;
+    }
+
+    List<Integer> clusterIds = new ArrayList<>();
+    for (int clusterId : clazz.getPolymorphicClusterIds()) {
+      if (clusterId >= 0
+          && (filterClusters == null
+              || filterClusters.contains(db.getClusterNameById(clusterId)))) {
+        clusterIds.add(clusterId);
+      }
+    }
+    long[] clusterSizes = new long[clusterIds.size()];
+    long totalRecords = 0;
+    for (int i = 0; i < clusterSizes.length; i++) {
+      clusterSizes[i] = db.countClusterElements(clusterIds.get(i));
+      totalRecords += clusterSizes[i];
+    }
+    long minRecords = conf.getValueAsLong(OGlobalConfiguration.QUERY_PARALLEL_MINIMUM_RECORDS);
+    if (totalRecords == 0 || totalRecords < minRecords) {
+      return false;
+    }
+
+    // more partitions than threads, so that the threads that complete first can pick the next ones
+    long totalPartitions = maxThreads * 4L;
+    List<OInternalExecutionPlan> subPlans = new ArrayList<>();
+    for (int i = 0; i < clusterSizes.length; i++) {
+      int clusterId = clusterIds.get(i);
+      long[] range = db.getStorage().getClusterDataRange(clusterId);
+      long nPartitions = 1;
+      if (range.length == 2 && range[0] >= 0 && range[1] >= range[0]) {
+        long clusterPartitions = totalPartitions * clusterSizes[i] / totalRecords;
+        nPartitions = Math.max(1, Math.min(clusterPartitions, range[1] - range[0] + 1));
+      }
+      // the first and the last partitions are not bounded, so that a cached plan also returns the
+      // records created after the planning
+      long partitionSize = nPartitions == 1 ? 0 : (range[1] - range[0] + 1) / nPartitions;
+      for (long partition = 0; partition < nPartitions; partition++) {
+        long start = partition == 0 ? -1 : range[0] + partition * partitionSize;
+        long end =
+            partition == nPartitions - 1 ? -1 : range[0] + (partition + 1) * partitionSize - 1;
+        OSelectExecutionPlan subPlan = new OSelectExecutionPlan(ctx);
+        subPlan.chain(
+            new FetchFromClusterExecutionStep(clusterId, start, end, info, ctx, profilingEnabled));
+        subPlan.chain(new FilterStep(info.whereClause.copy(), ctx, profilingEnabled));
+        subPlans.add(subPlan);
+      }
+    }
+    // records created in current transaction and not yet assigned to a cluster
+    OSelectExecutionPlan txPlan = new OSelectExecutionPlan(ctx);
+    txPlan.chain(new FetchTemporaryFromTxStep(ctx, clazz.getName(), profilingEnabled));
+    txPlan.chain(new FilterStep(info.whereClause.copy(), ctx, profilingEnabled));
+    subPlans.add(txPlan);
+
+    plan.chain(new ParallelExecStep(subPlans, ctx, profilingEnabled));
+    info.whereClause = null;
+    info.flattenedWhereClause = null;
+    return true;
+  }
+
   private boolean handleClassAsTargetWithIndexedFunction(
       OSelectExecutionPlan plan,
       Set<String> filterClusters,
@@ -2207,7 +2312,7 @@ public class OSelectExecutionPlanner {
 
     List<OExecutionStepInternal> result =
         handleClassAsTargetWithIndex(
-            targetClass.getStringValue(), filterClusters, info, ctx, profilingEnabled);
+            targetClass.getStringValue(), filterClusters, info, ctx, true, profilingEnabled);
     if (result != null) {
       result.stream().forEach(x -> plan.chain(x));
       info.whereClause = null;
@@ -2242,7 +2347,8 @@ public class OSelectExecutionPlanner {
       subclassPlans.add(subPlan);
     }
     if (subclassPlans.size() > 0) {
-      plan.chain(new ParallelExecStep(subclassPlans, ctx, profilingEnabled));
+      plan.chain(
+          new ParallelExecStep(subclassPlans, ctx, info.orderApplied, profilingEnabled));
       return true;
     }
     return false;
@@ -2279,7 +2385,8 @@ public class OSelectExecutionPlanner {
       OCommandContext ctx,
       boolean profilingEnabled) {
     List<OExecutionStepInternal> result =
-        handleClassAsTargetWithIndex(targetClass, filterClusters, info, ctx, profilingEnabled);
+        handleClassAsTargetWithIndex(
+            targetClass, filterClusters, info, ctx, false, profilingEnabled);
     if (result == null) {
       result = new ArrayList<>();
       OClass clazz = getSchemaFromContext(ctx).getClass(targetClass);
@@ -2310,17 +2417,23 @@ public class OSelectExecutionPlanner {
         subclassPlans.add(subPlan);
       }
       if (subclassPlans.size() > 0) {
-        result.add(new ParallelExecStep(subclassPlans, ctx, profilingEnabled));
+        result.add(
+            new ParallelExecStep(subclassPlans, ctx, info.orderApplied, profilingEnabled));
       }
     }
     return result.size() == 0 ? null : result;
   }
 
+  /**
+   * @param indexOnlyAllowed if true and the query needs only fields stored in the keys of the
+   *     index, results are built from the index keys without loading records
+   */
   private List<OExecutionStepInternal> handleClassAsTargetWithIndex(
       String targetClass,
       Set<String> filterClusters,
       QueryPlanningInfo info,
       OCommandContext ctx,
+      boolean indexOnlyAllowed,
       boolean profilingEnabled) {
     if (info.flattenedWhereClause == null || info.flattenedWhereClause.size() == 0) {
       return null;
@@ -2370,9 +2483,23 @@ public class OSelectExecutionPlanner {
                 .mapToInt(i -> i)
                 .toArray();
       }
-      result.add(new GetValueFromIndexEntryStep(ctx, filterClusterIds, profilingEnabled));
-      if (requiresMultipleIndexLookups(desc.keyCondition)) {
-        result.add(new DistinctExecutionStep(ctx, profilingEnabled));
+      if (indexOnlyAllowed && isIndexOnlyPlanPossible(desc, c, info, ctx)) {
+        if (filterClusterIds == null) {
+          filterClusterIds = c.getPolymorphicClusterIds();
+        }
+        result.add(
+            new GetValueFromIndexKeyStep(
+                desc.idx.getDefinition().getFields(),
+                filterClusterIds,
+                requiresMultipleIndexLookups(desc.keyCondition),
+                ctx,
+                profilingEnabled));
+        info.indexOnlyPlan = true;
+      } else {
+        result.add(new GetValueFromIndexEntryStep(ctx, filterClusterIds, profilingEnabled));
+        if (requiresMultipleIndexLookups(desc.keyCondition)) {
+          result.add(new DistinctExecutionStep(ctx, profilingEnabled));
+        }
       }
       if (orderAsc != null
           && info.orderBy != null
@@ -2406,6 +2533,81 @@ public class OSelectExecutionPlanner {
     return result;
   }
 
+  /**
+   * Checks if results of the query can be built from keys of the index, so records do not have to
+   * be loaded. It is possible only if the index evaluates the whole WHERE condition and projections
+   * and sorting refer only to fields of the index, stored in its keys as they are. Additional
+   * fields can be appended to a composite index to make it covering for the query.
+   */
+  private boolean isIndexOnlyPlanPossible(
+      IndexSearchDescriptor desc, OClass clazz, QueryPlanningInfo info, OCommandContext ctx) {
+    if (info.projection == null
+        || info.projection.getItems() == null
+        || info.expand
+        || info.aggregateProjection != null
+        || info.groupBy != null
+        || info.unwind != null
+        || info.perRecordLetClause != null
+        || info.lockRecord != null) {
+      return false;
+    }
+    if (desc.remainingCondition != null && !desc.remainingCondition.isEmpty()) {
+      return false;
+    }
+    if (clazz instanceof OView
+        || clazz.isSubClassOf(OSecurityShared.RESTRICTED_CLASSNAME)
+        || securityPoliciesExistForClass(new OIdentifier(clazz.getName()), ctx)) {
+      return false;
+    }
+
+    OIndex index = desc.idx;
+    OIndexDefinition definition = index.getDefinition();
+    String type = index.getType();
+    if (definition == null
+        || definition instanceof OIndexDefinitionMultiValue
+        || !(OClass.INDEX_TYPE.UNIQUE.name().equalsIgnoreCase(type)
+            || OClass.INDEX_TYPE.NOTUNIQUE.name().equalsIgnoreCase(type)
+            || OClass.INDEX_TYPE.UNIQUE_HASH_INDEX.name().equalsIgnoreCase(type)
+            || OClass.INDEX_TYPE.NOTUNIQUE_HASH_INDEX.name().equalsIgnoreCase(type))) {
+      return false;
+    }
+    if (definition instanceof OCompositeIndexDefinition) {
+      if (((OCompositeIndexDefinition) definition).getMultiValueDefinition() != null) {
+        return false;
+      }
+      for (OCollate collate : ((OCompositeCollate) definition.getCollate()).getCollates()) {
+        if (!(collate instanceof ODefaultCollate)) {
+          return false;
+        }
+      }
+    } else if (!(definition.getCollate() instanceof ODefaultCollate)) {
+      return false;
+    }
+
+    List<String> indexFields = definition.getFields();
+    Set<String> aliases = new HashSet<>();
+    for (OProjectionItem item : info.projection.getItems()) {
+      if (item.isAll()
+          || item.getNestedProjection() != null
+          || !item.getExpression().isBaseIdentifier()
+          || !indexFields.contains(item.getExpression().getDefaultAlias().getStringValue())) {
+        return false;
+      }
+      aliases.add(item.getProjectionAliasAsString());
+    }
+    if (info.orderBy != null && info.orderBy.getItems() != null) {
+      for (OOrderByItem item : info.orderBy.getItems()) {
+        if (item.getAlias() == null
+            || item.getModifier() != null
+            || item.getCollate() != null
+            || !(indexFields.contains(item.getAlias()) || aliases.contains(item.getAlias()))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   private static OSchema getSchemaFromContext(OCommandContext ctx) {
     return ((OMetadataInternal) ctx.getDatabase().getMetadata()).getImmutableSchemaSnapshot();
   }
@@ -1,25 +1,36 @@
 package com.orientechnologies.orient.core.sql.executor;
 
+import com.orientechnologies.common.collection.OExternalSorter;
 import com.orientechnologies.common.concur.OTimeoutException;
+import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.orient.core.Orient;
 import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.sql.parser.OOrderBy;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
 
 /** Created by luigidellaquila on 11/07/16. */
 public class OrderByStep extends AbstractExecutionStep {
+  private static final int MAX_MERGE_FAN_IN = 64;
+
   private final OOrderBy orderBy;
   private Integer maxResults;
 
   private long cost = 0;
 
-  private List<OResult> cachedResult = null;
-  private int nextElement = 0;
+  private Iterator<OResult> sortedResults = null;
+  private OExternalSorter<OResult> sorter = null;
 
   public OrderByStep(OOrderBy orderBy, OCommandContext ctx, boolean profilingEnabled) {
     this(orderBy, null, ctx, profilingEnabled);
@@ -37,24 +48,27 @@ public class OrderByStep extends AbstractExecutionStep {
 
   @Override
   public OResultSet syncPull(OCommandContext ctx, int nRecords) throws OTimeoutException {
-    if (cachedResult == null) {
-      cachedResult = new ArrayList<>();
+    if (sortedResults == null) {
+      sortedResults = Collections.emptyIterator();
       prev.ifPresent(p -> init(p, ctx));
     }
 
     return new OResultSet() {
       private int currentBatchReturned = 0;
-      private int offset = nextElement;
 
       @Override
       public boolean hasNext() {
         if (currentBatchReturned >= nRecords) {
           return false;
         }
-        if (cachedResult.size() <= nextElement) {
-          return false;
+        long begin = profilingEnabled ? System.nanoTime() : 0;
+        try {
+          return sortedResults.hasNext();
+        } finally {
+          if (profilingEnabled) {
+            cost += (System.nanoTime() - begin);
+          }
         }
-        return true;
       }
 
       @Override
@@ -64,11 +78,10 @@ public class OrderByStep extends AbstractExecutionStep {
           if (currentBatchReturned >= nRecords) {
             throw new IllegalStateException();
           }
-          if (cachedResult.size() <= nextElement) {
+          if (!sortedResults.hasNext()) {
             throw new IllegalStateException();
           }
-          OResult result = cachedResult.get(offset + currentBatchReturned);
-          nextElement++;
+          OResult result = sortedResults.next();
           currentBatchReturned++;
           return result;
         } finally {
@@ -96,9 +109,24 @@ public class OrderByStep extends AbstractExecutionStep {
   }
 
   private void init(OExecutionStepInternal p, OCommandContext ctx) {
+    if (maxResults != null) {
+      initTopK(p, ctx);
+    } else {
+      initFullSort(p, ctx);
+    }
+  }
+
+  /**
+   * ORDER BY with a LIMIT: only the first (SKIP + LIMIT) elements are needed, so they are collected
+   * in a bounded heap that has the greatest of them on top
+   */
+  private void initTopK(OExecutionStepInternal p, OCommandContext ctx) {
     final long maxElementsAllowed =
         OGlobalConfiguration.QUERY_MAX_HEAP_ELEMENTS_ALLOWED_PER_OP.getValueAsLong();
-    boolean sorted = true;
+    final Comparator<SequencedResult> comparator = sequencedComparator(ctx);
+    final PriorityQueue<SequencedResult> heap =
+        new PriorityQueue<>(Math.min(maxResults, 1000) + 1, comparator.reversed());
+    long sequence = 0;
     do {
       OResultSet lastBatch = p.syncPull(ctx, 100);
       if (!lastBatch.hasNext()) {
@@ -111,22 +139,13 @@ public class OrderByStep extends AbstractExecutionStep {
         OResult item = lastBatch.next();
         long begin = profilingEnabled ? System.nanoTime() : 0;
         try {
-          cachedResult.add(item);
-          if (maxElementsAllowed >= 0 && maxElementsAllowed < cachedResult.size()) {
-            this.cachedResult.clear();
-            throw new OCommandExecutionException(
-                "Limit of allowed elements for in-heap ORDER BY in a single query exceeded ("
-                    + maxElementsAllowed
-                    + ") . You can set "
-                    + OGlobalConfiguration.QUERY_MAX_HEAP_ELEMENTS_ALLOWED_PER_OP.getKey()
-                    + " to increase this limit");
-          }
-          sorted = false;
-          // compact, only at twice as the buffer, to avoid to do it at each add
-          if (this.maxResults != null && maxResults * 2 < cachedResult.size()) {
-            cachedResult.sort((a, b) -> orderBy.compare(a, b, ctx));
-            cachedResult = new ArrayList<>(cachedResult.subList(0, maxResults));
-            sorted = true;
+          SequencedResult candidate = new SequencedResult(item, sequence++);
+          if (heap.size() < maxResults) {
+            heap.add(candidate);
+            checkHeapLimit(heap.size(), maxElementsAllowed);
+          } else if (maxResults > 0 && comparator.compare(candidate, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(candidate);
           }
         } finally {
           if (profilingEnabled) {
@@ -137,25 +156,16 @@ public class OrderByStep extends AbstractExecutionStep {
       if (timedOut) {
         break;
       }
-      long begin = profilingEnabled ? System.nanoTime() : 0;
-      try {
-        // compact at each batch, if needed
-        if (!sorted && this.maxResults != null && maxResults < cachedResult.size()) {
-          cachedResult.sort((a, b) -> orderBy.compare(a, b, ctx));
-          cachedResult = new ArrayList<>(cachedResult.subList(0, maxResults));
-          sorted = true;
-        }
-      } finally {
-        if (profilingEnabled) {
-          cost += (System.nanoTime() - begin);
-        }
-      }
     } while (true);
     long begin = profilingEnabled ? System.nanoTime() : 0;
     try {
-      if (!sorted) {
-        cachedResult.sort((a, b) -> orderBy.compare(a, b, ctx));
+      List<SequencedResult> sorted = new ArrayList<>(heap);
+      sorted.sort(comparator);
+      List<OResult> result = new ArrayList<>(sorted.size());
+      for (SequencedResult item : sorted) {
+        result.add(item.result);
       }
+      sortedResults = result.iterator();
     } finally {
       if (profilingEnabled) {
         cost += (System.nanoTime() - begin);
@@ -163,6 +173,102 @@ public class OrderByStep extends AbstractExecutionStep {
     }
   }
 
+  /**
+   * ORDER BY without a LIMIT: elements are sorted in heap. If they exceed {@link
+   * OGlobalConfiguration#QUERY_ORDER_BY_SPILL_THRESHOLD}, they are sorted in chunks that are
+   * written to temporary files and merged when the result is returned. Elements that cannot be
+   * written to a file (eg. records with changes not saved yet) always stay in heap.
+   */
+  private void initFullSort(OExecutionStepInternal p, OCommandContext ctx) {
+    final long maxElementsAllowed =
+        OGlobalConfiguration.QUERY_MAX_HEAP_ELEMENTS_ALLOWED_PER_OP.getValueAsLong();
+    final int spillThreshold =
+        OGlobalConfiguration.QUERY_ORDER_BY_SPILL_THRESHOLD.getValueAsInteger();
+    sorter =
+        new OExternalSorter<>(
+            (a, b) -> orderBy.compare(a, b, ctx),
+            OResultSpillFile.CODEC,
+            spillThreshold,
+            MAX_MERGE_FAN_IN,
+            new File(Orient.getTempPath()),
+            "query-");
+    try {
+      do {
+        OResultSet lastBatch = p.syncPull(ctx, 100);
+        if (!lastBatch.hasNext()) {
+          break;
+        }
+        while (lastBatch.hasNext()) {
+          if (this.timedOut) {
+            break;
+          }
+          OResult item = lastBatch.next();
+          long begin = profilingEnabled ? System.nanoTime() : 0;
+          try {
+            sorter.add(item);
+            checkHeapLimit(sorter.heapSize(), maxElementsAllowed);
+          } finally {
+            if (profilingEnabled) {
+              cost += (System.nanoTime() - begin);
+            }
+          }
+        }
+        if (timedOut) {
+          break;
+        }
+      } while (true);
+      long begin = profilingEnabled ? System.nanoTime() : 0;
+      try {
+        sortedResults = sorter.sortedIterator();
+      } finally {
+        if (profilingEnabled) {
+          cost += (System.nanoTime() - begin);
+        }
+      }
+    } catch (IOException e) {
+      sorter.close();
+      throw OException.wrapException(
+          new OCommandExecutionException("Cannot write query results to temporary files"), e);
+    }
+  }
+
+  private void checkHeapLimit(long size, long maxElementsAllowed) {
+    if (maxElementsAllowed >= 0 && maxElementsAllowed < size) {
+      throw new OCommandExecutionException(
+          "Limit of allowed elements for in-heap ORDER BY in a single query exceeded ("
+              + maxElementsAllowed
+              + ") . You can set "
+              + OGlobalConfiguration.QUERY_MAX_HEAP_ELEMENTS_ALLOWED_PER_OP.getKey()
+              + " to increase this limit");
+    }
+  }
+
+  @Override
+  public void close() {
+    if (sorter != null) {
+      sorter.close();
+    }
+    super.close();
+  }
+
+  private Comparator<SequencedResult> sequencedComparator(OCommandContext ctx) {
+    return (a, b) -> {
+      int result = orderBy.compare(a.result, b.result, ctx);
+      // equal elements keep the order they are received
+      return result != 0 ? result : Long.compare(a.sequence, b.sequence);
+    };
+  }
+
+  private static class SequencedResult {
+    private final OResult result;
+    private final long sequence;
+
+    private SequencedResult(OResult result, long sequence) {
+      this.result = result;
+      this.sequence = sequence;
+    }
+  }
+
   @Override
   public String prettyPrint(int depth, int indent) {
     String result = OExecutionStepInternal.getIndent(depth, indent) + "+ " + orderBy;
@@ -1,30 +1,101 @@
 package com.orientechnologies.orient.core.sql.executor;
 
 import com.orientechnologies.common.concur.OTimeoutException;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.orient.core.Orient;
+import com.orientechnologies.orient.core.command.OBasicCommandContext;
 import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OContextConfiguration;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.exception.OCommandInterruptedException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
-/** @author Luigi Dell'Aquila (l.dellaquila-(at)-orientdb.com) */
+/**
+ * Executes a list of sub-plans and returns the union of their results.
+ *
+ * <p>If {@link OGlobalConfiguration#QUERY_PARALLEL_AUTO} is enabled and the sub-plans can be
+ * copied, each sub-plan is executed on its own database instance by a bounded set of worker
+ * threads (see {@link OGlobalConfiguration#QUERY_PARALLEL_MAX_THREADS}). Every branch writes its
+ * results in a bounded queue (see {@link OGlobalConfiguration#QUERY_PARALLEL_RESULT_QUEUE_SIZE}),
+ * so a slow consumer stops the workers instead of accumulating records in memory. Results are
+ * returned in arrival order, unless the step is created with <code>preserveOrder</code>, in which
+ * case they are returned in the same order as a sequential execution of the sub-plans. Otherwise
+ * the sub-plans are executed one after the other on the current thread.
+ *
+ * <p>Workers do not share the command context of the caller, which is not thread safe. Each branch
+ * gets its own context with a copy of the variables and input parameters taken when the workers
+ * are started. If results are not consumed for longer than {@link
+ * OGlobalConfiguration#QUERY_PARALLEL_CONSUMER_TIMEOUT} while queues are full, for example because
+ * the result set was abandoned without being closed, workers stop and release their database
+ * instances, and the consumer gets an exception if it comes back.
+ *
+ * @author Luigi Dell'Aquila (l.dellaquila-(at)-orientdb.com)
+ */
 public class ParallelExecStep extends AbstractExecutionStep {
+  private static final OResult END_OF_BRANCH = new OResultInternal();
+  private static final int BRANCH_FETCH_SIZE = 100;
+  private static final long QUEUE_POLL_TIMEOUT_MS = 100;
+
   private final List<OInternalExecutionPlan> subExecutionPlans;
+  private final boolean preserveOrder;
 
   private int current = 0;
   private OResultSet currentResultSet = null;
 
+  private Boolean parallel;
+  private BlockingQueue<OResult>[] branchQueues;
+  private RuntimeException[] branchErrors;
+  private Semaphore availableResults;
+  private int runningBranches;
+  private volatile boolean closed = false;
+
+  private Map<String, Object> branchVariables;
+  private Map<Object, Object> branchInputParameters;
+  private long consumerTimeoutNanos;
+  private volatile long lastConsumerAccess;
+  private volatile boolean abandoned = false;
+  private final AtomicInteger runningWorkers = new AtomicInteger();
+
   public ParallelExecStep(
       List<OInternalExecutionPlan> subExecuitonPlans,
       OCommandContext ctx,
       boolean profilingEnabled) {
+    this(subExecuitonPlans, ctx, false, profilingEnabled);
+  }
+
+  public ParallelExecStep(
+      List<OInternalExecutionPlan> subExecuitonPlans,
+      OCommandContext ctx,
+      boolean preserveOrder,
+      boolean profilingEnabled) {
     super(ctx, profilingEnabled);
     this.subExecutionPlans = subExecuitonPlans;
+    this.preserveOrder = preserveOrder;
   }
 
   @Override
   public OResultSet syncPull(OCommandContext ctx, int nRecords) throws OTimeoutException {
     getPrev().ifPresent(x -> x.syncPull(ctx, nRecords));
+    if (parallel == null) {
+      parallel = canRunInParallel(ctx);
+      if (parallel) {
+        startWorkers(ctx);
+      }
+    }
     return new OResultSet() {
       private int localCount = 0;
 
@@ -73,6 +144,10 @@ public class ParallelExecStep extends AbstractExecutionStep {
   }
 
   void fetchNext(OCommandContext ctx, int nRecords) {
+    if (Boolean.TRUE.equals(parallel)) {
+      fetchNextParallel(ctx, nRecords);
+      return;
+    }
     do {
       if (current >= subExecutionPlans.size()) {
         currentResultSet = null;
@@ -85,6 +160,261 @@ public class ParallelExecStep extends AbstractExecutionStep {
     } while (!currentResultSet.hasNext());
   }
 
+  private boolean canRunInParallel(OCommandContext ctx) {
+    if (profilingEnabled || subExecutionPlans.size() < 2) {
+      return false;
+    }
+    ODatabase db = ctx.getDatabase();
+    if (!(db instanceof ODatabaseDocumentInternal)) {
+      return false;
+    }
+    ODatabaseDocumentInternal database = (ODatabaseDocumentInternal) db;
+    if (database.isRemote()
+        || database.getTransaction().isActive()
+        || !database
+            .getConfiguration()
+            .getValueAsBoolean(OGlobalConfiguration.QUERY_PARALLEL_AUTO)) {
+      return false;
+    }
+    for (OInternalExecutionPlan plan : subExecutionPlans) {
+      // only plans that can be cached can also be copied for the worker threads
+      if (!plan.canBeCached()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void startWorkers(OCommandContext ctx) {
+    ODatabaseDocumentInternal db = (ODatabaseDocumentInternal) ctx.getDatabase();
+    OContextConfiguration conf = db.getConfiguration();
+    int nBranches = subExecutionPlans.size();
+    int queueSize =
+        Math.max(
+            BRANCH_FETCH_SIZE,
+            conf.getValueAsInteger(OGlobalConfiguration.QUERY_PARALLEL_RESULT_QUEUE_SIZE)
+                / nBranches);
+    int nWorkers =
+        Math.max(
+            1,
+            Math.min(
+                nBranches,
+                conf.getValueAsInteger(OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS)));
+
+    branchQueues = new BlockingQueue[nBranches];
+    for (int i = 0; i < nBranches; i++) {
+      branchQueues[i] = new ArrayBlockingQueue<>(queueSize);
+    }
+    branchErrors = new RuntimeException[nBranches];
+    availableResults = new Semaphore(0);
+    runningBranches = nBranches;
+
+    // branches read the snapshot only, the context of the caller keeps changing meanwhile
+    branchVariables = snapshotVariables(ctx);
+    Map<Object, Object> inputParameters = ctx.getInputParameters();
+    branchInputParameters = inputParameters == null ? null : new HashMap<>(inputParameters);
+    consumerTimeoutNanos =
+        TimeUnit.MILLISECONDS.toNanos(
+            conf.getValueAsLong(OGlobalConfiguration.QUERY_PARALLEL_CONSUMER_TIMEOUT));
+    lastConsumerAccess = System.nanoTime();
+
+    OLogManager.instance()
+        .debug(
+            this,
+            "Executing %d sub-plans in parallel with %d threads (preserveOrder=%s)",
+            nBranches,
+            nWorkers,
+            preserveOrder);
+
+    AtomicInteger nextBranch = new AtomicInteger();
+    for (int i = 0; i < nWorkers; i++) {
+      // the copy has to be created on the current thread, the database instance is not thread safe
+      ODatabaseDocumentInternal workerDb = db.copy();
+      runningWorkers.incrementAndGet();
+      Orient.instance().submit(() -> runWorker(workerDb, nextBranch));
+    }
+  }
+
+  /** Variables of the context and of its parents, the nearest context wins. */
+  private static Map<String, Object> snapshotVariables(OCommandContext ctx) {
+    List<OCommandContext> hierarchy = new ArrayList<>();
+    for (OCommandContext context = ctx; context != null; context = context.getParent()) {
+      hierarchy.add(context);
+    }
+    Map<String, Object> variables = new HashMap<>();
+    for (int i = hierarchy.size() - 1; i >= 0; i--) {
+      variables.putAll(hierarchy.get(i).getVariables());
+    }
+    return variables;
+  }
+
+  private void runWorker(ODatabaseDocumentInternal workerDb, AtomicInteger nextBranch) {
+    workerDb.activateOnCurrentThread();
+    try {
+      int branch;
+      while (!closed && (branch = nextBranch.getAndIncrement()) < subExecutionPlans.size()) {
+        executeBranch(branch, workerDb);
+      }
+    } finally {
+      workerDb.close();
+      ODatabaseRecordThreadLocal.instance().remove();
+      runningWorkers.decrementAndGet();
+    }
+  }
+
+  /** @return amount of workers which did not release their database instances yet */
+  int getRunningWorkers() {
+    return runningWorkers.get();
+  }
+
+  private void executeBranch(int branch, ODatabaseDocumentInternal workerDb) {
+    try {
+      OBasicCommandContext branchCtx = new OBasicCommandContext();
+      for (Map.Entry<String, Object> variable : branchVariables.entrySet()) {
+        branchCtx.setVariable(variable.getKey(), variable.getValue());
+      }
+      if (branchInputParameters != null) {
+        branchCtx.setInputParameters(new HashMap<>(branchInputParameters));
+      }
+      branchCtx.setDatabase(workerDb);
+
+      OInternalExecutionPlan plan = subExecutionPlans.get(branch).copy(branchCtx);
+      try {
+        while (!closed) {
+          OResultSet partial = plan.fetchNext(BRANCH_FETCH_SIZE);
+          if (!partial.hasNext()) {
+            break;
+          }
+          while (partial.hasNext()) {
+            if (!publish(branch, partial.next())) {
+              return;
+            }
+          }
+        }
+      } finally {
+        plan.close();
+      }
+    } catch (RuntimeException e) {
+      branchErrors[branch] = e;
+    } finally {
+      publish(branch, END_OF_BRANCH);
+    }
+  }
+
+  /**
+   * Adds a result to the queue of a branch, waiting for free space if needed. The wait is bounded
+   * by the time since the consumer fetched results for the last time.
+   *
+   * @return false if the step was closed or abandoned before the result could be queued
+   */
+  private boolean publish(int branch, OResult result) {
+    try {
+      while (!closed) {
+        if (branchQueues[branch].offer(result, QUEUE_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          availableResults.release();
+          return true;
+        }
+        if (System.nanoTime() - lastConsumerAccess > consumerTimeoutNanos) {
+          branchErrors[branch] =
+              new OCommandExecutionException(
+                  "Parallel sub-plans were stopped because their results were not consumed for "
+                      + TimeUnit.NANOSECONDS.toMillis(consumerTimeoutNanos)
+                      + "ms");
+          abandoned = true;
+          closed = true;
+          return false;
+        }
+      }
+    } catch (InterruptedException ignore) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  private void fetchNextParallel(OCommandContext ctx, int nRecords) {
+    lastConsumerAccess = System.nanoTime();
+    OInternalResultSet batch = new OInternalResultSet();
+    boolean block = true;
+    while (runningBranches > 0 && batch.size() < nRecords) {
+      OResult item = takeResult(block);
+      if (item == null) {
+        break;
+      }
+      block = false;
+      if (item == END_OF_BRANCH) {
+        runningBranches--;
+        current++;
+        continue;
+      }
+      batch.add(item);
+    }
+    for (RuntimeException error : branchErrors) {
+      if (error != null) {
+        close();
+        throw error;
+      }
+    }
+    currentResultSet = batch.size() == 0 ? null : batch;
+  }
+
+  private OResult takeResult(boolean block) {
+    try {
+      while (true) {
+        if (preserveOrder) {
+          BlockingQueue<OResult> queue = branchQueues[current];
+          OResult item =
+              block ? queue.poll(QUEUE_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS) : queue.poll();
+          if (item != null) {
+            availableResults.acquire();
+            return item;
+          }
+        } else if (block
+            ? availableResults.tryAcquire(QUEUE_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            : availableResults.tryAcquire()) {
+          // every permit corresponds to exactly one queued item, so one of the queues is not
+          // empty
+          while (true) {
+            for (BlockingQueue<OResult> queue : branchQueues) {
+              OResult item = queue.poll();
+              if (item != null) {
+                return item;
+              }
+            }
+          }
+        }
+        if (!block) {
+          return null;
+        }
+        if (abandoned) {
+          // results of the stopped branches will never be queued
+          runningBranches = 0;
+          return null;
+        }
+        if (!ctx.checkTimeout()) {
+          sendTimeout();
+          close();
+          runningBranches = 0;
+          return null;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new OCommandInterruptedException("Interrupted while waiting for parallel sub-plans");
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    if (branchQueues != null) {
+      for (BlockingQueue<OResult> queue : branchQueues) {
+        queue.clear();
+      }
+    }
+    super.close();
+  }
+
   @Override
   public String prettyPrint(int depth, int indent) {
     String result = "";
@@ -219,6 +549,7 @@ public class ParallelExecStep extends AbstractExecutionStep {
     return new ParallelExecStep(
         subExecutionPlans.stream().map(x -> x.copy(ctx)).collect(Collectors.toList()),
         ctx,
+        preserveOrder,
         profilingEnabled);
   }
 }
@@ -56,6 +56,9 @@ public class QueryPlanningInfo {
   protected boolean orderApplied = false;
   protected boolean projectionsCalculated = false;
 
+  /** set to true when results are built from index keys, so records are not loaded */
+  protected boolean indexOnlyPlan = false;
+
   protected OAndBlock ridRangeConditions;
   protected OStorage.LOCKING_STRATEGY lockRecord;
 
@@ -86,6 +89,7 @@ public class QueryPlanningInfo {
     result.limit = this.limit;
     result.orderApplied = this.orderApplied;
     result.projectionsCalculated = this.projectionsCalculated;
+    result.indexOnlyPlan = this.indexOnlyPlan;
     result.ridRangeConditions = this.ridRangeConditions;
 
     result.lockRecord = this.lockRecord;
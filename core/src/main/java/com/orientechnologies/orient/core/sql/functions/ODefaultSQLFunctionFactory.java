@@ -63,9 +63,12 @@ import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionSysdate;
 import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionThrowCME;
 import com.orientechnologies.orient.core.sql.functions.misc.OSQLFunctionUUID;
 import com.orientechnologies.orient.core.sql.functions.sequence.OSQLFunctionSequence;
+import com.orientechnologies.orient.core.sql.functions.stat.OSQLFunctionApproxCountDistinct;
 import com.orientechnologies.orient.core.sql.functions.stat.OSQLFunctionMedian;
+import com.orientechnologies.orient.core.sql.functions.stat.OSQLFunctionMedianApprox;
 import com.orientechnologies.orient.core.sql.functions.stat.OSQLFunctionMode;
 import com.orientechnologies.orient.core.sql.functions.stat.OSQLFunctionPercentile;
+import com.orientechnologies.orient.core.sql.functions.stat.OSQLFunctionPercentileApprox;
 import com.orientechnologies.orient.core.sql.functions.stat.OSQLFunctionStandardDeviation;
 import com.orientechnologies.orient.core.sql.functions.stat.OSQLFunctionVariance;
 import com.orientechnologies.orient.core.sql.functions.text.OSQLFunctionConcat;
@@ -112,6 +115,9 @@ public final class ODefaultSQLFunctionFactory extends OSQLFunctionFactoryTemplat
     register(OSQLFunctionMode.NAME, OSQLFunctionMode.class);
     register(OSQLFunctionPercentile.NAME, OSQLFunctionPercentile.class);
     register(OSQLFunctionMedian.NAME, OSQLFunctionMedian.class);
+    register(OSQLFunctionPercentileApprox.NAME, OSQLFunctionPercentileApprox.class);
+    register(OSQLFunctionMedianApprox.NAME, OSQLFunctionMedianApprox.class);
+    register(OSQLFunctionApproxCountDistinct.NAME, OSQLFunctionApproxCountDistinct.class);
     register(OSQLFunctionVariance.NAME, OSQLFunctionVariance.class);
     register(OSQLFunctionStandardDeviation.NAME, OSQLFunctionStandardDeviation.class);
     register(OSQLFunctionUUID.NAME, OSQLFunctionUUID.class);
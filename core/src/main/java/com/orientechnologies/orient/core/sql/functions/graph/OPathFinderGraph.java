@@ -0,0 +1,248 @@
+/*
+ *
+ *  *  Copyright 2010-2016 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.orient.core.sql.functions.graph;
+
+import com.orientechnologies.orient.core.db.ODatabase;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.db.record.ORecordLazyMultiValue;
+import com.orientechnologies.orient.core.db.record.ridbag.ORidBag;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OImmutableSchema;
+import com.orientechnologies.orient.core.record.ODirection;
+import com.orientechnologies.orient.core.record.OElement;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.OVertex;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Adjacency of the vertices for the path finding functions. The neighbors of a vertex are read
+ * from the edge fields of the vertex record ("out_*" and "in_*") and from the "in", "out" and
+ * weight fields of the edge records only: the records are not wrapped in {@link OVertex} and
+ * {@link com.orientechnologies.orient.core.record.OEdge} instances and the other fields are not
+ * deserialized. Lightweight edges (links from vertex to vertex) have weight 0.
+ *
+ * <p>Vertices and edges are identified by the numbers assigned by {@link OPathFinderNodes}. The
+ * neighbors found by {@link #expand(int, ODirection)} are kept in reusable arrays.
+ */
+final class OPathFinderGraph {
+  private static final String CONNECTION_OUT_PREFIX = "out_";
+  private static final String CONNECTION_IN_PREFIX = "in_";
+
+  private final ODatabaseDocumentInternal database;
+  private final OImmutableSchema schema;
+  private final OPathFinderNodes nodes;
+  private final String[] outFieldNames;
+  private final String[] inFieldNames;
+  private final String weightFieldName;
+  private final boolean trackEdges;
+
+  private int[] neighbors = new int[16];
+  private int[] edges = new int[16];
+  private double[] weights = new double[16];
+  private int neighborCount = 0;
+
+  /**
+   * @param database the current database, or null to use the database bound to the current thread
+   * @param nodes numbering of the vertices (and of the edges, if tracked)
+   * @param edgeTypeNames the edge classes to follow, all the edges if null or empty
+   * @param weightFieldName the edge field with the weight, null if the weight is not needed
+   * @param trackEdges true to assign a number also to the traversed edges
+   */
+  OPathFinderGraph(
+      final ODatabase database,
+      final OPathFinderNodes nodes,
+      final String[] edgeTypeNames,
+      final String weightFieldName,
+      final boolean trackEdges) {
+    this.database =
+        database instanceof ODatabaseDocumentInternal
+            ? (ODatabaseDocumentInternal) database
+            : ODatabaseRecordThreadLocal.instance().get();
+    this.schema = this.database.getMetadata().getImmutableSchemaSnapshot();
+    this.nodes = nodes;
+    this.weightFieldName = weightFieldName;
+    this.trackEdges = trackEdges;
+
+    final Set<String> classNames = new LinkedHashSet<>();
+    if (edgeTypeNames != null) {
+      for (String edgeTypeName : edgeTypeNames) {
+        if (edgeTypeName == null || edgeTypeName.isEmpty()) {
+          continue;
+        }
+        final OClass edgeClass = schema.getClass(edgeTypeName);
+        if (edgeClass == null) {
+          classNames.add(edgeTypeName);
+        } else {
+          classNames.add(edgeClass.getName());
+          for (OClass subclass : edgeClass.getAllSubclasses()) {
+            classNames.add(subclass.getName());
+          }
+        }
+      }
+    }
+    if (classNames.isEmpty()) {
+      // ALL THE EDGE CLASSES
+      for (OClass edgeClass : schema.getClasses()) {
+        if (edgeClass.isEdgeType()) {
+          classNames.add(edgeClass.getName());
+        }
+      }
+    }
+    outFieldNames = toFieldNames(CONNECTION_OUT_PREFIX, classNames);
+    inFieldNames = toFieldNames(CONNECTION_IN_PREFIX, classNames);
+  }
+
+  private static String[] toFieldNames(final String prefix, final Set<String> classNames) {
+    final Set<String> fieldNames = new LinkedHashSet<>();
+    for (String className : classNames) {
+      // EDGES OF THE BASE CLASS ARE STORED IN THE FIELD WITH THE PREFIX ONLY
+      fieldNames.add(className.equalsIgnoreCase("E") ? prefix : prefix + className);
+    }
+    return fieldNames.toArray(new String[0]);
+  }
+
+  /**
+   * Reads the neighbors of a vertex, available with {@link #getNeighbor(int)}, {@link
+   * #getEdge(int)} and {@link #getWeight(int)} until the next call.
+   *
+   * @return the number of neighbors, one for each edge
+   */
+  int expand(final int vertex, final ODirection direction) {
+    neighborCount = 0;
+    final ORecord record = database.load(nodes.getIdentity(vertex));
+    if (!(record instanceof ODocument)) {
+      return 0;
+    }
+    final ODocument document = (ODocument) record;
+    if (direction != ODirection.IN) {
+      readConnections(document, outFieldNames, ODirection.OUT);
+    }
+    if (direction != ODirection.OUT) {
+      readConnections(document, inFieldNames, ODirection.IN);
+    }
+    return neighborCount;
+  }
+
+  int getNeighbor(final int i) {
+    return neighbors[i];
+  }
+
+  /** @return the number of the edge, {@link OPathFinderTree#NONE} if edges are not tracked */
+  int getEdge(final int i) {
+    return edges[i];
+  }
+
+  double getWeight(final int i) {
+    return weights[i];
+  }
+
+  OVertex loadVertex(final int vertex) {
+    final ORecord record = database.load(nodes.getIdentity(vertex));
+    if (record instanceof OElement) {
+      return ((OElement) record).asVertex().orElse(null);
+    }
+    return null;
+  }
+
+  private void readConnections(
+      final ODocument vertex, final String[] fieldNames, final ODirection direction) {
+    for (String fieldName : fieldNames) {
+      final Object fieldValue = vertex.rawField(fieldName);
+      final Iterator<?> connections;
+      if (fieldValue instanceof OIdentifiable) {
+        connections = Collections.singleton(fieldValue).iterator();
+      } else if (fieldValue instanceof ORidBag) {
+        connections = ((ORidBag) fieldValue).rawIterator();
+      } else if (fieldValue instanceof ORecordLazyMultiValue) {
+        connections = ((ORecordLazyMultiValue) fieldValue).rawIterator();
+      } else if (fieldValue instanceof Collection<?>) {
+        connections = ((Collection<?>) fieldValue).iterator();
+      } else {
+        continue;
+      }
+
+      while (connections.hasNext()) {
+        final Object connection = connections.next();
+        if (connection instanceof OIdentifiable) {
+          readConnection((OIdentifiable) connection, direction);
+        }
+      }
+    }
+  }
+
+  private void readConnection(final OIdentifiable connection, final ODirection direction) {
+    final ORID connectionId = connection.getIdentity();
+    final OClass connectionClass = schema.getClassByClusterId(connectionId.getClusterId());
+    if (connectionClass != null && connectionClass.isVertexType()) {
+      // LIGHTWEIGHT EDGE: DIRECT LINK TO THE VERTEX
+      addNeighbor(nodes.add(connectionId), OPathFinderTree.NONE, 0);
+      return;
+    }
+
+    final ORecord record =
+        connection instanceof ODocument ? (ODocument) connection : database.load(connectionId);
+    if (!(record instanceof ODocument)) {
+      return;
+    }
+    final ODocument edge = (ODocument) record;
+    final Object vertex = edge.rawField(direction == ODirection.OUT ? "in" : "out");
+    if (!(vertex instanceof OIdentifiable)) {
+      return;
+    }
+    double weight = 0;
+    if (weightFieldName != null) {
+      final Object fieldValue = edge.rawField(weightFieldName);
+      if (fieldValue instanceof Number) {
+        weight = ((Number) fieldValue).doubleValue();
+      }
+    }
+    addNeighbor(
+        nodes.add(((OIdentifiable) vertex).getIdentity()),
+        trackEdges ? nodes.add(connectionId) : OPathFinderTree.NONE,
+        weight);
+  }
+
+  private void addNeighbor(final int neighbor, final int edge, final double weight) {
+    if (neighborCount == neighbors.length) {
+      final int newLength = neighborCount * 2;
+      final int[] newNeighbors = new int[newLength];
+      System.arraycopy(neighbors, 0, newNeighbors, 0, neighborCount);
+      neighbors = newNeighbors;
+      final int[] newEdges = new int[newLength];
+      System.arraycopy(edges, 0, newEdges, 0, neighborCount);
+      edges = newEdges;
+      final double[] newWeights = new double[newLength];
+      System.arraycopy(weights, 0, newWeights, 0, neighborCount);
+      weights = newWeights;
+    }
+    neighbors[neighborCount] = neighbor;
+    edges[neighborCount] = edge;
+    weights[neighborCount] = weight;
+    neighborCount++;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ *
+ *  *  Copyright 2010-2016 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.orient.core.sql.functions.graph;
+
+/**
+ * Binary min-heap of node numbers (see {@link OPathFinderNodes}) ordered by a priority, that does
+ * not allocate an object per entry. Nodes with the same priority are returned in insertion order.
+ * The priority of a node is never changed: a node whose distance improved is pushed again, and the
+ * search skips the entries of the nodes that are already settled.
+ */
+final class OPathFinderHeap {
+  private double[] priorities = new double[32];
+  private long[] sequences = new long[32];
+  private int[] nodes = new int[32];
+  private int size = 0;
+  private long nextSequence = 0;
+
+  void push(final int node, final double priority) {
+    if (size == nodes.length) {
+      final double[] newPriorities = new double[size * 2];
+      System.arraycopy(priorities, 0, newPriorities, 0, size);
+      priorities = newPriorities;
+      final long[] newSequences = new long[size * 2];
+      System.arraycopy(sequences, 0, newSequences, 0, size);
+      sequences = newSequences;
+      final int[] newNodes = new int[size * 2];
+      System.arraycopy(nodes, 0, newNodes, 0, size);
+      nodes = newNodes;
+    }
+    int i = size++;
+    final long sequence = nextSequence++;
+    while (i > 0) {
+      final int parent = (i - 1) >>> 1;
+      if (!lessThan(priority, sequence, priorities[parent], sequences[parent])) {
+        break;
+      }
+      set(i, priorities[parent], sequences[parent], nodes[parent]);
+      i = parent;
+    }
+    set(i, priority, sequence, node);
+  }
+
+  /** @return the node with the lowest priority, without removing it */
+  int peek() {
+    return nodes[0];
+  }
+
+  double peekPriority() {
+    return priorities[0];
+  }
+
+  /** Removes and returns the node with the lowest priority */
+  int pop() {
+    final int result = nodes[0];
+    size--;
+    if (size > 0) {
+      final double priority = priorities[size];
+      final long sequence = sequences[size];
+      final int node = nodes[size];
+      int i = 0;
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size
+            && lessThan(
+                priorities[child + 1], sequences[child + 1], priorities[child], sequences[child])) {
+          child++;
+        }
+        if (!lessThan(priorities[child], sequences[child], priority, sequence)) {
+          break;
+        }
+        set(i, priorities[child], sequences[child], nodes[child]);
+        i = child;
+      }
+      set(i, priority, sequence, node);
+    }
+    return result;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void set(final int i, final double priority, final long sequence, final int node) {
+    priorities[i] = priority;
+    sequences[i] = sequence;
+    nodes[i] = node;
+  }
+
+  private static boolean lessThan(
+      final double priority1, final long sequence1, final double priority2, final long sequence2) {
+    return priority1 < priority2 || (priority1 == priority2 && sequence1 < sequence2);
+  }
+}
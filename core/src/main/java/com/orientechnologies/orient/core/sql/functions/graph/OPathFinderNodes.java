@@ -0,0 +1,114 @@
+/*
+ *
+ *  *  Copyright 2010-2016 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.orient.core.sql.functions.graph;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+
+/**
+ * Records reached by a path search. Each record gets a sequential number, so that the state of the
+ * search can be kept in arrays of primitives instead of maps of {@link ORID}. Cluster ids and
+ * positions are stored in an open addressing table, without allocating an object per record.
+ */
+final class OPathFinderNodes {
+  private static final int NOT_FOUND = -1;
+
+  // node number + 1 for each slot, 0 for empty slots
+  private int[] table = new int[64];
+  private int[] clusterIds = new int[32];
+  private long[] clusterPositions = new long[32];
+  private int size = 0;
+
+  /** @return the number of the record, -1 if the record was never reached */
+  int indexOf(final ORID rid) {
+    final int clusterId = rid.getClusterId();
+    final long clusterPosition = rid.getClusterPosition();
+    final int mask = table.length - 1;
+    int slot = hash(clusterId, clusterPosition) & mask;
+    while (table[slot] != 0) {
+      final int node = table[slot] - 1;
+      if (clusterPositions[node] == clusterPosition && clusterIds[node] == clusterId) {
+        return node;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return NOT_FOUND;
+  }
+
+  /** @return the number of the record, a new one if the record was never reached */
+  int add(final ORID rid) {
+    final int clusterId = rid.getClusterId();
+    final long clusterPosition = rid.getClusterPosition();
+    final int mask = table.length - 1;
+    int slot = hash(clusterId, clusterPosition) & mask;
+    while (table[slot] != 0) {
+      final int node = table[slot] - 1;
+      if (clusterPositions[node] == clusterPosition && clusterIds[node] == clusterId) {
+        return node;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (size == clusterIds.length) {
+      final int[] newClusterIds = new int[size * 2];
+      System.arraycopy(clusterIds, 0, newClusterIds, 0, size);
+      clusterIds = newClusterIds;
+      final long[] newClusterPositions = new long[size * 2];
+      System.arraycopy(clusterPositions, 0, newClusterPositions, 0, size);
+      clusterPositions = newClusterPositions;
+    }
+    final int node = size++;
+    clusterIds[node] = clusterId;
+    clusterPositions[node] = clusterPosition;
+    table[slot] = node + 1;
+
+    if (size * 2 > table.length) {
+      rehash();
+    }
+    return node;
+  }
+
+  ORID getIdentity(final int node) {
+    return new ORecordId(clusterIds[node], clusterPositions[node]);
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void rehash() {
+    table = new int[table.length * 2];
+    final int mask = table.length - 1;
+    for (int node = 0; node < size; node++) {
+      int slot = hash(clusterIds[node], clusterPositions[node]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = node + 1;
+    }
+  }
+
+  private static int hash(final int clusterId, final long clusterPosition) {
+    long hash = clusterPosition * 0x9E3779B97F4A7C15L + clusterId;
+    hash ^= hash >>> 32;
+    hash *= 0xC2B2AE3D27D4EB4FL;
+    return (int) (hash ^ (hash >>> 29));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ *
+ *  *  Copyright 2010-2016 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.orient.core.sql.functions.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * State of a path search from one endpoint: the distance of the reached nodes, the node (and
+ * optionally the edge) each node was reached from, the settled nodes and the nodes still to be
+ * visited. Nodes are numbered by {@link OPathFinderNodes}, that can be shared by the two searches
+ * of a bidirectional search.
+ */
+final class OPathFinderTree {
+  static final int NONE = -1;
+
+  private double[] distances = new double[0];
+  private int[] predecessors = new int[0];
+  private int[] edges = new int[0];
+  private final BitSet settled = new BitSet();
+  private final OPathFinderHeap open = new OPathFinderHeap();
+
+  /** @return the distance of the node from the origin of the search, infinite if not reached */
+  double getDistance(final int node) {
+    return node < distances.length ? distances[node] : Double.POSITIVE_INFINITY;
+  }
+
+  boolean isReached(final int node) {
+    return getDistance(node) != Double.POSITIVE_INFINITY;
+  }
+
+  /** @return the node the given node was reached from, {@link #NONE} for the origin */
+  int getPredecessor(final int node) {
+    return node < predecessors.length ? predecessors[node] : NONE;
+  }
+
+  /** @return the edge the given node was reached through, {@link #NONE} if not tracked */
+  int getEdge(final int node) {
+    return node < edges.length ? edges[node] : NONE;
+  }
+
+  void reach(final int node, final double distance, final int predecessor, final int edge) {
+    if (node >= distances.length) {
+      final int oldLength = distances.length;
+      final int newLength = Math.max(node + 1, oldLength * 2);
+      distances = Arrays.copyOf(distances, newLength);
+      Arrays.fill(distances, oldLength, newLength, Double.POSITIVE_INFINITY);
+      predecessors = Arrays.copyOf(predecessors, newLength);
+      Arrays.fill(predecessors, oldLength, newLength, NONE);
+      edges = Arrays.copyOf(edges, newLength);
+      Arrays.fill(edges, oldLength, newLength, NONE);
+    }
+    distances[node] = distance;
+    predecessors[node] = predecessor;
+    edges[node] = edge;
+  }
+
+  boolean isSettled(final int node) {
+    return settled.get(node);
+  }
+
+  void settle(final int node) {
+    settled.set(node);
+  }
+
+  OPathFinderHeap getOpen() {
+    return open;
+  }
+
+  /** Removes from the top of the open nodes the entries of the nodes already settled */
+  void skipSettled() {
+    while (!open.isEmpty() && settled.get(open.peek())) {
+      open.pop();
+    }
+  }
+}
@@ -22,6 +22,7 @@ package com.orientechnologies.orient.core.sql.functions.graph;
 import com.orientechnologies.common.collection.OMultiValue;
 import com.orientechnologies.common.io.OIOUtils;
 import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.command.OCommandExecutorAbstract;
 import com.orientechnologies.orient.core.db.ODatabase;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.record.ODirection;
@@ -32,15 +33,11 @@ import com.orientechnologies.orient.core.record.OVertex;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.OSQLHelper;
 import com.orientechnologies.orient.core.sql.executor.OResult;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Locale;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Set;
 
 /**
  * A*'s algorithm describes how to find the cheapest path from one node to another node in a
@@ -58,20 +55,6 @@ public class OSQLFunctionAstar extends OSQLFunctionHeuristicPathFinderAbstract {
 
   private String paramWeightFieldName = "weight";
   private long currentDepth = 0;
-  protected Set<OVertex> closedSet = new HashSet<OVertex>();
-  protected Map<OVertex, OVertex> cameFrom = new HashMap<OVertex, OVertex>();
-
-  protected Map<OVertex, Double> gScore = new HashMap<OVertex, Double>();
-  protected Map<OVertex, Double> fScore = new HashMap<OVertex, Double>();
-  protected PriorityQueue<OVertex> open =
-      new PriorityQueue<OVertex>(
-          1,
-          new Comparator<OVertex>() {
-
-            public int compare(OVertex nodeA, OVertex nodeB) {
-              return Double.compare(fScore.get(nodeA), fScore.get(nodeB));
-            }
-          });
 
   public OSQLFunctionAstar() {
     super(NAME, 3, 4);
@@ -141,96 +124,165 @@ public class OSQLFunctionAstar extends OSQLFunctionHeuristicPathFinderAbstract {
   }
 
   private LinkedList<OVertex> internalExecute(final OCommandContext iContext, ODatabase graph) {
+    final OPathFinderNodes nodes = new OPathFinderNodes();
+    final OPathFinderGraph pathGraph =
+        new OPathFinderGraph(graph, nodes, paramEdgeTypeNames, paramWeightFieldName, false);
+    final int start = nodes.add(paramSourceVertex.getIdentity());
+    final int goal = nodes.add(paramDestinationVertex.getIdentity());
+
+    if (paramVertexAxisNames.length == 0 && paramMaxDepth == Long.MAX_VALUE) {
+      // WITHOUT HEURISTIC A* IS DIJKSTRA'S ALGORITHM, THAT CAN SEARCH FROM BOTH THE ENDS
+      if (searchBidirectional(pathGraph, start, goal)) {
+        return getPath();
+      }
+      // NEGATIVE WEIGHTS: THE TWO SEARCHES CANNOT BE STOPPED WHEN THEY MEET
+      route.clear();
+      currentDepth = 0;
+    }
+    search(pathGraph, start, goal, iContext);
+    return getPath();
+  }
 
-    OVertex start = paramSourceVertex;
-    OVertex goal = paramDestinationVertex;
-
-    open.add(start);
+  private void search(
+      final OPathFinderGraph graph, final int start, final int goal, OCommandContext iContext) {
+    final OVertex goalVertex = paramDestinationVertex;
+    // the heuristic cost is always 0 without axes: the vertices are not needed
+    final boolean heuristic = paramVertexAxisNames.length > 0;
+    final OPathFinderTree tree = new OPathFinderTree();
+    final OPathFinderHeap open = tree.getOpen();
 
     // The cost of going from start to start is zero.
-    gScore.put(start, 0.0);
+    tree.reach(start, 0.0, OPathFinderTree.NONE, OPathFinderTree.NONE);
     // For the first node, that value is completely heuristic.
-    fScore.put(start, getHeuristicCost(start, null, goal, iContext));
+    open.push(start, getHeuristicCost(paramSourceVertex, null, goalVertex, iContext));
 
-    while (!open.isEmpty()) {
-      OVertex current = open.poll();
+    while (true) {
+      tree.skipSettled();
+      if (open.isEmpty()) {
+        break;
+      }
+      final int current = open.pop();
 
       // we discussed about this feature in
       // https://github.com/orientechnologies/orientdb/pull/6002#issuecomment-212492687
       if (paramEmptyIfMaxDepth == true && currentDepth >= paramMaxDepth) {
         route.clear(); // to ensure our result is empty
-        return getPath();
+        return;
       }
-      // if start and goal vertex is equal so return current path from  cameFrom hash map
-      if (current.getIdentity().equals(goal.getIdentity()) || currentDepth >= paramMaxDepth) {
-
-        while (current != null) {
-          route.add(0, current);
-          current = cameFrom.get(current);
+      // if start and goal vertex is equal so return current path from the predecessors
+      if (current == goal || currentDepth >= paramMaxDepth) {
+        for (int node = current; node != OPathFinderTree.NONE; node = tree.getPredecessor(node)) {
+          route.add(0, graph.loadVertex(node));
         }
-        return getPath();
+        return;
       }
 
-      closedSet.add(current);
-      for (OEdge neighborEdge : getNeighborEdges(current)) {
-
-        OVertex neighbor = getNeighbor(current, neighborEdge, graph);
+      tree.settle(current);
+      context.incrementVariable("getNeighbors");
+      final OVertex currentVertex = heuristic ? graph.loadVertex(current) : null;
+      final int neighbors = graph.expand(current, paramDirection);
+      for (int i = 0; i < neighbors; i++) {
+        final int neighbor = graph.getNeighbor(i);
         // Ignore the neighbor which is already evaluated.
-        if (closedSet.contains(neighbor)) {
+        if (tree.isSettled(neighbor)) {
           continue;
         }
         // The distance from start to a neighbor
-        double tentativeGScore = gScore.get(current) + getDistance(neighborEdge);
-        boolean contains = open.contains(neighbor);
-
-        if (!contains || tentativeGScore < gScore.get(neighbor)) {
-          gScore.put(neighbor, tentativeGScore);
-          fScore.put(
-              neighbor, tentativeGScore + getHeuristicCost(neighbor, current, goal, iContext));
-
-          if (contains) {
-            open.remove(neighbor);
+        final double tentativeGScore = tree.getDistance(current) + graph.getWeight(i);
+        if (!tree.isReached(neighbor) || tentativeGScore < tree.getDistance(neighbor)) {
+          tree.reach(neighbor, tentativeGScore, current, OPathFinderTree.NONE);
+          double hScore = 0.0;
+          if (heuristic) {
+            final OVertex neighborVertex = graph.loadVertex(neighbor);
+            hScore = getHeuristicCost(neighborVertex, currentVertex, goalVertex, iContext);
           }
-          open.offer(neighbor);
-          cameFrom.put(neighbor, current);
+          open.push(neighbor, tentativeGScore + hScore);
         }
       }
 
       // Increment Depth Level
       currentDepth++;
     }
-
-    return getPath();
   }
 
-  private OVertex getNeighbor(OVertex current, OEdge neighborEdge, ODatabase graph) {
-    if (neighborEdge.getFrom().equals(current)) {
-      return toVertex(neighborEdge.getTo());
-    }
-    return toVertex(neighborEdge.getFrom());
-  }
+  /**
+   * Bidirectional Dijkstra: the cheapest path is searched both from the start (following the edges
+   * in the requested direction) and from the goal (following the edges in the opposite direction),
+   * always expanding the smaller frontier. The search stops when no path through the unsettled
+   * nodes can be cheaper than the best path found so far, usually after visiting a fraction of the
+   * nodes visited by a search from the start only.
+   *
+   * @return false if an edge with negative weight was found, true otherwise
+   */
+  private boolean searchBidirectional(
+      final OPathFinderGraph graph, final int start, final int goal) {
+    final OPathFinderTree forward = new OPathFinderTree();
+    final OPathFinderTree backward = new OPathFinderTree();
+    forward.reach(start, 0.0, OPathFinderTree.NONE, OPathFinderTree.NONE);
+    forward.getOpen().push(start, 0.0);
+    backward.reach(goal, 0.0, OPathFinderTree.NONE, OPathFinderTree.NONE);
+    backward.getOpen().push(goal, 0.0);
+
+    double bestDistance = start == goal ? 0.0 : Double.POSITIVE_INFINITY;
+    int meeting = start == goal ? start : OPathFinderTree.NONE;
+    while (true) {
+      forward.skipSettled();
+      backward.skipSettled();
+      if (forward.getOpen().isEmpty() || backward.getOpen().isEmpty()) {
+        break;
+      }
+      if (forward.getOpen().peekPriority() + backward.getOpen().peekPriority() >= bestDistance) {
+        // NO SHORTER PATH CAN BE FOUND
+        break;
+      }
 
-  private OVertex toVertex(OIdentifiable outVertex) {
-    if (outVertex == null) {
-      return null;
-    }
-    if (!(outVertex instanceof OElement)) {
-      outVertex = outVertex.getRecord();
-    }
-    return ((OElement) outVertex).asVertex().orElse(null);
-  }
+      final boolean fromStart = forward.getOpen().size() <= backward.getOpen().size();
+      final OPathFinderTree tree = fromStart ? forward : backward;
+      final OPathFinderTree otherTree = fromStart ? backward : forward;
+      final int current = tree.getOpen().pop();
+      tree.settle(current);
+      context.incrementVariable("getNeighbors");
+
+      final int neighbors =
+          graph.expand(current, fromStart ? paramDirection : paramDirection.opposite());
+      for (int i = 0; i < neighbors; i++) {
+        final double weight = graph.getWeight(i);
+        if (weight < 0) {
+          return false;
+        }
+        final int neighbor = graph.getNeighbor(i);
+        if (tree.isSettled(neighbor)) {
+          continue;
+        }
+        final double distance = tree.getDistance(current) + weight;
+        if (distance < tree.getDistance(neighbor)) {
+          tree.reach(neighbor, distance, current, OPathFinderTree.NONE);
+          tree.getOpen().push(neighbor, distance);
+        }
+        if (otherTree.isReached(neighbor)
+            && tree.getDistance(neighbor) + otherTree.getDistance(neighbor) < bestDistance) {
+          bestDistance = tree.getDistance(neighbor) + otherTree.getDistance(neighbor);
+          meeting = neighbor;
+        }
+      }
+      currentDepth++;
 
-  protected Set<OEdge> getNeighborEdges(final OVertex node) {
-    context.incrementVariable("getNeighbors");
+      if (!OCommandExecutorAbstract.checkInterruption(context)) {
+        break;
+      }
+    }
 
-    final Set<OEdge> neighbors = new HashSet<OEdge>();
-    if (node != null) {
-      for (OEdge v : node.getEdges(paramDirection, paramEdgeTypeNames)) {
-        final OEdge ov = v;
-        if (ov != null) neighbors.add(ov);
+    if (meeting != OPathFinderTree.NONE) {
+      for (int node = meeting; node != OPathFinderTree.NONE; node = forward.getPredecessor(node)) {
+        route.add(0, graph.loadVertex(node));
+      }
+      for (int node = backward.getPredecessor(meeting);
+          node != OPathFinderTree.NONE;
+          node = backward.getPredecessor(node)) {
+        route.add(graph.loadVertex(node));
       }
     }
-    return neighbors;
+    return true;
   }
 
   private void bindAdditionalParams(Object additionalParams, OSQLFunctionAstar ctx) {
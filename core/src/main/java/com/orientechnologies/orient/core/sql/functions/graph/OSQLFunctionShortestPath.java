@@ -1,30 +1,21 @@
 package com.orientechnologies.orient.core.sql.functions.graph;
 
-import com.orientechnologies.common.collection.OMultiCollectionIterator;
-import com.orientechnologies.common.util.ORawPair;
 import com.orientechnologies.orient.core.command.OCommandContext;
 import com.orientechnologies.orient.core.command.OCommandExecutorAbstract;
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
 import com.orientechnologies.orient.core.exception.OCommandExecutionException;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.record.ODirection;
-import com.orientechnologies.orient.core.record.OEdge;
 import com.orientechnologies.orient.core.record.OElement;
 import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.core.record.OVertex;
 import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.record.impl.OEdgeToVertexIterable;
 import com.orientechnologies.orient.core.sql.OSQLHelper;
 import com.orientechnologies.orient.core.sql.functions.math.OSQLFunctionMathAbstract;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Shortest path algorithm to find the shortest path from one node to another node in a directed
@@ -51,17 +42,13 @@ public class OSQLFunctionShortestPath extends OSQLFunctionMathAbstract {
     private String edgeType;
     private String[] edgeTypeParam;
 
-    private ArrayDeque<OVertex> queueLeft = new ArrayDeque<>();
-    private ArrayDeque<OVertex> queueRight = new ArrayDeque<>();
+    private final OPathFinderNodes nodes = new OPathFinderNodes();
+    private OPathFinderGraph graph;
 
-    private final Set<ORID> leftVisited = new HashSet<ORID>();
-    private final Set<ORID> rightVisited = new HashSet<ORID>();
+    // THE DISTANCE OF THE NODES IS THEIR DEPTH, THE OPEN NODES ARE THE QUEUE OF THE NEXT LEVEL
+    private final OPathFinderTree left = new OPathFinderTree();
+    private final OPathFinderTree right = new OPathFinderTree();
 
-    private final Map<ORID, ORID> previouses = new HashMap<ORID, ORID>();
-    private final Map<ORID, ORID> nexts = new HashMap<ORID, ORID>();
-
-    private OVertex current;
-    private OVertex currentRight;
     public Integer maxDepth;
     /** option that decides whether or not to return the edge information */
     public Boolean edge;
@@ -135,18 +122,27 @@ public class OSQLFunctionShortestPath extends OSQLFunctionMathAbstract {
       bindAdditionalParams(iParams[4], ctx);
     }
 
-    ctx.queueLeft.add(ctx.sourceVertex);
-    ctx.leftVisited.add(ctx.sourceVertex.getIdentity());
-
-    ctx.queueRight.add(ctx.destinationVertex);
-    ctx.rightVisited.add(ctx.destinationVertex.getIdentity());
+    ctx.graph =
+        new OPathFinderGraph(
+            iContext.getDatabase(),
+            ctx.nodes,
+            ctx.edgeTypeParam,
+            null,
+            Boolean.TRUE.equals(ctx.edge));
+    final int sourceNode = ctx.nodes.add(ctx.sourceVertex.getIdentity());
+    ctx.left.reach(sourceNode, 0, OPathFinderTree.NONE, OPathFinderTree.NONE);
+    ctx.left.getOpen().push(sourceNode, 0);
+
+    final int destinationNode = ctx.nodes.add(ctx.destinationVertex.getIdentity());
+    ctx.right.reach(destinationNode, 0, OPathFinderTree.NONE, OPathFinderTree.NONE);
+    ctx.right.getOpen().push(destinationNode, 0);
 
     int depth = 1;
     while (true) {
       if (ctx.maxDepth != null && ctx.maxDepth <= depth) {
         break;
       }
-      if (ctx.queueLeft.isEmpty() || ctx.queueRight.isEmpty()) break;
+      if (ctx.left.getOpen().isEmpty() || ctx.right.getOpen().isEmpty()) break;
 
       if (Thread.interrupted())
         throw new OCommandExecutionException("The shortestPath() function has been interrupted");
@@ -155,7 +151,7 @@ public class OSQLFunctionShortestPath extends OSQLFunctionMathAbstract {
 
       List<ORID> neighborIdentity;
 
-      if (ctx.queueLeft.size() <= ctx.queueRight.size()) {
+      if (ctx.left.getOpen().size() <= ctx.right.getOpen().size()) {
         // START EVALUATING FROM LEFT
         neighborIdentity = walkLeft(ctx);
         if (neighborIdentity != null) return neighborIdentity;
@@ -164,7 +160,7 @@ public class OSQLFunctionShortestPath extends OSQLFunctionMathAbstract {
           break;
         }
 
-        if (ctx.queueLeft.isEmpty()) break;
+        if (ctx.left.getOpen().isEmpty()) break;
 
         neighborIdentity = walkRight(ctx);
         if (neighborIdentity != null) return neighborIdentity;
@@ -180,7 +176,7 @@ public class OSQLFunctionShortestPath extends OSQLFunctionMathAbstract {
           break;
         }
 
-        if (ctx.queueRight.isEmpty()) break;
+        if (ctx.right.getOpen().isEmpty()) break;
 
         neighborIdentity = walkLeft(ctx);
         if (neighborIdentity != null) return neighborIdentity;
@@ -244,201 +240,69 @@ public class OSQLFunctionShortestPath extends OSQLFunctionMathAbstract {
     return null;
   }
 
-  /**
-   * get adjacent vertices and edges
-   *
-   * @param srcVertex
-   * @param direction
-   * @param types
-   * @return
-   * @author Thomas Young (YJJThomasYoung@hotmail.com)
-   */
-  private ORawPair<Iterable<OVertex>, Iterable<OEdge>> getVerticesAndEdges(
-      OVertex srcVertex, ODirection direction, String... types) {
-    if (direction == ODirection.BOTH) {
-      OMultiCollectionIterator<OVertex> vertexIterator = new OMultiCollectionIterator<>();
-      OMultiCollectionIterator<OEdge> edgeIterator = new OMultiCollectionIterator<>();
-      ORawPair<Iterable<OVertex>, Iterable<OEdge>> pair1 =
-          getVerticesAndEdges(srcVertex, ODirection.OUT, types);
-      ORawPair<Iterable<OVertex>, Iterable<OEdge>> pair2 =
-          getVerticesAndEdges(srcVertex, ODirection.IN, types);
-      vertexIterator.add(pair1.first);
-      vertexIterator.add(pair2.first);
-      edgeIterator.add(pair1.second);
-      edgeIterator.add(pair2.second);
-      return new ORawPair<>(vertexIterator, edgeIterator);
-    } else {
-      Iterable<OEdge> edges1 = srcVertex.getEdges(direction, types);
-      Iterable<OEdge> edges2 = srcVertex.getEdges(direction, types);
-      return new ORawPair<>(new OEdgeToVertexIterable(edges1, direction), edges2);
-    }
-  }
-
-  /**
-   * get adjacent vertices and edges
-   *
-   * @param srcVertex
-   * @param direction
-   * @return
-   * @author Thomas Young (YJJThomasYoung@hotmail.com)
-   */
-  private ORawPair<Iterable<OVertex>, Iterable<OEdge>> getVerticesAndEdges(
-      OVertex srcVertex, ODirection direction) {
-    return getVerticesAndEdges(srcVertex, direction, (String[]) null);
-  }
-
   public String getSyntax() {
     return "shortestPath(<sourceVertex>, <destinationVertex>, [<direction>, [ <edgeTypeAsString> ]])";
   }
 
   protected List<ORID> walkLeft(final OSQLFunctionShortestPath.OShortestPathContext ctx) {
-    ArrayDeque<OVertex> nextLevelQueue = new ArrayDeque<>();
-    if (!Boolean.TRUE.equals(ctx.edge)) {
-      while (!ctx.queueLeft.isEmpty()) {
-        ctx.current = ctx.queueLeft.poll();
-
-        Iterable<OVertex> neighbors;
-        if (ctx.edgeType == null) {
-          neighbors = ctx.current.getVertices(ctx.directionLeft);
-        } else {
-          neighbors = ctx.current.getVertices(ctx.directionLeft, ctx.edgeTypeParam);
-        }
-        for (OVertex neighbor : neighbors) {
-          final OVertex v = (OVertex) neighbor;
-          final ORID neighborIdentity = v.getIdentity();
-
-          if (ctx.rightVisited.contains(neighborIdentity)) {
-            ctx.previouses.put(neighborIdentity, ctx.current.getIdentity());
-            return computePath(ctx.previouses, ctx.nexts, neighborIdentity);
-          }
-          if (!ctx.leftVisited.contains(neighborIdentity)) {
-            ctx.previouses.put(neighborIdentity, ctx.current.getIdentity());
-
-            nextLevelQueue.offer(v);
-            ctx.leftVisited.add(neighborIdentity);
-          }
-        }
-      }
-    } else {
-      while (!ctx.queueLeft.isEmpty()) {
-        ctx.current = ctx.queueLeft.poll();
-
-        ORawPair<Iterable<OVertex>, Iterable<OEdge>> neighbors;
-        if (ctx.edgeType == null) {
-          neighbors = getVerticesAndEdges(ctx.current, ctx.directionLeft);
-        } else {
-          neighbors = getVerticesAndEdges(ctx.current, ctx.directionLeft, ctx.edgeTypeParam);
-        }
-        Iterator<OVertex> vertexIterator = neighbors.first.iterator();
-        Iterator<OEdge> edgeIterator = neighbors.second.iterator();
-        while (vertexIterator.hasNext() && edgeIterator.hasNext()) {
-          OVertex v = vertexIterator.next();
-          final ORID neighborVertexIdentity = v.getIdentity();
-          final ORID neighborEdgeIdentity = edgeIterator.next().getIdentity();
-
-          if (ctx.rightVisited.contains(neighborVertexIdentity)) {
-            ctx.previouses.put(neighborVertexIdentity, neighborEdgeIdentity);
-            ctx.previouses.put(neighborEdgeIdentity, ctx.current.getIdentity());
-            return computePath(ctx.previouses, ctx.nexts, neighborVertexIdentity);
-          }
-          if (!ctx.leftVisited.contains(neighborVertexIdentity)) {
-            ctx.previouses.put(neighborVertexIdentity, neighborEdgeIdentity);
-            ctx.previouses.put(neighborEdgeIdentity, ctx.current.getIdentity());
-
-            nextLevelQueue.offer(v);
-            ctx.leftVisited.add(neighborVertexIdentity);
-          }
-        }
-      }
-    }
-    ctx.queueLeft = nextLevelQueue;
-    return null;
+    return walk(ctx, ctx.left, ctx.right, ctx.directionLeft);
   }
 
   protected List<ORID> walkRight(final OSQLFunctionShortestPath.OShortestPathContext ctx) {
-    final ArrayDeque<OVertex> nextLevelQueue = new ArrayDeque<>();
-    if (!Boolean.TRUE.equals(ctx.edge)) {
-      while (!ctx.queueRight.isEmpty()) {
-        ctx.currentRight = ctx.queueRight.poll();
-
-        Iterable<OVertex> neighbors;
-        if (ctx.edgeType == null) {
-          neighbors = ctx.currentRight.getVertices(ctx.directionRight);
-        } else {
-          neighbors = ctx.currentRight.getVertices(ctx.directionRight, ctx.edgeTypeParam);
-        }
-        for (OVertex neighbor : neighbors) {
-          final OVertex v = (OVertex) neighbor;
-          final ORID neighborIdentity = v.getIdentity();
-
-          if (ctx.leftVisited.contains(neighborIdentity)) {
-            ctx.nexts.put(neighborIdentity, ctx.currentRight.getIdentity());
-            return computePath(ctx.previouses, ctx.nexts, neighborIdentity);
-          }
-          if (!ctx.rightVisited.contains(neighborIdentity)) {
-
-            ctx.nexts.put(neighborIdentity, ctx.currentRight.getIdentity());
+    return walk(ctx, ctx.right, ctx.left, ctx.directionRight);
+  }
 
-            nextLevelQueue.offer(v);
-            ctx.rightVisited.add(neighborIdentity);
-          }
-        }
-      }
-    } else {
-      while (!ctx.queueRight.isEmpty()) {
-        ctx.currentRight = ctx.queueRight.poll();
-
-        ORawPair<Iterable<OVertex>, Iterable<OEdge>> neighbors;
-        if (ctx.edgeType == null) {
-          neighbors = getVerticesAndEdges(ctx.currentRight, ctx.directionRight);
-        } else {
-          neighbors = getVerticesAndEdges(ctx.currentRight, ctx.directionRight, ctx.edgeTypeParam);
+  /** Visits the current level of one of the two searches, until it meets the other search */
+  private List<ORID> walk(
+      final OShortestPathContext ctx,
+      final OPathFinderTree tree,
+      final OPathFinderTree otherTree,
+      final ODirection direction) {
+    final OPathFinderHeap queue = tree.getOpen();
+    if (queue.isEmpty()) {
+      return null;
+    }
+    final double level = queue.peekPriority();
+    while (!queue.isEmpty() && queue.peekPriority() == level) {
+      final int current = queue.pop();
+
+      final int neighbors = ctx.graph.expand(current, direction);
+      for (int i = 0; i < neighbors; i++) {
+        final int neighbor = ctx.graph.getNeighbor(i);
+        if (otherTree.isReached(neighbor)) {
+          tree.reach(neighbor, level + 1, current, ctx.graph.getEdge(i));
+          return computePath(ctx, neighbor);
         }
-
-        Iterator<OVertex> vertexIterator = neighbors.first.iterator();
-        Iterator<OEdge> edgeIterator = neighbors.second.iterator();
-        while (vertexIterator.hasNext() && edgeIterator.hasNext()) {
-          final OVertex v = vertexIterator.next();
-          final ORID neighborVertexIdentity = v.getIdentity();
-          final ORID neighborEdgeIdentity = edgeIterator.next().getIdentity();
-
-          if (ctx.leftVisited.contains(neighborVertexIdentity)) {
-            ctx.nexts.put(neighborVertexIdentity, neighborEdgeIdentity);
-            ctx.nexts.put(neighborEdgeIdentity, ctx.currentRight.getIdentity());
-            return computePath(ctx.previouses, ctx.nexts, neighborVertexIdentity);
-          }
-          if (!ctx.rightVisited.contains(neighborVertexIdentity)) {
-            ctx.nexts.put(neighborVertexIdentity, neighborEdgeIdentity);
-            ctx.nexts.put(neighborEdgeIdentity, ctx.currentRight.getIdentity());
-
-            nextLevelQueue.offer(v);
-            ctx.rightVisited.add(neighborVertexIdentity);
-          }
+        if (!tree.isReached(neighbor)) {
+          tree.reach(neighbor, level + 1, current, ctx.graph.getEdge(i));
+          queue.push(neighbor, level + 1);
         }
       }
     }
-    ctx.queueRight = nextLevelQueue;
     return null;
   }
 
-  private List<ORID> computePath(
-      final Map<ORID, ORID> leftDistances,
-      final Map<ORID, ORID> rightDistances,
-      final ORID neighbor) {
+  private List<ORID> computePath(final OShortestPathContext ctx, final int neighbor) {
     final List<ORID> result = new ArrayList<ORID>();
 
-    ORID current = neighbor;
-    while (current != null) {
-      result.add(0, current);
-      current = leftDistances.get(current);
+    int current = neighbor;
+    while (current != OPathFinderTree.NONE) {
+      result.add(0, ctx.nodes.getIdentity(current));
+      final int edge = ctx.left.getEdge(current);
+      if (edge != OPathFinderTree.NONE) {
+        result.add(0, ctx.nodes.getIdentity(edge));
+      }
+      current = ctx.left.getPredecessor(current);
     }
 
     current = neighbor;
-    while (current != null) {
-      current = rightDistances.get(current);
-      if (current != null) {
-        result.add(current);
+    while (ctx.right.getPredecessor(current) != OPathFinderTree.NONE) {
+      final int edge = ctx.right.getEdge(current);
+      if (edge != OPathFinderTree.NONE) {
+        result.add(ctx.nodes.getIdentity(edge));
       }
+      current = ctx.right.getPredecessor(current);
+      result.add(ctx.nodes.getIdentity(current));
     }
 
     return result;
@@ -0,0 +1,278 @@
+/*
+ *
+ *  *  Copyright 2010-2016 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.orient.core.sql.functions.stat;
+
+import com.orientechnologies.common.hash.OMurmurHash3;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Mergeable sketch that estimates the number of distinct values in a stream (HyperLogLog, see P.
+ * Flajolet et al., "HyperLogLog: the analysis of a near-optimal cardinality estimation algorithm").
+ *
+ * <p>With the default precision (2^14 registers) the standard error is about 0.8% and the sketch
+ * takes 16KB. Small sketches keep only the registers that were set (sparse representation), so
+ * that many small groups (eg. in a GROUP BY) do not allocate the full array of registers.
+ */
+public class OHyperLogLog {
+  public static final int DEFAULT_PRECISION = 14;
+
+  private static final int HASH_SEED = 0x2a8e7c5d;
+  private static final byte SPARSE = 0;
+  private static final byte DENSE = 1;
+
+  private final int precision;
+  private final int registerCount;
+
+  // one byte per register, null while the sketch is sparse
+  private byte[] registers;
+  // sparse representation: open addressing table of (register index + 1) << 8 | value
+  private int[] sparse = new int[16];
+  private int sparseSize = 0;
+
+  public OHyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  public OHyperLogLog(int precision) {
+    if (precision < 4 || precision > 18) {
+      throw new IllegalArgumentException("Invalid HyperLogLog precision: " + precision);
+    }
+    this.precision = precision;
+    this.registerCount = 1 << precision;
+  }
+
+  public void add(Object value) {
+    if (value != null) {
+      addHash(hash(value));
+    }
+  }
+
+  private void addHash(long hash) {
+    int index = (int) (hash >>> (64 - precision));
+    // position of the first 1 bit in the remaining bits
+    int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    updateRegister(index, rank);
+  }
+
+  private void updateRegister(int index, int value) {
+    if (registers != null) {
+      if (registers[index] < value) {
+        registers[index] = (byte) value;
+      }
+      return;
+    }
+    int mask = sparse.length - 1;
+    int slot = index & mask;
+    while (sparse[slot] != 0) {
+      if ((sparse[slot] >>> 8) - 1 == index) {
+        if ((sparse[slot] & 0xFF) < value) {
+          sparse[slot] = ((index + 1) << 8) | value;
+        }
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    sparse[slot] = ((index + 1) << 8) | value;
+    sparseSize++;
+    if (sparseSize * 2 > sparse.length) {
+      if (sparse.length * 8 >= registerCount) {
+        // a bigger table would take more memory than the dense registers
+        toDense();
+      } else {
+        int[] oldSparse = sparse;
+        sparse = new int[oldSparse.length * 2];
+        sparseSize = 0;
+        for (int entry : oldSparse) {
+          if (entry != 0) {
+            updateRegister((entry >>> 8) - 1, entry & 0xFF);
+          }
+        }
+      }
+    }
+  }
+
+  private void toDense() {
+    int[] oldSparse = sparse;
+    registers = new byte[registerCount];
+    sparse = null;
+    sparseSize = 0;
+    for (int entry : oldSparse) {
+      if (entry != 0) {
+        updateRegister((entry >>> 8) - 1, entry & 0xFF);
+      }
+    }
+  }
+
+  /** Adds all the values of another sketch with the same precision to this one */
+  public void add(OHyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException(
+          "Cannot merge HyperLogLog sketches with different precision ("
+              + precision
+              + ", "
+              + other.precision
+              + ")");
+    }
+    if (other.registers != null) {
+      if (registers == null) {
+        toDense();
+      }
+      for (int i = 0; i < registerCount; i++) {
+        if (registers[i] < other.registers[i]) {
+          registers[i] = other.registers[i];
+        }
+      }
+    } else {
+      for (int entry : other.sparse) {
+        if (entry != 0) {
+          updateRegister((entry >>> 8) - 1, entry & 0xFF);
+        }
+      }
+    }
+  }
+
+  /** @return the estimated number of distinct values added to the sketch */
+  public long cardinality() {
+    double sum = 0;
+    int zeros = 0;
+    if (registers != null) {
+      for (byte register : registers) {
+        sum += 1.0 / (1L << register);
+        if (register == 0) {
+          zeros++;
+        }
+      }
+    } else {
+      zeros = registerCount - sparseSize;
+      sum = zeros;
+      for (int entry : sparse) {
+        if (entry != 0) {
+          sum += 1.0 / (1L << (entry & 0xFF));
+        }
+      }
+    }
+    double estimate = alpha() * registerCount * registerCount / sum;
+    if (estimate <= 2.5 * registerCount && zeros > 0) {
+      // small cardinality: linear counting is more accurate
+      estimate = registerCount * Math.log((double) registerCount / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  private double alpha() {
+    switch (registerCount) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / registerCount);
+    }
+  }
+
+  /** Binary representation of the sketch, to be sent between servers and merged */
+  public byte[] toBytes() {
+    if (registers != null) {
+      ByteBuffer result = ByteBuffer.allocate(2 + registerCount);
+      result.put((byte) precision);
+      result.put(DENSE);
+      result.put(registers);
+      return result.array();
+    }
+    ByteBuffer result = ByteBuffer.allocate(2 + 4 + sparseSize * 4);
+    result.put((byte) precision);
+    result.put(SPARSE);
+    result.putInt(sparseSize);
+    for (int entry : sparse) {
+      if (entry != 0) {
+        result.putInt(entry);
+      }
+    }
+    return result.array();
+  }
+
+  public static OHyperLogLog fromBytes(byte[] bytes) {
+    ByteBuffer source = ByteBuffer.wrap(bytes);
+    OHyperLogLog result = new OHyperLogLog(source.get());
+    if (source.get() == DENSE) {
+      result.toDense();
+      source.get(result.registers);
+    } else {
+      int size = source.getInt();
+      for (int i = 0; i < size; i++) {
+        int entry = source.getInt();
+        result.updateRegister((entry >>> 8) - 1, entry & 0xFF);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 64 bit hash of a value. Values that are equal for SQL (eg. integers of different Java types)
+   * have the same hash, also on different servers.
+   */
+  private static long hash(Object value) {
+    byte type;
+    byte[] content;
+    if (value instanceof Byte
+        || value instanceof Short
+        || value instanceof Integer
+        || value instanceof Long) {
+      type = 1;
+      content = ByteBuffer.allocate(8).putLong(((Number) value).longValue()).array();
+    } else if (value instanceof Float || value instanceof Double) {
+      type = 2;
+      content = ByteBuffer.allocate(8).putDouble(((Number) value).doubleValue()).array();
+    } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+      type = 3;
+      content = value.toString().getBytes(StandardCharsets.UTF_8);
+    } else if (value instanceof Date) {
+      type = 4;
+      content = ByteBuffer.allocate(8).putLong(((Date) value).getTime()).array();
+    } else if (value instanceof byte[]) {
+      type = 5;
+      content = (byte[]) value;
+    } else if (value instanceof OIdentifiable
+        && ((OIdentifiable) value).getIdentity().isValid()) {
+      type = 6;
+      ORID rid = ((OIdentifiable) value).getIdentity();
+      content =
+          ByteBuffer.allocate(12)
+              .putInt(rid.getClusterId())
+              .putLong(rid.getClusterPosition())
+              .array();
+    } else {
+      type = 0;
+      content = value.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    byte[] key = new byte[content.length + 1];
+    key[0] = type;
+    System.arraycopy(content, 0, key, 1, content.length);
+    return OMurmurHash3.murmurHash3_x64_64(key, HASH_SEED);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ *
+ *  *  Copyright 2010-2016 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.orient.core.sql.functions.stat;
+
+import com.orientechnologies.common.collection.OMultiValue;
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionAbstract;
+import java.util.List;
+
+/**
+ * Estimates the number of distinct values of a field in bounded memory, using a {@link
+ * OHyperLogLog} sketch (standard error about 0.8%). Nulls are ignored in the calculation.
+ *
+ * <p>In distributed mode each server returns its own sketch, and the sketches are merged.
+ */
+public class OSQLFunctionApproxCountDistinct extends OSQLFunctionAbstract {
+
+  public static final String NAME = "approx_count_distinct";
+
+  private OHyperLogLog sketch = new OHyperLogLog();
+
+  public OSQLFunctionApproxCountDistinct() {
+    super(NAME, 1, 1);
+  }
+
+  @Override
+  public Object execute(
+      Object iThis,
+      OIdentifiable iCurrentRecord,
+      Object iCurrentResult,
+      Object[] iParams,
+      OCommandContext iContext) {
+
+    if (OMultiValue.isMultiValue(iParams[0])) {
+      for (Object o : OMultiValue.getMultiValueIterable(iParams[0])) {
+        sketch.add(o);
+      }
+    } else {
+      sketch.add(iParams[0]);
+    }
+    return null;
+  }
+
+  @Override
+  public boolean aggregateResults() {
+    return true;
+  }
+
+  @Override
+  public Object getResult() {
+    if (returnDistributedResult()) {
+      return sketch.toBytes();
+    } else {
+      return sketch.cardinality();
+    }
+  }
+
+  @Override
+  public boolean shouldMergeDistributedResult() {
+    return true;
+  }
+
+  @Override
+  public Object mergeDistributedResult(List<Object> resultsToMerge) {
+    if (returnDistributedResult()) {
+      OHyperLogLog merged = new OHyperLogLog();
+      for (Object iParameter : resultsToMerge) {
+        if (iParameter instanceof byte[]) {
+          merged.add(OHyperLogLog.fromBytes((byte[]) iParameter));
+        }
+      }
+      return merged.cardinality();
+    }
+
+    if (!resultsToMerge.isEmpty()) return resultsToMerge.get(0);
+
+    return null;
+  }
+
+  @Override
+  public String getSyntax() {
+    return NAME + "(<field>)";
+  }
+}
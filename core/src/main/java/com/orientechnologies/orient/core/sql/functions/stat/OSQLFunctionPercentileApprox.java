@@ -0,0 +1,138 @@
+/*
+ *
+ *  *  Copyright 2010-2016 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.orient.core.sql.functions.stat;
+
+import com.orientechnologies.common.collection.OMultiValue;
+import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.sql.functions.OSQLFunctionAbstract;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estimates the percentile for a field in constant memory, using a {@link OTDigest}. Nulls are
+ * ignored in the calculation. Results are exact as long as no centroid of the digest holds more
+ * than one value, then the error is lower close to the tails of the distribution (eg. 0.01 or 0.99
+ * quantiles).
+ *
+ * <p>In distributed mode each server returns its own digest, and the digests are merged.
+ */
+public class OSQLFunctionPercentileApprox extends OSQLFunctionAbstract {
+
+  public static final String NAME = "percentile_approx";
+
+  protected List<Double> quantiles = new ArrayList<Double>();
+  private OTDigest digest = new OTDigest();
+
+  public OSQLFunctionPercentileApprox() {
+    this(NAME, 2, -1);
+  }
+
+  public OSQLFunctionPercentileApprox(
+      final String iName, final int iMinParams, final int iMaxParams) {
+    super(iName, iMinParams, iMaxParams);
+  }
+
+  @Override
+  public Object execute(
+      Object iThis,
+      OIdentifiable iCurrentRecord,
+      Object iCurrentResult,
+      Object[] iParams,
+      OCommandContext iContext) {
+
+    if (quantiles.isEmpty()) { // set quantiles once
+      for (int i = 1; i < iParams.length; ++i) {
+        this.quantiles.add(Double.parseDouble(iParams[i].toString()));
+      }
+    }
+
+    if (iParams[0] instanceof Number) {
+      addValue((Number) iParams[0]);
+    } else if (OMultiValue.isMultiValue(iParams[0])) {
+      for (Object n : OMultiValue.getMultiValueIterable(iParams[0])) {
+        addValue((Number) n);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean aggregateResults() {
+    return true;
+  }
+
+  @Override
+  public Object getResult() {
+    if (returnDistributedResult()) {
+      return digest.toBytes();
+    } else {
+      return this.evaluate(this.digest);
+    }
+  }
+
+  @Override
+  public boolean shouldMergeDistributedResult() {
+    return true;
+  }
+
+  @Override
+  public Object mergeDistributedResult(List<Object> resultsToMerge) {
+    if (returnDistributedResult()) {
+      OTDigest merged = new OTDigest();
+      for (Object iParameter : resultsToMerge) {
+        if (iParameter instanceof byte[]) {
+          merged.add(OTDigest.fromBytes((byte[]) iParameter));
+        }
+      }
+      return this.evaluate(merged);
+    }
+
+    if (!resultsToMerge.isEmpty()) return resultsToMerge.get(0);
+
+    return null;
+  }
+
+  @Override
+  public String getSyntax() {
+    return NAME + "(<field>, <quantile> [,<quantile>*])";
+  }
+
+  private void addValue(Number value) {
+    if (value != null) {
+      this.digest.add(value.doubleValue());
+    }
+  }
+
+  private Object evaluate(OTDigest iDigest) {
+    if (iDigest.size() == 0) { // result set is empty
+      return null;
+    }
+    if (quantiles.size() > 1) {
+      List<Number> results = new ArrayList<Number>();
+      for (Double q : this.quantiles) {
+        results.add(iDigest.quantile(q));
+      }
+      return results;
+    } else {
+      return iDigest.quantile(this.quantiles.get(0));
+    }
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ *
+ *  *  Copyright 2010-2016 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+package com.orientechnologies.orient.core.sql.functions.stat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable sketch that estimates the quantiles of a stream of values in constant memory (a
+ * "merging t-digest", see T. Dunning, "Computing extremely accurate quantiles using t-digests").
+ *
+ * <p>Values are clustered in centroids (mean and weight): centroids close to the tails of the
+ * distribution are kept small, so that extreme quantiles (eg. 0.99) are estimated with a low
+ * error. The number of centroids is bounded by the compression factor. As long as no centroid
+ * aggregates more than one value, the quantiles are computed exactly, with the same interpolation
+ * used by {@link OSQLFunctionPercentile}.
+ */
+public class OTDigest {
+  public static final double DEFAULT_COMPRESSION = 100;
+
+  private final double compression;
+
+  // merged centroids, sorted by mean
+  private double[] means;
+  private double[] weights;
+  private int centroids = 0;
+
+  // values not merged yet
+  private final double[] buffer;
+  private int buffered = 0;
+
+  private double totalWeight = 0;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  public OTDigest() {
+    this(DEFAULT_COMPRESSION);
+  }
+
+  public OTDigest(double compression) {
+    this.compression = compression;
+    int maxCentroids = (int) Math.ceil(compression * Math.PI / 2) + 10;
+    this.means = new double[maxCentroids];
+    this.weights = new double[maxCentroids];
+    this.buffer = new double[(int) (compression * 5)];
+  }
+
+  public void add(double value) {
+    if (Double.isNaN(value)) {
+      return;
+    }
+    if (buffered == buffer.length) {
+      compress(null, null, 0);
+    }
+    buffer[buffered++] = value;
+    totalWeight++;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /** Adds all the values of another digest to this one */
+  public void add(OTDigest other) {
+    other.compress(null, null, 0);
+    if (other.centroids == 0) {
+      return;
+    }
+    totalWeight += other.totalWeight;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    compress(other.means, other.weights, other.centroids);
+  }
+
+  public long size() {
+    return (long) totalWeight;
+  }
+
+  /**
+   * @param quantile between 0 and 1
+   * @return the estimated value at the given quantile, NaN if the digest is empty
+   */
+  public double quantile(double quantile) {
+    compress(null, null, 0);
+    if (centroids == 0) {
+      return Double.NaN;
+    }
+    if (centroids == 1) {
+      return means[0];
+    }
+    if (totalWeight == centroids) {
+      return exactQuantile(quantile);
+    }
+
+    double index = quantile * totalWeight;
+    if (index <= weights[0] / 2) {
+      // between the minimum and the center of the first centroid
+      return min + (means[0] - min) * index / (weights[0] / 2);
+    }
+    double cumulative = weights[0] / 2;
+    for (int i = 0; i < centroids - 1; i++) {
+      double step = (weights[i] + weights[i + 1]) / 2;
+      if (index <= cumulative + step) {
+        return means[i] + (means[i + 1] - means[i]) * (index - cumulative) / step;
+      }
+      cumulative += step;
+    }
+    // between the center of the last centroid and the maximum
+    double lastHalf = weights[centroids - 1] / 2;
+    double fraction = Math.min(1, (index - cumulative) / lastHalf);
+    return means[centroids - 1] + (max - means[centroids - 1]) * fraction;
+  }
+
+  /** all the centroids are single values: same interpolation as the exact percentile */
+  private double exactQuantile(double quantile) {
+    double n = centroids;
+    double pos = quantile * (n + 1);
+    if (pos < 1) {
+      return means[0];
+    }
+    if (pos >= n) {
+      return means[centroids - 1];
+    }
+    double fpos = Math.floor(pos);
+    int intPos = (int) fpos;
+    double dif = pos - fpos;
+    return means[intPos - 1] + dif * (means[intPos] - means[intPos - 1]);
+  }
+
+  /** Merges the current centroids, the buffered values and the given centroids */
+  private void compress(double[] otherMeans, double[] otherWeights, int otherCount) {
+    if (buffered == 0 && otherCount == 0) {
+      return;
+    }
+    Arrays.sort(buffer, 0, buffered);
+    double[] bufferWeights = new double[buffered];
+    Arrays.fill(bufferWeights, 1);
+    double[][] merged = mergeSorted(means, weights, centroids, buffer, bufferWeights, buffered);
+    int count = centroids + buffered;
+    if (otherCount > 0) {
+      merged = mergeSorted(merged[0], merged[1], count, otherMeans, otherWeights, otherCount);
+      count += otherCount;
+    }
+    buffered = 0;
+    double[] allMeans = merged[0];
+    double[] allWeights = merged[1];
+
+    double total = 0;
+    for (double weight : allWeights) {
+      total += weight;
+    }
+    centroids = 0;
+    double weightSoFar = 0;
+    double currentMean = allMeans[0];
+    double currentWeight = allWeights[0];
+    for (int i = 1; i < count; i++) {
+      double proposed = currentWeight + allWeights[i];
+      if (scale((weightSoFar + proposed) / total) - scale(weightSoFar / total) <= 1) {
+        currentMean += (allMeans[i] - currentMean) * allWeights[i] / proposed;
+        currentWeight = proposed;
+      } else {
+        appendCentroid(currentMean, currentWeight);
+        weightSoFar += currentWeight;
+        currentMean = allMeans[i];
+        currentWeight = allWeights[i];
+      }
+    }
+    appendCentroid(currentMean, currentWeight);
+  }
+
+  private void appendCentroid(double mean, double weight) {
+    if (centroids == means.length) {
+      means = Arrays.copyOf(means, centroids * 2);
+      weights = Arrays.copyOf(weights, centroids * 2);
+    }
+    means[centroids] = mean;
+    weights[centroids] = weight;
+    centroids++;
+  }
+
+  /** k1 scale function: the size of a centroid is limited to one unit of this scale */
+  private double scale(double quantile) {
+    return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, quantile) - 1);
+  }
+
+  /** merges two sequences of centroids sorted by mean */
+  private static double[][] mergeSorted(
+      double[] means1,
+      double[] weights1,
+      int count1,
+      double[] means2,
+      double[] weights2,
+      int count2) {
+    double[] means = new double[count1 + count2];
+    double[] weights = new double[count1 + count2];
+    int i = 0;
+    int j = 0;
+    for (int k = 0; k < means.length; k++) {
+      if (j >= count2 || (i < count1 && means1[i] <= means2[j])) {
+        means[k] = means1[i];
+        weights[k] = weights1[i++];
+      } else {
+        means[k] = means2[j];
+        weights[k] = weights2[j++];
+      }
+    }
+    return new double[][] {means, weights};
+  }
+
+  /** Binary representation of the digest, to be sent between servers and merged */
+  public byte[] toBytes() {
+    compress(null, null, 0);
+    ByteBuffer result = ByteBuffer.allocate(8 * 3 + 4 + centroids * 16);
+    result.putDouble(compression);
+    result.putDouble(min);
+    result.putDouble(max);
+    result.putInt(centroids);
+    for (int i = 0; i < centroids; i++) {
+      result.putDouble(means[i]);
+      result.putDouble(weights[i]);
+    }
+    return result.array();
+  }
+
+  public static OTDigest fromBytes(byte[] bytes) {
+    ByteBuffer source = ByteBuffer.wrap(bytes);
+    OTDigest result = new OTDigest(source.getDouble());
+    result.min = source.getDouble();
+    result.max = source.getDouble();
+    int count = source.getInt();
+    for (int i = 0; i < count; i++) {
+      result.appendCentroid(source.getDouble(), source.getDouble());
+      result.totalWeight += result.weights[i];
+    }
+    return result;
+  }
+}
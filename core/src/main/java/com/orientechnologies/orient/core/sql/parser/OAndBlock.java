@@ -51,6 +51,25 @@ public class OAndBlock extends OBooleanExpression {
     return true;
   }
 
+  @Override
+  public int evaluate(
+      OResult[] batch, int[] selection, int selectionSize, int[] matching, OCommandContext ctx) {
+    if (getSubBlocks() == null) {
+      return selectAll(selection, selectionSize, matching);
+    }
+    // every block only evaluates the records that matched the previous ones
+    int[] current = selection;
+    int currentSize = selectionSize;
+    for (OBooleanExpression block : subBlocks) {
+      if (currentSize == 0) {
+        break;
+      }
+      currentSize = block.evaluate(batch, current, currentSize, matching, ctx);
+      current = matching;
+    }
+    return selectAll(current, currentSize, matching);
+  }
+
   public List<OBooleanExpression> getSubBlocks() {
     return subBlocks;
   }
@@ -180,6 +180,37 @@ public abstract class OBooleanExpression extends SimpleNode {
 
   public abstract boolean evaluate(OResult currentRecord, OCommandContext ctx);
 
+  /**
+   * Evaluates the expression on a batch of records
+   *
+   * @param batch the records
+   * @param selection the positions (in the batch) of the records to be evaluated, in ascending
+   *     order
+   * @param selectionSize the number of valid elements in <code>selection</code>
+   * @param matching output: the positions of the records that match the expression, in the same
+   *     order as in <code>selection</code>. It can be the same array as <code>selection</code>
+   * @param ctx the command context
+   * @return the number of matching records, ie. of valid elements written to <code>matching</code>
+   */
+  public int evaluate(
+      OResult[] batch, int[] selection, int selectionSize, int[] matching, OCommandContext ctx) {
+    int matched = 0;
+    for (int i = 0; i < selectionSize; i++) {
+      int position = selection[i];
+      if (evaluate(batch[position], ctx)) {
+        matching[matched++] = position;
+      }
+    }
+    return matched;
+  }
+
+  protected static int selectAll(int[] selection, int selectionSize, int[] matching) {
+    if (selection != matching) {
+      System.arraycopy(selection, 0, matching, 0, selectionSize);
+    }
+    return selectionSize;
+  }
+
   /**
    * @return true if this expression can be calculated in plain Java, false otherwise (eg. LUCENE
    *     operator)
@@ -48,6 +48,30 @@ public class ONotBlock extends OBooleanExpression {
     return result;
   }
 
+  @Override
+  public int evaluate(
+      OResult[] batch, int[] selection, int selectionSize, int[] matching, OCommandContext ctx) {
+    if (sub == null) {
+      return selectAll(selection, selectionSize, matching);
+    }
+    if (!negate) {
+      return sub.evaluate(batch, selection, selectionSize, matching, ctx);
+    }
+    int[] subMatching = new int[selectionSize];
+    int subMatched = sub.evaluate(batch, selection, selectionSize, subMatching, ctx);
+    // both the lists are in selection order
+    int result = 0;
+    int next = 0;
+    for (int i = 0; i < selectionSize; i++) {
+      if (next < subMatched && subMatching[next] == selection[i]) {
+        next++;
+      } else {
+        matching[result++] = selection[i];
+      }
+    }
+    return result;
+  }
+
   public OBooleanExpression getSub() {
     return sub;
   }
@@ -9,6 +9,8 @@ import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.executor.OResult;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,6 +55,45 @@ public class OOrBlock extends OBooleanExpression {
     return false;
   }
 
+  @Override
+  public int evaluate(
+      OResult[] batch, int[] selection, int selectionSize, int[] matching, OCommandContext ctx) {
+    if (getSubBlocks() == null) {
+      return selectAll(selection, selectionSize, matching);
+    }
+    // every block only evaluates the records that did not match the previous ones
+    int[] remaining = Arrays.copyOf(selection, selectionSize);
+    int remainingSize = selectionSize;
+    int[] blockMatching = new int[selectionSize];
+    BitSet matched = new BitSet();
+    for (OBooleanExpression block : subBlocks) {
+      if (remainingSize == 0) {
+        break;
+      }
+      int blockMatched = block.evaluate(batch, remaining, remainingSize, blockMatching, ctx);
+      if (blockMatched == 0) {
+        continue;
+      }
+      for (int i = 0; i < blockMatched; i++) {
+        matched.set(blockMatching[i]);
+      }
+      int newSize = 0;
+      for (int i = 0; i < remainingSize; i++) {
+        if (!matched.get(remaining[i])) {
+          remaining[newSize++] = remaining[i];
+        }
+      }
+      remainingSize = newSize;
+    }
+    int result = 0;
+    for (int i = 0; i < selectionSize; i++) {
+      if (matched.get(selection[i])) {
+        matching[result++] = selection[i];
+      }
+    }
+    return result;
+  }
+
   public boolean evaluate(Object currentRecord, OCommandContext ctx) {
     if (currentRecord instanceof OResult) {
       return evaluate((OResult) currentRecord, ctx);
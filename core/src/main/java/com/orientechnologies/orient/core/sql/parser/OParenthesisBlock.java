@@ -31,6 +31,12 @@ public class OParenthesisBlock extends OBooleanExpression {
     return subElement.evaluate(currentRecord, ctx);
   }
 
+  @Override
+  public int evaluate(
+      OResult[] batch, int[] selection, int selectionSize, int[] matching, OCommandContext ctx) {
+    return subElement.evaluate(batch, selection, selectionSize, matching, ctx);
+  }
+
   public void toString(Map<Object, Object> params, StringBuilder builder) {
     builder.append("(");
     subElement.toString(params, builder);
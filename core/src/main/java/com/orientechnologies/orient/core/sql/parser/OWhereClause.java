@@ -16,6 +16,7 @@ import com.orientechnologies.orient.core.index.OPropertyIndexDefinition;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.sql.executor.OResult;
+import com.orientechnologies.orient.core.sql.executor.OResultBatch;
 import com.orientechnologies.orient.core.sql.executor.OResultInternal;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -26,10 +27,18 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterator;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class OWhereClause extends SimpleNode {
+  // context variable that is bound to each record when records are evaluated one at a time
+  private static final Set<String> CURRENT_VARIABLE = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+  static {
+    CURRENT_VARIABLE.add("$current");
+  }
+
   protected OBooleanExpression baseExpression;
 
   private List<OAndBlock> flattened;
@@ -56,6 +65,41 @@ public class OWhereClause extends SimpleNode {
     return baseExpression.evaluate(currentRecord, ctx);
   }
 
+  /**
+   * Removes from the batch the records that do not match the condition
+   *
+   * <p>The records are evaluated without setting the <code>$current</code> context variable, so
+   * this method can be used only if {@link #isBatchEvaluable()} is true
+   */
+  public void filter(OResultBatch batch, OCommandContext ctx) {
+    if (baseExpression == null || batch.isEmpty()) {
+      return;
+    }
+    int[] selection = new int[batch.size()];
+    for (int i = 0; i < selection.length; i++) {
+      selection[i] = i;
+    }
+    int matched =
+        baseExpression.evaluate(batch.getResults(), selection, batch.size(), selection, ctx);
+    batch.retain(selection, matched);
+  }
+
+  /**
+   * @return true if the condition can be evaluated on a whole batch of records (see {@link
+   *     #filter(OResultBatch, OCommandContext)}), ie. if it does not depend on the <code>$current
+   *     </code> context variable. Method and function calls (other than graph functions) can read
+   *     the current record from the context, so they are conservatively excluded, as well as
+   *     subqueries that refer to the parent query
+   */
+  public boolean isBatchEvaluable() {
+    if (baseExpression == null) {
+      return true;
+    }
+    return baseExpression.isCacheable()
+        && !baseExpression.refersToParent()
+        && !baseExpression.needsAliases(CURRENT_VARIABLE);
+  }
+
   public void toString(Map<Object, Object> params, StringBuilder builder) {
     if (baseExpression == null) {
       return;
@@ -0,0 +1,19 @@
+package com.orientechnologies.orient.core.storage.cache;
+
+/**
+ * Intent with which pages are accessed by the thread. It is passed to the read cache to prevent
+ * displacement of the working set by pages of bulk operations which are accessed only once.
+ *
+ * @see OReadCache#setAccessIntent(OPageAccessIntent)
+ */
+public enum OPageAccessIntent {
+  /** Pages are accessed by regular operations and are cached according to the cache policy. */
+  NORMAL,
+
+  /**
+   * Pages are read by a scan of data, like export of database, rebuild or check of index or full
+   * scan of large cluster. Such pages are kept in small separate part of the cache and requests of
+   * pages of such operations do not affect priority of cached pages.
+   */
+  SCAN
+}
@@ -72,6 +72,9 @@ public interface OReadCache {
 
   long getUsedMemory();
 
+  /** @return Maximum amount of memory in bytes which may be used by cached pages. */
+  long getMaxMemory();
+
   void clear();
 
   void truncateFile(long fileId, OWriteCache writeCache) throws IOException;
@@ -90,4 +93,42 @@ public interface OReadCache {
   void closeStorage(OWriteCache writeCache) throws IOException;
 
   void changeMaximumAmountOfMemory(long calculateReadCacheMaxMemory);
+
+  /**
+   * Sets intent with which pages are loaded for read by the current thread. Intent should be
+   * restored once operation is completed, so usage pattern is following:
+   *
+   * <pre>
+   *   final OPageAccessIntent prevIntent = readCache.setAccessIntent(OPageAccessIntent.SCAN);
+   *   try {
+   *     ...
+   *   } finally {
+   *     readCache.setAccessIntent(prevIntent);
+   *   }
+   * </pre>
+   *
+   * @param intent Intent of access to the pages.
+   * @return Intent which was set before the call.
+   */
+  default OPageAccessIntent setAccessIntent(OPageAccessIntent intent) {
+    return OPageAccessIntent.NORMAL;
+  }
+
+  /**
+   * Stores list of pages of the storage which are kept in the cache into the directory of the write
+   * cache, so they can be loaded back once storage is opened again.
+   *
+   * @param writeCache Write cache pages of which are stored.
+   * @see #loadCacheState(OWriteCache)
+   */
+  default void storeCacheState(OWriteCache writeCache) throws IOException {}
+
+  /**
+   * Starts loading in background of pages which were stored by {@link
+   * #storeCacheState(OWriteCache)} during the previous session. Pages are loaded till cache is
+   * filled, loading is stopped once storage is closed.
+   *
+   * @param writeCache Write cache pages of which are loaded.
+   */
+  default void loadCacheState(OWriteCache writeCache) {}
 }
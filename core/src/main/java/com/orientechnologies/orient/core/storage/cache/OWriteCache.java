@@ -28,6 +28,8 @@ import com.orientechnologies.orient.core.storage.impl.local.OPageIsBrokenListene
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public interface OWriteCache {
@@ -99,6 +101,48 @@ public interface OWriteCache {
       long fileId, long startPageIndex, OModifiableBoolean cacheHit, boolean verifyChecksums)
       throws IOException;
 
+  /**
+   * Loads up to <code>pageCount</code> consecutive pages starting from <code>startPageIndex</code>.
+   * Pages which are not cached by write cache may be read from the file by a single batch of IO
+   * operations. Used by read cache to prefetch pages during sequential scans.
+   *
+   * @return Pointers to loaded pages, loading stops at the first page which does not exist.
+   */
+  default List<OCachePointer> loadPages(
+      long fileId, long startPageIndex, int pageCount, boolean verifyChecksums)
+      throws IOException {
+    final List<OCachePointer> pointers = new ArrayList<>(pageCount);
+    for (int i = 0; i < pageCount; i++) {
+      final OCachePointer pointer =
+          load(fileId, startPageIndex + i, new OModifiableBoolean(), verifyChecksums);
+      if (pointer == null) {
+        break;
+      }
+
+      pointers.add(pointer);
+    }
+
+    return pointers;
+  }
+
+  /**
+   * Returns page only if it is held by write cache, page is not read from the file otherwise. Used
+   * by read cache to check whether page loaded by {@link #loadPages} was changed after the load.
+   *
+   * @return Pointer to the page with incremented readers referrer or <code>null</code>.
+   */
+  default OCachePointer loadIfCached(long fileId, long pageIndex) {
+    return null;
+  }
+
+  /**
+   * @return Amount of changed pages which were removed from write cache once they were flushed,
+   *     content of such pages in the file may be newer than content loaded before their removal.
+   */
+  default long getRemovedPagesCount() {
+    return 0;
+  }
+
   void flush(long fileId);
 
   void flush();
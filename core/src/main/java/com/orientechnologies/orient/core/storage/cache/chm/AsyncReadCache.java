@@ -4,29 +4,53 @@ import com.orientechnologies.common.concur.lock.OInterruptedException;
 import com.orientechnologies.common.directmemory.OByteBufferPool;
 import com.orientechnologies.common.directmemory.OPointer;
 import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.thread.OThreadPoolExecutorWithLogging;
 import com.orientechnologies.common.types.OModifiableBoolean;
 import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.common.util.OUncaughtExceptionHandler;
 import com.orientechnologies.orient.core.exception.OStorageException;
+import com.orientechnologies.orient.core.serialization.serializer.record.binary.OVarIntSerializer;
+import com.orientechnologies.orient.core.storage.OStorageAbstract;
 import com.orientechnologies.orient.core.storage.cache.OAbstractWriteCache;
 import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
 import com.orientechnologies.orient.core.storage.cache.OCacheEntryImpl;
 import com.orientechnologies.orient.core.storage.cache.OCachePointer;
+import com.orientechnologies.orient.core.storage.cache.OPageAccessIntent;
 import com.orientechnologies.orient.core.storage.cache.OReadCache;
 import com.orientechnologies.orient.core.storage.cache.OWriteCache;
 import com.orientechnologies.orient.core.storage.cache.chm.readbuffer.BoundedBuffer;
 import com.orientechnologies.orient.core.storage.cache.chm.readbuffer.Buffer;
 import com.orientechnologies.orient.core.storage.cache.chm.writequeue.MPSCLinkedQueue;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 /**
  * Disk cache based on ConcurrentHashMap and eviction policy which is asynchronously processed by
@@ -38,50 +62,169 @@ import java.util.concurrent.locks.ReentrantLock;
  * additional pages from write cache to disk cache. Window TinyLFU policy is used as cache eviction
  * policy because it prevents usage of ghost entries and as result considerably decrease usage of
  * heap memory.
+ *
+ * <p>If several consecutive pages of the file are missed, cache starts to read pages ahead of the
+ * reader. Pages are prefetched in background by groups, size of the group is doubled up to the
+ * configured limit while file is read sequentially. Once the first page of the group is requested
+ * the next group is prefetched.
+ *
+ * <p>Cache is split on segments by hash code of the page key. Each segment has its own map of
+ * pages, eviction policy, buffers of events and lock, so eviction of pages in one segment does not
+ * block threads which access pages of other segments.
+ *
+ * <p>Pages which are loaded by threads which scan data ({@link OPageAccessIntent#SCAN}) are kept in
+ * the small ring which is separate from the rest of the cache and requests of cached pages by such
+ * threads do not change priority of those pages, so bulk operations do not flush working set from
+ * the cache.
+ *
+ * <p>List of pages which form working set of the cache may be stored into the directory of the
+ * storage and loaded back in background once storage is opened again, so the cache does not start
+ * cold after restart. Pages are loaded in file order by batches of consecutive pages and loading is
+ * slowed down if pages are requested by other threads at the same time.
  */
 public final class AsyncReadCache implements OReadCache {
   private static final int NCPU = Runtime.getRuntime().availableProcessors();
   private static final int WRITE_BUFFER_MAX_BATCH = 128 * ceilingPowerOfTwo(NCPU);
 
-  private final ConcurrentHashMap<PageKey, OCacheEntry> data;
-  private final Lock evictionLock = new ReentrantLock();
+  /** Amount of consecutive pages which should be missed before read-ahead is started. */
+  private static final int READ_AHEAD_SEQUENTIAL_MISSES = 3;
 
-  private final WTinyLFUPolicy policy;
+  private static final int READ_AHEAD_INITIAL_PAGES = 8;
 
-  private final Buffer<OCacheEntry> readBuffer = new BoundedBuffer<>();
-  private final MPSCLinkedQueue<Runnable> writeBuffer = new MPSCLinkedQueue<>();
-  private final AtomicInteger cacheSize = new AtomicInteger();
-  private final int maxCacheSize;
+  /** Name of the file which contains list of pages stored by {@link #storeCacheState}. */
+  public static final String CACHE_STATE_FILE = "cache.stt";
 
-  private final boolean trackHitRate;
+  private static final int CACHE_STATE_VERSION = 1;
+
+  /** Maximum amount of consecutive pages which are loaded by single batch during warm up. */
+  private static final int WARM_UP_MAX_BATCH_PAGES = 64;
+
+  /** Warm up is stopped once this part of the cache is filled, so working set is not evicted. */
+  private static final int WARM_UP_MAX_FILL_PERCENT = 90;
+
+  /** Pause between batches of warm up if pages were loaded by other threads during the batch. */
+  private static final long WARM_UP_PAUSE_MILLIS = 10;
 
-  private final LongAdder requests = new LongAdder();
-  private final LongAdder hits = new LongAdder();
+  /** Executor which prefetches pages of files which are read sequentially. */
+  private static final OThreadPoolExecutorWithLogging readAheadExecutor;
+
+  /** Executor which loads pages stored during the previous session of the storage. */
+  private static final OThreadPoolExecutorWithLogging warmUpExecutor;
+
+  static {
+    final int threads = Math.min(4, NCPU);
+    readAheadExecutor =
+        new OThreadPoolExecutorWithLogging(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new CacheThreadFactory("OrientDB Disk Cache Read Ahead"));
+    readAheadExecutor.allowCoreThreadTimeOut(true);
+
+    warmUpExecutor =
+        new OThreadPoolExecutorWithLogging(
+            1,
+            1,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new CacheThreadFactory("OrientDB Disk Cache Warm Up"));
+    warmUpExecutor.allowCoreThreadTimeOut(true);
+  }
 
-  /** Status which indicates whether flush of buffers should be performed or may be delayed. */
-  private final AtomicReference<DrainStatus> drainStatus = new AtomicReference<>(DrainStatus.IDLE);
+  private final Segment[] segments;
+  private final int segmentMask;
+
+  private final boolean trackHitRate;
 
   private final int pageSize;
 
   private final OByteBufferPool bufferPool;
 
+  /** Maximum amount of pages which are read ahead, 0 if read-ahead is switched off. */
+  private final int readAheadPages;
+
+  /** Executor of prefetch of pages, shared read-ahead executor unless it is set by tests. */
+  private final Executor prefetchExecutor;
+
+  /** Read-ahead state of files which were recently accessed. */
+  private final ConcurrentHashMap<Long, ReadAhead> readAheads = new ConcurrentHashMap<>();
+
+  /** Pages request of which triggers prefetch of the next group of pages of the file. */
+  private final ConcurrentHashMap<PageKey, ReadAhead> readAheadTriggers =
+      new ConcurrentHashMap<>();
+
+  /** Intent of access to the pages of the current thread, absent value means normal access. */
+  private final ThreadLocal<OPageAccessIntent> accessIntent = new ThreadLocal<>();
+
+  /** Warm up of the storages which are in progress, key is id of the write cache. */
+  private final ConcurrentHashMap<Integer, WarmUp> warmUps = new ConcurrentHashMap<>();
+
+  /** Amount of pages loaded by requests of the pages, warm up is slowed down if it is changed. */
+  private final LongAdder loadedPages = new LongAdder();
+
   public AsyncReadCache(
       final OByteBufferPool bufferPool,
       final long maxCacheSizeInBytes,
       final int pageSize,
       final boolean trackHitRate) {
-    evictionLock.lock();
-    try {
-      this.pageSize = pageSize;
-      this.bufferPool = bufferPool;
-
-      this.trackHitRate = trackHitRate;
-      this.maxCacheSize = (int) (maxCacheSizeInBytes / pageSize);
-      this.data = new ConcurrentHashMap<>(this.maxCacheSize);
-      policy = new WTinyLFUPolicy(data, new FrequencySketch(), cacheSize);
-      policy.setMaxSize(this.maxCacheSize);
-    } finally {
-      evictionLock.unlock();
+    this(bufferPool, maxCacheSizeInBytes, pageSize, trackHitRate, 0, 0, 1);
+  }
+
+  /**
+   * @param readAheadPages Maximum amount of pages which are read ahead, 0 switches read-ahead off.
+   * @param scanRingPages Maximum amount of pages which are loaded by scans of data.
+   * @param segments Amount of segments of the cache, should be power of two.
+   */
+  public AsyncReadCache(
+      final OByteBufferPool bufferPool,
+      final long maxCacheSizeInBytes,
+      final int pageSize,
+      final boolean trackHitRate,
+      final int readAheadPages,
+      final int scanRingPages,
+      final int segments) {
+    this(
+        bufferPool,
+        maxCacheSizeInBytes,
+        pageSize,
+        trackHitRate,
+        readAheadPages,
+        scanRingPages,
+        segments,
+        readAheadExecutor);
+  }
+
+  AsyncReadCache(
+      final OByteBufferPool bufferPool,
+      final long maxCacheSizeInBytes,
+      final int pageSize,
+      final boolean trackHitRate,
+      final int readAheadPages,
+      final int scanRingPages,
+      final int segments,
+      final Executor prefetchExecutor) {
+    if (segments <= 0 || Integer.bitCount(segments) != 1) {
+      throw new IllegalArgumentException(
+          "Amount of segments of disk cache should be power of two but was " + segments);
+    }
+
+    this.pageSize = pageSize;
+    this.bufferPool = bufferPool;
+    this.readAheadPages = readAheadPages;
+    this.prefetchExecutor = prefetchExecutor;
+    this.trackHitRate = trackHitRate;
+
+    final int maxSegmentSize = (int) (maxCacheSizeInBytes / pageSize / segments);
+    final int segmentScanRingPages = (scanRingPages + segments - 1) / segments;
+
+    this.segments = new Segment[segments];
+    this.segmentMask = segments - 1;
+
+    for (int i = 0; i < segments; i++) {
+      this.segments[i] = new Segment(maxSegmentSize, segmentScanRingPages);
     }
   }
 
@@ -106,7 +249,8 @@ public final class AsyncReadCache implements OReadCache {
       final OWriteCache writeCache,
       final boolean verifyChecksums,
       final OLogSequenceNumber startLSN) {
-    final OCacheEntry cacheEntry = doLoad(fileId, (int) pageIndex, writeCache, verifyChecksums);
+    final OCacheEntry cacheEntry =
+        doLoad(fileId, (int) pageIndex, writeCache, verifyChecksums, false);
 
     if (cacheEntry != null) {
       cacheEntry.acquireExclusiveLock();
@@ -123,43 +267,66 @@ public final class AsyncReadCache implements OReadCache {
       final boolean checkPinnedPages,
       final OWriteCache writeCache,
       final boolean verifyChecksums) {
-    return doLoad(fileId, (int) pageIndex, writeCache, verifyChecksums);
+    return doLoad(
+        fileId,
+        (int) pageIndex,
+        writeCache,
+        verifyChecksums,
+        accessIntent.get() == OPageAccessIntent.SCAN);
+  }
+
+  @Override
+  public final OPageAccessIntent setAccessIntent(final OPageAccessIntent intent) {
+    final OPageAccessIntent prevIntent = accessIntent.get();
+
+    if (intent == OPageAccessIntent.NORMAL) {
+      accessIntent.remove();
+    } else {
+      accessIntent.set(intent);
+    }
+
+    return prevIntent != null ? prevIntent : OPageAccessIntent.NORMAL;
   }
 
   private OCacheEntry doLoad(
       final long extFileId,
       final int pageIndex,
       final OWriteCache writeCache,
-      final boolean verifyChecksums) {
+      final boolean verifyChecksums,
+      final boolean scan) {
     final long fileId = OAbstractWriteCache.checkFileIdCompatibility(writeCache.getId(), extFileId);
     final PageKey pageKey = new PageKey(fileId, pageIndex);
+    final Segment segment = segment(pageKey);
 
     if (trackHitRate) {
-      requests.increment();
+      segment.requests.increment();
     }
 
     while (true) {
-      checkWriteBuffer();
+      segment.checkWriteBuffer();
 
       OCacheEntry cacheEntry;
 
-      cacheEntry = data.get(pageKey);
+      cacheEntry = segment.data.get(pageKey);
 
       if (cacheEntry != null) {
         if (cacheEntry.acquireEntry()) {
-          afterRead(cacheEntry);
+          if (!scan) {
+            segment.afterRead(cacheEntry);
+          }
 
           if (trackHitRate) {
-            hits.increment();
+            segment.hits.increment();
           }
 
+          checkReadAheadTrigger(pageKey, writeCache, verifyChecksums, scan);
           return cacheEntry;
         }
       } else {
         final boolean[] read = new boolean[1];
 
         cacheEntry =
-            data.compute(
+            segment.data.compute(
                 pageKey,
                 (page, entry) -> {
                   if (entry == null) {
@@ -171,7 +338,7 @@ public final class AsyncReadCache implements OReadCache {
                         return null;
                       }
 
-                      cacheSize.incrementAndGet();
+                      segment.cacheSize.incrementAndGet();
                       return new OCacheEntryImpl(page.getFileId(), page.getPageIndex(), pointer);
                     } catch (final IOException e) {
                       throw OException.wrapException(
@@ -192,12 +359,22 @@ public final class AsyncReadCache implements OReadCache {
         if (cacheEntry.acquireEntry()) {
           if (read[0]) {
             if (trackHitRate) {
-              hits.increment();
+              segment.hits.increment();
+            }
+
+            if (!scan) {
+              segment.afterRead(cacheEntry);
             }
 
-            afterRead(cacheEntry);
+            checkReadAheadTrigger(pageKey, writeCache, verifyChecksums, scan);
           } else {
-            afterAdd(cacheEntry);
+            loadedPages.increment();
+
+            if (scan) {
+              segment.afterScan(cacheEntry);
+            } else {
+              segment.afterAdd(cacheEntry);
+            }
 
             try {
               writeCache.checkCacheOverflow();
@@ -205,6 +382,11 @@ public final class AsyncReadCache implements OReadCache {
               throw OException.wrapException(
                   new OInterruptedException("Check of write cache overflow was interrupted"), e);
             }
+
+            if (readAheadPages > 0) {
+              checkReadAheadTrigger(pageKey, writeCache, verifyChecksums, scan);
+              readAheadAfterMiss(fileId, pageIndex, writeCache, verifyChecksums, scan);
+            }
           }
 
           return cacheEntry;
@@ -213,8 +395,268 @@ public final class AsyncReadCache implements OReadCache {
     }
   }
 
+  /**
+   * Tracks misses of pages of the file and starts read-ahead if several consecutive pages are
+   * missed. Misses of pages which are already scheduled to be read ahead do not break the sequence.
+   */
+  private void readAheadAfterMiss(
+      final long fileId,
+      final int pageIndex,
+      final OWriteCache writeCache,
+      final boolean verifyChecksums,
+      final boolean scan) {
+    final ReadAhead readAhead = readAheads.computeIfAbsent(fileId, ReadAhead::new);
+
+    //noinspection SynchronizationOnLocalVariableOrMethodParameter
+    synchronized (readAhead) {
+      if (readAhead.closed) {
+        return;
+      }
+
+      readAhead.scan = scan;
+
+      if (pageIndex == readAhead.nextPage) {
+        readAhead.sequentialMisses++;
+      } else if (pageIndex < readAhead.nextPage || pageIndex >= readAhead.windowEnd) {
+        readAhead.sequentialMisses = 1;
+        readAhead.windowSize = 0;
+        readAhead.windowEnd = 0;
+        removeReadAheadTrigger(readAhead);
+      }
+
+      readAhead.nextPage = pageIndex + 1;
+
+      // reader is ahead of prefetched pages, read-ahead is (re)started
+      if (readAhead.sequentialMisses >= READ_AHEAD_SEQUENTIAL_MISSES
+          && readAhead.nextPage >= readAhead.windowEnd) {
+        scheduleReadAhead(
+            readAhead,
+            readAhead.nextPage,
+            Math.min(READ_AHEAD_INITIAL_PAGES, readAheadPages),
+            writeCache,
+            verifyChecksums);
+      }
+    }
+  }
+
+  /**
+   * Starts prefetch of the next group of pages of the file if requested page is the first page of
+   * the group which was prefetched the last.
+   */
+  private void checkReadAheadTrigger(
+      final PageKey pageKey,
+      final OWriteCache writeCache,
+      final boolean verifyChecksums,
+      final boolean scan) {
+    if (readAheadPages == 0 || readAheadTriggers.isEmpty()) {
+      return;
+    }
+
+    final ReadAhead readAhead = readAheadTriggers.remove(pageKey);
+    if (readAhead == null) {
+      return;
+    }
+
+    //noinspection SynchronizationOnLocalVariableOrMethodParameter
+    synchronized (readAhead) {
+      if (readAhead.closed || !pageKey.equals(readAhead.trigger)) {
+        return;
+      }
+
+      readAhead.trigger = null;
+      readAhead.scan = scan;
+      scheduleReadAhead(
+          readAhead,
+          readAhead.windowEnd,
+          Math.min(2 * readAhead.windowSize, readAheadPages),
+          writeCache,
+          verifyChecksums);
+    }
+  }
+
+  private void scheduleReadAhead(
+      final ReadAhead readAhead,
+      final int startPageIndex,
+      final int pageCount,
+      final OWriteCache writeCache,
+      final boolean verifyChecksums) {
+    assert Thread.holdsLock(readAhead);
+
+    removeReadAheadTrigger(readAhead);
+
+    readAhead.windowSize = pageCount;
+    readAhead.windowEnd = startPageIndex + pageCount;
+
+    final PageKey trigger = new PageKey(readAhead.fileId, startPageIndex);
+    readAhead.trigger = trigger;
+    readAheadTriggers.put(trigger, readAhead);
+
+    final boolean scan = readAhead.scan;
+    prefetchExecutor.execute(
+        () -> prefetch(readAhead, startPageIndex, pageCount, writeCache, verifyChecksums, scan));
+  }
+
+  private void removeReadAheadTrigger(final ReadAhead readAhead) {
+    assert Thread.holdsLock(readAhead);
+
+    if (readAhead.trigger != null) {
+      readAheadTriggers.remove(readAhead.trigger, readAhead);
+      readAhead.trigger = null;
+    }
+  }
+
+  /**
+   * Loads pages which are not cached yet by single batch of IO operations and adds them to the
+   * cache with low priority, or to the scan ring if file is read by scan of data.
+   */
+  private void prefetch(
+      final ReadAhead readAhead,
+      final int startPageIndex,
+      final int pageCount,
+      final OWriteCache writeCache,
+      final boolean verifyChecksums,
+      final boolean scan) {
+    final long fileId = readAhead.fileId;
+
+    readAhead.prefetchLock.lock();
+    try {
+      if (readAhead.closed) {
+        return;
+      }
+
+      int from = startPageIndex;
+      int to = startPageIndex + pageCount;
+      while (from < to && isCached(new PageKey(fileId, from))) {
+        from++;
+      }
+      while (to > from && isCached(new PageKey(fileId, to - 1))) {
+        to--;
+      }
+
+      if (from == to) {
+        return;
+      }
+
+      final long removedPages = writeCache.getRemovedPagesCount();
+      final List<OCachePointer> pointers =
+          writeCache.loadPages(fileId, from, to - from, verifyChecksums);
+
+      for (final OCachePointer loadedPointer : pointers) {
+        final PageKey pageKey = new PageKey(fileId, loadedPointer.getPageIndex());
+        final Segment segment = segment(pageKey);
+
+        // page could be loaded, changed and evicted by other thread while it was prefetched,
+        // changed page is held by write cache till it is flushed. Page lock of write cache is
+        // acquired before the lock of the map, so write cache is checked before the page is
+        // published and the check is repeated if any page of the segment is evicted in between
+        final OCachePointer[] added = new OCachePointer[1];
+        final boolean[] evicted = new boolean[1];
+        OCacheEntry cacheEntry;
+        do {
+          final long evictions = segment.policy.getEvictions();
+          final OCachePointer cachedPointer =
+              writeCache.loadIfCached(pageKey.getFileId(), pageKey.getPageIndex());
+          if (cachedPointer == loadedPointer) {
+            cachedPointer.decrementReadersReferrer();
+          }
+
+          evicted[0] = false;
+          cacheEntry =
+              segment.data.compute(
+                  pageKey,
+                  (page, entry) -> {
+                    if (entry != null) {
+                      return entry;
+                    }
+
+                    if (segment.policy.getEvictions() != evictions) {
+                      evicted[0] = true;
+                      return null;
+                    }
+
+                    OCachePointer pointer = cachedPointer;
+                    if (pointer == null) {
+                      if (writeCache.getRemovedPagesCount() != removedPages) {
+                        // changed page could be already flushed and removed from write cache
+                        return null;
+                      }
+
+                      pointer = loadedPointer;
+                    }
+
+                    added[0] = pointer;
+                    segment.cacheSize.incrementAndGet();
+                    return new OCacheEntryImpl(page.getFileId(), page.getPageIndex(), pointer);
+                  });
+
+          if (cachedPointer != null
+              && cachedPointer != loadedPointer
+              && added[0] != cachedPointer) {
+            cachedPointer.decrementReadersReferrer();
+          }
+        } while (evicted[0]);
+
+        if (added[0] != null) {
+          if (scan) {
+            segment.afterScan(cacheEntry);
+          } else {
+            segment.afterPrefetch(cacheEntry);
+          }
+        }
+
+        if (added[0] != loadedPointer) {
+          loadedPointer.decrementReadersReferrer();
+        }
+      }
+
+      // end of file is reached, there is nothing to prefetch after this point
+      if (pointers.size() < to - from) {
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (readAhead) {
+          removeReadAheadTrigger(readAhead);
+        }
+      }
+    } catch (final IOException | RuntimeException e) {
+      OLogManager.instance()
+          .error(this, "Error during read-ahead of pages of file with id %d", e, fileId);
+      return;
+    } finally {
+      readAhead.prefetchLock.unlock();
+    }
+
+    try {
+      writeCache.checkCacheOverflow();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Stops read-ahead of the file and waits till pages which are prefetched are added to cache. */
+  private void stopReadAhead(final long fileId) {
+    final ReadAhead readAhead = readAheads.remove(fileId);
+    if (readAhead == null) {
+      return;
+    }
+
+    readAhead.prefetchLock.lock();
+    try {
+      //noinspection SynchronizationOnLocalVariableOrMethodParameter
+      synchronized (readAhead) {
+        readAhead.closed = true;
+        removeReadAheadTrigger(readAhead);
+      }
+    } finally {
+      readAhead.prefetchLock.unlock();
+    }
+  }
+
+  private boolean isCached(final PageKey pageKey) {
+    return segment(pageKey).data.containsKey(pageKey);
+  }
+
   private OCacheEntry addNewPagePointerToTheCache(final long fileId, final int pageIndex) {
     final PageKey pageKey = new PageKey(fileId, pageIndex);
+    final Segment segment = segment(pageKey);
 
     final OPointer pointer = bufferPool.acquireDirect(true);
     final OCachePointer cachePointer = new OCachePointer(pointer, bufferPool, fileId, pageIndex);
@@ -223,24 +665,28 @@ public final class AsyncReadCache implements OReadCache {
     final OCacheEntry cacheEntry = new OCacheEntryImpl(fileId, pageIndex, cachePointer);
     cacheEntry.acquireEntry();
 
-    final OCacheEntry oldCacheEntry = data.putIfAbsent(pageKey, cacheEntry);
+    final OCacheEntry oldCacheEntry = segment.data.putIfAbsent(pageKey, cacheEntry);
     if (oldCacheEntry != null) {
       throw new IllegalStateException(
           "Page  " + fileId + ":" + pageIndex + " was allocated in other thread");
     }
 
-    afterAdd(cacheEntry);
+    segment.afterAdd(cacheEntry);
 
     return cacheEntry;
   }
 
   @Override
   public final void changeMaximumAmountOfMemory(final long maxMemory) {
-    evictionLock.lock();
-    try {
-      policy.setMaxSize((int) (maxMemory / pageSize));
-    } finally {
-      evictionLock.unlock();
+    final int maxSegmentSize = (int) (maxMemory / pageSize / segments.length);
+
+    for (final Segment segment : segments) {
+      segment.evictionLock.lock();
+      try {
+        segment.policy.setMaxSize(maxSegmentSize);
+      } finally {
+        segment.evictionLock.unlock();
+      }
     }
   }
 
@@ -261,14 +707,18 @@ public final class AsyncReadCache implements OReadCache {
         cacheEntry.clearAllocationFlag();
       }
 
-      data.compute(
-          pageKey,
-          (page, entry) -> {
-            writeCache.store(
-                cacheEntry.getFileId(), cacheEntry.getPageIndex(), cacheEntry.getCachePointer());
-            return entry; // may be absent if page in pinned pages, in such case we use map as
-            // virtual lock
-          });
+      segment(pageKey)
+          .data
+          .compute(
+              pageKey,
+              (page, entry) -> {
+                writeCache.store(
+                    cacheEntry.getFileId(),
+                    cacheEntry.getPageIndex(),
+                    cacheEntry.getCachePointer());
+                return entry; // may be absent if page in pinned pages, in such case we use map as
+                // virtual lock
+              });
 
       cacheEntry.clearPageOperations();
     }
@@ -312,141 +762,55 @@ public final class AsyncReadCache implements OReadCache {
     return cacheEntry;
   }
 
-  private void afterRead(final OCacheEntry entry) {
-    final boolean bufferOverflow = readBuffer.offer(entry) == Buffer.FULL;
-
-    if (drainStatus.get().shouldBeDrained(bufferOverflow)) {
-      tryToDrainBuffers();
+  @Override
+  public final long getUsedMemory() {
+    long cacheSize = 0;
+    for (final Segment segment : segments) {
+      cacheSize += segment.cacheSize.get();
     }
-  }
-
-  private void afterAdd(final OCacheEntry entry) {
-    afterWrite(() -> policy.onAdd(entry));
-  }
-
-  private void afterWrite(final Runnable command) {
-    writeBuffer.offer(command);
 
-    drainStatus.lazySet(DrainStatus.REQUIRED);
-    if (cacheSize.get() > 1.07 * maxCacheSize) {
-      forceDrainBuffers();
-    } else {
-      tryToDrainBuffers();
-    }
+    return cacheSize * pageSize;
   }
 
-  private void forceDrainBuffers() {
-    evictionLock.lock();
-    try {
-      // optimization to avoid to call tryLock if it is not needed
-      drainStatus.lazySet(DrainStatus.IN_PROGRESS);
-      emptyBuffers();
-    } finally {
-      // cas operation because we do not want to overwrite REQUIRED status and to avoid false
-      // optimization of
-      // drain buffer by IN_PROGRESS status
-      try {
-        drainStatus.compareAndSet(DrainStatus.IN_PROGRESS, DrainStatus.IDLE);
-      } finally {
-        evictionLock.unlock();
-      }
+  @Override
+  public final long getMaxMemory() {
+    long maxCacheSize = 0;
+    for (final Segment segment : segments) {
+      maxCacheSize += segment.policy.getMaxSize();
     }
-  }
-
-  private void checkWriteBuffer() {
-    if (!writeBuffer.isEmpty()) {
 
-      drainStatus.lazySet(DrainStatus.REQUIRED);
-      tryToDrainBuffers();
-    }
+    return maxCacheSize * pageSize;
   }
 
-  private void tryToDrainBuffers() {
-    if (drainStatus.get() == DrainStatus.IN_PROGRESS) {
-      return;
+  @Override
+  public final void clear() {
+    for (final long fileId : readAheads.keySet()) {
+      stopReadAhead(fileId);
     }
 
-    if (evictionLock.tryLock()) {
+    for (final Segment segment : segments) {
+      segment.evictionLock.lock();
       try {
-        // optimization to avoid to call tryLock if it is not needed
-        drainStatus.lazySet(DrainStatus.IN_PROGRESS);
-        drainBuffers();
-      } finally {
-        // cas operation because we do not want to overwrite REQUIRED status and to avoid false
-        // optimization of
-        // drain buffer by IN_PROGRESS status
-        drainStatus.compareAndSet(DrainStatus.IN_PROGRESS, DrainStatus.IDLE);
-        evictionLock.unlock();
-      }
-    }
-  }
-
-  private void drainBuffers() {
-    drainWriteBuffer();
-    drainReadBuffers();
-  }
-
-  private void emptyBuffers() {
-    emptyWriteBuffer();
-    drainReadBuffers();
-  }
-
-  private void drainReadBuffers() {
-    readBuffer.drainTo(policy::onAccess);
-  }
-
-  private void drainWriteBuffer() {
-    for (int i = 0; i < WRITE_BUFFER_MAX_BATCH; i++) {
-      final Runnable command = writeBuffer.poll();
-
-      if (command == null) {
-        break;
-      }
-
-      command.run();
-    }
-  }
-
-  private void emptyWriteBuffer() {
-    while (true) {
-      final Runnable command = writeBuffer.poll();
-
-      if (command == null) {
-        break;
-      }
+        segment.emptyBuffers();
 
-      command.run();
-    }
-  }
-
-  @Override
-  public final long getUsedMemory() {
-    return ((long) cacheSize.get()) * pageSize;
-  }
-
-  @Override
-  public final void clear() {
-    evictionLock.lock();
-    try {
-      emptyBuffers();
-
-      for (final OCacheEntry entry : data.values()) {
-        if (entry.freeze()) {
-          policy.onRemove(entry);
-        } else {
-          throw new OStorageException(
-              "Page with index "
-                  + entry.getPageIndex()
-                  + " for file id "
-                  + entry.getFileId()
-                  + " is used and cannot be removed");
+        for (final OCacheEntry entry : segment.data.values()) {
+          if (entry.freeze()) {
+            segment.policy.onRemove(entry);
+          } else {
+            throw new OStorageException(
+                "Page with index "
+                    + entry.getPageIndex()
+                    + " for file id "
+                    + entry.getFileId()
+                    + " is used and cannot be removed");
+          }
         }
-      }
 
-      data.clear();
-      cacheSize.set(0);
-    } finally {
-      evictionLock.unlock();
+        segment.data.clear();
+        segment.cacheSize.set(0);
+      } finally {
+        segment.evictionLock.unlock();
+      }
     }
   }
 
@@ -479,6 +843,8 @@ public final class AsyncReadCache implements OReadCache {
 
   @Override
   public final void deleteStorage(final OWriteCache writeCache) throws IOException {
+    stopWarmUp(writeCache.getId());
+
     final Collection<Long> files = writeCache.files().values();
     final List<ORawPair<Long, Integer>> filledUpTo = new ArrayList<>(1024);
     for (final long fileId : files) {
@@ -494,6 +860,8 @@ public final class AsyncReadCache implements OReadCache {
 
   @Override
   public final void closeStorage(final OWriteCache writeCache) throws IOException {
+    stopWarmUp(writeCache.getId());
+
     final Collection<Long> files = writeCache.files().values();
     final List<ORawPair<Long, Integer>> filledUpTo = new ArrayList<>(1024);
     for (final long fileId : files) {
@@ -508,17 +876,28 @@ public final class AsyncReadCache implements OReadCache {
   }
 
   private void clearFile(final long fileId, final int filledUpTo, final OWriteCache writeCache) {
-    evictionLock.lock();
+    // prefetch and warm up may add pages to the cache, so they have to be stopped before pages are
+    // removed
+    stopFileWarmUp(fileId);
+    stopReadAhead(fileId);
+
+    // pages of the file are spread over all segments, so all of them are locked in the same order
+    for (final Segment segment : segments) {
+      segment.evictionLock.lock();
+    }
     try {
-      emptyBuffers();
+      for (final Segment segment : segments) {
+        segment.emptyBuffers();
+      }
 
       for (int pageIndex = 0; pageIndex < filledUpTo; pageIndex++) {
         final PageKey pageKey = new PageKey(fileId, pageIndex);
-        final OCacheEntry cacheEntry = data.remove(pageKey);
+        final Segment segment = segment(pageKey);
+        final OCacheEntry cacheEntry = segment.data.remove(pageKey);
         if (cacheEntry != null) {
           if (cacheEntry.freeze()) {
-            policy.onRemove(cacheEntry);
-            cacheSize.decrementAndGet();
+            segment.policy.onRemove(cacheEntry);
+            segment.cacheSize.decrementAndGet();
 
             try {
               writeCache.checkCacheOverflow();
@@ -537,37 +916,489 @@ public final class AsyncReadCache implements OReadCache {
         }
       }
     } finally {
-      evictionLock.unlock();
+      for (final Segment segment : segments) {
+        segment.evictionLock.unlock();
+      }
     }
   }
 
-  void assertSize() {
-    evictionLock.lock();
+  @Override
+  public final void storeCacheState(final OWriteCache writeCache) throws IOException {
+    final Path rootDirectory = writeCache.getRootDirectory();
+    if (rootDirectory == null) {
+      return;
+    }
+
+    final int storageId = writeCache.getId();
+    final PageList pageList = new PageList();
+
+    for (final Segment segment : segments) {
+      segment.evictionLock.lock();
+      try {
+        segment.emptyBuffers();
+        segment.policy.forEachHotPage(
+            cacheEntry -> {
+              final long fileId = cacheEntry.getFileId();
+              if (OAbstractWriteCache.extractStorageId(fileId) == storageId) {
+                pageList.add(writeCache.internalFileId(fileId), (int) cacheEntry.getPageIndex());
+              }
+            });
+      } finally {
+        segment.evictionLock.unlock();
+      }
+    }
+
+    final long[] pages = pageList.sortedPages();
+
+    final Path stateFile = rootDirectory.resolve(CACHE_STATE_FILE);
+    final Path tmpStateFile = rootDirectory.resolve(CACHE_STATE_FILE + ".tmp");
+
+    final CRC32 crc32 = new CRC32();
+    try (final DataOutputStream output =
+        new DataOutputStream(
+            new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmpStateFile)), crc32))) {
+      output.writeInt(CACHE_STATE_VERSION);
+
+      int index = 0;
+      while (index < pages.length) {
+        final int internalFileId = (int) (pages[index] >>> 32);
+
+        int end = index + 1;
+        while (end < pages.length && (int) (pages[end] >>> 32) == internalFileId) {
+          end++;
+        }
+
+        output.writeInt(internalFileId);
+        output.writeInt(end - index);
+
+        // page indexes are sorted, so only differences between them are stored
+        int prevPageIndex = 0;
+        for (int i = index; i < end; i++) {
+          final int pageIndex = (int) pages[i];
+          OVarIntSerializer.writeUnsignedVarLong(pageIndex - prevPageIndex, output);
+          prevPageIndex = pageIndex;
+        }
+
+        index = end;
+      }
+
+      output.writeInt(-1);
+      output.flush();
+
+      output.writeLong(crc32.getValue());
+    }
+
+    OFileUtils.atomicMoveWithFallback(tmpStateFile, stateFile, this);
+  }
+
+  @Override
+  public final void loadCacheState(final OWriteCache writeCache) {
+    final Path rootDirectory = writeCache.getRootDirectory();
+    if (rootDirectory == null) {
+      return;
+    }
+
+    final Path stateFile = rootDirectory.resolve(CACHE_STATE_FILE);
+    if (!Files.exists(stateFile)) {
+      return;
+    }
+
+    final long[] pages;
     try {
-      emptyBuffers();
-      policy.assertSize();
-    } finally {
-      evictionLock.unlock();
+      pages = readCacheState(stateFile);
+    } catch (final IOException e) {
+      OLogManager.instance()
+          .warn(this, "State of disk cache can not be read from file %s, it is ignored", stateFile);
+      return;
+    }
+
+    if (pages == null || pages.length == 0) {
+      return;
+    }
+
+    final WarmUp warmUp = new WarmUp();
+    final WarmUp prevWarmUp = warmUps.put(writeCache.getId(), warmUp);
+    if (prevWarmUp != null) {
+      prevWarmUp.cancel();
+    }
+
+    warmUp.future =
+        warmUpExecutor.submit(
+            () -> {
+              try {
+                warmUp(warmUp, pages, writeCache);
+              } finally {
+                warmUps.remove(writeCache.getId(), warmUp);
+              }
+            });
+  }
+
+  /**
+   * @return Pages stored in the file, high 32 bits contain internal id of the file and low 32 bits
+   *     contain page index, or <code>null</code> if file is broken or has unknown format.
+   */
+  private static long[] readCacheState(final Path stateFile) throws IOException {
+    final CRC32 crc32 = new CRC32();
+    try (final DataInputStream input =
+        new DataInputStream(
+            new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(stateFile)), crc32))) {
+      if (input.readInt() != CACHE_STATE_VERSION) {
+        return null;
+      }
+
+      final PageList pageList = new PageList();
+      while (true) {
+        final int internalFileId = input.readInt();
+        if (internalFileId < 0) {
+          break;
+        }
+
+        final int pageCount = input.readInt();
+        if (pageCount < 0) {
+          return null;
+        }
+
+        int pageIndex = 0;
+        for (int i = 0; i < pageCount; i++) {
+          pageIndex += (int) OVarIntSerializer.readUnsignedVarLong(input);
+          pageList.add(internalFileId, pageIndex);
+        }
+      }
+
+      final long checksum = crc32.getValue();
+      if (input.readLong() != checksum) {
+        return null;
+      }
+
+      return pageList.sortedPages();
+    }
+  }
+
+  /**
+   * Loads stored pages by batches of consecutive pages with low priority, so pages which are
+   * requested by other threads during warm up are not evicted by loaded ones.
+   */
+  private void warmUp(final WarmUp warmUp, final long[] pages, final OWriteCache writeCache) {
+    final long start = System.nanoTime();
+
+    final long maxWarmUpSize = getMaxMemory() * WARM_UP_MAX_FILL_PERCENT / 100;
+
+    long foregroundLoads = loadedPages.sum();
+
+    int index = 0;
+    while (index < pages.length) {
+      final int internalFileId = (int) (pages[index] >>> 32);
+      final int startPageIndex = (int) pages[index];
+
+      int end = index + 1;
+      while (end < pages.length
+          && end - index < WARM_UP_MAX_BATCH_PAGES
+          && pages[end] == pages[end - 1] + 1) {
+        end++;
+      }
+
+      warmUp.lock.lock();
+      try {
+        if (warmUp.cancelled || getUsedMemory() >= maxWarmUpSize) {
+          break;
+        }
+
+        final long fileId = writeCache.externalFileId(internalFileId);
+        if (!warmUp.stoppedFiles.contains(internalFileId) && writeCache.exists(fileId)) {
+          prefetch(new ReadAhead(fileId), startPageIndex, end - index, writeCache, true, false);
+        }
+      } finally {
+        warmUp.lock.unlock();
+      }
+
+      index = end;
+
+      final long loads = loadedPages.sum();
+      if (loads != foregroundLoads) {
+        foregroundLoads = loads;
+
+        try {
+          Thread.sleep(WARM_UP_PAUSE_MILLIS);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+
+    OLogManager.instance()
+        .info(
+            this,
+            "Warm up of disk cache is completed, %d of %d stored pages were processed in %d ms",
+            index,
+            pages.length,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  /** Stops warm up of the storage and waits till pages which are loaded are added to the cache. */
+  private void stopWarmUp(final int storageId) {
+    if (warmUps.isEmpty()) {
+      return;
+    }
+
+    final WarmUp warmUp = warmUps.remove(storageId);
+    if (warmUp != null) {
+      warmUp.cancel();
+    }
+  }
+
+  /**
+   * Stops warm up of the file and waits till its pages which are loaded are added to the cache,
+   * pages of other files of the storage are still loaded.
+   */
+  private void stopFileWarmUp(final long fileId) {
+    if (warmUps.isEmpty()) {
+      return;
+    }
+
+    final WarmUp warmUp = warmUps.get(OAbstractWriteCache.extractStorageId(fileId));
+    if (warmUp != null) {
+      warmUp.stopFile(OAbstractWriteCache.extractFileId(fileId));
+    }
+  }
+
+  /** Waits till warm up of the storage is completed. */
+  void waitForWarmUp(final OWriteCache writeCache)
+      throws InterruptedException, ExecutionException {
+    final WarmUp warmUp = warmUps.get(writeCache.getId());
+    if (warmUp != null) {
+      warmUp.future.get();
+    }
+  }
+
+  void assertSize() {
+    for (final Segment segment : segments) {
+      segment.evictionLock.lock();
+      try {
+        segment.emptyBuffers();
+        segment.policy.assertSize();
+      } finally {
+        segment.evictionLock.unlock();
+      }
     }
   }
 
   void assertConsistency() {
-    evictionLock.lock();
-    try {
-      emptyBuffers();
-      policy.assertConsistency();
-    } finally {
-      evictionLock.unlock();
+    for (final Segment segment : segments) {
+      segment.evictionLock.lock();
+      try {
+        segment.emptyBuffers();
+        segment.policy.assertConsistency();
+      } finally {
+        segment.evictionLock.unlock();
+      }
     }
   }
 
   int hitRate() {
-    final long reqSum = requests.sum();
+    long reqSum = 0;
+    long hitSum = 0;
+    for (final Segment segment : segments) {
+      reqSum += segment.requests.sum();
+      hitSum += segment.hits.sum();
+    }
+
     if (reqSum == 0) {
       return -1;
     }
 
-    return (int) ((hits.sum() * 100) / reqSum);
+    return (int) ((hitSum * 100) / reqSum);
+  }
+
+  /** @return Amount of segments of the cache. */
+  public int getSegments() {
+    return segments.length;
+  }
+
+  /**
+   * @return Amount of requests of pages which were found in the segment, it is tracked only if
+   *     tracking of hit rate is switched on.
+   */
+  public long getHits(final int segment) {
+    return segments[segment].hits.sum();
+  }
+
+  /**
+   * @return Amount of requests of pages which were loaded from the write cache into the segment,
+   *     it is tracked only if tracking of hit rate is switched on.
+   */
+  public long getMisses(final int segment) {
+    final Segment seg = segments[segment];
+    final long hits = seg.hits.sum();
+    return seg.requests.sum() - hits;
+  }
+
+  /** @return Amount of pages which were evicted from the segment. */
+  public long getEvictions(final int segment) {
+    return segments[segment].policy.getEvictions();
+  }
+
+  /** @return Amount of pages which are cached in the segment. */
+  public int getSize(final int segment) {
+    return segments[segment].cacheSize.get();
+  }
+
+  private Segment segment(final PageKey pageKey) {
+    // consecutive pages of the same file have consecutive hash codes, so they are mixed first
+    return segments[((pageKey.hashCode() * 0x9E3779B9) >>> 16) & segmentMask];
+  }
+
+  /**
+   * Part of the cache which contains pages hash codes of keys of which are mapped to it. Segment
+   * has its own eviction policy, so pages are evicted independently of other segments.
+   */
+  private static final class Segment {
+    private final ConcurrentHashMap<PageKey, OCacheEntry> data;
+    private final Lock evictionLock = new ReentrantLock();
+
+    private final WTinyLFUPolicy policy;
+
+    private final Buffer<OCacheEntry> readBuffer = new BoundedBuffer<>();
+    private final MPSCLinkedQueue<Runnable> writeBuffer = new MPSCLinkedQueue<>();
+    private final AtomicInteger cacheSize = new AtomicInteger();
+    private final int maxCacheSize;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /** Status which indicates whether flush of buffers should be performed or may be delayed. */
+    private final AtomicReference<DrainStatus> drainStatus =
+        new AtomicReference<>(DrainStatus.IDLE);
+
+    private Segment(final int maxCacheSize, final int scanRingPages) {
+      this.maxCacheSize = maxCacheSize;
+      this.data = new ConcurrentHashMap<>(maxCacheSize);
+
+      evictionLock.lock();
+      try {
+        policy = new WTinyLFUPolicy(data, new FrequencySketch(), cacheSize, scanRingPages);
+        policy.setMaxSize(maxCacheSize);
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+
+    private void afterRead(final OCacheEntry entry) {
+      final boolean bufferOverflow = readBuffer.offer(entry) == Buffer.FULL;
+
+      if (drainStatus.get().shouldBeDrained(bufferOverflow)) {
+        tryToDrainBuffers();
+      }
+    }
+
+    private void afterAdd(final OCacheEntry entry) {
+      afterWrite(() -> policy.onAdd(entry));
+    }
+
+    private void afterPrefetch(final OCacheEntry entry) {
+      afterWrite(() -> policy.onPrefetch(entry));
+    }
+
+    private void afterScan(final OCacheEntry entry) {
+      afterWrite(() -> policy.onScan(entry));
+    }
+
+    private void afterWrite(final Runnable command) {
+      writeBuffer.offer(command);
+
+      drainStatus.lazySet(DrainStatus.REQUIRED);
+      if (cacheSize.get() > 1.07 * maxCacheSize) {
+        forceDrainBuffers();
+      } else {
+        tryToDrainBuffers();
+      }
+    }
+
+    private void forceDrainBuffers() {
+      evictionLock.lock();
+      try {
+        // optimization to avoid to call tryLock if it is not needed
+        drainStatus.lazySet(DrainStatus.IN_PROGRESS);
+        emptyBuffers();
+      } finally {
+        // cas operation because we do not want to overwrite REQUIRED status and to avoid false
+        // optimization of
+        // drain buffer by IN_PROGRESS status
+        try {
+          drainStatus.compareAndSet(DrainStatus.IN_PROGRESS, DrainStatus.IDLE);
+        } finally {
+          evictionLock.unlock();
+        }
+      }
+    }
+
+    private void checkWriteBuffer() {
+      if (!writeBuffer.isEmpty()) {
+
+        drainStatus.lazySet(DrainStatus.REQUIRED);
+        tryToDrainBuffers();
+      }
+    }
+
+    private void tryToDrainBuffers() {
+      if (drainStatus.get() == DrainStatus.IN_PROGRESS) {
+        return;
+      }
+
+      if (evictionLock.tryLock()) {
+        try {
+          // optimization to avoid to call tryLock if it is not needed
+          drainStatus.lazySet(DrainStatus.IN_PROGRESS);
+          drainBuffers();
+        } finally {
+          // cas operation because we do not want to overwrite REQUIRED status and to avoid false
+          // optimization of
+          // drain buffer by IN_PROGRESS status
+          drainStatus.compareAndSet(DrainStatus.IN_PROGRESS, DrainStatus.IDLE);
+          evictionLock.unlock();
+        }
+      }
+    }
+
+    private void drainBuffers() {
+      drainWriteBuffer();
+      drainReadBuffers();
+    }
+
+    private void emptyBuffers() {
+      emptyWriteBuffer();
+      drainReadBuffers();
+    }
+
+    private void drainReadBuffers() {
+      readBuffer.drainTo(policy::onAccess);
+    }
+
+    private void drainWriteBuffer() {
+      for (int i = 0; i < WRITE_BUFFER_MAX_BATCH; i++) {
+        final Runnable command = writeBuffer.poll();
+
+        if (command == null) {
+          break;
+        }
+
+        command.run();
+      }
+    }
+
+    private void emptyWriteBuffer() {
+      while (true) {
+        final Runnable command = writeBuffer.poll();
+
+        if (command == null) {
+          break;
+        }
+
+        command.run();
+      }
+    }
   }
 
   private enum DrainStatus {
@@ -593,6 +1424,105 @@ public final class AsyncReadCache implements OReadCache {
     abstract boolean shouldBeDrained(boolean readBufferOverflow);
   }
 
+  /** State of warm up of single storage. */
+  private static final class WarmUp {
+    /** Is held during load of every batch of pages, so file can not be closed in the middle. */
+    private final Lock lock = new ReentrantLock();
+
+    private volatile boolean cancelled;
+
+    /** Internal ids of the files which were closed, truncated or deleted during warm up. */
+    private final Set<Integer> stoppedFiles = ConcurrentHashMap.newKeySet();
+
+    private volatile Future<?> future;
+
+    private void cancel() {
+      lock.lock();
+      try {
+        cancelled = true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void stopFile(final int internalFileId) {
+      lock.lock();
+      try {
+        stoppedFiles.add(internalFileId);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** List of pages each of which is packed into single long value. */
+  private static final class PageList {
+    private long[] pages = new long[1024];
+    private int size;
+
+    private void add(final int internalFileId, final int pageIndex) {
+      if (size == pages.length) {
+        pages = Arrays.copyOf(pages, pages.length << 1);
+      }
+
+      pages[size++] = ((long) internalFileId << 32) | pageIndex;
+    }
+
+    private long[] sortedPages() {
+      final long[] result = Arrays.copyOf(pages, size);
+      Arrays.sort(result);
+      return result;
+    }
+  }
+
+  /** State of read-ahead of single file. */
+  private static final class ReadAhead {
+    private final long fileId;
+
+    /** Is held during prefetch, so file can not be closed till prefetched pages are added. */
+    private final Lock prefetchLock = new ReentrantLock();
+
+    private volatile boolean closed;
+
+    /** Index of page which is expected to be missed next if file is read sequentially. */
+    private int nextPage = -1;
+
+    private int sequentialMisses;
+
+    /** Whether file is read by scan of data, prefetched pages are added to the scan ring then. */
+    private boolean scan;
+
+    /** Size of the last group of pages which was scheduled to be read ahead. */
+    private int windowSize;
+
+    /** Pages before this index are prefetched or scheduled to be prefetched. */
+    private int windowEnd;
+
+    /** First page of the last prefetched group, its request triggers prefetch of the next one. */
+    private PageKey trigger;
+
+    private ReadAhead(final long fileId) {
+      this.fileId = fileId;
+    }
+  }
+
+  private static final class CacheThreadFactory implements ThreadFactory {
+    private final String name;
+
+    private CacheThreadFactory(final String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(final Runnable r) {
+      final Thread thread = new Thread(OStorageAbstract.storageThreadGroup, r);
+      thread.setDaemon(true);
+      thread.setName(name);
+      thread.setUncaughtExceptionHandler(new OUncaughtExceptionHandler());
+      return thread;
+    }
+  }
+
   @SuppressWarnings("SameParameterValue")
   private static int ceilingPowerOfTwo(final int x) {
     // From Hacker's Delight, Chapter 3, Harry S. Warren Jr.
@@ -5,12 +5,16 @@ import com.orientechnologies.orient.core.storage.cache.OCachePointer;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /** Window TinyLFU eviction policy https://arxiv.org/pdf/1512.00727.pdf. */
 final class WTinyLFUPolicy {
   private static final int EDEN_PERCENT = 20;
   private static final int PROBATIONARY_PERCENT = 20;
 
+  /** Maximum part of the cache which may be occupied by pages loaded by scans of data. */
+  private static final int SCAN_RING_MAX_PERCENT = 10;
+
   private volatile int maxSize;
   private final ConcurrentHashMap<PageKey, OCacheEntry> data;
   private final Admittor admittor;
@@ -21,21 +25,43 @@ final class WTinyLFUPolicy {
   private final LRUList probation = new LRUList();
   private final LRUList protection = new LRUList();
 
+  /** Pages loaded by scans of data, they are evicted in the order of addition. */
+  private final LRUList scanRing = new LRUList();
+
+  /** Requested maximum size of the ring of pages loaded by scans of data. */
+  private final int scanRingSize;
+
   private int maxEdenSize;
   private int maxProtectedSize;
   private int maxSecondLevelSize;
+  private int maxScanRingSize;
+
+  /**
+   * Amount of evicted pages, it is changed only under eviction lock and before the page is removed
+   * from the map. If the counter is not changed, no page was evicted after the counter was read.
+   */
+  private volatile long evictions;
 
   WTinyLFUPolicy(
       final ConcurrentHashMap<PageKey, OCacheEntry> data,
       final Admittor admittor,
       final AtomicInteger cacheSize) {
+    this(data, admittor, cacheSize, 0);
+  }
+
+  WTinyLFUPolicy(
+      final ConcurrentHashMap<PageKey, OCacheEntry> data,
+      final Admittor admittor,
+      final AtomicInteger cacheSize,
+      final int scanRingSize) {
     this.data = data;
     this.admittor = admittor;
     this.cacheSize = cacheSize;
+    this.scanRingSize = scanRingSize;
   }
 
   public void setMaxSize(final int maxSize) {
-    if (eden.size() + protection.size() + probation.size() > maxSize) {
+    if (eden.size() + protection.size() + probation.size() + scanRing.size() > maxSize) {
       throw new IllegalStateException(
           "Can set maximum cache size to "
               + maxSize
@@ -52,6 +78,10 @@ final class WTinyLFUPolicy {
     return maxSize;
   }
 
+  long getEvictions() {
+    return evictions;
+  }
+
   void onAccess(OCacheEntry cacheEntry) {
     admittor.increment(PageKey.hashCode(cacheEntry.getFileId(), (int) cacheEntry.getPageIndex()));
 
@@ -69,6 +99,10 @@ final class WTinyLFUPolicy {
         protection.moveToTheTail(cacheEntry);
       } else if (eden.contains(cacheEntry)) {
         eden.moveToTheTail(cacheEntry);
+      } else if (scanRing.contains(cacheEntry)) {
+        // page loaded by scan is requested by regular operation, so it becomes part of working set
+        scanRing.remove(cacheEntry);
+        addToEden(cacheEntry);
       }
     }
 
@@ -80,10 +114,58 @@ final class WTinyLFUPolicy {
   void onAdd(final OCacheEntry cacheEntry) {
     admittor.increment(PageKey.hashCode(cacheEntry.getFileId(), (int) cacheEntry.getPageIndex()));
 
+    addToEden(cacheEntry);
+  }
+
+  /**
+   * Adds page which was read ahead of the request. Frequency of such page is not incremented, so if
+   * the page is not requested till it leaves eden it loses admission to the main space against
+   * pages which were requested at least once, and scan can not flush hot pages from the cache.
+   */
+  void onPrefetch(final OCacheEntry cacheEntry) {
+    addToEden(cacheEntry);
+  }
+
+  /**
+   * Adds page which was loaded by scan of data. Such pages are not placed in eden but in the ring
+   * of limited size, so scan evicts only pages which were loaded by scans before. If page is
+   * requested by regular operation while it is in the ring, it is moved to eden.
+   */
+  void onScan(final OCacheEntry cacheEntry) {
+    if (cacheEntry.isAlive()) {
+      assert !eden.contains(cacheEntry);
+      assert !probation.contains(cacheEntry);
+      assert !protection.contains(cacheEntry);
+      assert !scanRing.contains(cacheEntry);
+
+      scanRing.moveToTheTail(cacheEntry);
+
+      purgeScanRing();
+    }
+
+    assert scanRing.size() <= maxScanRingSize;
+  }
+
+  private void purgeScanRing() {
+    while (scanRing.size() > maxScanRingSize) {
+      final OCacheEntry victim = scanRing.poll();
+      assert victim != null;
+
+      if (victim.freeze()) {
+        evict(victim);
+      } else {
+        // page is still in use, it is left to the main policy
+        addToEden(victim);
+      }
+    }
+  }
+
+  private void addToEden(final OCacheEntry cacheEntry) {
     if (cacheEntry.isAlive()) {
       assert !eden.contains(cacheEntry);
       assert !probation.contains(cacheEntry);
       assert !protection.contains(cacheEntry);
+      assert !scanRing.contains(cacheEntry);
 
       eden.moveToTheTail(cacheEntry);
 
@@ -118,36 +200,13 @@ final class WTinyLFUPolicy {
           probation.moveToTheTail(candidate);
 
           if (victim.freeze()) {
-            final boolean removed =
-                data.remove(new PageKey(victim.getFileId(), (int) victim.getPageIndex()), victim);
-            victim.makeDead();
-
-            if (removed) {
-              cacheSize.decrementAndGet();
-            }
-
-            final OCachePointer pointer = victim.getCachePointer();
-
-            pointer.decrementReadersReferrer();
-            victim.clearCachePointer();
+            evict(victim);
           } else {
             eden.moveToTheTail(victim);
           }
         } else {
           if (candidate.freeze()) {
-            final boolean removed =
-                data.remove(
-                    new PageKey(candidate.getFileId(), (int) candidate.getPageIndex()), candidate);
-            candidate.makeDead();
-
-            if (removed) {
-              cacheSize.decrementAndGet();
-            }
-
-            final OCachePointer pointer = candidate.getCachePointer();
-
-            pointer.decrementReadersReferrer();
-            candidate.clearCachePointer();
+            evict(candidate);
           } else {
             eden.moveToTheTail(candidate);
           }
@@ -158,6 +217,27 @@ final class WTinyLFUPolicy {
     assert protection.size() <= maxProtectedSize;
   }
 
+  private void evict(final OCacheEntry cacheEntry) {
+    assert cacheEntry.isFrozen();
+
+    //noinspection NonAtomicOperationOnVolatileField
+    evictions++;
+
+    final boolean removed =
+        data.remove(
+            new PageKey(cacheEntry.getFileId(), (int) cacheEntry.getPageIndex()), cacheEntry);
+    cacheEntry.makeDead();
+
+    if (removed) {
+      cacheSize.decrementAndGet();
+    }
+
+    final OCachePointer pointer = cacheEntry.getCachePointer();
+
+    pointer.decrementReadersReferrer();
+    cacheEntry.clearCachePointer();
+  }
+
   void onRemove(final OCacheEntry cacheEntry) {
     assert cacheEntry.isFrozen();
 
@@ -167,6 +247,8 @@ final class WTinyLFUPolicy {
       protection.remove(cacheEntry);
     } else if (eden.contains(cacheEntry)) {
       eden.remove(cacheEntry);
+    } else if (scanRing.contains(cacheEntry)) {
+      scanRing.remove(cacheEntry);
     }
 
     cacheEntry.makeDead();
@@ -177,9 +259,36 @@ final class WTinyLFUPolicy {
   }
 
   private void calculateMaxSizes() {
-    maxEdenSize = maxSize * EDEN_PERCENT / 100;
-    maxProtectedSize = maxSize - maxEdenSize - (maxSize - maxEdenSize) * PROBATIONARY_PERCENT / 100;
-    maxSecondLevelSize = maxSize - maxEdenSize;
+    maxScanRingSize = Math.min(scanRingSize, maxSize * SCAN_RING_MAX_PERCENT / 100);
+
+    final int mainSize = maxSize - maxScanRingSize;
+    maxEdenSize = mainSize * EDEN_PERCENT / 100;
+    maxProtectedSize =
+        mainSize - maxEdenSize - (mainSize - maxEdenSize) * PROBATIONARY_PERCENT / 100;
+    maxSecondLevelSize = mainSize - maxEdenSize;
+  }
+
+  /**
+   * Passes pages which form working set of the cache to the consumer, those are pages of the main
+   * space and pages of eden which were requested more than once. Pages of the scan ring and pages
+   * which were read ahead but never requested are skipped.
+   */
+  void forEachHotPage(final Consumer<OCacheEntry> consumer) {
+    for (final OCacheEntry cacheEntry : protection) {
+      consumer.accept(cacheEntry);
+    }
+
+    for (final OCacheEntry cacheEntry : probation) {
+      consumer.accept(cacheEntry);
+    }
+
+    for (final OCacheEntry cacheEntry : eden) {
+      final int keyHashCode =
+          PageKey.hashCode(cacheEntry.getFileId(), (int) cacheEntry.getPageIndex());
+      if (admittor.frequency(keyHashCode) > 1) {
+        consumer.accept(cacheEntry);
+      }
+    }
   }
 
   Iterator<OCacheEntry> eden() {
@@ -194,8 +303,13 @@ final class WTinyLFUPolicy {
     return probation.iterator();
   }
 
+  Iterator<OCacheEntry> scanRing() {
+    return scanRing.iterator();
+  }
+
   void assertSize() {
-    assert eden.size() + probation.size() + protection.size() == cacheSize.get()
+    assert eden.size() + probation.size() + protection.size() + scanRing.size()
+            == cacheSize.get()
         && data.size() == cacheSize.get()
         && cacheSize.get() <= maxSize;
   }
@@ -204,7 +318,8 @@ final class WTinyLFUPolicy {
     for (final OCacheEntry cacheEntry : data.values()) {
       assert eden.contains(cacheEntry)
           || protection.contains(cacheEntry)
-          || probation.contains(cacheEntry);
+          || probation.contains(cacheEntry)
+          || scanRing.contains(cacheEntry);
     }
 
     int counter = 0;
@@ -226,6 +341,12 @@ final class WTinyLFUPolicy {
       counter++;
     }
 
+    for (final OCacheEntry cacheEntry : scanRing) {
+      assert data.get(new PageKey(cacheEntry.getFileId(), (int) cacheEntry.getPageIndex()))
+          == cacheEntry;
+      counter++;
+    }
+
     assert counter == data.size();
   }
 }
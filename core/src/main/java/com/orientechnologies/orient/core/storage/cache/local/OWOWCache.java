@@ -55,7 +55,9 @@ import com.orientechnologies.orient.core.storage.cache.OPageDataVerificationErro
 import com.orientechnologies.orient.core.storage.cache.OWriteCache;
 import com.orientechnologies.orient.core.storage.cache.local.doublewritelog.DoubleWriteLog;
 import com.orientechnologies.orient.core.storage.fs.AsyncFile;
+import com.orientechnologies.orient.core.storage.fs.CompressedFile;
 import com.orientechnologies.orient.core.storage.fs.IOResult;
+import com.orientechnologies.orient.core.storage.fs.IOUringFile;
 import com.orientechnologies.orient.core.storage.fs.OFile;
 import com.orientechnologies.orient.core.storage.impl.local.OLowDiskSpaceInformation;
 import com.orientechnologies.orient.core.storage.impl.local.OLowDiskSpaceListener;
@@ -79,6 +81,7 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -229,6 +232,23 @@ public final class OWOWCache extends OAbstractWriteCache
   private final int diskSizeCheckInterval =
       OGlobalConfiguration.DISC_CACHE_FREE_SPACE_CHECK_INTERVAL_IN_PAGES.getValueAsInteger();
 
+  /**
+   * Extensions of the files pages of which are compressed before they are written to the disk.
+   *
+   * @see CompressedFile
+   */
+  private final Set<String> compressedFileExtensions =
+      parseFileExtensions(
+          OGlobalConfiguration.STORAGE_PAGE_COMPRESSION_FILE_EXTENSIONS.getValueAsString());
+
+  /**
+   * Whether data files should be accessed through io_uring, {@link AsyncFile} is used if it is not
+   * supported by OS.
+   *
+   * @see IOUringFile
+   */
+  private final boolean useIOUring = OGlobalConfiguration.STORAGE_USE_IO_URING.getValueAsBoolean();
+
   /**
    * Listeners which are called once we detect that there is not enough space left on disk to work.
    * Mostly used to put database in "read only" mode
@@ -266,6 +286,9 @@ public final class OWOWCache extends OAbstractWriteCache
   private final ConcurrentHashMap<PageKey, OCachePointer> writeCachePages =
       new ConcurrentHashMap<>();
 
+  /** Amount of pages removed from {@link #writeCachePages}, see {@link #getRemovedPagesCount()}. */
+  private final AtomicLong removedPages = new AtomicLong();
+
   /**
    * Storage for the pages which are hold only by write cache and are not shared with read cache.
    */
@@ -1193,6 +1216,55 @@ public final class OWOWCache extends OAbstractWriteCache
     }
   }
 
+  @Override
+  public List<OCachePointer> loadPages(
+      final long fileId,
+      final long startPageIndex,
+      final int pageCount,
+      final boolean verifyChecksums)
+      throws IOException {
+    final int intId = extractFileId(fileId);
+    filesLock.acquireReadLock();
+    try {
+      final PageKey[] pageKeys = new PageKey[pageCount];
+      for (int i = 0; i < pageCount; i++) {
+        pageKeys[i] = new PageKey(intId, startPageIndex + i);
+      }
+
+      final Lock[] pageLocks = lockManager.acquireSharedLocksInBatch(pageKeys);
+      try {
+        return loadFileContent(intId, startPageIndex, pageCount, verifyChecksums);
+      } finally {
+        for (final Lock pageLock : pageLocks) {
+          pageLock.unlock();
+        }
+      }
+    } finally {
+      filesLock.releaseReadLock();
+    }
+  }
+
+  @Override
+  public OCachePointer loadIfCached(final long fileId, final long pageIndex) {
+    final PageKey pageKey = new PageKey(extractFileId(fileId), pageIndex);
+    final Lock pageLock = lockManager.acquireSharedLock(pageKey);
+    try {
+      final OCachePointer pagePointer = writeCachePages.get(pageKey);
+      if (pagePointer != null) {
+        pagePointer.incrementReadersReferrer();
+      }
+
+      return pagePointer;
+    } finally {
+      pageLock.unlock();
+    }
+  }
+
+  @Override
+  public long getRemovedPagesCount() {
+    return removedPages.get();
+  }
+
   @Override
   public int allocateNewPage(final long fileId) throws IOException {
     filesLock.acquireReadLock();
@@ -1861,9 +1933,54 @@ public final class OWOWCache extends OAbstractWriteCache
     Files.move(nameIdMapHolderFileV2T, storagePath.resolve(NAME_ID_MAP_V2));
   }
 
-  private OFile createFileInstance(final String fileName, final int fileId) {
+  private OFile createFileInstance(final String fileName, final int fileId) throws IOException {
     final String internalFileName = createInternalFileName(fileName, fileId);
-    return new AsyncFile(storagePath.resolve(internalFileName), useNativeOsAPI);
+    return createFileInstance(fileName, storagePath.resolve(internalFileName));
+  }
+
+  /**
+   * Pages of the file are compressed if file already has format of compressed file or if file is
+   * going to be created and compression is enabled for its extension. Pages of encrypted storages
+   * are not compressed because they are encrypted before they are written to the file.
+   */
+  private OFile createFileInstance(final String fileName, final Path path) throws IOException {
+    final OFile file;
+    if (useIOUring && IOUringFile.isSupported()) {
+      file = new IOUringFile(path);
+    } else {
+      file = new AsyncFile(path, useNativeOsAPI);
+    }
+
+    if (CompressedFile.isCompressed(path)
+        || (aesKey == null && !Files.exists(path) && isCompressionEnabled(fileName))) {
+      return new CompressedFile(file, pageSize);
+    }
+
+    return file;
+  }
+
+  private boolean isCompressionEnabled(final String fileName) {
+    final int extSeparator = fileName.lastIndexOf('.');
+    return extSeparator >= 0
+        && compressedFileExtensions.contains(fileName.substring(extSeparator).toLowerCase());
+  }
+
+  private static Set<String> parseFileExtensions(final String extensions) {
+    final Set<String> result = new HashSet<>();
+    if (extensions == null) {
+      return result;
+    }
+
+    for (String extension : extensions.split(",")) {
+      extension = extension.trim().toLowerCase();
+      if (extension.isEmpty()) {
+        continue;
+      }
+
+      result.add(extension.charAt(0) == '.' ? extension : '.' + extension);
+    }
+
+    return result;
   }
 
   private static String createInternalFileName(final String fileName, final int fileId) {
@@ -1938,7 +2055,7 @@ public final class OWOWCache extends OAbstractWriteCache
 
         if (files.get(externalId) == null) {
           final Path path = storagePath.resolve(idFileNameMap.get((nameIdEntry.getValue())));
-          final AsyncFile file = new AsyncFile(path, useNativeOsAPI);
+          final OFile file = createFileInstance(nameIdEntry.getKey(), path);
 
           if (file.exists()) {
             file.open();
@@ -2201,41 +2318,19 @@ public final class OWOWCache extends OAbstractWriteCache
 
         // if page is not stored in the file may be page is stored in double write log
         if (fileClassic.getFileSize() >= pageEndPosition) {
-          OPointer pointer = bufferPool.acquireDirect(true);
-          ByteBuffer buffer = pointer.getNativeByteBuffer();
+          final OPointer pointer = bufferPool.acquireDirect(true);
+          final ByteBuffer buffer = pointer.getNativeByteBuffer();
 
           assert buffer.position() == 0;
           assert buffer.order() == ByteOrder.nativeOrder();
 
           fileClassic.read(pagePosition, buffer, false);
 
-          if (verifyChecksums
-              && (checksumMode == OChecksumMode.StoreAndVerify
-                  || checksumMode == OChecksumMode.StoreAndThrow
-                  || checksumMode == OChecksumMode.StoreAndSwitchReadOnlyMode)) {
-            // if page is broken inside of data file we check double write log
-            if (!verifyMagicChecksumAndDecryptPage(buffer, internalFileId, pageIndex)) {
-              final OPointer doubleWritePointer =
-                  doubleWriteLog.loadPage(internalFileId, (int) pageIndex, bufferPool);
-
-              if (doubleWritePointer == null) {
-                assertPageIsBroken(pageIndex, fileId, pointer);
-              } else {
-                bufferPool.release(pointer);
-
-                buffer = doubleWritePointer.getNativeByteBuffer();
-                assert buffer.position() == 0;
-                pointer = doubleWritePointer;
-
-                if (!verifyMagicChecksumAndDecryptPage(buffer, internalFileId, pageIndex)) {
-                  assertPageIsBroken(pageIndex, fileId, pointer);
-                }
-              }
-            }
-          }
-
-          buffer.position(0);
-          return new OCachePointer(pointer, bufferPool, fileId, (int) pageIndex);
+          return new OCachePointer(
+              checkPageContent(pointer, internalFileId, pageIndex, verifyChecksums),
+              bufferPool,
+              fileId,
+              (int) pageIndex);
         } else {
           final OPointer pointer =
               doubleWriteLog.loadPage(internalFileId, (int) pageIndex, bufferPool);
@@ -2263,6 +2358,143 @@ public final class OWOWCache extends OAbstractWriteCache
     }
   }
 
+  /**
+   * Reads pages which are not cached by write cache from the file by a single batch of IO
+   * operations, pages which are cached are taken from write cache.
+   */
+  private List<OCachePointer> loadFileContent(
+      final int internalFileId,
+      final long startPageIndex,
+      final int pageCount,
+      final boolean verifyChecksums)
+      throws IOException {
+    final long fileId = composeFileId(id, internalFileId);
+    try {
+      final OClosableEntry<Long, OFile> entry = files.acquire(fileId);
+      try {
+        final OFile fileClassic = entry.get();
+        if (fileClassic == null) {
+          throw new IllegalArgumentException(
+              "File with id " + internalFileId + " not found in WOW Cache");
+        }
+
+        final int pagesInFile =
+            (int)
+                Math.max(
+                    0,
+                    Math.min(pageCount, fileClassic.getFileSize() / pageSize - startPageIndex));
+
+        final OCachePointer[] pointers = new OCachePointer[pagesInFile];
+        final OPointer[] readPointers = new OPointer[pagesInFile];
+        final List<ORawPair<Long, ByteBuffer>> buffers = new ArrayList<>(pagesInFile);
+
+        for (int i = 0; i < pagesInFile; i++) {
+          final long pageIndex = startPageIndex + i;
+          final OCachePointer pagePointer =
+              writeCachePages.get(new PageKey(internalFileId, pageIndex));
+
+          if (pagePointer != null) {
+            pagePointer.incrementReadersReferrer();
+            pointers[i] = pagePointer;
+          } else {
+            final OPointer pointer = bufferPool.acquireDirect(true);
+            final ByteBuffer buffer = pointer.getNativeByteBuffer();
+
+            assert buffer.position() == 0;
+            assert buffer.order() == ByteOrder.nativeOrder();
+
+            readPointers[i] = pointer;
+            buffers.add(new ORawPair<>(pageIndex * pageSize, buffer));
+          }
+        }
+
+        int checked = 0;
+        try {
+          if (!buffers.isEmpty()) {
+            fileClassic.read(buffers).await();
+          }
+
+          for (; checked < pagesInFile; checked++) {
+            if (readPointers[checked] != null) {
+              final long pageIndex = startPageIndex + checked;
+              final OPointer pointer = readPointers[checked];
+              // pointer is released if page is broken and exception is thrown
+              readPointers[checked] = null;
+
+              pointers[checked] =
+                  new OCachePointer(
+                      checkPageContent(pointer, internalFileId, pageIndex, verifyChecksums),
+                      bufferPool,
+                      fileId,
+                      (int) pageIndex);
+              pointers[checked].incrementReadersReferrer();
+            }
+          }
+        } catch (final IOException | RuntimeException e) {
+          for (int i = 0; i < pagesInFile; i++) {
+            if (readPointers[i] != null) {
+              bufferPool.release(readPointers[i]);
+            } else if (pointers[i] != null) {
+              pointers[i].decrementReadersReferrer();
+            }
+          }
+
+          throw e;
+        }
+
+        return Arrays.asList(pointers);
+      } finally {
+        files.release(entry);
+      }
+    } catch (final InterruptedException e) {
+      throw OException.wrapException(new OStorageException("Data load was interrupted"), e);
+    }
+  }
+
+  /**
+   * Verifies checksum of the page which is read from the data file, if page is broken its content
+   * is taken from double write log.
+   *
+   * @return Pointer which contains content of the page.
+   */
+  private OPointer checkPageContent(
+      OPointer pointer,
+      final int internalFileId,
+      final long pageIndex,
+      final boolean verifyChecksums)
+      throws IOException {
+    final long fileId = composeFileId(id, internalFileId);
+    ByteBuffer buffer = pointer.getNativeByteBuffer();
+
+    if (verifyChecksums
+        && (checksumMode == OChecksumMode.StoreAndVerify
+            || checksumMode == OChecksumMode.StoreAndThrow
+            || checksumMode == OChecksumMode.StoreAndSwitchReadOnlyMode)) {
+      // if page is broken inside of data file we check double write log
+      if (!verifyMagicChecksumAndDecryptPage(buffer, internalFileId, pageIndex)) {
+        final OPointer doubleWritePointer =
+            doubleWriteLog.loadPage(internalFileId, (int) pageIndex, bufferPool);
+
+        if (doubleWritePointer == null) {
+          assertPageIsBroken(pageIndex, fileId, pointer);
+        } else {
+          bufferPool.release(pointer);
+
+          buffer = doubleWritePointer.getNativeByteBuffer();
+          assert buffer.position() == 0;
+          pointer = doubleWritePointer;
+
+          if (!verifyMagicChecksumAndDecryptPage(buffer, internalFileId, pageIndex)) {
+            assertPageIsBroken(pageIndex, fileId, pointer);
+          }
+        }
+      }
+    }
+
+    buffer.position(0);
+    return pointer;
+  }
+
   private void assertPageIsBroken(long pageIndex, long fileId, OPointer pointer) {
     final String message =
         "Magic number verification failed for page `"
@@ -2454,6 +2686,7 @@ public final class OWOWCache extends OAbstractWriteCache
             pagePointer.decrementWritersReferrer();
             pagePointer.setWritersListener(null);
             writeCacheSize.decrementAndGet();
+            removedPages.incrementAndGet();
 
             removeFromDirtyPages(pageKey);
           } finally {
@@ -3135,6 +3368,7 @@ public final class OWOWCache extends OAbstractWriteCache
             if (version == pointer.getVersion()) {
               writeCachePages.remove(pageKey);
               writeCacheSize.decrementAndGet();
+              removedPages.incrementAndGet();
 
               pointer.decrementWritersReferrer();
               pointer.setWritersListener(null);
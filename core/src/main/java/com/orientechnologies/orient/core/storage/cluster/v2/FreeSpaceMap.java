@@ -0,0 +1,237 @@
+package com.orientechnologies.orient.core.storage.cluster.v2;
+
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.cluster.OClusterPage;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperation;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.base.ODurableComponent;
+import java.io.IOException;
+
+/**
+ * Map of free space of the pages of the cluster. Free space of each page is stored as one byte
+ * category, categories are kept in two level tree. The first page of the file contains maximum
+ * category of each page of the second level, pages of the second level contain categories of the
+ * pages of the cluster. Both levels are implemented by {@link FreeSpaceMapPage}, so page which can
+ * hold record of given size is found in logarithmic time, and the page with the lowest index is
+ * preferred to keep the data at the beginning of the cluster file.
+ *
+ * <p>Pages which do not fit into the map are not tracked and are never reused. While the map is
+ * built for the existing cluster, pages which are not added to it yet are not reused either.
+ */
+public final class FreeSpaceMap extends ODurableComponent {
+  public static final String DEF_EXTENSION = ".fsm";
+
+  /** Category which is assigned only to the empty pages. */
+  private static final int EMPTY_PAGE_CATEGORY = 255;
+
+  /** Size of the free space interval which is covered by single category. */
+  static final int NORMALIZATION_INTERVAL = OClusterPage.MAX_RECORD_SIZE / EMPTY_PAGE_CATEGORY + 1;
+
+  private long fileId;
+
+  FreeSpaceMap(
+      final OAbstractPaginatedStorage storage,
+      final String name,
+      final String lockName,
+      final String extension) {
+    super(storage, name, extension, lockName);
+  }
+
+  public boolean exists(final OAtomicOperation atomicOperation) {
+    return isFileExists(atomicOperation, getFullName());
+  }
+
+  public void create(final OAtomicOperation atomicOperation) throws IOException {
+    fileId = addFile(atomicOperation, getFullName());
+
+    final OCacheEntry cacheEntry;
+    if (getFilledUpTo(atomicOperation, fileId) == 0) {
+      cacheEntry = addPage(atomicOperation, fileId);
+    } else {
+      cacheEntry = loadPageForWrite(atomicOperation, fileId, 0, false, false);
+    }
+
+    try {
+      final FreeSpaceMapPage page = new FreeSpaceMapPage(cacheEntry);
+      page.init();
+      page.setBuildPosition(0);
+    } finally {
+      releasePageFromWrite(atomicOperation, cacheEntry);
+    }
+  }
+
+  public void open(final OAtomicOperation atomicOperation) throws IOException {
+    fileId = openFile(atomicOperation, getFullName());
+  }
+
+  public void flush() {
+    writeCache.flush(fileId);
+  }
+
+  public void close(final boolean flush) {
+    readCache.closeFile(fileId, flush, writeCache);
+  }
+
+  public void delete(final OAtomicOperation atomicOperation) throws IOException {
+    deleteFile(atomicOperation, fileId);
+  }
+
+  void rename(final String newName) throws IOException {
+    writeCache.renameFile(fileId, newName + getExtension());
+    setName(newName);
+  }
+
+  /**
+   * @return Index of the first page of the cluster which free space is not added to the map yet, or
+   *     <code>0</code> if the map tracks all pages of the cluster.
+   */
+  long getBuildPosition(final OAtomicOperation atomicOperation) throws IOException {
+    final OCacheEntry cacheEntry = loadPageForRead(atomicOperation, fileId, 0, true);
+    try {
+      return new FreeSpaceMapPage(cacheEntry).getBuildPosition();
+    } finally {
+      releasePageFromRead(atomicOperation, cacheEntry);
+    }
+  }
+
+  void setBuildPosition(final OAtomicOperation atomicOperation, final long pageIndex)
+      throws IOException {
+    final OCacheEntry cacheEntry = loadPageForWrite(atomicOperation, fileId, 0, true, true);
+    try {
+      new FreeSpaceMapPage(cacheEntry).setBuildPosition(pageIndex);
+    } finally {
+      releasePageFromWrite(atomicOperation, cacheEntry);
+    }
+  }
+
+  /**
+   * Finds page which has enough of free space to hold entry of given size.
+   *
+   * @param requiredSize Size of the entry which is going to be added to the page.
+   * @return Index of the page or <code>-1</code> if there are no such pages.
+   */
+  public long findFreePage(final OAtomicOperation atomicOperation, final int requiredSize)
+      throws IOException {
+    final int category = requiredCategory(requiredSize);
+
+    final int secondLevelIndex;
+    final OCacheEntry firstLevelEntry = loadPageForRead(atomicOperation, fileId, 0, true);
+    try {
+      final FreeSpaceMapPage page = new FreeSpaceMapPage(firstLevelEntry);
+      secondLevelIndex = page.findCell(category);
+    } finally {
+      releasePageFromRead(atomicOperation, firstLevelEntry);
+    }
+
+    if (secondLevelIndex < 0) {
+      return -1;
+    }
+
+    final int cell;
+    final OCacheEntry secondLevelEntry =
+        loadPageForRead(atomicOperation, fileId, secondLevelIndex + 1, false);
+    try {
+      final FreeSpaceMapPage page = new FreeSpaceMapPage(secondLevelEntry);
+      cell = page.findCell(category);
+    } finally {
+      releasePageFromRead(atomicOperation, secondLevelEntry);
+    }
+
+    assert cell >= 0;
+    if (cell < 0) {
+      return -1;
+    }
+
+    return (long) secondLevelIndex * FreeSpaceMapPage.CELLS_PER_PAGE + cell;
+  }
+
+  /**
+   * Updates amount of free space of the page of the cluster.
+   *
+   * @param freeSpace Size of the maximum entry which can be added to the page.
+   */
+  public void updatePageFreeSpace(
+      final OAtomicOperation atomicOperation, final long pageIndex, final int freeSpace)
+      throws IOException {
+    assert pageIndex >= 0;
+
+    final long secondLevelIndex = pageIndex / FreeSpaceMapPage.CELLS_PER_PAGE;
+    if (secondLevelIndex >= FreeSpaceMapPage.CELLS_PER_PAGE) {
+      return;
+    }
+
+    final int cell = (int) (pageIndex % FreeSpaceMapPage.CELLS_PER_PAGE);
+    final int category = category(freeSpace);
+
+    final long filledUpTo = getFilledUpTo(atomicOperation, fileId);
+    if (secondLevelIndex + 1 >= filledUpTo) {
+      if (category == 0) {
+        return;
+      }
+
+      for (long i = filledUpTo; i <= secondLevelIndex + 1; i++) {
+        final OCacheEntry cacheEntry = addPage(atomicOperation, fileId);
+        try {
+          final FreeSpaceMapPage page = new FreeSpaceMapPage(cacheEntry);
+          page.init();
+        } finally {
+          releasePageFromWrite(atomicOperation, cacheEntry);
+        }
+      }
+    } else {
+      // most of changes of the pages do not change their category
+      final OCacheEntry cacheEntry =
+          loadPageForRead(atomicOperation, fileId, secondLevelIndex + 1, false);
+      try {
+        final FreeSpaceMapPage page = new FreeSpaceMapPage(cacheEntry);
+        if (page.getCategory(cell) == category) {
+          return;
+        }
+      } finally {
+        releasePageFromRead(atomicOperation, cacheEntry);
+      }
+    }
+
+    final int prevMaxCategory;
+    final int maxCategory;
+    final OCacheEntry secondLevelEntry =
+        loadPageForWrite(atomicOperation, fileId, secondLevelIndex + 1, false, true);
+    try {
+      final FreeSpaceMapPage page = new FreeSpaceMapPage(secondLevelEntry);
+      prevMaxCategory = page.getMaxCategory();
+      maxCategory = page.setCategory(cell, category);
+    } finally {
+      releasePageFromWrite(atomicOperation, secondLevelEntry);
+    }
+
+    if (prevMaxCategory == maxCategory) {
+      return;
+    }
+
+    final OCacheEntry firstLevelEntry = loadPageForWrite(atomicOperation, fileId, 0, true, true);
+    try {
+      final FreeSpaceMapPage page = new FreeSpaceMapPage(firstLevelEntry);
+      page.setCategory((int) secondLevelIndex, maxCategory);
+    } finally {
+      releasePageFromWrite(atomicOperation, firstLevelEntry);
+    }
+  }
+
+  /**
+   * Only empty page can contain entry of maximum size, so such pages have their own category, the
+   * rest of the pages have category which guarantees that page contains at least <code>
+   * category * NORMALIZATION_INTERVAL</code> bytes of free space.
+   */
+  static int category(final int freeSpace) {
+    if (freeSpace >= OClusterPage.MAX_RECORD_SIZE) {
+      return EMPTY_PAGE_CATEGORY;
+    }
+
+    return freeSpace / NORMALIZATION_INTERVAL;
+  }
+
+  static int requiredCategory(final int requiredSize) {
+    final int category = (requiredSize + NORMALIZATION_INTERVAL - 1) / NORMALIZATION_INTERVAL;
+    return Math.min(Math.max(category, 1), EMPTY_PAGE_CATEGORY);
+  }
+}
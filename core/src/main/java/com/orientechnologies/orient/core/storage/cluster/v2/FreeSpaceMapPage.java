@@ -0,0 +1,115 @@
+package com.orientechnologies.orient.core.storage.cluster.v2;
+
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.base.ODurablePage;
+
+/**
+ * Page of {@link FreeSpaceMap}. Page contains complete binary tree of free space categories stored
+ * in the array of bytes, leaves of the tree are categories of tracked pages and each internal node
+ * contains maximum category of its children. Because of that page with enough free space is found
+ * by single pass from the root of the tree to its leaf.
+ */
+final class FreeSpaceMapPage extends ODurablePage {
+  /** Amount of pages which free space is tracked by single page of the map. */
+  static final int CELLS_PER_PAGE;
+
+  static {
+    final int nodes = MAX_PAGE_SIZE_BYTES - NEXT_FREE_POSITION;
+
+    // nodes of the tree are numbered from 1, so 2 * CELLS_PER_PAGE bytes are needed
+    int cells = 1;
+    while (4 * cells <= nodes) {
+      cells *= 2;
+    }
+
+    CELLS_PER_PAGE = cells;
+  }
+
+  /**
+   * Offset of the index of the first page of the cluster which is not added to the map yet. It is
+   * stored only in the first page of the map, right after the tree of categories.
+   */
+  private static final int BUILD_POSITION_OFFSET = NEXT_FREE_POSITION + 2 * CELLS_PER_PAGE;
+
+  FreeSpaceMapPage(final OCacheEntry cacheEntry) {
+    super(cacheEntry);
+  }
+
+  void init() {
+    setBinaryValue(NEXT_FREE_POSITION, new byte[2 * CELLS_PER_PAGE]);
+  }
+
+  /**
+   * Finds the first cell which contains category of free space equal or bigger than requested.
+   *
+   * @return Index of the cell or <code>-1</code> if there is no such cell.
+   */
+  int findCell(final int category) {
+    if (getNodeValue(1) < category) {
+      return -1;
+    }
+
+    int node = 1;
+    while (node < CELLS_PER_PAGE) {
+      node <<= 1;
+
+      if (getNodeValue(node) < category) {
+        node++;
+      }
+    }
+
+    return node - CELLS_PER_PAGE;
+  }
+
+  int getCategory(final int cell) {
+    return getNodeValue(CELLS_PER_PAGE + cell);
+  }
+
+  /** @return Maximum category of free space of all cells of the page. */
+  int getMaxCategory() {
+    return getNodeValue(1);
+  }
+
+  /**
+   * Updates category of free space of the cell.
+   *
+   * @return Maximum category of free space of all cells of the page after the update.
+   */
+  int setCategory(final int cell, final int category) {
+    int node = CELLS_PER_PAGE + cell;
+    if (getNodeValue(node) == category) {
+      return getNodeValue(1);
+    }
+
+    setNodeValue(node, category);
+
+    while (node > 1) {
+      final int max = Math.max(getNodeValue(node), getNodeValue(node ^ 1));
+      node >>>= 1;
+
+      if (getNodeValue(node) == max) {
+        break;
+      }
+
+      setNodeValue(node, max);
+    }
+
+    return getNodeValue(1);
+  }
+
+  long getBuildPosition() {
+    return getLongValue(BUILD_POSITION_OFFSET);
+  }
+
+  void setBuildPosition(final long pageIndex) {
+    setLongValue(BUILD_POSITION_OFFSET, pageIndex);
+  }
+
+  private int getNodeValue(final int node) {
+    return getByteValue(NEXT_FREE_POSITION + node) & 0xFF;
+  }
+
+  private void setNodeValue(final int node, final int value) {
+    setByteValue(NEXT_FREE_POSITION + node, (byte) value);
+  }
+}
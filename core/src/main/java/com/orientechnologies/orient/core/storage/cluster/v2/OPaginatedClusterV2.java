@@ -20,6 +20,7 @@ import static com.orientechnologies.orient.core.config.OGlobalConfiguration.PAGI
 
 import com.orientechnologies.common.exception.OException;
 import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.serialization.types.OByteSerializer;
 import com.orientechnologies.common.serialization.types.OIntegerSerializer;
 import com.orientechnologies.common.serialization.types.OLongSerializer;
@@ -70,10 +71,13 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
   private static final int FREE_LIST_SIZE = DISK_PAGE_SIZE - LOWEST_FREELIST_BOUNDARY;
   private static final int PAGE_INDEX_OFFSET = 16;
   private static final int RECORD_POSITION_MASK = 0xFFFF;
-  private static final int ONE_KB = 1024;
+
+  /** Amount of pages added by single atomic operation to the map of free space which is built. */
+  private static final int FREE_SPACE_MAP_BUILD_BATCH_SIZE = 1024;
 
   private final boolean systemCluster;
   private final OClusterPositionMapV2 clusterPositionMap;
+  private final FreeSpaceMap freeSpaceMap;
   private volatile int id;
   private long fileId;
   private ORecordConflictStrategy recordConflictStrategy;
@@ -99,13 +103,10 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
 
   private static final class FindFreePageResult {
     private final long pageIndex;
-    private final int freePageIndex;
     private final boolean allocateNewPage;
 
-    private FindFreePageResult(
-        final long pageIndex, final int freePageIndex, final boolean allocateNewPage) {
+    private FindFreePageResult(final long pageIndex, final boolean allocateNewPage) {
       this.pageIndex = pageIndex;
-      this.freePageIndex = freePageIndex;
       this.allocateNewPage = allocateNewPage;
     }
   }
@@ -124,6 +125,8 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
     systemCluster = OMetadataInternal.SYSTEM_CLUSTER.contains(name);
 
     clusterPositionMap = new OClusterPositionMapV2(storage, getName(), getFullName(), cpmExtension);
+    freeSpaceMap =
+        new FreeSpaceMap(storage, getName(), getFullName(), FreeSpaceMap.DEF_EXTENSION);
   }
 
   @Override
@@ -208,6 +211,7 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
             initCusterState(atomicOperation);
 
             clusterPositionMap.create(atomicOperation);
+            freeSpaceMap.create(atomicOperation);
           } finally {
             releaseExclusiveLock();
           }
@@ -221,6 +225,14 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
       final OAtomicOperation atomicOperation = OAtomicOperationsManager.getCurrentOperation();
       fileId = openFile(atomicOperation, getFullName());
       clusterPositionMap.open(atomicOperation);
+
+      if (freeSpaceMap.exists(atomicOperation)) {
+        freeSpaceMap.open(atomicOperation);
+      } else if (atomicOperation != null) {
+        createFreeSpaceMap(atomicOperation);
+      } else {
+        atomicOperationsManager.executeInsideAtomicOperation(null, this::createFreeSpaceMap);
+      }
     } finally {
       releaseExclusiveLock();
     }
@@ -241,6 +253,7 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
 
       readCache.closeFile(fileId, flush, writeCache);
       clusterPositionMap.close(flush);
+      freeSpaceMap.close(flush);
     } finally {
       releaseExclusiveLock();
     }
@@ -265,6 +278,7 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
             deleteFile(atomicOperation, fileId);
 
             clusterPositionMap.delete(atomicOperation);
+            freeSpaceMap.delete(atomicOperation);
           } finally {
             releaseExclusiveLock();
           }
@@ -659,10 +673,9 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
               boolean cacheEntryReleased = false;
               OCacheEntry cacheEntry =
                   loadPageForWrite(atomicOperation, fileId, pageIndex, false, true);
-              int initialFreePageIndex;
+              final int freeSpace;
               try {
                 OClusterPage localPage = new OClusterPage(cacheEntry);
-                initialFreePageIndex = calculateFreePageIndex(localPage);
 
                 if (localPage.isDeleted(recordPosition)) {
                   if (removedContentSize == 0) {
@@ -696,13 +709,14 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
                 nextPagePointer =
                     OLongSerializer.INSTANCE.deserializeNative(
                         content, content.length - OLongSerializer.LONG_SIZE);
+                freeSpace = localPage.getMaxRecordSize();
               } finally {
                 if (!cacheEntryReleased) {
                   releasePageFromWrite(atomicOperation, cacheEntry);
                 }
               }
 
-              updateFreePagesIndex(initialFreePageIndex, pageIndex, atomicOperation);
+              freeSpaceMap.updatePageFreeSpace(atomicOperation, pageIndex, freeSpace);
 
               pageIndex = getPageIndex(nextPagePointer);
               recordPosition = getRecordPosition(nextPagePointer);
@@ -815,14 +829,11 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
                 }
               }
 
-              int freePageIndex = -1;
-
               final boolean isNew;
               if (nextPageIndex < 0) {
                 final FindFreePageResult findFreePageResult =
                     findFreePage(entrySize, atomicOperation);
                 nextPageIndex = findFreePageResult.pageIndex;
-                freePageIndex = findFreePageResult.freePageIndex;
                 isNew = findFreePageResult.allocateNewPage;
               } else {
                 isNew = false;
@@ -856,6 +867,7 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
                 cacheEntry = loadPageForWrite(atomicOperation, fileId, nextPageIndex, false, true);
               }
 
+              final int freeSpace;
               try {
                 final OClusterPage localPage = new OClusterPage(cacheEntry);
                 if (isNew) {
@@ -863,12 +875,6 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
                 }
                 final int pageFreeSpace = localPage.getFreeSpace();
 
-                if (freePageIndex < 0) {
-                  freePageIndex = calculateFreePageIndex(localPage);
-                } else {
-                  assert isNew || freePageIndex == calculateFreePageIndex(localPage);
-                }
-
                 if (nextRecordPosition >= 0) {
                   if (localPage.isDeleted(nextRecordPosition)) {
                     throw new OPaginatedClusterException(
@@ -924,12 +930,13 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
                 }
 
                 sizeDiff += pageFreeSpace - localPage.getFreeSpace();
-
+                freeSpace = localPage.getMaxRecordSize();
               } finally {
                 releasePageFromWrite(atomicOperation, cacheEntry);
               }
 
-              updateFreePagesIndex(freePageIndex, cacheEntry.getPageIndex(), atomicOperation);
+              freeSpaceMap.updatePageFreeSpace(
+                  atomicOperation, cacheEntry.getPageIndex(), freeSpace);
 
               if (updatedEntryPosition >= 0) {
                 if (from == 0) {
@@ -965,15 +972,13 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
               nextPageIndex = getPageIndex(nextEntryPointer);
               nextRecordPosition = getRecordPosition(nextEntryPointer);
 
-              final int freePagesIndex;
               final int freeSpace;
 
               final OCacheEntry cacheEntry =
                   loadPageForWrite(atomicOperation, fileId, nextPageIndex, false, true);
               try {
                 final OClusterPage localPage = new OClusterPage(cacheEntry);
-                freeSpace = localPage.getFreeSpace();
-                freePagesIndex = calculateFreePageIndex(localPage);
+                final int pageFreeSpace = localPage.getFreeSpace();
 
                 nextEntryPointer =
                     localPage.getRecordLongValue(nextRecordPosition, -OLongSerializer.LONG_SIZE);
@@ -981,12 +986,13 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
                 atomicOperation.addDeletedRecordPosition(
                     id, cacheEntry.getPageIndex(), nextRecordPosition);
 
-                sizeDiff += freeSpace - localPage.getFreeSpace();
+                sizeDiff += pageFreeSpace - localPage.getFreeSpace();
+                freeSpace = localPage.getMaxRecordSize();
               } finally {
                 releasePageFromWrite(atomicOperation, cacheEntry);
               }
 
-              updateFreePagesIndex(freePagesIndex, nextPageIndex, atomicOperation);
+              freeSpaceMap.updatePageFreeSpace(atomicOperation, nextPageIndex, freeSpace);
             }
 
             assert newPageIndex >= 0;
@@ -1205,6 +1211,7 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
       try {
         writeCache.flush(fileId);
         clusterPositionMap.flush();
+        freeSpaceMap.flush();
       } finally {
         releaseSharedLock();
       }
@@ -1358,6 +1365,7 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
     try {
       writeCache.renameFile(fileId, newName + getExtension());
       clusterPositionMap.rename(newName);
+      freeSpaceMap.rename(newName);
 
       setName(newName);
     } catch (IOException e) {
@@ -1497,7 +1505,6 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
       final FindFreePageResult findFreePageResult =
           findFreePage(entryContent.length, atomicOperation);
 
-      final int freePageIndex = findFreePageResult.freePageIndex;
       pageIndex = findFreePageResult.pageIndex;
 
       final boolean newPage = findFreePageResult.allocateNewPage;
@@ -1528,12 +1535,12 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
         cacheEntry = loadPageForWrite(atomicOperation, fileId, pageIndex, false, true);
       }
 
+      final int maxRecordSize;
       try {
         final OClusterPage localPage = new OClusterPage(cacheEntry);
         if (newPage) {
           localPage.init();
         }
-        assert newPage || freePageIndex == calculateFreePageIndex(localPage);
 
         final int initialFreeSpace = localPage.getFreeSpace();
 
@@ -1550,11 +1557,13 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
         if (position >= 0) {
           finalVersion = localPage.getRecordVersion(position);
         }
+
+        maxRecordSize = localPage.getMaxRecordSize();
       } finally {
         releasePageFromWrite(atomicOperation, cacheEntry);
       }
 
-      updateFreePagesIndex(freePageIndex, pageIndex, atomicOperation);
+      freeSpaceMap.updatePageFreeSpace(atomicOperation, pageIndex, maxRecordSize);
     } while (position < 0);
 
     return new AddEntryResult(pageIndex, position, finalVersion, recordSizesDiff);
@@ -1562,169 +1571,150 @@ public final class OPaginatedClusterV2 extends OPaginatedCluster {
 
   private FindFreePageResult findFreePage(
       final int contentSize, final OAtomicOperation atomicOperation) throws IOException {
-    int freePageIndex = contentSize / ONE_KB;
-    freePageIndex -= PAGINATED_STORAGE_LOWEST_FREELIST_BOUNDARY.getValueAsInteger();
-    if (freePageIndex < 0) {
-      freePageIndex = 0;
+    final long pageIndex = freeSpaceMap.findFreePage(atomicOperation, contentSize);
+    if (pageIndex >= 0) {
+      return new FindFreePageResult(pageIndex, false);
     }
 
-    long pageIndex;
-
-    final OCacheEntry pinnedStateEntry =
-        loadPageForRead(atomicOperation, fileId, STATE_ENTRY_INDEX, true);
+    final int fileSize;
+    final OCacheEntry stateCacheEntry =
+        loadPageForRead(atomicOperation, fileId, STATE_ENTRY_INDEX, false);
     try {
-      final OPaginatedClusterStateV2 freePageLists = new OPaginatedClusterStateV2(pinnedStateEntry);
-      do {
-        pageIndex = freePageLists.getFreeListPage(freePageIndex);
-        freePageIndex++;
-      } while (pageIndex < 0 && freePageIndex < FREE_LIST_SIZE);
-
+      final OPaginatedClusterStateV2 clusterState = new OPaginatedClusterStateV2(stateCacheEntry);
+      fileSize = clusterState.getFileSize();
     } finally {
-      releasePageFromRead(atomicOperation, pinnedStateEntry);
-    }
-
-    final boolean allocateNewPage;
-
-    if (pageIndex < 0) {
-      final int fileSize;
-
-      final OCacheEntry stateCacheEntry =
-          loadPageForRead(atomicOperation, fileId, STATE_ENTRY_INDEX, false);
-      try {
-        final OPaginatedClusterStateV2 clusterState = new OPaginatedClusterStateV2(stateCacheEntry);
-        fileSize = clusterState.getFileSize();
-      } finally {
-        releasePageFromRead(atomicOperation, stateCacheEntry);
-      }
-
-      allocateNewPage = true;
-      pageIndex = fileSize + 1;
-    } else {
-      allocateNewPage = false;
-      freePageIndex--;
+      releasePageFromRead(atomicOperation, stateCacheEntry);
     }
 
-    return new FindFreePageResult(pageIndex, freePageIndex, allocateNewPage);
+    return new FindFreePageResult(fileSize + 1, true);
   }
 
-  private void updateFreePagesIndex(
-      final int prevFreePageIndex, final long pageIndex, final OAtomicOperation atomicOperation)
-      throws IOException {
-    final OCacheEntry cacheEntry =
-        loadPageForWrite(atomicOperation, fileId, pageIndex, false, true);
+  /**
+   * Creates empty map of free space for the cluster which was created before the map was
+   * introduced. Free lists stored in the state of such cluster and links between pages of the free
+   * lists are not maintained anymore, so the free lists are reset here and the links are reset when
+   * pages are added to the map by {@link #buildFreeSpaceMap()}. Versions which use free lists see
+   * the cluster as one which has no pages with free space instead of following stale links.
+   */
+  private void createFreeSpaceMap(final OAtomicOperation atomicOperation) throws IOException {
+    freeSpaceMap.create(atomicOperation);
 
+    final int fileSize;
+    final OCacheEntry stateCacheEntry =
+        loadPageForWrite(atomicOperation, fileId, STATE_ENTRY_INDEX, false, true);
     try {
-      final OClusterPage localPage = new OClusterPage(cacheEntry);
-      final int newFreePageIndex = calculateFreePageIndex(localPage);
+      final OPaginatedClusterStateV2 clusterState = new OPaginatedClusterStateV2(stateCacheEntry);
+      fileSize = clusterState.getFileSize();
 
-      if (prevFreePageIndex == newFreePageIndex) {
-        return;
+      for (int i = 0; i < FREE_LIST_SIZE; i++) {
+        if (clusterState.getFreeListPage(i) != -1) {
+          clusterState.setFreeListPage(i, -1);
+        }
       }
+    } finally {
+      releasePageFromWrite(atomicOperation, stateCacheEntry);
+    }
 
-      final long nextPageIndex = localPage.getNextPage();
-      final long prevPageIndex = localPage.getPrevPage();
+    if (fileSize > 0) {
+      freeSpaceMap.setBuildPosition(atomicOperation, 1);
+    }
+  }
 
-      if (prevPageIndex >= 0) {
-        final OCacheEntry prevPageCacheEntry =
-            loadPageForWrite(atomicOperation, fileId, prevPageIndex, false, true);
-        try {
-          final OClusterPage prevPage = new OClusterPage(prevPageCacheEntry);
-          assert calculateFreePageIndex(prevPage) == prevFreePageIndex;
-          prevPage.setNextPage(nextPageIndex);
-        } finally {
-          releasePageFromWrite(atomicOperation, prevPageCacheEntry);
-        }
-      }
+  /**
+   * Adds pages of the cluster to the map of free space created by {@link #open()} for the cluster
+   * which was created before the map was introduced. Does nothing if all pages are already tracked
+   * by the map.
+   *
+   * <p>Every page of the cluster is read once, so the first open of the big database created by
+   * previous versions takes noticeable time. Pages are processed in batches of {@link
+   * #FREE_SPACE_MAP_BUILD_BATCH_SIZE} pages, each batch is processed inside its own atomic operation
+   * which also stores the index of the next page to process in the map. So amount of changes kept
+   * in memory by atomic operation is bounded and the build is resumed from the last processed batch
+   * if it is interrupted. The cluster may be used while the map is built, pages which are not added
+   * to the map yet are not reused.
+   */
+  public void buildFreeSpaceMap() throws IOException {
+    final long buildPosition;
+    acquireSharedLock();
+    try {
+      buildPosition =
+          freeSpaceMap.getBuildPosition(OAtomicOperationsManager.getCurrentOperation());
+    } finally {
+      releaseSharedLock();
+    }
 
-      if (nextPageIndex >= 0) {
-        final OCacheEntry nextPageCacheEntry =
-            loadPageForWrite(atomicOperation, fileId, nextPageIndex, false, true);
-        try {
-          final OClusterPage nextPage = new OClusterPage(nextPageCacheEntry);
-          if (calculateFreePageIndex(nextPage) != prevFreePageIndex) {
-            calculateFreePageIndex(nextPage);
-          }
+    if (buildPosition == 0) {
+      return;
+    }
 
-          assert calculateFreePageIndex(nextPage) == prevFreePageIndex;
-          nextPage.setPrevPage(prevPageIndex);
+    OLogManager.instance()
+        .infoNoDb(this, "Building map of free space of pages of cluster %s", getName());
 
-        } finally {
-          releasePageFromWrite(atomicOperation, nextPageCacheEntry);
-        }
-      }
+    boolean completed;
+    do {
+      completed =
+          atomicOperationsManager.calculateInsideAtomicOperation(
+              null, this::addPagesToFreeSpaceMap);
+    } while (!completed);
 
-      localPage.setNextPage(-1);
-      localPage.setPrevPage(-1);
+    OLogManager.instance()
+        .infoNoDb(this, "Map of free space of pages of cluster %s is built", getName());
+  }
 
-      if (prevFreePageIndex < 0 && newFreePageIndex < 0) {
-        return;
+  /** @return <code>true</code> if all pages of the cluster are tracked by the map of free space. */
+  private boolean addPagesToFreeSpaceMap(final OAtomicOperation atomicOperation)
+      throws IOException {
+    acquireExclusiveLock();
+    try {
+      final long startIndex = freeSpaceMap.getBuildPosition(atomicOperation);
+      if (startIndex == 0) {
+        return true;
       }
 
-      if (prevFreePageIndex >= 0 && prevFreePageIndex < FREE_LIST_SIZE) {
-        if (prevPageIndex < 0) {
-          updateFreePagesList(prevFreePageIndex, nextPageIndex, atomicOperation);
-        }
+      final int fileSize;
+      final OCacheEntry stateCacheEntry =
+          loadPageForRead(atomicOperation, fileId, STATE_ENTRY_INDEX, false);
+      try {
+        final OPaginatedClusterStateV2 clusterState =
+            new OPaginatedClusterStateV2(stateCacheEntry);
+        fileSize = clusterState.getFileSize();
+      } finally {
+        releasePageFromRead(atomicOperation, stateCacheEntry);
       }
 
-      if (newFreePageIndex >= 0) {
-        long oldFreePage;
-        final OCacheEntry pinnedStateEntry =
-            loadPageForRead(atomicOperation, fileId, STATE_ENTRY_INDEX, true);
+      final long endIndex = Math.min(startIndex + FREE_SPACE_MAP_BUILD_BATCH_SIZE, fileSize + 1L);
+      for (long pageIndex = startIndex; pageIndex < endIndex; pageIndex++) {
+        final int freeSpace;
+        final boolean linked;
+        OCacheEntry cacheEntry = loadPageForRead(atomicOperation, fileId, pageIndex, false);
         try {
-          final OPaginatedClusterStateV2 clusterFreeList =
-              new OPaginatedClusterStateV2(pinnedStateEntry);
-          oldFreePage = clusterFreeList.getFreeListPage(newFreePageIndex);
+          final OClusterPage localPage = new OClusterPage(cacheEntry);
+          freeSpace = localPage.getMaxRecordSize();
+          linked = localPage.getNextPage() != -1 || localPage.getPrevPage() != -1;
         } finally {
-          releasePageFromRead(atomicOperation, pinnedStateEntry);
+          releasePageFromRead(atomicOperation, cacheEntry);
         }
 
-        if (oldFreePage >= 0) {
-          final OCacheEntry oldFreePageCacheEntry =
-              loadPageForWrite(atomicOperation, fileId, oldFreePage, false, true);
+        if (linked) {
+          cacheEntry = loadPageForWrite(atomicOperation, fileId, pageIndex, false, true);
           try {
-            final OClusterPage oldFreeLocalPage = new OClusterPage(oldFreePageCacheEntry);
-            assert calculateFreePageIndex(oldFreeLocalPage) == newFreePageIndex;
-
-            oldFreeLocalPage.setPrevPage(pageIndex);
+            final OClusterPage localPage = new OClusterPage(cacheEntry);
+            localPage.setNextPage(-1);
+            localPage.setPrevPage(-1);
           } finally {
-            releasePageFromWrite(atomicOperation, oldFreePageCacheEntry);
+            releasePageFromWrite(atomicOperation, cacheEntry);
           }
-
-          localPage.setNextPage(oldFreePage);
-          localPage.setPrevPage(-1);
         }
 
-        updateFreePagesList(newFreePageIndex, pageIndex, atomicOperation);
+        freeSpaceMap.updatePageFreeSpace(atomicOperation, pageIndex, freeSpace);
       }
-    } finally {
-      releasePageFromWrite(atomicOperation, cacheEntry);
-    }
-  }
 
-  private void updateFreePagesList(
-      final int freeListIndex, final long pageIndex, final OAtomicOperation atomicOperation)
-      throws IOException {
-    final OCacheEntry pinnedStateEntry =
-        loadPageForWrite(atomicOperation, fileId, STATE_ENTRY_INDEX, true, true);
-    try {
-      final OPaginatedClusterStateV2 paginatedClusterState =
-          new OPaginatedClusterStateV2(pinnedStateEntry);
-      paginatedClusterState.setFreeListPage(freeListIndex, (int) pageIndex);
+      final boolean completed = endIndex > fileSize;
+      freeSpaceMap.setBuildPosition(atomicOperation, completed ? 0 : endIndex);
+      return completed;
     } finally {
-      releasePageFromWrite(atomicOperation, pinnedStateEntry);
-    }
-  }
-
-  private static int calculateFreePageIndex(final OClusterPage localPage) {
-    int newFreePageIndex;
-    if (localPage.isEmpty()) {
-      newFreePageIndex = FREE_LIST_SIZE - 1;
-    } else {
-      newFreePageIndex = (localPage.getMaxRecordSize() - (ONE_KB - 1)) / ONE_KB;
-
-      newFreePageIndex -= LOWEST_FREELIST_BOUNDARY;
+      releaseExclusiveLock();
     }
-    return newFreePageIndex;
   }
 
   private void initCusterState(final OAtomicOperation atomicOperation) throws IOException {
@@ -39,13 +39,16 @@ import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.engine.local.OEngineLocalPaginated;
 import com.orientechnologies.orient.core.exception.OStorageException;
 import com.orientechnologies.orient.core.index.engine.v1.OCellBTreeMultiValueIndexEngine;
+import com.orientechnologies.orient.core.index.engine.v1.ONormalizedKeyBTreeIndexEngine;
 import com.orientechnologies.orient.core.storage.OChecksumMode;
 import com.orientechnologies.orient.core.storage.cache.OReadCache;
+import com.orientechnologies.orient.core.storage.cache.chm.AsyncReadCache;
 import com.orientechnologies.orient.core.storage.cache.local.OWOWCache;
 import com.orientechnologies.orient.core.storage.cache.local.doublewritelog.DoubleWriteLog;
 import com.orientechnologies.orient.core.storage.cache.local.doublewritelog.DoubleWriteLogGL;
 import com.orientechnologies.orient.core.storage.cache.local.doublewritelog.DoubleWriteLogNoOP;
 import com.orientechnologies.orient.core.storage.cluster.OClusterPositionMap;
+import com.orientechnologies.orient.core.storage.cluster.v2.FreeSpaceMap;
 import com.orientechnologies.orient.core.storage.config.OClusterBasedStorageConfiguration;
 import com.orientechnologies.orient.core.storage.fs.OFile;
 import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
@@ -125,6 +128,7 @@ public class OLocalPaginatedStorage extends OAbstractPaginatedStorage {
     OHashTableIndexEngine.TREE_FILE_EXTENSION,
     OHashTableIndexEngine.NULL_BUCKET_FILE_EXTENSION,
     OClusterPositionMap.DEF_EXTENSION,
+    FreeSpaceMap.DEF_EXTENSION,
     OSBTreeIndexEngine.DATA_FILE_EXTENSION,
     OIndexRIDContainer.INDEX_FILE_EXTENSION,
     OSBTreeCollectionManagerShared.DEFAULT_EXTENSION,
@@ -135,7 +139,9 @@ public class OLocalPaginatedStorage extends OAbstractPaginatedStorage {
     OClusterBasedStorageConfiguration.TREE_NULL_FILE_EXTENSION,
     OCellBTreeMultiValueIndexEngine.DATA_FILE_EXTENSION,
     OCellBTreeMultiValueIndexEngine.M_CONTAINER_EXTENSION,
-    DoubleWriteLogGL.EXTENSION
+    ONormalizedKeyBTreeIndexEngine.DATA_FILE_EXTENSION,
+    DoubleWriteLogGL.EXTENSION,
+    AsyncReadCache.CACHE_STATE_FILE
   };
 
   private static final int ONE_KB = 1024;
@@ -157,6 +163,7 @@ public class OLocalPaginatedStorage extends OAbstractPaginatedStorage {
   private final OClosableLinkedContainer<Long, OFile> files;
 
   private Future<?> fuzzyCheckpointTask;
+  private Future<?> diskCacheStateTask;
 
   private final long walMaxSegSize;
   private final long doubleWriteLogMaxSegSize;
@@ -562,6 +569,10 @@ public class OLocalPaginatedStorage extends OAbstractPaginatedStorage {
       fuzzyCheckpointTask.cancel(false);
     }
 
+    if (diskCacheStateTask != null) {
+      diskCacheStateTask.cancel(false);
+    }
+
     return params;
   }
 
@@ -748,6 +759,19 @@ public class OLocalPaginatedStorage extends OAbstractPaginatedStorage {
                 OGlobalConfiguration.WAL_FUZZY_CHECKPOINT_INTERVAL),
             TimeUnit.SECONDS);
 
+    final int diskCacheStateInterval =
+        contextConfiguration.getValueAsInteger(
+            OGlobalConfiguration.STORAGE_KEEP_DISK_CACHE_STATE_INTERVAL);
+    if (contextConfiguration.getValueAsBoolean(OGlobalConfiguration.STORAGE_KEEP_DISK_CACHE_STATE)
+        && diskCacheStateInterval > 0) {
+      diskCacheStateTask =
+          fuzzyCheckpointExecutor.scheduleWithFixedDelay(
+              new PeriodicDiskCacheStateStore(),
+              diskCacheStateInterval,
+              diskCacheStateInterval,
+              TimeUnit.SECONDS);
+    }
+
     final String configWalPath =
         contextConfiguration.getValueAsString(OGlobalConfiguration.WAL_LOCATION);
     final Path walPath;
@@ -757,6 +781,15 @@ public class OLocalPaginatedStorage extends OAbstractPaginatedStorage {
       walPath = Paths.get(configWalPath);
     }
 
+    final String configWalArchivePath =
+        contextConfiguration.getValueAsString(OGlobalConfiguration.WAL_ARCHIVE_PATH);
+    final Path walArchivePath;
+    if (configWalArchivePath == null || configWalArchivePath.isEmpty()) {
+      walArchivePath = null;
+    } else {
+      walArchivePath = Paths.get(configWalArchivePath).resolve(name);
+    }
+
     final CASDiskWriteAheadLog diskWriteAheadLog =
         new CASDiskWriteAheadLog(
             name,
@@ -784,7 +817,9 @@ public class OLocalPaginatedStorage extends OAbstractPaginatedStorage {
             contextConfiguration.getValueAsBoolean(
                 OGlobalConfiguration.STORAGE_PRINT_WAL_PERFORMANCE_STATISTICS),
             contextConfiguration.getValueAsInteger(
-                OGlobalConfiguration.STORAGE_PRINT_WAL_PERFORMANCE_INTERVAL));
+                OGlobalConfiguration.STORAGE_PRINT_WAL_PERFORMANCE_INTERVAL),
+            contextConfiguration.getValueAsBoolean(OGlobalConfiguration.WAL_SEGMENT_COMPRESSION),
+            walArchivePath);
 
     diskWriteAheadLog.addLowDiskSpaceListener(this);
     writeAheadLog = diskWriteAheadLog;
@@ -891,6 +926,26 @@ public class OLocalPaginatedStorage extends OAbstractPaginatedStorage {
     }
   }
 
+  private class PeriodicDiskCacheStateStore implements Runnable {
+    @Override
+    public final void run() {
+      if (status != STATUS.OPEN) {
+        return;
+      }
+
+      stateLock.acquireReadLock();
+      try {
+        if (status != STATUS.OPEN) {
+          return;
+        }
+
+        storeDiskCacheState();
+      } finally {
+        stateLock.releaseReadLock();
+      }
+    }
+  }
+
   private final class SegmentAdder implements Callable<Void> {
     private final long segment;
     private final CASDiskWriteAheadLog wal;
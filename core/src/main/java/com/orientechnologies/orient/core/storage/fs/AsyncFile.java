@@ -237,6 +237,30 @@ public final class AsyncFile implements OFile {
     }
   }
 
+  @Override
+  public IOResult read(final List<ORawPair<Long, ByteBuffer>> buffers) {
+    final CountDownLatch latch = new CountDownLatch(buffers.size());
+    final AsyncIOResult asyncIOResult = new AsyncIOResult(latch);
+
+    for (final ORawPair<Long, ByteBuffer> pair : buffers) {
+      final ByteBuffer byteBuffer = pair.second;
+      byteBuffer.rewind();
+      lock.sharedLock();
+      try {
+        checkForClose();
+        checkPosition(pair.first);
+
+        final long position = pair.first + HEADER_SIZE;
+        fileChannel.read(
+            byteBuffer, position, latch, new ReadHandler(byteBuffer, asyncIOResult, position));
+      } finally {
+        lock.sharedUnlock();
+      }
+    }
+
+    return asyncIOResult;
+  }
+
   @Override
   public long allocateSpace(int size) throws IOException {
     lock.sharedLock();
@@ -471,6 +495,43 @@ public final class AsyncFile implements OFile {
     }
   }
 
+  private final class ReadHandler implements CompletionHandler<Integer, CountDownLatch> {
+    private final ByteBuffer byteBuffer;
+    private final AsyncIOResult ioResult;
+    private final long position;
+
+    private ReadHandler(ByteBuffer byteBuffer, AsyncIOResult ioResult, long position) {
+      this.byteBuffer = byteBuffer;
+      this.ioResult = ioResult;
+      this.position = position;
+    }
+
+    @Override
+    public void completed(Integer result, CountDownLatch attachment) {
+      if (result >= 0 && byteBuffer.remaining() > 0) {
+        lock.sharedLock();
+        try {
+          checkForClose();
+
+          fileChannel.read(byteBuffer, position + byteBuffer.position(), attachment, this);
+        } finally {
+          lock.sharedUnlock();
+        }
+      } else {
+        attachment.countDown();
+      }
+    }
+
+    @Override
+    public void failed(Throwable exc, CountDownLatch attachment) {
+      ioResult.exc = exc;
+      OLogManager.instance()
+          .error(this, "Error during read operation from the file " + osFile, exc);
+
+      attachment.countDown();
+    }
+  }
+
   private static final class AsyncIOResult implements IOResult {
     private final CountDownLatch latch;
     private Throwable exc;
@@ -0,0 +1,950 @@
+package com.orientechnologies.orient.core.storage.fs;
+
+import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.exception.OStorageException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Data file which stores each page compressed by LZ4 in a slot of variable size. Callers see the
+ * same layout as for {@link AsyncFile}: a sequence of pages of fixed size addressed by their
+ * position in the file.
+ *
+ * <p>Slots are allocated in units of {@link #GRANULARITY} bytes after the header of the file. Each
+ * slot starts with a header which contains index of the page, generation of the write and size of
+ * the slot. Page is never overwritten in place, each write of the page goes to the smallest free
+ * run of units which is big enough, or to the end of the file, so readers use the previous slot
+ * till the write is completed. The previous slot becomes free only once the file is synced, so the
+ * last durable image of the page is not overwritten before its new image is durable too.
+ *
+ * <p>The indirection map from pages to slots is stored in the file when the file is synced or
+ * closed, and it is removed from the header of the file before the first slot is written after
+ * that. If the file is opened and map is not stored, because the file was not closed properly,
+ * map is rebuilt by a scan of slot headers. If the same page is found in several slots during the
+ * scan the one with the highest generation wins.
+ *
+ * <p>Torn writes of slots are detected by the checksum of the slot, such pages are read as zeros so
+ * they are treated as broken pages by the write cache and are restored from the double write log,
+ * the same way as torn pages of not compressed files.
+ */
+public final class CompressedFile implements OFile {
+  /** Size of allocation unit of the slots, the first unit of the file contains its header. */
+  public static final int GRANULARITY = 1024;
+
+  private static final long FILE_MAGIC = 0x4F43_5046_4C45_3031L;
+  private static final int FORMAT_VERSION = 2;
+  /** Files of the first version do not store map of slots, it is always rebuilt by the scan. */
+  private static final int FORMAT_VERSION_WITHOUT_MAP = 1;
+
+  private static final int FILE_MAGIC_OFFSET = 0;
+  private static final int FORMAT_VERSION_OFFSET = FILE_MAGIC_OFFSET + 8;
+  private static final int PAGE_SIZE_OFFSET = FORMAT_VERSION_OFFSET + 4;
+  private static final int PAGES_OFFSET = PAGE_SIZE_OFFSET + 4;
+  private static final int MAP_POSITION_OFFSET = PAGES_OFFSET + 8;
+  private static final int MAP_UNITS_OFFSET = MAP_POSITION_OFFSET + 8;
+  private static final int MAP_CHECKSUM_OFFSET = MAP_UNITS_OFFSET + 4;
+  private static final int FILE_HEADER_SIZE = MAP_CHECKSUM_OFFSET + 4;
+
+  /** Map of slots starts with the last generation and amount of entries. */
+  private static final int MAP_HEADER_SIZE = 8 + 4;
+  /** Entry of the map of slots: index of the page, position, units and generation of its slot. */
+  private static final int MAP_ENTRY_SIZE = 8 + 8 + 4 + 8;
+
+  private static final int SLOT_MAGIC = 0x5107_C0DE;
+
+  private static final int SLOT_MAGIC_OFFSET = 0;
+  private static final int SLOT_UNITS_OFFSET = SLOT_MAGIC_OFFSET + 4;
+  private static final int SLOT_PAGE_INDEX_OFFSET = SLOT_UNITS_OFFSET + 4;
+  private static final int SLOT_GENERATION_OFFSET = SLOT_PAGE_INDEX_OFFSET + 8;
+  private static final int SLOT_DATA_SIZE_OFFSET = SLOT_GENERATION_OFFSET + 8;
+  private static final int SLOT_DATA_CHECKSUM_OFFSET = SLOT_DATA_SIZE_OFFSET + 4;
+  private static final int SLOT_HEADER_CHECKSUM_OFFSET = SLOT_DATA_CHECKSUM_OFFSET + 4;
+  private static final int SLOT_HEADER_SIZE = SLOT_HEADER_CHECKSUM_OFFSET + 4;
+
+  /** Size of the chunks in which file is read during the scan of slot headers. */
+  private static final int SCAN_CHUNK_SIZE = 1024 * GRANULARITY;
+
+  private static final LZ4Compressor LZ_4_COMPRESSOR;
+  private static final LZ4FastDecompressor LZ_4_DECOMPRESSOR;
+
+  static {
+    final LZ4Factory factory = LZ4Factory.fastestInstance();
+    LZ_4_COMPRESSOR = factory.fastCompressor();
+    LZ_4_DECOMPRESSOR = factory.fastDecompressor();
+  }
+
+  private final OFile file;
+  private final int pageSize;
+
+  /**
+   * Protects map of slots and lists of free slots. Reads of pages hold shared lock till the end of
+   * IO operation, so slot can not be reused by another page while it is read.
+   */
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Serializes changes of the header which are forced to the disk, write lock is not held while
+   * header is forced, so pages can be read meanwhile.
+   */
+  private final Object headerLock = new Object();
+
+  private final Map<Long, Slot> slots = new HashMap<>();
+
+  /** Free runs of units by their positions, adjacent runs are merged. */
+  private final TreeMap<Long, Integer> freeRuns = new TreeMap<>();
+  /** Positions of free runs by their sizes, used to find the smallest run which fits the slot. */
+  private final TreeMap<Integer, TreeSet<Long>> freeRunsBySize = new TreeMap<>();
+  /** Slots which are not used anymore but can not be reused till the next sync of the file. */
+  private List<Slot> pendingSlots = new ArrayList<>();
+
+  private final AtomicLong pages = new AtomicLong();
+  private long storedPages;
+  private long generation;
+  private boolean loaded;
+
+  /** Position of the map of slots stored in the file or zero if stored map is not valid. */
+  private long mapPosition;
+  private int mapUnits;
+  private int mapChecksum;
+
+  /** Incremented on each change of the map of slots, so outdated stored map is detected. */
+  private long slotsVersion;
+  /** Value of {@link #slotsVersion} at the moment when map of slots was stored. */
+  private long mapSlotsVersion;
+
+  public CompressedFile(final OFile file, final int pageSize) {
+    this.file = file;
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Checks whether file stored at passed in path has format of compressed file.
+   *
+   * @param path Path to the file.
+   * @return <code>true</code> if file exists and pages of this file are compressed.
+   */
+  public static boolean isCompressed(final Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return false;
+    }
+
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE + FILE_HEADER_SIZE) {
+        return false;
+      }
+
+      final ByteBuffer buffer = ByteBuffer.allocate(8);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, HEADER_SIZE + FILE_MAGIC_OFFSET + buffer.position()) < 0) {
+          return false;
+        }
+      }
+
+      return buffer.getLong(0) == FILE_MAGIC;
+    }
+  }
+
+  @Override
+  public void create() throws IOException {
+    lock.writeLock().lock();
+    try {
+      file.create();
+
+      file.allocateSpace(GRANULARITY);
+      resetMap();
+      writeFileHeader(0);
+
+      loaded = true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void open() {
+    lock.writeLock().lock();
+    try {
+      file.open();
+
+      if (!loaded) {
+        loadSlots();
+      }
+    } catch (final IOException e) {
+      throw OException.wrapException(
+          new OStorageException("Can not load map of pages of file " + file.getName()), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public long allocateSpace(final int size) {
+    assert size % pageSize == 0;
+    return pages.getAndAdd(size / pageSize) * pageSize;
+  }
+
+  @Override
+  public void shrink(final long size) throws IOException {
+    lock.writeLock().lock();
+    try {
+      // slots of removed pages would be found again by the scan of the file, so only truncation
+      // of the whole content is supported, which is the only one used by write cache
+      if (size != 0) {
+        throw new IllegalArgumentException(
+            "Compressed file " + file.getName() + " can be truncated only to zero size");
+      }
+
+      slots.clear();
+      clearFreeRuns();
+      pendingSlots = new ArrayList<>();
+      slotsVersion++;
+
+      file.shrink(0);
+      file.allocateSpace(GRANULARITY);
+
+      pages.set(0);
+      resetMap();
+      writeFileHeader(0);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public long getFileSize() {
+    return pages.get() * pageSize;
+  }
+
+  @Override
+  public void read(final long offset, final ByteBuffer buffer, final boolean throwOnEof)
+      throws IOException {
+    assert offset % pageSize == 0;
+    assert buffer.limit() % pageSize == 0;
+
+    lock.readLock().lock();
+    try {
+      final long firstPage = offset / pageSize;
+      final int pagesToRead = buffer.limit() / pageSize;
+
+      for (int i = 0; i < pagesToRead; i++) {
+        final long pageIndex = firstPage + i;
+
+        if (pageIndex >= pages.get() && throwOnEof) {
+          throw new EOFException("End of file " + file.getName() + " is reached.");
+        }
+
+        readPage(pageIndex, buffer, i * pageSize);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void readPage(final long pageIndex, final ByteBuffer buffer, final int bufferOffset)
+      throws IOException {
+    final Slot slot = slots.get(pageIndex);
+    if (slot == null) {
+      fillWithZeros(buffer, bufferOffset);
+      return;
+    }
+
+    final ByteBuffer slotBuffer = ByteBuffer.allocate(slot.units * GRANULARITY);
+    file.read(slot.position, slotBuffer, true);
+
+    final int dataSize = slotBuffer.getInt(SLOT_DATA_SIZE_OFFSET);
+    if (!isValidSlotHeader(slotBuffer, 0)
+        || slotBuffer.getLong(SLOT_PAGE_INDEX_OFFSET) != pageIndex
+        || slotBuffer.getInt(SLOT_DATA_CHECKSUM_OFFSET)
+            != dataChecksum(slotBuffer, SLOT_HEADER_SIZE, dataSize)) {
+      OLogManager.instance()
+          .error(this, "Slot of page %d of file %s is broken", null, pageIndex, file.getName());
+      fillWithZeros(buffer, bufferOffset);
+      return;
+    }
+
+    if (dataSize == pageSize) {
+      final ByteBuffer page = buffer.duplicate();
+      page.position(bufferOffset);
+      page.put(slotBuffer.array(), SLOT_HEADER_SIZE, pageSize);
+    } else {
+      try {
+        LZ_4_DECOMPRESSOR.decompress(slotBuffer, SLOT_HEADER_SIZE, buffer, bufferOffset, pageSize);
+      } catch (final LZ4Exception e) {
+        OLogManager.instance()
+            .error(
+                this, "Page %d of file %s can not be decompressed", e, pageIndex, file.getName());
+        fillWithZeros(buffer, bufferOffset);
+      }
+    }
+  }
+
+  private void fillWithZeros(final ByteBuffer buffer, final int bufferOffset) {
+    final ByteBuffer page = buffer.duplicate();
+    page.position(bufferOffset);
+    page.put(new byte[pageSize]);
+  }
+
+  @Override
+  public void write(final long offset, final ByteBuffer buffer) throws IOException {
+    final List<ORawPair<Long, ByteBuffer>> buffers = new ArrayList<>(1);
+    buffers.add(new ORawPair<>(offset, buffer));
+
+    write(buffers).await();
+  }
+
+  @Override
+  public IOResult write(final List<ORawPair<Long, ByteBuffer>> buffers) throws IOException {
+    final List<ORawPair<Long, ByteBuffer>> slotBuffers = new ArrayList<>();
+    final List<ORawPair<Long, Slot>> writtenSlots = new ArrayList<>();
+
+    final List<ORawPair<Long, ByteBuffer>> compressedPages = new ArrayList<>();
+    for (final ORawPair<Long, ByteBuffer> pair : buffers) {
+      final ByteBuffer buffer = pair.second;
+      assert pair.first % pageSize == 0;
+      assert buffer.limit() % pageSize == 0;
+
+      final long firstPage = pair.first / pageSize;
+      final int pagesToWrite = buffer.limit() / pageSize;
+
+      for (int i = 0; i < pagesToWrite; i++) {
+        final long pageIndex = firstPage + i;
+        compressedPages.add(
+            new ORawPair<>(pageIndex, compressPage(buffer, i * pageSize, pageIndex)));
+      }
+    }
+
+    invalidateMap();
+
+    lock.writeLock().lock();
+    try {
+      for (final ORawPair<Long, ByteBuffer> compressedPage : compressedPages) {
+        final long pageIndex = compressedPage.first;
+        final ByteBuffer slotBuffer = compressedPage.second;
+
+        if (pageIndex >= pages.get()) {
+          throw new OStorageException(
+              "You are going to access region outside of allocated file position. File size = "
+                  + getFileSize()
+                  + ", requested position "
+                  + pageIndex * pageSize);
+        }
+
+        final int units = slotBuffer.getInt(SLOT_UNITS_OFFSET);
+        final long position = allocateSlot(units);
+
+        generation++;
+        final Slot slot = new Slot(position, units, generation);
+
+        slotBuffer.putLong(SLOT_GENERATION_OFFSET, generation);
+        slotBuffer.putInt(SLOT_HEADER_CHECKSUM_OFFSET, headerChecksum(slotBuffer, 0));
+
+        slotBuffers.add(new ORawPair<>(position, slotBuffer));
+        writtenSlots.add(new ORawPair<>(pageIndex, slot));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    final IOResult ioResult = file.write(slotBuffers);
+    return () -> {
+      ioResult.await();
+      publishSlots(writtenSlots);
+    };
+  }
+
+  /**
+   * Makes written slots visible for readers. Till this moment pages are read from their previous
+   * slots, which are released once the file is synced. Map which was stored while slots were
+   * written does not contain them, so it is stored again during the next sync.
+   */
+  private void publishSlots(final List<ORawPair<Long, Slot>> writtenSlots) {
+    lock.writeLock().lock();
+    try {
+      for (final ORawPair<Long, Slot> writtenSlot : writtenSlots) {
+        final Slot slot = writtenSlot.second;
+        final Slot currentSlot = slots.get(writtenSlot.first);
+
+        if (currentSlot == null || currentSlot.generation < slot.generation) {
+          slots.put(writtenSlot.first, slot);
+
+          if (currentSlot != null) {
+            pendingSlots.add(currentSlot);
+          }
+        } else {
+          pendingSlots.add(slot);
+        }
+      }
+
+      slotsVersion++;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private ByteBuffer compressPage(
+      final ByteBuffer buffer, final int bufferOffset, final long pageIndex) {
+    final ByteBuffer slotBuffer =
+        ByteBuffer.allocate(SLOT_HEADER_SIZE + LZ_4_COMPRESSOR.maxCompressedLength(pageSize));
+
+    int dataSize =
+        LZ_4_COMPRESSOR.compress(
+            buffer,
+            bufferOffset,
+            pageSize,
+            slotBuffer,
+            SLOT_HEADER_SIZE,
+            slotBuffer.capacity() - SLOT_HEADER_SIZE);
+
+    // page is stored as is if compression does not save even single unit of space
+    if (unitsForData(dataSize) >= unitsForData(pageSize)) {
+      dataSize = pageSize;
+
+      final ByteBuffer page = buffer.duplicate();
+      page.limit(bufferOffset + pageSize);
+      page.position(bufferOffset);
+
+      slotBuffer.position(SLOT_HEADER_SIZE);
+      slotBuffer.put(page);
+    }
+
+    final int units = unitsForData(dataSize);
+
+    slotBuffer.putInt(SLOT_MAGIC_OFFSET, SLOT_MAGIC);
+    slotBuffer.putInt(SLOT_UNITS_OFFSET, units);
+    slotBuffer.putLong(SLOT_PAGE_INDEX_OFFSET, pageIndex);
+    slotBuffer.putInt(SLOT_DATA_SIZE_OFFSET, dataSize);
+    slotBuffer.putInt(
+        SLOT_DATA_CHECKSUM_OFFSET, dataChecksum(slotBuffer, SLOT_HEADER_SIZE, dataSize));
+
+    slotBuffer.position(0);
+    slotBuffer.limit(units * GRANULARITY);
+
+    return slotBuffer;
+  }
+
+  private static int unitsForData(final int dataSize) {
+    return (SLOT_HEADER_SIZE + dataSize + GRANULARITY - 1) / GRANULARITY;
+  }
+
+  /** Allocates slot in the smallest free run which is big enough or at the end of the file. */
+  private long allocateSlot(final int units) throws IOException {
+    final Map.Entry<Integer, TreeSet<Long>> fittingRuns = freeRunsBySize.ceilingEntry(units);
+    if (fittingRuns == null) {
+      return file.allocateSpace(units * GRANULARITY);
+    }
+
+    final int runUnits = fittingRuns.getKey();
+    final long position = fittingRuns.getValue().first();
+
+    removeFreeRun(position, runUnits);
+    if (runUnits > units) {
+      addFreeRun(position + (long) units * GRANULARITY, runUnits - units);
+    }
+
+    return position;
+  }
+
+  /** Returns units to the free space merging them with adjacent free runs. */
+  private void freeSlot(long position, int units) {
+    final Map.Entry<Long, Integer> previous = freeRuns.lowerEntry(position);
+    if (previous != null
+        && previous.getKey() + (long) previous.getValue() * GRANULARITY == position) {
+      removeFreeRun(previous.getKey(), previous.getValue());
+
+      position = previous.getKey();
+      units += previous.getValue();
+    }
+
+    final Integer nextUnits = freeRuns.get(position + (long) units * GRANULARITY);
+    if (nextUnits != null) {
+      removeFreeRun(position + (long) units * GRANULARITY, nextUnits);
+      units += nextUnits;
+    }
+
+    addFreeRun(position, units);
+  }
+
+  private void addFreeRun(final long position, final int units) {
+    freeRuns.put(position, units);
+    freeRunsBySize.computeIfAbsent(units, (size) -> new TreeSet<>()).add(position);
+  }
+
+  private void removeFreeRun(final long position, final int units) {
+    freeRuns.remove(position);
+
+    final TreeSet<Long> runsOfSize = freeRunsBySize.get(units);
+    runsOfSize.remove(position);
+    if (runsOfSize.isEmpty()) {
+      freeRunsBySize.remove(units);
+    }
+  }
+
+  private void clearFreeRuns() {
+    freeRuns.clear();
+    freeRunsBySize.clear();
+  }
+
+  /**
+   * Free space is everything which is not occupied by the slots of pages or by the stored map of
+   * slots, including units of broken slots.
+   */
+  private void rebuildFreeRuns(final long fileSize) {
+    clearFreeRuns();
+
+    final List<Slot> usedSlots = new ArrayList<>(slots.values());
+    if (mapPosition > 0) {
+      usedSlots.add(new Slot(mapPosition, mapUnits, 0));
+    }
+    usedSlots.sort(Comparator.comparingLong((slot) -> slot.position));
+
+    long position = GRANULARITY;
+    for (final Slot slot : usedSlots) {
+      if (slot.position > position) {
+        addFreeRun(position, (int) ((slot.position - position) / GRANULARITY));
+      }
+      position = Math.max(position, slot.position + (long) slot.units * GRANULARITY);
+    }
+
+    if (fileSize / GRANULARITY * GRANULARITY > position) {
+      addFreeRun(position, (int) ((fileSize - position) / GRANULARITY));
+    }
+  }
+
+  /**
+   * Loads map of slots stored in the file, or rebuilds it from slot headers if stored map is absent
+   * or broken.
+   */
+  private void loadSlots() throws IOException {
+    slots.clear();
+    clearFreeRuns();
+    pendingSlots = new ArrayList<>();
+    generation = 0;
+    resetMap();
+
+    final long fileSize = file.getFileSize();
+    if (fileSize < GRANULARITY) {
+      throw new OStorageException("File " + file.getName() + " does not contain header");
+    }
+
+    final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+    file.read(0, header, true);
+
+    if (header.getLong(FILE_MAGIC_OFFSET) != FILE_MAGIC) {
+      throw new OStorageException("File " + file.getName() + " is not a compressed file");
+    }
+
+    final int version = header.getInt(FORMAT_VERSION_OFFSET);
+    if (version != FORMAT_VERSION && version != FORMAT_VERSION_WITHOUT_MAP) {
+      throw new OStorageException(
+          "Unsupported version of format of compressed file " + file.getName() + " : " + version);
+    }
+
+    if (header.getInt(PAGE_SIZE_OFFSET) != pageSize) {
+      throw new OStorageException(
+          "Page size of compressed file "
+              + file.getName()
+              + " is "
+              + header.getInt(PAGE_SIZE_OFFSET)
+              + " but "
+              + pageSize
+              + " is expected");
+    }
+
+    long filePages = header.getLong(PAGES_OFFSET);
+
+    final boolean mapLoaded =
+        version == FORMAT_VERSION
+            && loadMap(
+                header.getLong(MAP_POSITION_OFFSET),
+                header.getInt(MAP_UNITS_OFFSET),
+                header.getInt(MAP_CHECKSUM_OFFSET),
+                fileSize);
+    if (!mapLoaded) {
+      slots.clear();
+      generation = 0;
+      resetMap();
+
+      scanSlots(fileSize);
+    }
+
+    for (final long pageIndex : slots.keySet()) {
+      filePages = Math.max(filePages, pageIndex + 1);
+    }
+
+    rebuildFreeRuns(fileSize);
+
+    pages.set(filePages);
+    storedPages = filePages;
+    loaded = true;
+  }
+
+  /** @return <code>false</code> if map is not stored or it is broken. */
+  private boolean loadMap(
+      final long position, final int units, final int checksum, final long fileSize)
+      throws IOException {
+    if (position < GRANULARITY || units <= 0 || position + (long) units * GRANULARITY > fileSize) {
+      return false;
+    }
+
+    final ByteBuffer map = ByteBuffer.allocate(units * GRANULARITY);
+    file.read(position, map, true);
+
+    final int entries = map.getInt(8);
+    if (entries < 0 || MAP_HEADER_SIZE + (long) entries * MAP_ENTRY_SIZE > map.capacity()) {
+      return false;
+    }
+
+    if (dataChecksum(map, 0, MAP_HEADER_SIZE + entries * MAP_ENTRY_SIZE) != checksum) {
+      return false;
+    }
+
+    generation = map.getLong(0);
+
+    map.position(MAP_HEADER_SIZE);
+    for (int i = 0; i < entries; i++) {
+      final long pageIndex = map.getLong();
+      final long slotPosition = map.getLong();
+      final int slotUnits = map.getInt();
+      final long slotGeneration = map.getLong();
+
+      slots.put(pageIndex, new Slot(slotPosition, slotUnits, slotGeneration));
+    }
+
+    mapPosition = position;
+    mapUnits = units;
+    mapChecksum = checksum;
+    mapSlotsVersion = slotsVersion;
+    return true;
+  }
+
+  /**
+   * Rebuilds map of slots from slot headers. Headers which are broken are skipped unit by unit
+   * till the next valid header is found.
+   */
+  private void scanSlots(final long fileSize) throws IOException {
+    final ByteBuffer chunk = ByteBuffer.allocate(SCAN_CHUNK_SIZE);
+    long chunkPosition = -1;
+    int chunkSize = 0;
+
+    long position = GRANULARITY;
+    while (position + SLOT_HEADER_SIZE <= fileSize) {
+      if (chunkPosition < 0 || position + SLOT_HEADER_SIZE > chunkPosition + chunkSize) {
+        chunkPosition = position;
+        chunkSize = (int) Math.min(SCAN_CHUNK_SIZE, fileSize - position);
+
+        chunk.clear();
+        chunk.limit(chunkSize);
+        file.read(chunkPosition, chunk, true);
+      }
+
+      final int slotOffset = (int) (position - chunkPosition);
+      if (!isValidSlotHeader(chunk, slotOffset)
+          || position + (long) chunk.getInt(slotOffset + SLOT_UNITS_OFFSET) * GRANULARITY
+              > fileSize) {
+        position += GRANULARITY;
+        continue;
+      }
+
+      final int units = chunk.getInt(slotOffset + SLOT_UNITS_OFFSET);
+      final long pageIndex = chunk.getLong(slotOffset + SLOT_PAGE_INDEX_OFFSET);
+      final long slotGeneration = chunk.getLong(slotOffset + SLOT_GENERATION_OFFSET);
+
+      final Slot currentSlot = slots.get(pageIndex);
+      if (currentSlot == null || currentSlot.generation < slotGeneration) {
+        slots.put(pageIndex, new Slot(position, units, slotGeneration));
+      }
+
+      generation = Math.max(generation, slotGeneration);
+      position += (long) units * GRANULARITY;
+    }
+  }
+
+  private boolean isValidSlotHeader(final ByteBuffer buffer, final int offset) {
+    if (buffer.getInt(offset + SLOT_MAGIC_OFFSET) != SLOT_MAGIC
+        || buffer.getInt(offset + SLOT_HEADER_CHECKSUM_OFFSET) != headerChecksum(buffer, offset)) {
+      return false;
+    }
+
+    final int units = buffer.getInt(offset + SLOT_UNITS_OFFSET);
+    final int dataSize = buffer.getInt(offset + SLOT_DATA_SIZE_OFFSET);
+
+    return units > 0
+        && dataSize > 0
+        && dataSize <= pageSize
+        && unitsForData(dataSize) == units
+        && buffer.getLong(offset + SLOT_PAGE_INDEX_OFFSET) >= 0;
+  }
+
+  private static int headerChecksum(final ByteBuffer buffer, final int offset) {
+    return dataChecksum(buffer, offset, SLOT_HEADER_CHECKSUM_OFFSET);
+  }
+
+  private static int dataChecksum(final ByteBuffer buffer, final int offset, final int size) {
+    final ByteBuffer data = buffer.duplicate();
+    data.limit(offset + size);
+    data.position(offset);
+
+    final CRC32 crc32 = new CRC32();
+    crc32.update(data);
+    return (int) crc32.getValue();
+  }
+
+  private void writeFileHeader(final long filePages) throws IOException {
+    file.write(0, fileHeader(filePages));
+  }
+
+  private ByteBuffer fileHeader(final long filePages) {
+    final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+    header.putLong(FILE_MAGIC_OFFSET, FILE_MAGIC);
+    header.putInt(FORMAT_VERSION_OFFSET, FORMAT_VERSION);
+    header.putInt(PAGE_SIZE_OFFSET, pageSize);
+    header.putLong(PAGES_OFFSET, filePages);
+    header.putLong(MAP_POSITION_OFFSET, mapPosition);
+    header.putInt(MAP_UNITS_OFFSET, mapUnits);
+    header.putInt(MAP_CHECKSUM_OFFSET, mapChecksum);
+
+    storedPages = filePages;
+    return header;
+  }
+
+  private void resetMap() {
+    mapPosition = 0;
+    mapUnits = 0;
+    mapChecksum = 0;
+  }
+
+  /**
+   * Removes stored map of slots from the header before slots are written. Header is forced to the
+   * disk, so stale map can not be loaded after a crash. Units of the map are free after this call.
+   */
+  private void invalidateMap() throws IOException {
+    synchronized (headerLock) {
+      final long position;
+      final int units;
+      final ByteBuffer header;
+
+      lock.writeLock().lock();
+      try {
+        if (mapPosition == 0) {
+          return;
+        }
+
+        position = mapPosition;
+        units = mapUnits;
+
+        resetMap();
+        header = fileHeader(pages.get());
+      } finally {
+        lock.writeLock().unlock();
+      }
+
+      // concurrent writers wait on the header lock till the header is durable
+      file.write(0, header);
+      file.synch();
+
+      lock.writeLock().lock();
+      try {
+        freeSlot(position, units);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Stores map of slots and amount of allocated pages in the file if they were changed since the
+   * last store. Units of the previous map are released with the rest of pending slots.
+   */
+  private void storeMap() throws IOException {
+    lock.writeLock().lock();
+    try {
+      if (mapPosition > 0) {
+        if (mapSlotsVersion == slotsVersion) {
+          final long filePages = pages.get();
+          if (storedPages != filePages) {
+            writeFileHeader(filePages);
+          }
+          return;
+        }
+
+        pendingSlots.add(new Slot(mapPosition, mapUnits, 0));
+        resetMap();
+      }
+
+      final ByteBuffer map = ByteBuffer.allocate(MAP_HEADER_SIZE + slots.size() * MAP_ENTRY_SIZE);
+      map.putLong(generation);
+      map.putInt(slots.size());
+      for (final Map.Entry<Long, Slot> entry : slots.entrySet()) {
+        final Slot slot = entry.getValue();
+
+        map.putLong(entry.getKey());
+        map.putLong(slot.position);
+        map.putInt(slot.units);
+        map.putLong(slot.generation);
+      }
+      map.flip();
+
+      final int units = (map.limit() + GRANULARITY - 1) / GRANULARITY;
+      final long position = allocateSlot(units);
+      final int checksum = dataChecksum(map, 0, map.limit());
+
+      file.write(position, map);
+
+      mapPosition = position;
+      mapUnits = units;
+      mapChecksum = checksum;
+      mapSlotsVersion = slotsVersion;
+      writeFileHeader(pages.get());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Slots which were released before the map is stored become free once the map and the slots which
+   * replaced them are forced to the disk.
+   */
+  @Override
+  public void synch() {
+    synchronized (headerLock) {
+      final List<Slot> releasedSlots;
+      try {
+        storeMap();
+      } catch (final IOException e) {
+        throw OException.wrapException(
+            new OStorageException("Error during store of map of pages of file " + file.getName()),
+            e);
+      }
+
+      lock.writeLock().lock();
+      try {
+        releasedSlots = pendingSlots;
+        pendingSlots = new ArrayList<>();
+      } finally {
+        lock.writeLock().unlock();
+      }
+
+      file.synch();
+
+      lock.writeLock().lock();
+      try {
+        for (final Slot slot : releasedSlots) {
+          freeSlot(slot.position, slot.units);
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (file.isOpen()) {
+      synchronized (headerLock) {
+        try {
+          // pending slots are free in the stored map
+          storeMap();
+        } catch (final IOException e) {
+          throw OException.wrapException(
+              new OStorageException(
+                  "Error during store of map of pages of file " + file.getName()),
+              e);
+        }
+      }
+    }
+
+    file.close();
+  }
+
+  @Override
+  public void delete() throws IOException, InterruptedException {
+    lock.writeLock().lock();
+    try {
+      file.delete();
+
+      slots.clear();
+      clearFreeRuns();
+      pendingSlots = new ArrayList<>();
+      pages.set(0);
+      resetMap();
+      loaded = false;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return file.isOpen();
+  }
+
+  @Override
+  public boolean exists() {
+    return file.exists();
+  }
+
+  @Override
+  public String getName() {
+    return file.getName();
+  }
+
+  @Override
+  public void renameTo(final Path newFile) throws IOException, InterruptedException {
+    lock.writeLock().lock();
+    try {
+      file.renameTo(newFile);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void replaceContentWith(final Path newContentFile)
+      throws IOException, InterruptedException {
+    lock.writeLock().lock();
+    try {
+      file.replaceContentWith(newContentFile);
+      loadSlots();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return file.toString();
+  }
+
+  private static final class Slot {
+    private final long position;
+    private final int units;
+    private final long generation;
+
+    private Slot(final long position, final int units, final long generation) {
+      this.position = position;
+      this.units = units;
+      this.generation = generation;
+    }
+  }
+}
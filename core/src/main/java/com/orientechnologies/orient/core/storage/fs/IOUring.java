@@ -0,0 +1,472 @@
+package com.orientechnologies.orient.core.storage.fs;
+
+import com.kenai.jffi.MemoryIO;
+import com.kenai.jffi.Platform;
+import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.common.jnr.LastErrorException;
+import com.orientechnologies.common.jnr.ONative;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.exception.OStorageException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import sun.misc.Unsafe;
+
+/**
+ * Single io_uring instance shared by all {@link IOUringFile}s. Requests are added to the submission
+ * queue in batches and submitted by a single system call, completions are processed by the
+ * dedicated daemon thread which also resubmits requests completed only partially.
+ *
+ * <p>Amount of requests which are in progress is limited by the size of the submission queue, so
+ * queue of completions can not overflow.
+ */
+final class IOUring {
+  private static final int RING_ENTRIES = 1024;
+
+  private static final byte IORING_OP_READ = 22;
+  private static final byte IORING_OP_WRITE = 23;
+
+  private static final int IORING_ENTER_GETEVENTS = 1;
+
+  /** Is reported by kernels (5.6+) which support {@link #IORING_OP_READ} and write operations. */
+  private static final int IORING_FEAT_RW_CUR_POS = 1 << 3;
+
+  private static final long IORING_OFF_SQ_RING = 0;
+  private static final long IORING_OFF_CQ_RING = 0x8000000L;
+  private static final long IORING_OFF_SQES = 0x10000000L;
+
+  private static final int PARAMS_SIZE = 120;
+  private static final int PARAMS_SQ_ENTRIES_OFFSET = 0;
+  private static final int PARAMS_CQ_ENTRIES_OFFSET = 4;
+  private static final int PARAMS_FEATURES_OFFSET = 20;
+  private static final int PARAMS_SQ_OFF_OFFSET = 40;
+  private static final int PARAMS_CQ_OFF_OFFSET = 80;
+
+  private static final int SQ_OFF_HEAD = 0;
+  private static final int SQ_OFF_TAIL = 4;
+  private static final int SQ_OFF_RING_MASK = 8;
+  private static final int SQ_OFF_ARRAY = 24;
+
+  private static final int CQ_OFF_HEAD = 0;
+  private static final int CQ_OFF_TAIL = 4;
+  private static final int CQ_OFF_RING_MASK = 8;
+  private static final int CQ_OFF_CQES = 20;
+
+  private static final int SQE_SIZE = 64;
+  private static final int SQE_OPCODE_OFFSET = 0;
+  private static final int SQE_FD_OFFSET = 4;
+  private static final int SQE_OFF_OFFSET = 8;
+  private static final int SQE_ADDR_OFFSET = 16;
+  private static final int SQE_LEN_OFFSET = 24;
+  private static final int SQE_USER_DATA_OFFSET = 32;
+
+  private static final int CQE_SIZE = 16;
+  private static final int CQE_USER_DATA_OFFSET = 0;
+  private static final int CQE_RES_OFFSET = 8;
+
+  private static final Unsafe UNSAFE;
+  private static final MemoryIO MEMORY = MemoryIO.getInstance();
+
+  private static volatile IOUring instance;
+  private static volatile boolean initialized;
+
+  static {
+    UNSAFE =
+        AccessController.doPrivileged(
+            (PrivilegedAction<Unsafe>)
+                () -> {
+                  try {
+                    final Field f = Unsafe.class.getDeclaredField("theUnsafe");
+                    f.setAccessible(true);
+                    return (Unsafe) f.get(null);
+                  } catch (NoSuchFieldException | IllegalAccessException e) {
+                    throw new Error(e);
+                  }
+                });
+  }
+
+  private final int ringFd;
+  private final int entries;
+
+  private final long sqHead;
+  private final long sqTail;
+  private final int sqMask;
+  private final long sqArray;
+  private final long sqes;
+
+  private final long cqHead;
+  private final long cqTail;
+  private final int cqMask;
+  private final long cqes;
+
+  private final Semaphore inProgress;
+  private final Object submitLock = new Object();
+
+  private final ConcurrentHashMap<Long, Request> requests = new ConcurrentHashMap<>();
+  private final AtomicLong requestIdGen = new AtomicLong();
+
+  /**
+   * @return Shared io_uring instance or <code>null</code> if io_uring is not supported by OS. The
+   *     reason why it is not supported is logged once.
+   */
+  static IOUring instance() {
+    if (initialized) {
+      return instance;
+    }
+
+    synchronized (IOUring.class) {
+      if (initialized) {
+        return instance;
+      }
+
+      try {
+        if (Platform.getPlatform().getOS() != Platform.OS.LINUX) {
+          OLogManager.instance().infoNoDb(IOUring.class, "io_uring is supported only on Linux");
+        } else {
+          instance = new IOUring(RING_ENTRIES);
+        }
+      } catch (final LastErrorException | IllegalStateException | LinkageError e) {
+        OLogManager.instance()
+            .warnNoDb(IOUring.class, "io_uring can not be initialized, %s", e.getMessage());
+      }
+
+      initialized = true;
+      return instance;
+    }
+  }
+
+  private IOUring(final int requestedEntries) {
+    final ONative nativeLib = ONative.instance();
+
+    final long params = MEMORY.allocateMemory(PARAMS_SIZE, true);
+    try {
+      ringFd = nativeLib.ioUringSetup(requestedEntries, params);
+      if (ringFd < 0) {
+        throw new IllegalStateException("io_uring_setup call failed");
+      }
+
+      if ((MEMORY.getInt(params + PARAMS_FEATURES_OFFSET) & IORING_FEAT_RW_CUR_POS) == 0) {
+        nativeLib.close(ringFd);
+        throw new IllegalStateException("read and write requests are not supported by kernel");
+      }
+
+      entries = MEMORY.getInt(params + PARAMS_SQ_ENTRIES_OFFSET);
+      final int cqEntries = MEMORY.getInt(params + PARAMS_CQ_ENTRIES_OFFSET);
+
+      final long sqOff = params + PARAMS_SQ_OFF_OFFSET;
+      final long cqOff = params + PARAMS_CQ_OFF_OFFSET;
+
+      // rings are never unmapped because instance is used till the end of the process
+      final long sqRingSize = MEMORY.getInt(sqOff + SQ_OFF_ARRAY) + (long) entries * Integer.BYTES;
+      final long sqRing = nativeLib.mmapShared(ringFd, IORING_OFF_SQ_RING, sqRingSize);
+      sqHead = sqRing + MEMORY.getInt(sqOff + SQ_OFF_HEAD);
+      sqTail = sqRing + MEMORY.getInt(sqOff + SQ_OFF_TAIL);
+      sqMask = MEMORY.getInt(sqRing + MEMORY.getInt(sqOff + SQ_OFF_RING_MASK));
+      sqArray = sqRing + MEMORY.getInt(sqOff + SQ_OFF_ARRAY);
+
+      sqes = nativeLib.mmapShared(ringFd, IORING_OFF_SQES, (long) entries * SQE_SIZE);
+
+      final long cqRingSize = MEMORY.getInt(cqOff + CQ_OFF_CQES) + (long) cqEntries * CQE_SIZE;
+      final long cqRing = nativeLib.mmapShared(ringFd, IORING_OFF_CQ_RING, cqRingSize);
+      cqHead = cqRing + MEMORY.getInt(cqOff + CQ_OFF_HEAD);
+      cqTail = cqRing + MEMORY.getInt(cqOff + CQ_OFF_TAIL);
+      cqMask = MEMORY.getInt(cqRing + MEMORY.getInt(cqOff + CQ_OFF_RING_MASK));
+      cqes = cqRing + MEMORY.getInt(cqOff + CQ_OFF_CQES);
+    } finally {
+      MEMORY.freeMemory(params);
+    }
+
+    inProgress = new Semaphore(entries);
+
+    final Thread completionThread = new Thread(this::processCompletions, "OrientDB io_uring");
+    completionThread.setDaemon(true);
+    completionThread.start();
+
+    OLogManager.instance()
+        .infoNoDb(this, "io_uring with %d entries is used for data files", entries);
+  }
+
+  /**
+   * Reads or writes content of passed in direct buffers at passed in positions of the file, each
+   * buffer is processed till its limit. Batch is notified once each of requests is completed.
+   */
+  void submit(
+      final int fd,
+      final boolean write,
+      final List<ORawPair<Long, ByteBuffer>> buffers,
+      final Batch batch) {
+    int index = 0;
+    while (index < buffers.size()) {
+      final int requestsCount = Math.min(entries, buffers.size() - index);
+      inProgress.acquireUninterruptibly(requestsCount);
+
+      synchronized (submitLock) {
+        for (int i = 0; i < requestsCount; i++) {
+          final ORawPair<Long, ByteBuffer> pair = buffers.get(index + i);
+          final ByteBuffer buffer = pair.second;
+          assert buffer.isDirect();
+
+          final Request request =
+              new Request(
+                  fd,
+                  write ? IORING_OP_WRITE : IORING_OP_READ,
+                  buffer,
+                  MEMORY.getDirectBufferAddress(buffer),
+                  buffer.limit(),
+                  pair.first,
+                  batch);
+          addToSubmissionQueue(request);
+        }
+
+        try {
+          submitQueued(requestsCount);
+        } catch (final RuntimeException e) {
+          // requests which are not added to the queue yet are never completed by the kernel
+          for (int i = index + requestsCount; i < buffers.size(); i++) {
+            batch.fail(e);
+            batch.requestCompleted();
+          }
+
+          throw e;
+        }
+      }
+
+      index += requestsCount;
+    }
+  }
+
+  private void addToSubmissionQueue(final Request request) {
+    final long id = requestIdGen.incrementAndGet();
+    requests.put(id, request);
+
+    final int tail = MEMORY.getInt(sqTail);
+    final int index = tail & sqMask;
+    final long sqe = sqes + (long) index * SQE_SIZE;
+
+    MEMORY.setMemory(sqe, SQE_SIZE, (byte) 0);
+    MEMORY.putByte(sqe + SQE_OPCODE_OFFSET, request.opcode);
+    MEMORY.putInt(sqe + SQE_FD_OFFSET, request.fd);
+    MEMORY.putLong(sqe + SQE_OFF_OFFSET, request.position);
+    MEMORY.putLong(sqe + SQE_ADDR_OFFSET, request.address);
+    MEMORY.putInt(sqe + SQE_LEN_OFFSET, request.remaining);
+    MEMORY.putLong(sqe + SQE_USER_DATA_OFFSET, id);
+
+    MEMORY.putInt(sqArray + (long) index * Integer.BYTES, index);
+
+    // entry has to be visible to the kernel before the tail is moved
+    UNSAFE.storeFence();
+    MEMORY.putInt(sqTail, tail + 1);
+  }
+
+  /**
+   * Submits requests added to the submission queue. If submission fails, requests which are not
+   * consumed by the kernel yet are removed from the queue and failed, so their permits are released
+   * and their batches are completed.
+   */
+  private void submitQueued(final int toSubmit) {
+    try {
+      enter(toSubmit, 0, 0);
+    } catch (final RuntimeException e) {
+      final int tail = MEMORY.getInt(sqTail);
+      final int head = MEMORY.getInt(sqHead);
+      // entries have to be read after the head
+      UNSAFE.loadFence();
+
+      for (int i = head; i != tail; i++) {
+        final long sqe = sqes + (long) (i & sqMask) * SQE_SIZE;
+        final Request request = requests.remove(MEMORY.getLong(sqe + SQE_USER_DATA_OFFSET));
+        if (request != null) {
+          inProgress.release();
+          request.batch.fail(e);
+          request.batch.requestCompleted();
+        }
+      }
+
+      MEMORY.putInt(sqTail, head);
+      throw e;
+    }
+  }
+
+  private int enter(final int toSubmit, final int minComplete, final int flags) {
+    int submitted = 0;
+    while (true) {
+      try {
+        submitted +=
+            ONative.instance().ioUringEnter(ringFd, toSubmit - submitted, minComplete, flags);
+        if (submitted >= toSubmit) {
+          return submitted;
+        }
+      } catch (final LastErrorException e) {
+        if (e.getErrorCode() != ONative.EINTR) {
+          throw OException.wrapException(
+              new OStorageException("Error during submission of io_uring requests"), e);
+        }
+      }
+    }
+  }
+
+  private void processCompletions() {
+    while (true) {
+      try {
+        enter(0, 1, IORING_ENTER_GETEVENTS);
+
+        int head = MEMORY.getInt(cqHead);
+        final int tail = MEMORY.getInt(cqTail);
+        // entries have to be read after the tail
+        UNSAFE.loadFence();
+
+        while (head != tail) {
+          final long cqe = cqes + (long) (head & cqMask) * CQE_SIZE;
+          final long id = MEMORY.getLong(cqe + CQE_USER_DATA_OFFSET);
+          final int res = MEMORY.getInt(cqe + CQE_RES_OFFSET);
+
+          head++;
+          complete(id, res);
+        }
+
+        // entries have to be read before they are released to the kernel
+        UNSAFE.fullFence();
+        MEMORY.putInt(cqHead, head);
+      } catch (final RuntimeException e) {
+        OLogManager.instance().errorNoDb(this, "Error during processing of io_uring events", e);
+      }
+    }
+  }
+
+  private void complete(final long id, final int res) {
+    final Request request = requests.remove(id);
+    if (request == null) {
+      return;
+    }
+
+    if (res < 0) {
+      request.batch.fail(
+          new IOException(
+              "io_uring request failed with error code "
+                  + (-res)
+                  + ", position "
+                  + request.position));
+    } else if (res == 0) {
+      if (request.opcode == IORING_OP_WRITE) {
+        request.batch.fail(
+            new IOException("Data were not written at position " + request.position));
+      } else {
+        request.batch.endOfFile();
+      }
+    } else if (res < request.remaining) {
+      request.address += res;
+      request.position += res;
+      request.remaining -= res;
+
+      synchronized (submitLock) {
+        addToSubmissionQueue(request);
+        submitQueued(1);
+      }
+
+      return;
+    }
+
+    inProgress.release();
+    request.batch.requestCompleted();
+  }
+
+  /** Group of requests completion of which is awaited together. */
+  static class Batch implements IOResult {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final AtomicInteger remaining;
+    private volatile Throwable exc;
+    private volatile boolean endOfFile;
+
+    Batch(final int requests) {
+      this.remaining = new AtomicInteger(requests);
+      if (requests == 0) {
+        latch.countDown();
+      }
+    }
+
+    /**
+     * Is called once all requests of the batch are completed, before threads which await the batch
+     * are released. Batch is completed even if the caller never awaits it.
+     */
+    protected void onCompletion() {}
+
+    private void requestCompleted() {
+      if (remaining.decrementAndGet() > 0) {
+        return;
+      }
+
+      try {
+        onCompletion();
+      } catch (final RuntimeException e) {
+        fail(e);
+      } finally {
+        latch.countDown();
+      }
+    }
+
+    private void fail(final Throwable exc) {
+      this.exc = exc;
+    }
+
+    private void endOfFile() {
+      this.endOfFile = true;
+    }
+
+    boolean isEndOfFileReached() {
+      return endOfFile;
+    }
+
+    @Override
+    public void await() {
+      try {
+        latch.await();
+      } catch (final InterruptedException e) {
+        throw OException.wrapException(new OStorageException("IO operation was interrupted"), e);
+      }
+
+      if (exc != null) {
+        throw OException.wrapException(new OStorageException("Error during IO operation"), exc);
+      }
+    }
+  }
+
+  private static final class Request {
+    private final int fd;
+    private final byte opcode;
+    /** Reference to the buffer prevents release of its memory till the end of request. */
+    @SuppressWarnings({"unused", "FieldCanBeLocal"})
+    private final ByteBuffer buffer;
+
+    private final Batch batch;
+
+    private long address;
+    private int remaining;
+    private long position;
+
+    private Request(
+        final int fd,
+        final byte opcode,
+        final ByteBuffer buffer,
+        final long address,
+        final int remaining,
+        final long position,
+        final Batch batch) {
+      this.fd = fd;
+      this.opcode = opcode;
+      this.buffer = buffer;
+      this.address = address;
+      this.remaining = remaining;
+      this.position = position;
+      this.batch = batch;
+    }
+  }
+}
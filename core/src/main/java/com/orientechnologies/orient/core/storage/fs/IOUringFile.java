@@ -0,0 +1,446 @@
+package com.orientechnologies.orient.core.storage.fs;
+
+import com.orientechnologies.common.concur.lock.ScalableRWLock;
+import com.orientechnologies.common.directmemory.OByteBufferPool;
+import com.orientechnologies.common.directmemory.OPointer;
+import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.common.jnr.LastErrorException;
+import com.orientechnologies.common.jnr.ONative;
+import com.orientechnologies.common.log.OLogManager;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.exception.OStorageException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of {@link OFile} which reads and writes data through the shared io_uring instance
+ * of the process, so all pages passed to {@link #write(List)} or {@link #read(List)} are submitted
+ * to the kernel by a single system call. Has the same layout of the file as {@link AsyncFile}.
+ * Management of the size of the file and fsync are done by the usual {@link FileChannel}.
+ *
+ * <p>Data have to be placed in direct buffers, content of heap buffers is copied through the pages
+ * of the shared {@link OByteBufferPool}.
+ *
+ * @see #isSupported()
+ */
+public final class IOUringFile implements OFile {
+  private final ScalableRWLock lock = new ScalableRWLock();
+  private volatile Path osFile;
+
+  private final AtomicLong dirtyCounter = new AtomicLong();
+  private final Object flushSemaphore = new Object();
+
+  private final AtomicLong size = new AtomicLong();
+
+  private final IOUring ring;
+  private final OByteBufferPool bufferPool = OByteBufferPool.instance(null);
+
+  private FileChannel fileChannel;
+  private int fd = -1;
+
+  public IOUringFile(final Path osFile) {
+    this.osFile = osFile;
+    this.ring = IOUring.instance();
+
+    if (ring == null) {
+      throw new OStorageException("io_uring is not supported, file " + osFile + " can not be used");
+    }
+  }
+
+  /** @return <code>true</code> if io_uring is supported by OS and files of this type can be used */
+  public static boolean isSupported() {
+    return IOUring.instance() != null;
+  }
+
+  @Override
+  public void create() throws IOException {
+    lock.exclusiveLock();
+    try {
+      if (fileChannel != null) {
+        throw new OStorageException("File " + osFile + " is already opened.");
+      }
+
+      Files.createFile(osFile);
+
+      doOpen();
+    } finally {
+      lock.exclusiveUnlock();
+    }
+  }
+
+  @Override
+  public void open() {
+    lock.exclusiveLock();
+    try {
+      doOpen();
+    } catch (IOException e) {
+      throw OException.wrapException(new OStorageException("Can not open file " + osFile), e);
+    } finally {
+      lock.exclusiveUnlock();
+    }
+  }
+
+  private void doOpen() throws IOException {
+    if (fileChannel != null) {
+      throw new OStorageException("File " + osFile + " is already opened.");
+    }
+
+    fileChannel = FileChannel.open(osFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      fd = ONative.instance().open(osFile.toAbsolutePath().toString(), ONative.O_RDWR);
+    } catch (LastErrorException e) {
+      fileChannel.close();
+      fileChannel = null;
+
+      throw new IOException("Can not open file " + osFile, e);
+    }
+
+    if (fileChannel.size() < HEADER_SIZE) {
+      fileChannel.write(ByteBuffer.allocate(HEADER_SIZE), 0);
+      dirtyCounter.incrementAndGet();
+    }
+
+    size.set(fileChannel.size() - HEADER_SIZE);
+  }
+
+  @Override
+  public long getFileSize() {
+    return size.get();
+  }
+
+  @Override
+  public String getName() {
+    return osFile.getFileName().toString();
+  }
+
+  @Override
+  public boolean isOpen() {
+    lock.sharedLock();
+    try {
+      return fileChannel != null;
+    } finally {
+      lock.sharedUnlock();
+    }
+  }
+
+  @Override
+  public boolean exists() {
+    return Files.exists(osFile);
+  }
+
+  @Override
+  public void write(final long offset, final ByteBuffer buffer) {
+    write(Collections.singletonList(new ORawPair<>(offset, buffer))).await();
+  }
+
+  @Override
+  public IOResult write(final List<ORawPair<Long, ByteBuffer>> buffers) {
+    return submit(buffers, true);
+  }
+
+  @Override
+  public void read(final long offset, final ByteBuffer buffer, final boolean throwOnEof)
+      throws IOException {
+    final IOUring.Batch batch =
+        submit(Collections.singletonList(new ORawPair<>(offset, buffer)), false);
+    batch.await();
+
+    if (throwOnEof && batch.isEndOfFileReached()) {
+      throw new EOFException("End of file " + osFile + " is reached.");
+    }
+  }
+
+  @Override
+  public IOResult read(final List<ORawPair<Long, ByteBuffer>> buffers) {
+    return submit(buffers, false);
+  }
+
+  private IOUring.Batch submit(
+      final List<ORawPair<Long, ByteBuffer>> buffers, final boolean write) {
+    final List<ORawPair<Long, ByteBuffer>> requests = new ArrayList<>(buffers.size());
+    final List<HeapCopy> heapCopies = new ArrayList<>();
+
+    for (final ORawPair<Long, ByteBuffer> pair : buffers) {
+      final ByteBuffer buffer = pair.second;
+      buffer.rewind();
+
+      if (buffer.limit() == 0) {
+        continue;
+      }
+
+      if (buffer.isDirect()) {
+        requests.add(new ORawPair<>(pair.first + HEADER_SIZE, buffer));
+        continue;
+      }
+
+      // content of heap buffer is passed through the pages of the pool, one request per page
+      int offset = 0;
+      while (offset < buffer.limit()) {
+        final OPointer pointer = bufferPool.acquireDirect(false);
+        final ByteBuffer directBuffer =
+            pointer.getNativeByteBuffer().duplicate().order(ByteOrder.nativeOrder());
+        final int length = Math.min(directBuffer.capacity(), buffer.limit() - offset);
+        directBuffer.limit(length);
+
+        if (write) {
+          final ByteBuffer chunk = buffer.duplicate();
+          chunk.position(offset);
+          chunk.limit(offset + length);
+
+          directBuffer.put(chunk);
+          directBuffer.rewind();
+        }
+
+        heapCopies.add(new HeapCopy(buffer, offset, pointer, directBuffer));
+        requests.add(new ORawPair<>(pair.first + offset + HEADER_SIZE, directBuffer));
+
+        offset += length;
+      }
+    }
+
+    final IOUring.Batch batch =
+        new IOUring.Batch(requests.size()) {
+          // pages can not be reused while kernel may still access them
+          @Override
+          protected void onCompletion() {
+            if (heapCopies.isEmpty()) {
+              return;
+            }
+
+            try {
+              if (!write) {
+                for (final HeapCopy heapCopy : heapCopies) {
+                  heapCopy.copyBack();
+                }
+              }
+            } finally {
+              releasePages(heapCopies);
+            }
+          }
+        };
+
+    lock.sharedLock();
+    try {
+      try {
+        checkForClose();
+        for (final ORawPair<Long, ByteBuffer> request : requests) {
+          if (write) {
+            checkPosition(request.first - HEADER_SIZE);
+            checkPosition(request.first - HEADER_SIZE + request.second.limit() - 1);
+          } else {
+            checkPosition(request.first - HEADER_SIZE);
+          }
+        }
+      } catch (final RuntimeException e) {
+        releasePages(heapCopies);
+        throw e;
+      }
+
+      ring.submit(fd, write, requests, batch);
+    } finally {
+      lock.sharedUnlock();
+    }
+
+    if (write) {
+      dirtyCounter.incrementAndGet();
+    }
+
+    return batch;
+  }
+
+  private void releasePages(final List<HeapCopy> heapCopies) {
+    for (final HeapCopy heapCopy : heapCopies) {
+      bufferPool.release(heapCopy.pointer);
+    }
+  }
+
+  @Override
+  public long allocateSpace(final int size) throws IOException {
+    lock.sharedLock();
+    try {
+      checkForClose();
+
+      final long currentSize = this.size.addAndGet(size);
+      final long allocatedPosition = currentSize - size;
+
+      ONative.instance().fallocate(fd, allocatedPosition + HEADER_SIZE, size);
+      return allocatedPosition;
+    } catch (LastErrorException e) {
+      throw new IOException("Can not allocate space in file " + osFile, e);
+    } finally {
+      lock.sharedUnlock();
+    }
+  }
+
+  @Override
+  public void shrink(final long size) throws IOException {
+    lock.exclusiveLock();
+    try {
+      checkForClose();
+
+      fileChannel.truncate(size + HEADER_SIZE);
+      this.size.set(size);
+    } finally {
+      lock.exclusiveUnlock();
+    }
+  }
+
+  @Override
+  public void synch() {
+    lock.sharedLock();
+    try {
+      doSynch();
+    } finally {
+      lock.sharedUnlock();
+    }
+  }
+
+  private void doSynch() {
+    synchronized (flushSemaphore) {
+      final long dirtyCounterValue = dirtyCounter.get();
+      if (dirtyCounterValue > 0) {
+        try {
+          fileChannel.force(false);
+        } catch (final IOException e) {
+          OLogManager.instance()
+              .warn(
+                  this,
+                  "Error during flush of file %s. Data may be lost in case of power failure",
+                  e,
+                  getName());
+        }
+
+        dirtyCounter.addAndGet(-dirtyCounterValue);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.exclusiveLock();
+    try {
+      if (fileChannel != null) {
+        doSynch();
+      }
+
+      doClose();
+    } catch (IOException e) {
+      throw OException.wrapException(
+          new OStorageException("Error during closing the file " + osFile), e);
+    } finally {
+      lock.exclusiveUnlock();
+    }
+  }
+
+  private void doClose() throws IOException {
+    // ignore if closed
+    if (fileChannel != null) {
+      fileChannel.close();
+      fileChannel = null;
+
+      ONative.instance().close(fd);
+      fd = -1;
+    }
+  }
+
+  @Override
+  public void delete() throws IOException {
+    lock.exclusiveLock();
+    try {
+      doClose();
+
+      Files.delete(osFile);
+    } finally {
+      lock.exclusiveUnlock();
+    }
+  }
+
+  @Override
+  public void renameTo(final Path newFile) throws IOException {
+    lock.exclusiveLock();
+    try {
+      doClose();
+
+      //noinspection NonAtomicOperationOnVolatileField
+      osFile = Files.move(osFile, newFile);
+
+      doOpen();
+    } finally {
+      lock.exclusiveUnlock();
+    }
+  }
+
+  @Override
+  public void replaceContentWith(final Path newContentFile) throws IOException {
+    lock.exclusiveLock();
+    try {
+      doClose();
+
+      Files.copy(newContentFile, osFile, StandardCopyOption.REPLACE_EXISTING);
+
+      doOpen();
+    } finally {
+      lock.exclusiveUnlock();
+    }
+  }
+
+  private void checkPosition(final long offset) {
+    final long fileSize = size.get();
+    if (offset < 0 || offset >= fileSize) {
+      throw new OStorageException(
+          "You are going to access region outside of allocated file position. File size = "
+              + fileSize
+              + ", requested position "
+              + offset);
+    }
+  }
+
+  private void checkForClose() {
+    if (fileChannel == null) {
+      throw new OStorageException("File " + osFile + " is closed");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return osFile.toString();
+  }
+
+  /** Page of the pool which holds part of the content of the heap buffer during IO operation. */
+  private static final class HeapCopy {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final OPointer pointer;
+    private final ByteBuffer directBuffer;
+
+    private HeapCopy(
+        final ByteBuffer buffer,
+        final int offset,
+        final OPointer pointer,
+        final ByteBuffer directBuffer) {
+      this.buffer = buffer;
+      this.offset = offset;
+      this.pointer = pointer;
+      this.directBuffer = directBuffer;
+    }
+
+    private void copyBack() {
+      directBuffer.rewind();
+
+      final ByteBuffer chunk = buffer.duplicate();
+      chunk.position(offset);
+      chunk.put(directBuffer);
+    }
+  }
+}
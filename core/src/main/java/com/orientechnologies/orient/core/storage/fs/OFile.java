@@ -22,6 +22,18 @@ public interface OFile extends OClosableItem {
 
   IOResult write(List<ORawPair<Long, ByteBuffer>> buffers) throws IOException;
 
+  /**
+   * Reads several regions of the file, each buffer is filled till its limit. Implementations may
+   * submit all reads at once, so buffers can be used only after {@link IOResult#await()} call.
+   */
+  default IOResult read(List<ORawPair<Long, ByteBuffer>> buffers) throws IOException {
+    for (final ORawPair<Long, ByteBuffer> pair : buffers) {
+      read(pair.first, pair.second, true);
+    }
+
+    return () -> {};
+  }
+
   void synch();
 
   void create() throws IOException;
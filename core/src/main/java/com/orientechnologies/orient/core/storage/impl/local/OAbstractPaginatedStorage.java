@@ -124,12 +124,14 @@ import com.orientechnologies.orient.core.storage.ORecordMetadata;
 import com.orientechnologies.orient.core.storage.OStorageAbstract;
 import com.orientechnologies.orient.core.storage.OStorageOperationResult;
 import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.cache.OPageAccessIntent;
 import com.orientechnologies.orient.core.storage.cache.OPageDataVerificationError;
 import com.orientechnologies.orient.core.storage.cache.OReadCache;
 import com.orientechnologies.orient.core.storage.cache.OWriteCache;
 import com.orientechnologies.orient.core.storage.cache.local.OBackgroundExceptionListener;
 import com.orientechnologies.orient.core.storage.cluster.OOfflineCluster;
 import com.orientechnologies.orient.core.storage.cluster.OPaginatedCluster;
+import com.orientechnologies.orient.core.storage.cluster.v2.OPaginatedClusterV2;
 import com.orientechnologies.orient.core.storage.config.OClusterBasedStorageConfiguration;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.ORecordSerializationContext;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.OStorageTransaction;
@@ -271,6 +273,13 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
   private volatile OLowDiskSpaceInformation lowDiskSpace;
   private volatile boolean modificationLock;
   private volatile boolean readLock;
+
+  /** Lock which serializes extension of files by threads which restore pages from WAL. */
+  private final Object restorePageAllocationLock = new Object();
+
+  /** Whether list of pages kept in disk cache is stored and loaded back once storage is opened. */
+  private volatile boolean keepDiskCacheState;
+
   /** Set of pages which were detected as broken and need to be repaired. */
   private final Set<OPair<String, Long>> brokenPages =
       Collections.newSetFromMap(new ConcurrentHashMap<>(0));
@@ -400,6 +409,9 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
         }
 
         initLockingStrategy(contextConfiguration);
+        keepDiskCacheState =
+            contextConfiguration.getValueAsBoolean(
+                OGlobalConfiguration.STORAGE_KEEP_DISK_CACHE_STATE);
 
         readIv();
 
@@ -428,6 +440,7 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
                         OGlobalConfiguration.STORAGE_PAGE_OPERATIONS_CACHE_SIZE)
                     * 1024
                     * 1024,
+                contextConfiguration.getValueAsBoolean(OGlobalConfiguration.WAL_SYNC_ON_COMMIT),
                 atomicOperationsTable);
 
         recoverIfNeeded();
@@ -470,6 +483,8 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
                 lastMetadata = startupMetadata.txMetadata;
               }
             });
+
+        buildFreeSpaceMaps();
       } catch (final RuntimeException e) {
         try {
           if (writeCache != null) {
@@ -504,6 +519,10 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
       throw logAndPrepareForRethrow(t);
     }
 
+    if (keepDiskCacheState) {
+      readCache.loadCacheState(writeCache);
+    }
+
     OLogManager.instance()
         .infoNoDb(
             this,
@@ -634,6 +653,21 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
     }
   }
 
+  /**
+   * Completes maps of free space of the clusters created by previous versions. Maps are built
+   * outside of the atomic operation which opens the storage, so changes of the pages of the big
+   * clusters are split between many small atomic operations.
+   *
+   * @see OPaginatedClusterV2#buildFreeSpaceMap()
+   */
+  private void buildFreeSpaceMaps() throws IOException {
+    for (final OCluster cluster : clusters) {
+      if (cluster instanceof OPaginatedClusterV2) {
+        ((OPaginatedClusterV2) cluster).buildFreeSpaceMap();
+      }
+    }
+  }
+
   @SuppressWarnings("WeakerAccess")
   protected final void openClusters() throws IOException {
     // OPEN BASIC SEGMENTS
@@ -725,6 +759,9 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
 
         uuid = UUID.randomUUID();
         initLockingStrategy(contextConfiguration);
+        keepDiskCacheState =
+            contextConfiguration.getValueAsBoolean(
+                OGlobalConfiguration.STORAGE_KEEP_DISK_CACHE_STATE);
         initIv();
 
         initWalAndDiskCache(contextConfiguration);
@@ -743,6 +780,7 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
                         OGlobalConfiguration.STORAGE_PAGE_OPERATIONS_CACHE_SIZE)
                     * 1024
                     * 1024,
+                contextConfiguration.getValueAsBoolean(OGlobalConfiguration.WAL_SYNC_ON_COMMIT),
                 atomicOperationsTable);
         transaction = new ThreadLocal<>();
 
@@ -1450,6 +1488,24 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
     return writeCache;
   }
 
+  /**
+   * Sets intent of access to the pages of the storage by the current thread. Bulk operations which
+   * read large amount of data only once set {@link OPageAccessIntent#SCAN} intent, so data read by
+   * them do not flush working set of other operations from the disk cache.
+   *
+   * @param intent Intent of access to the pages.
+   * @return Intent which was set before the call and should be restored once operation completes.
+   * @see OReadCache#setAccessIntent(OPageAccessIntent)
+   */
+  public final OPageAccessIntent setPageAccessIntent(final OPageAccessIntent intent) {
+    final OReadCache readCache = this.readCache;
+    if (readCache == null) {
+      return OPageAccessIntent.NORMAL;
+    }
+
+    return readCache.setAccessIntent(intent);
+  }
+
   @Override
   public final long count(final int iClusterId) {
     return count(iClusterId, false);
@@ -3250,6 +3306,56 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
     return ((OV1IndexEngine) engine).get(key);
   }
 
+  /**
+   * Looks up several keys of the index at once.
+   *
+   * @see OV1IndexEngine#getAll(List)
+   */
+  public Stream<ORawPair<Object, ORID>> getIndexEntries(int indexId, final List<Object> keys)
+      throws OInvalidIndexEngineIdException {
+    final int engineAPIVersion = extractEngineAPIVersion(indexId);
+    if (engineAPIVersion != 1) {
+      throw new IllegalStateException(
+          "Unsupported version of index engine API. Required 1 but found " + engineAPIVersion);
+    }
+
+    indexId = extractInternalId(indexId);
+
+    try {
+      if (transaction.get() != null) {
+        return doGetIndexEntries(indexId, keys);
+      }
+
+      checkOpenness();
+
+      stateLock.acquireReadLock();
+      try {
+        checkOpenness();
+        return doGetIndexEntries(indexId, keys);
+      } finally {
+        stateLock.releaseReadLock();
+      }
+    } catch (final OInvalidIndexEngineIdException ie) {
+      throw logAndPrepareForRethrow(ie);
+    } catch (final RuntimeException ee) {
+      throw logAndPrepareForRethrow(ee);
+    } catch (final Error ee) {
+      throw logAndPrepareForRethrow(ee);
+    } catch (final Throwable t) {
+      throw logAndPrepareForRethrow(t);
+    }
+  }
+
+  private Stream<ORawPair<Object, ORID>> doGetIndexEntries(
+      final int indexId, final List<Object> keys) throws OInvalidIndexEngineIdException {
+    checkIndexId(indexId);
+
+    final OBaseIndexEngine engine = indexEngines.get(indexId);
+    assert indexId == engine.getId();
+
+    return ((OV1IndexEngine) engine).getAll(keys);
+  }
+
   public OBaseIndexEngine getIndexEngine(int indexId) throws OInvalidIndexEngineIdException {
     indexId = extractInternalId(indexId);
 
@@ -3432,6 +3538,82 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
     }
   }
 
+  /**
+   * Loads entries sorted in ascending order of keys into the index inside of single atomic
+   * operation.
+   *
+   * @param validator Validator of entries which keys are already present in the index, may be
+   *     <code>null</code>.
+   * @see OV1IndexEngine#bulkLoad(OAtomicOperation, List, OBaseIndexEngine.Validator)
+   */
+  public void bulkLoadIndex(
+      int indexId,
+      final List<ORawPair<Object, ORID>> entries,
+      final OBaseIndexEngine.Validator<Object, ORID> validator)
+      throws OInvalidIndexEngineIdException {
+    final int engineAPIVersion = extractEngineAPIVersion(indexId);
+    final int internalIndexId = extractInternalId(indexId);
+
+    if (engineAPIVersion != 1) {
+      throw new IllegalStateException(
+          "Unsupported version of index engine API. Required 1 but found " + engineAPIVersion);
+    }
+
+    try {
+      if (transaction.get() != null) {
+        final OAtomicOperation atomicOperation = OAtomicOperationsManager.getCurrentOperation();
+        assert atomicOperation != null;
+        bulkLoadIndexInternal(atomicOperation, internalIndexId, entries, validator);
+        return;
+      }
+
+      checkOpenness();
+
+      stateLock.acquireReadLock();
+      try {
+        checkOpenness();
+
+        checkLowDiskSpaceRequestsAndReadOnlyConditions();
+
+        atomicOperationsManager.executeInsideAtomicOperation(
+            null,
+            atomicOperation ->
+                bulkLoadIndexInternal(atomicOperation, internalIndexId, entries, validator));
+      } finally {
+        stateLock.releaseReadLock();
+      }
+    } catch (final OInvalidIndexEngineIdException ie) {
+      throw logAndPrepareForRethrow(ie);
+    } catch (final RuntimeException ee) {
+      throw logAndPrepareForRethrow(ee);
+    } catch (final Error ee) {
+      throw logAndPrepareForRethrow(ee);
+    } catch (final Throwable t) {
+      throw logAndPrepareForRethrow(t);
+    }
+  }
+
+  private void bulkLoadIndexInternal(
+      final OAtomicOperation atomicOperation,
+      final int indexId,
+      final List<ORawPair<Object, ORID>> entries,
+      final OBaseIndexEngine.Validator<Object, ORID> validator)
+      throws OInvalidIndexEngineIdException {
+    try {
+      checkIndexId(indexId);
+
+      final OBaseIndexEngine engine = indexEngines.get(indexId);
+      assert engine.getId() == indexId;
+
+      makeStorageDirty();
+
+      ((OV1IndexEngine) engine).bulkLoad(atomicOperation, entries, validator);
+    } catch (final IOException e) {
+      throw OException.wrapException(
+          new OStorageException("Cannot load " + entries.size() + " entries into the index"), e);
+    }
+  }
+
   public boolean removeRidIndexEntry(int indexId, final Object key, final ORID value)
       throws OInvalidIndexEngineIdException {
     final int engineAPIVersion = extractEngineAPIVersion(indexId);
@@ -5063,6 +5245,23 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
   protected abstract void initWalAndDiskCache(OContextConfiguration contextConfiguration)
       throws IOException, InterruptedException;
 
+  /**
+   * Stores list of pages which are kept in disk cache, so they are loaded back once storage is
+   * opened again. Does nothing if state of disk cache is not kept between sessions of storage.
+   */
+  protected final void storeDiskCacheState() {
+    if (!keepDiskCacheState || readCache == null) {
+      return;
+    }
+
+    try {
+      readCache.storeCacheState(writeCache);
+    } catch (final IOException | RuntimeException e) {
+      OLogManager.instance()
+          .warn(this, "Error during storing of disk cache state of storage '%s'", e, name);
+    }
+  }
+
   protected abstract void postCloseSteps(
       @SuppressWarnings("unused") boolean onDelete, boolean jvmError, long lastTxId)
       throws IOException;
@@ -5813,6 +6012,7 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
 
         if (readCache != null) {
           if (!onDelete) {
+            storeDiskCacheState();
             readCache.closeStorage(writeCache);
           } else {
             readCache.deleteStorage(writeCache);
@@ -6316,111 +6516,144 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
 
       final int reportBatchSize =
           OGlobalConfiguration.WAL_REPORT_AFTER_OPERATIONS_DURING_RESTORE.getValueAsInteger();
+      final int readBatchSize = OGlobalConfiguration.WAL_RESTORE_BATCH_SIZE.getValueAsInteger();
+      final int restoreThreads = OGlobalConfiguration.WAL_RESTORE_THREADS.getValueAsInteger();
+
       final Map<Long, List<OWALRecord>> operationUnits = new HashMap<>(1024);
       final Map<Long, byte[]> operationMetadata = new LinkedHashMap<>(1024);
 
+      final OLogSequenceNumber endLsn = writeAheadLog.end();
+      final long bytesToRestore = endLsn != null ? writeAheadLog.distance(lsn, endLsn) : -1;
+      final long restoreStartTime = System.currentTimeMillis();
       long lastReportTime = 0;
 
+      final OParallelPageRestore pageRestore;
+      if (restoreThreads > 1) {
+        pageRestore = new OParallelPageRestore(restoreThreads, this::restorePage);
+      } else {
+        pageRestore = null;
+      }
+
       try {
-        List<WriteableWALRecord> records = writeAheadLog.read(lsn, 1_000);
-        while (!records.isEmpty()) {
-          for (final WriteableWALRecord walRecord : records) {
-            logSequenceNumber = walRecord.getLsn();
-
-            if (walRecord instanceof OAtomicUnitEndRecord) {
-              final OAtomicUnitEndRecord atomicUnitEndRecord = (OAtomicUnitEndRecord) walRecord;
-              final List<OWALRecord> atomicUnit =
-                  operationUnits.remove(atomicUnitEndRecord.getOperationUnitId());
-
-              // in case of data restore from fuzzy checkpoint part of operations may be already
-              // flushed to the disk
-              if (atomicUnit != null) {
-                atomicUnit.add(walRecord);
-                restoreAtomicUnit(atomicUnit, atLeastOnePageUpdate);
-              }
-              byte[] metadata = operationMetadata.remove(atomicUnitEndRecord.getOperationUnitId());
-              if (metadata != null) {
-                this.lastMetadata = metadata;
-              }
-            } else if (walRecord instanceof OAtomicUnitStartRecord) {
-              if (walRecord instanceof OAtomicUnitStartMetadataRecord) {
-                byte[] metadata = ((OAtomicUnitStartMetadataRecord) walRecord).getMetadata();
-                operationMetadata.put(
-                    ((OAtomicUnitStartRecord) walRecord).getOperationUnitId(), metadata);
-              }
+        try {
+          List<WriteableWALRecord> records = writeAheadLog.read(lsn, readBatchSize);
+          while (!records.isEmpty()) {
+            for (final WriteableWALRecord walRecord : records) {
+              logSequenceNumber = walRecord.getLsn();
+
+              if (walRecord instanceof OAtomicUnitEndRecord) {
+                final OAtomicUnitEndRecord atomicUnitEndRecord = (OAtomicUnitEndRecord) walRecord;
+                final List<OWALRecord> atomicUnit =
+                    operationUnits.remove(atomicUnitEndRecord.getOperationUnitId());
+
+                // in case of data restore from fuzzy checkpoint part of operations may be already
+                // flushed to the disk
+                if (atomicUnit != null) {
+                  atomicUnit.add(walRecord);
+                  restoreAtomicUnit(atomicUnit, atLeastOnePageUpdate, pageRestore);
+                }
+                byte[] metadata =
+                    operationMetadata.remove(atomicUnitEndRecord.getOperationUnitId());
+                if (metadata != null) {
+                  this.lastMetadata = metadata;
+                }
+              } else if (walRecord instanceof OAtomicUnitStartRecord) {
+                if (walRecord instanceof OAtomicUnitStartMetadataRecord) {
+                  byte[] metadata = ((OAtomicUnitStartMetadataRecord) walRecord).getMetadata();
+                  operationMetadata.put(
+                      ((OAtomicUnitStartRecord) walRecord).getOperationUnitId(), metadata);
+                }
 
-              final List<OWALRecord> operationList = new ArrayList<>(1024);
+                final List<OWALRecord> operationList = new ArrayList<>(1024);
 
-              assert !operationUnits.containsKey(
-                  ((OAtomicUnitStartRecord) walRecord).getOperationUnitId());
+                assert !operationUnits.containsKey(
+                    ((OAtomicUnitStartRecord) walRecord).getOperationUnitId());
 
-              operationUnits.put(
-                  ((OAtomicUnitStartRecord) walRecord).getOperationUnitId(), operationList);
-              operationList.add(walRecord);
-            } else if (walRecord instanceof OOperationUnitRecord) {
-              final OOperationUnitRecord operationUnitRecord = (OOperationUnitRecord) walRecord;
+                operationUnits.put(
+                    ((OAtomicUnitStartRecord) walRecord).getOperationUnitId(), operationList);
+                operationList.add(walRecord);
+              } else if (walRecord instanceof OOperationUnitRecord) {
+                final OOperationUnitRecord operationUnitRecord = (OOperationUnitRecord) walRecord;
 
-              List<OWALRecord> operationList =
-                  operationUnits.get(operationUnitRecord.getOperationUnitId());
+                List<OWALRecord> operationList =
+                    operationUnits.get(operationUnitRecord.getOperationUnitId());
 
-              if (operationList == null || operationList.isEmpty()) {
-                OLogManager.instance()
-                    .errorNoDb(
-                        this, "'Start transaction' record is absent for atomic operation", null);
+                if (operationList == null || operationList.isEmpty()) {
+                  OLogManager.instance()
+                      .errorNoDb(
+                          this, "'Start transaction' record is absent for atomic operation", null);
 
-                if (operationList == null) {
-                  operationList = new ArrayList<>(1024);
-                  operationUnits.put(operationUnitRecord.getOperationUnitId(), operationList);
+                  if (operationList == null) {
+                    operationList = new ArrayList<>(1024);
+                    operationUnits.put(operationUnitRecord.getOperationUnitId(), operationList);
+                  }
                 }
-              }
 
-              operationList.add(operationUnitRecord);
-            } else if (walRecord instanceof ONonTxOperationPerformedWALRecord) {
-              if (!wereNonTxOperationsPerformedInPreviousOpen) {
+                operationList.add(operationUnitRecord);
+              } else if (walRecord instanceof ONonTxOperationPerformedWALRecord) {
+                if (!wereNonTxOperationsPerformedInPreviousOpen) {
+                  OLogManager.instance()
+                      .warnNoDb(
+                          this,
+                          "Non tx operation was used during data modification we will need index rebuild.");
+                  wereNonTxOperationsPerformedInPreviousOpen = true;
+                }
+              } else if (walRecord instanceof MetaDataRecord) {
+                final MetaDataRecord metaDataRecord = (MetaDataRecord) walRecord;
+                this.lastMetadata = metaDataRecord.getMetadata();
+              } else {
                 OLogManager.instance()
-                    .warnNoDb(
-                        this,
-                        "Non tx operation was used during data modification we will need index rebuild.");
-                wereNonTxOperationsPerformedInPreviousOpen = true;
+                    .warnNoDb(this, "Record %s will be skipped during data restore", walRecord);
               }
-            } else if (walRecord instanceof MetaDataRecord) {
-              final MetaDataRecord metaDataRecord = (MetaDataRecord) walRecord;
-              this.lastMetadata = metaDataRecord.getMetadata();
-            } else {
-              OLogManager.instance()
-                  .warnNoDb(this, "Record %s will be skipped during data restore", walRecord);
-            }
 
-            recordsProcessed++;
-
-            final long currentTime = System.currentTimeMillis();
-            if (reportBatchSize > 0 && recordsProcessed % reportBatchSize == 0
-                || currentTime - lastReportTime > WAL_RESTORE_REPORT_INTERVAL) {
-              OLogManager.instance()
-                  .infoNoDb(
-                      this,
-                      "%d operations were processed, current LSN is %s last LSN is %s",
-                      recordsProcessed,
-                      lsn,
-                      writeAheadLog.end());
-              lastReportTime = currentTime;
+              recordsProcessed++;
+
+              final long currentTime = System.currentTimeMillis();
+              if (reportBatchSize > 0 && recordsProcessed % reportBatchSize == 0
+                  || currentTime - lastReportTime > WAL_RESTORE_REPORT_INTERVAL) {
+                reportRestoreProgress(
+                    recordsProcessed,
+                    lsn,
+                    logSequenceNumber,
+                    endLsn,
+                    bytesToRestore,
+                    currentTime - restoreStartTime);
+                lastReportTime = currentTime;
+              }
             }
+
+            records = writeAheadLog.next(records.get(records.size() - 1).getLsn(), readBatchSize);
           }
+        } catch (final OWALPageBrokenException e) {
+          OLogManager.instance()
+              .errorNoDb(
+                  this,
+                  "Data restore was paused because broken WAL page was found. The rest of changes will be rolled back.",
+                  e);
+        } catch (final RuntimeException e) {
+          OLogManager.instance()
+              .errorNoDb(
+                  this,
+                  "Data restore was paused because of exception. The rest of changes will be rolled back.",
+                  e);
+        }
 
-          records = writeAheadLog.next(records.get(records.size() - 1).getLsn(), 1_000);
+        if (pageRestore != null) {
+          try {
+            // changes of atomic operations restored before the pause are applied in any case
+            pageRestore.await();
+          } catch (final RuntimeException e) {
+            OLogManager.instance()
+                .errorNoDb(
+                    this,
+                    "Data restore was paused because of exception. The rest of changes will be rolled back.",
+                    e);
+          }
+        }
+      } finally {
+        if (pageRestore != null) {
+          pageRestore.close();
         }
-      } catch (final OWALPageBrokenException e) {
-        OLogManager.instance()
-            .errorNoDb(
-                this,
-                "Data restore was paused because broken WAL page was found. The rest of changes will be rolled back.",
-                e);
-      } catch (final RuntimeException e) {
-        OLogManager.instance()
-            .errorNoDb(
-                this,
-                "Data restore was paused because of exception. The rest of changes will be rolled back.",
-                e);
       }
 
       if (atLeastOnePageUpdate.getValue()) {
@@ -6437,9 +6670,55 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
   protected final void restoreAtomicUnit(
       final List<OWALRecord> atomicUnit, final OModifiableBoolean atLeastOnePageUpdate)
       throws IOException {
+    restoreAtomicUnit(atomicUnit, atLeastOnePageUpdate, null);
+  }
+
+  /**
+   * Restores changes of atomic operation. If <code>pageRestore</code> is passed changes of pages
+   * of big operations are applied by its worker threads, changes of the set of files are applied
+   * only once all changes passed before are applied. Method returns only once all changes of the
+   * operation are applied, so if restore is stopped because of error, changes of the next
+   * operations are not applied.
+   */
+  private void restoreAtomicUnit(
+      final List<OWALRecord> atomicUnit,
+      final OModifiableBoolean atLeastOnePageUpdate,
+      final OParallelPageRestore pageRestore)
+      throws IOException {
     assert atomicUnit.get(atomicUnit.size() - 1) instanceof OAtomicUnitEndRecord;
 
+    if (pageRestore == null
+        || countPageChanges(atomicUnit) < OParallelPageRestore.MIN_PARALLEL_CHANGES) {
+      restoreAtomicUnitRecords(atomicUnit, atLeastOnePageUpdate, null);
+      return;
+    }
+
+    restoreAtomicUnitRecords(atomicUnit, atLeastOnePageUpdate, pageRestore);
+    pageRestore.await();
+  }
+
+  private static int countPageChanges(final List<OWALRecord> atomicUnit) {
+    int changes = 0;
+    for (final OWALRecord walRecord : atomicUnit) {
+      if (walRecord instanceof OUpdatePageRecord) {
+        changes++;
+      }
+    }
+    return changes;
+  }
+
+  private void restoreAtomicUnitRecords(
+      final List<OWALRecord> atomicUnit,
+      final OModifiableBoolean atLeastOnePageUpdate,
+      final OParallelPageRestore pageRestore)
+      throws IOException {
     for (final OWALRecord walRecord : atomicUnit) {
+      if (pageRestore != null
+          && (walRecord instanceof OFileDeletedWALRecord
+              || walRecord instanceof OFileCreatedWALRecord)) {
+        pageRestore.await();
+      }
+
       if (walRecord instanceof OFileDeletedWALRecord) {
         final OFileDeletedWALRecord fileDeletedWALRecord = (OFileDeletedWALRecord) walRecord;
         if (writeCache.exists(fileDeletedWALRecord.getFileId())) {
@@ -6476,29 +6755,10 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
           }
         }
 
-        final long pageIndex = updatePageRecord.getPageIndex();
-        fileId = writeCache.externalFileId(writeCache.internalFileId(fileId));
-
-        OCacheEntry cacheEntry =
-            readCache.loadForWrite(fileId, pageIndex, true, writeCache, false, null);
-        if (cacheEntry == null) {
-          do {
-            if (cacheEntry != null) {
-              readCache.releaseFromWrite(cacheEntry, writeCache, true);
-            }
-
-            cacheEntry = readCache.allocateNewPage(fileId, writeCache, null);
-          } while (cacheEntry.getPageIndex() != pageIndex);
-        }
-
-        try {
-          final ODurablePage durablePage = new ODurablePage(cacheEntry);
-          if (durablePage.getLsn().compareTo(walRecord.getLsn()) < 0) {
-            durablePage.restoreChanges(updatePageRecord.getChanges());
-            durablePage.setLsn(updatePageRecord.getLsn());
-          }
-        } finally {
-          readCache.releaseFromWrite(cacheEntry, writeCache, true);
+        if (pageRestore != null) {
+          pageRestore.restorePage(writeCache.internalFileId(fileId), updatePageRecord);
+        } else {
+          restorePage(updatePageRecord);
         }
 
         atLeastOnePageUpdate.setValue(true);
@@ -6521,6 +6781,90 @@ public abstract class OAbstractPaginatedStorage extends OStorageAbstract
     }
   }
 
+  /**
+   * Applies changes of the page restored from WAL. May be called by several threads at once for
+   * different pages.
+   */
+  private void restorePage(final OUpdatePageRecord updatePageRecord) throws IOException {
+    final long pageIndex = updatePageRecord.getPageIndex();
+    final long fileId =
+        writeCache.externalFileId(writeCache.internalFileId(updatePageRecord.getFileId()));
+
+    OCacheEntry cacheEntry =
+        readCache.loadForWrite(fileId, pageIndex, true, writeCache, false, null);
+    if (cacheEntry == null) {
+      // pages of the same file may be requested by several threads, so file is extended by one of
+      // them and the rest of threads load allocated pages
+      synchronized (restorePageAllocationLock) {
+        cacheEntry = readCache.loadForWrite(fileId, pageIndex, true, writeCache, false, null);
+        if (cacheEntry == null) {
+          do {
+            if (cacheEntry != null) {
+              readCache.releaseFromWrite(cacheEntry, writeCache, true);
+            }
+
+            cacheEntry = readCache.allocateNewPage(fileId, writeCache, null);
+          } while (cacheEntry.getPageIndex() != pageIndex);
+        }
+      }
+    }
+
+    try {
+      final ODurablePage durablePage = new ODurablePage(cacheEntry);
+      if (durablePage.getLsn().compareTo(updatePageRecord.getLsn()) < 0) {
+        durablePage.restoreChanges(updatePageRecord.getChanges());
+        durablePage.setLsn(updatePageRecord.getLsn());
+      }
+    } finally {
+      readCache.releaseFromWrite(cacheEntry, writeCache, true);
+    }
+  }
+
+  private void reportRestoreProgress(
+      final long recordsProcessed,
+      final OLogSequenceNumber startLsn,
+      final OLogSequenceNumber currentLsn,
+      final OLogSequenceNumber endLsn,
+      final long bytesToRestore,
+      final long elapsedTime) {
+    int progress = -1;
+    long eta = -1;
+
+    if (bytesToRestore > 0 && currentLsn != null) {
+      final long bytesRestored = writeAheadLog.distance(startLsn, currentLsn);
+      if (bytesRestored > 0) {
+        progress = (int) Math.min(100, bytesRestored * 100 / bytesToRestore);
+        eta = Math.max(0, elapsedTime * (bytesToRestore - bytesRestored) / bytesRestored);
+      }
+    }
+
+    if (progress >= 0) {
+      OLogManager.instance()
+          .infoNoDb(
+              this,
+              "%d operations were processed, current LSN is %s last LSN is %s, %d%% of WAL is"
+                  + " restored, approximately %d seconds are left",
+              recordsProcessed,
+              currentLsn,
+              endLsn,
+              progress,
+              eta / 1000);
+    } else {
+      OLogManager.instance()
+          .infoNoDb(
+              this,
+              "%d operations were processed, current LSN is %s last LSN is %s",
+              recordsProcessed,
+              currentLsn,
+              endLsn);
+    }
+
+    final OStorageRecoverListener recoverListener = this.recoverListener;
+    if (recoverListener != null) {
+      recoverListener.onStorageRecoverProgress(recordsProcessed, progress, eta);
+    }
+  }
+
   /**
    * Method which is called before any data modification operation to check alarm conditions such
    * as:
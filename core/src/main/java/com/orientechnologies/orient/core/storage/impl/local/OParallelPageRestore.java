@@ -0,0 +1,247 @@
+package com.orientechnologies.orient.core.storage.impl.local;
+
+import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.common.thread.OThreadPoolExecutorWithLogging;
+import com.orientechnologies.common.util.OUncaughtExceptionHandler;
+import com.orientechnologies.orient.core.exception.OStorageException;
+import com.orientechnologies.orient.core.storage.OStorageAbstract;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OUpdatePageRecord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Applies changes of pages restored from WAL using several threads. Changes are partitioned by
+ * page, so all changes of the same page are applied by the same thread in the order in which they
+ * were passed, which is the order of WAL records. Operations which change set of files, like
+ * creation or deletion of files, should be performed only after all passed changes are applied,
+ * see {@link #await()}.
+ *
+ * <p>Changes of pages of different atomic operations are not ordered between threads, so changes of
+ * the next atomic operation should be passed only after changes of the previous one are applied.
+ * Otherwise, if change of the page fails, changes of the later operations may be already applied
+ * by other threads.
+ *
+ * <p>Instance of this class is not thread safe, changes should be passed from single thread.
+ */
+final class OParallelPageRestore implements AutoCloseable {
+  /** Amount of page changes which are passed to the worker thread at once. */
+  private static final int BATCH_SIZE = 256;
+
+  /** Maximum amount of batches which are waiting to be processed by single worker thread. */
+  private static final int QUEUE_CAPACITY = 64;
+
+  /**
+   * Minimum amount of page changes of atomic operation which are applied by worker threads, smaller
+   * operations are cheaper to apply in the thread which reads WAL than to wait for the workers.
+   */
+  static final int MIN_PARALLEL_CHANGES = 64;
+
+  private static final OThreadPoolExecutorWithLogging restoreExecutor =
+      new OThreadPoolExecutorWithLogging(
+          0,
+          Integer.MAX_VALUE,
+          60,
+          TimeUnit.SECONDS,
+          new SynchronousQueue<>(),
+          new RestoreThreadFactory());
+
+  private static final Batch STOP = new Batch(null, null);
+
+  /** Applies change of single page, may be called by several threads at once. */
+  interface PageRestore {
+    void restore(OUpdatePageRecord updatePageRecord) throws IOException;
+  }
+
+  private final PageRestore pageRestore;
+
+  private final List<BlockingQueue<Batch>> queues;
+  private final List<Future<Void>> futures;
+  private final List<List<OUpdatePageRecord>> pendingChanges;
+
+  private final AtomicReference<Throwable> error = new AtomicReference<>();
+  private boolean errorThrown;
+
+  OParallelPageRestore(final int threads, final PageRestore pageRestore) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Amount of threads should be positive");
+    }
+
+    this.pageRestore = pageRestore;
+
+    queues = new ArrayList<>(threads);
+    futures = new ArrayList<>(threads);
+    pendingChanges = new ArrayList<>(threads);
+
+    for (int i = 0; i < threads; i++) {
+      final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+      queues.add(queue);
+      pendingChanges.add(new ArrayList<>(BATCH_SIZE));
+      futures.add(restoreExecutor.submit(new Worker(queue)));
+    }
+  }
+
+  /**
+   * Passes change of the page to the worker thread which is responsible for this page.
+   *
+   * @param internalFileId Internal id of the file to which page belongs, the same id should be
+   *     used for all changes of the same page.
+   */
+  void restorePage(final int internalFileId, final OUpdatePageRecord updatePageRecord)
+      throws IOException {
+    checkError();
+
+    final int worker =
+        Math.floorMod(
+            31 * internalFileId + Long.hashCode(updatePageRecord.getPageIndex()), queues.size());
+    final List<OUpdatePageRecord> changes = pendingChanges.get(worker);
+    changes.add(updatePageRecord);
+
+    if (changes.size() >= BATCH_SIZE) {
+      submit(worker, new Batch(changes, null));
+      pendingChanges.set(worker, new ArrayList<>(BATCH_SIZE));
+    }
+  }
+
+  /** Waits till all changes passed to this instance are applied. */
+  void await() throws IOException {
+    final CountDownLatch latch = new CountDownLatch(queues.size());
+
+    for (int i = 0; i < queues.size(); i++) {
+      final List<OUpdatePageRecord> changes = pendingChanges.get(i);
+      if (!changes.isEmpty()) {
+        submit(i, new Batch(changes, null));
+        pendingChanges.set(i, new ArrayList<>(BATCH_SIZE));
+      }
+
+      submit(i, new Batch(null, latch));
+    }
+
+    try {
+      latch.await();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw OException.wrapException(new OStorageException("Restore of data was interrupted"), e);
+    }
+
+    checkError();
+  }
+
+  /** Stops worker threads, changes which are not applied yet are discarded. */
+  @Override
+  public void close() {
+    for (int i = 0; i < queues.size(); i++) {
+      pendingChanges.get(i).clear();
+      submit(i, STOP);
+    }
+
+    for (final Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw OException.wrapException(new OStorageException("Restore of data was interrupted"), e);
+      } catch (final ExecutionException e) {
+        throw OException.wrapException(
+            new OStorageException("Error during restore of data"), e.getCause());
+      }
+    }
+  }
+
+  private void submit(final int worker, final Batch batch) {
+    try {
+      queues.get(worker).put(batch);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw OException.wrapException(new OStorageException("Restore of data was interrupted"), e);
+    }
+  }
+
+  private void checkError() throws IOException {
+    final Throwable e = error.get();
+    if (e == null || errorThrown) {
+      return;
+    }
+
+    // the rest of changes is skipped by worker threads, so error is thrown only once
+    errorThrown = true;
+
+    if (e instanceof IOException) {
+      throw new IOException(e.getMessage(), e);
+    }
+
+    if (e instanceof RuntimeException) {
+      throw OException.wrapException(new OStorageException(e.getMessage()), e);
+    }
+
+    throw OException.wrapException(new OStorageException("Error during restore of data"), e);
+  }
+
+  private static final class Batch {
+    private final List<OUpdatePageRecord> changes;
+    private final CountDownLatch latch;
+
+    private Batch(final List<OUpdatePageRecord> changes, final CountDownLatch latch) {
+      this.changes = changes;
+      this.latch = latch;
+    }
+  }
+
+  private final class Worker implements Callable<Void> {
+    private final BlockingQueue<Batch> queue;
+
+    private Worker(final BlockingQueue<Batch> queue) {
+      this.queue = queue;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      while (true) {
+        final Batch batch = queue.take();
+        if (batch == STOP) {
+          return null;
+        }
+
+        if (batch.latch != null) {
+          batch.latch.countDown();
+          continue;
+        }
+
+        // queue is drained even after the error to not block thread which passes changes
+        if (error.get() != null) {
+          continue;
+        }
+
+        try {
+          for (final OUpdatePageRecord updatePageRecord : batch.changes) {
+            pageRestore.restore(updatePageRecord);
+          }
+        } catch (final Exception | Error e) {
+          error.compareAndSet(null, e);
+        }
+      }
+    }
+  }
+
+  private static final class RestoreThreadFactory implements ThreadFactory {
+    @Override
+    public Thread newThread(final Runnable r) {
+      final Thread thread = new Thread(OStorageAbstract.storageThreadGroup, r);
+      thread.setDaemon(true);
+      thread.setName("OrientDB WAL Restore");
+      thread.setUncaughtExceptionHandler(new OUncaughtExceptionHandler());
+      return thread;
+    }
+  }
+}
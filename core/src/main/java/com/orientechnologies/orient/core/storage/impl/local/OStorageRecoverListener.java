@@ -7,4 +7,14 @@ package com.orientechnologies.orient.core.storage.impl.local;
  */
 public interface OStorageRecoverListener {
   void onStorageRecover();
+
+  /**
+   * Called periodically while storage restores data from write ahead log.
+   *
+   * @param operationsProcessed Amount of log records processed so far.
+   * @param progress Percent of log which is processed or <code>-1</code> if it is unknown.
+   * @param eta Estimated time till the end of restore in milliseconds or <code>-1</code> if it is
+   *     unknown.
+   */
+  default void onStorageRecoverProgress(long operationsProcessed, int progress, long eta) {}
 }
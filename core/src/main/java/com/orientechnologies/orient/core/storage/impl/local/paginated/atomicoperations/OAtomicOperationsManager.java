@@ -82,6 +82,9 @@ public class OAtomicOperationsManager {
   private final boolean trackPageOperations;
   private final int operationsCacheLimit;
 
+  /** Whether commit of atomic operation waits till its records are synced to the disk. */
+  private final boolean syncOnCommit;
+
   private final OperationsFreezer atomicOperationsFreezer = new OperationsFreezer();
   private final OperationsFreezer componentOperationsFreezer = new OperationsFreezer();
   private final AtomicOperationsTable atomicOperationsTable;
@@ -90,6 +93,7 @@ public class OAtomicOperationsManager {
       OAbstractPaginatedStorage storage,
       boolean trackPageOperations,
       int operationsCacheLimit,
+      boolean syncOnCommit,
       AtomicOperationsTable atomicOperationsTable) {
     this.storage = storage;
     this.writeAheadLog = storage.getWALInstance();
@@ -98,6 +102,7 @@ public class OAtomicOperationsManager {
 
     this.trackPageOperations = trackPageOperations;
     this.operationsCacheLimit = operationsCacheLimit;
+    this.syncOnCommit = syncOnCommit;
     this.idGen = storage.getIdGen();
     this.atomicOperationsTable = atomicOperationsTable;
   }
@@ -362,6 +367,7 @@ public class OAtomicOperationsManager {
       throw new ODatabaseException("There is no atomic operation active");
     }
 
+    OLogSequenceNumber syncLSN = null;
     try {
       if (rollback) {
         operation.rollbackInProgress();
@@ -383,6 +389,10 @@ public class OAtomicOperationsManager {
         } else {
           atomicOperationsTable.commitOperation(operationId);
           writeAheadLog.addEventAt(lsn, () -> atomicOperationsTable.persistOperation(operationId));
+
+          if (syncOnCommit && lsn != null) {
+            syncLSN = lsn;
+          }
         }
 
       } finally {
@@ -408,6 +418,12 @@ public class OAtomicOperationsManager {
     } finally {
       atomicOperationsFreezer.endOperation();
     }
+
+    // locks are released at this point, so commits of other threads may be synced by the same
+    // flush of WAL
+    if (syncLSN != null) {
+      writeAheadLog.syncTill(syncLSN);
+    }
   }
 
   public void ensureThatComponentsUnlocked() {
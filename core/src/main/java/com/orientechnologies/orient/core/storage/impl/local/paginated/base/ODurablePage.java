@@ -176,6 +176,72 @@ public class ODurablePage {
     return changes.getBinaryValue(buffer, pageOffset, valLen);
   }
 
+  /**
+   * Copies bytes stored in the page into the passed in array. Content of the page is not copied
+   * into the intermediate array if there are no changes of the page inside of the current atomic
+   * operation.
+   */
+  protected final void getBinaryValue(
+      final int pageOffset, final byte[] value, final int offset, final int valLen) {
+    final ByteBuffer buffer = pointer.getBufferDuplicate();
+    if (changes == null) {
+      assert buffer.order() == ByteOrder.nativeOrder();
+
+      buffer.position(pageOffset);
+      buffer.get(value, offset, valLen);
+      return;
+    }
+
+    System.arraycopy(changes.getBinaryValue(buffer, pageOffset, valLen), 0, value, offset, valLen);
+  }
+
+  /**
+   * Compares bytes stored in the page with passed in array. Bytes are compared as unsigned values
+   * and if one of the arrays is prefix of the other one, the shorter array is considered as smaller
+   * one. Content of the page is not copied if there are no changes of the page inside of the
+   * current atomic operation.
+   *
+   * @return Negative value, zero or positive value if bytes stored in the page are less than, equal
+   *     to or more than passed in value.
+   */
+  protected final int compareBinaryValue(
+      final int pageOffset, final int valLen, final byte[] value) {
+    if (changes != null) {
+      final byte[] pageValue =
+          changes.getBinaryValue(pointer.getBufferDuplicate(), pageOffset, valLen);
+      return compareBinaryValues(pageValue, value);
+    }
+
+    final ByteBuffer buffer = pointer.getBuffer();
+    assert buffer.order() == ByteOrder.nativeOrder();
+
+    final int len = Math.min(valLen, value.length);
+    for (int i = 0; i < len; i++) {
+      final int diff = (buffer.get(pageOffset + i) & 0xFF) - (value[i] & 0xFF);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+
+    return valLen - value.length;
+  }
+
+  /**
+   * Compares two arrays of bytes in the same way as {@link #compareBinaryValue(int, int, byte[])}
+   * compares content of the page.
+   */
+  public static int compareBinaryValues(final byte[] valueOne, final byte[] valueTwo) {
+    final int len = Math.min(valueOne.length, valueTwo.length);
+    for (int i = 0; i < len; i++) {
+      final int diff = (valueOne[i] & 0xFF) - (valueTwo[i] & 0xFF);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+
+    return valueOne.length - valueTwo.length;
+  }
+
   protected int getObjectSizeInDirectMemory(
       final OBinarySerializer binarySerializer, final int offset) {
     final ByteBuffer buffer = pointer.getBufferDuplicate();
@@ -54,8 +54,28 @@ public interface OWriteAheadLog {
 
   OLogSequenceNumber end();
 
+  /**
+   * Calculates approximate size of the log between two LSNs, used to estimate progress of the
+   * operations which process the log, like restore of data.
+   *
+   * @return Size in bytes or <code>-1</code> if size can not be calculated.
+   */
+  default long distance(OLogSequenceNumber from, OLogSequenceNumber to) {
+    return -1;
+  }
+
   void flush();
 
+  /**
+   * Waits till records with LSN up to passed in value are written and synced to the disk. Threads
+   * which call this method concurrently may be synced by single flush of the log.
+   *
+   * @param lsn LSN of the record which should be synced.
+   */
+  default void syncTill(OLogSequenceNumber lsn) {
+    flush();
+  }
+
   OLogSequenceNumber logAtomicOperationStartRecord(
       final boolean isRollbackSupported, final long unitId, byte[] metadata);
 
@@ -1,9 +1,11 @@
 package com.orientechnologies.orient.core.storage.impl.local.paginated.wal.cas;
 
+import com.kenai.jffi.Platform;
 import com.orientechnologies.common.concur.lock.ScalableRWLock;
 import com.orientechnologies.common.directmemory.ODirectMemoryAllocator;
 import com.orientechnologies.common.directmemory.OPointer;
 import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.common.io.OFileUtils;
 import com.orientechnologies.common.io.OIOUtils;
 import com.orientechnologies.common.log.OLogManager;
 import com.orientechnologies.common.serialization.types.OIntegerSerializer;
@@ -49,6 +51,7 @@ import java.nio.channels.FileChannel;
 import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.InvalidAlgorithmParameterException;
@@ -62,6 +65,7 @@ import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.NavigableSet;
+import java.util.Queue;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -77,8 +81,12 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -107,10 +115,33 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
   private static final int MASTER_RECORD_SIZE = 20;
   private static final int BATCH_READ_SIZE = 4 * 1024;
 
+  /** Extension of the file to which segment is compressed before it replaces the segment. */
+  private static final String COMPRESSED_SEGMENT_EXTENSION = ".lz4";
+
+  /** Size of the blocks of segment which are compressed independently. */
+  private static final int COMPRESSION_BLOCK_SIZE = 64 * 1024;
+
+  /**
+   * Segment is replaced by compressed version only if compression saves at least 1/10 of the
+   * space, otherwise there is no reason to pay for decompression during reading of the log.
+   */
+  private static final double MAX_COMPRESSION_RATIO = 0.9;
+
   protected static final int DEFAULT_MAX_CACHE_SIZE = Integer.MAX_VALUE;
 
+  /** Maximum time during which leader of group commit waits for other commits to join the group. */
+  private static final long GROUP_COMMIT_MAX_LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+  /**
+   * Amount of buckets of histogram of sync times, bucket with index <code>i</code> contains amount
+   * of syncs which took less than <code>2^i</code> microseconds, the last bucket contains all
+   * longer syncs.
+   */
+  public static final int SYNC_TIME_HISTOGRAM_BUCKETS = 24;
+
   private static final OScheduledThreadPoolExecutorWithLogging commitExecutor;
   private static final OThreadPoolExecutorWithLogging writeExecutor;
+  private static final OThreadPoolExecutorWithLogging compressionExecutor;
 
   static {
     commitExecutor =
@@ -140,6 +171,21 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
             });
 
     commitExecutor.setMaximumPoolSize(1);
+
+    compressionExecutor =
+        new OThreadPoolExecutorWithLogging(
+            0,
+            1,
+            60L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> {
+              final Thread thread = new Thread(OStorageAbstract.storageThreadGroup, r);
+              thread.setDaemon(true);
+              thread.setName("OrientDB WAL Segment Compression Task");
+              thread.setUncaughtExceptionHandler(new OUncaughtExceptionHandler());
+              return thread;
+            });
   }
 
   private final boolean keepSingleWALSegment;
@@ -209,6 +255,20 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
   private final TreeMap<OLogSequenceNumber, Integer> cutTillLimits = new TreeMap<>();
   private final ScalableRWLock cuttingLock = new ScalableRWLock();
 
+  /**
+   * Segments are opened for reading under shared lock and replaced by their compressed version
+   * under exclusive lock, so size of the segment always matches format of the opened file.
+   */
+  private final ScalableRWLock segmentReplaceLock = new ScalableRWLock();
+
+  private final boolean compressSegments;
+  private volatile boolean compressionStopped;
+  /** Compressions of segments of this log which were scheduled and are not completed yet. */
+  private final Queue<Future<?>> compressionFutures = new ConcurrentLinkedQueue<>();
+
+  /** Directory to which not needed segments are moved, segments are deleted if it is null. */
+  private final Path archivePath;
+
   private final ConcurrentLinkedQueue<OPair<Long, OWALFile>> fileCloseQueue =
       new ConcurrentLinkedQueue<>();
   private final AtomicInteger fileCloseQueueSize = new AtomicInteger();
@@ -259,6 +319,26 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
   private final LongAdder threadsWaitingSum = new LongAdder();
   private final LongAdder threadsWaitingCount = new LongAdder();
 
+  /** Only single thread, leader of the group of commits, syncs WAL at a time. */
+  private final Lock groupCommitLock = new ReentrantLock();
+
+  private final Condition groupCommitJoined = groupCommitLock.newCondition();
+  private final Condition groupCommitCompleted = groupCommitLock.newCondition();
+
+  // fields below are guarded by group commit lock
+  private boolean groupCommitInProgress;
+  private int groupCommitWaiters;
+  private long lastCommitArrivalTs = -1;
+  private long avgCommitInterArrivalTime;
+
+  /** Average time of sync of the group of commits, it is changed only by the group leader. */
+  private volatile long avgSyncTime;
+
+  private final LongAdder groupCommits = new LongAdder();
+  private final LongAdder groupCommitOperations = new LongAdder();
+  private final AtomicLongArray syncTimeHistogram =
+      new AtomicLongArray(SYNC_TIME_HISTOGRAM_BUCKETS);
+
   private long reportTs = -1;
 
   private volatile boolean stopWrite = false;
@@ -285,6 +365,61 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
       boolean printPerformanceStatistic,
       int statisticPrintInterval)
       throws IOException {
+    this(
+        storageName,
+        storagePath,
+        walPath,
+        maxPagesCacheSize,
+        bufferSize,
+        aesKey,
+        iv,
+        segmentsInterval,
+        maxSegmentSize,
+        commitDelay,
+        filterWALFiles,
+        locale,
+        walSizeHardLimit,
+        freeSpaceLimit,
+        fsyncInterval,
+        allowDirectIO,
+        keepSingleWALSegment,
+        callFsync,
+        printPerformanceStatistic,
+        statisticPrintInterval,
+        false,
+        null);
+  }
+
+  /**
+   * @param compressSegments Whether segments should be compressed in background once they are
+   *     filled and synced to the disk. Segments of encrypted log are not compressed.
+   * @param archivePath Directory to which segments are moved once they are cut from the log, if
+   *     <code>null</code> segments are deleted.
+   */
+  public CASDiskWriteAheadLog(
+      final String storageName,
+      final Path storagePath,
+      final Path walPath,
+      final int maxPagesCacheSize,
+      final int bufferSize,
+      byte[] aesKey,
+      byte[] iv,
+      long segmentsInterval,
+      final long maxSegmentSize,
+      final int commitDelay,
+      final boolean filterWALFiles,
+      final Locale locale,
+      final long walSizeHardLimit,
+      final long freeSpaceLimit,
+      final int fsyncInterval,
+      boolean allowDirectIO,
+      boolean keepSingleWALSegment,
+      boolean callFsync,
+      boolean printPerformanceStatistic,
+      int statisticPrintInterval,
+      boolean compressSegments,
+      Path archivePath)
+      throws IOException {
 
     if (aesKey != null && aesKey.length != 16 && aesKey.length != 24 && aesKey.length != 32) {
       throw new OInvalidStorageEncryptionKeyException(
@@ -321,6 +456,14 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
     this.fileStore = Files.getFileStore(walLocation);
     this.storageName = storageName;
 
+    // encrypted data is not compressible
+    this.compressSegments = compressSegments && aesKey == null;
+    this.archivePath = archivePath;
+
+    if (archivePath != null && !Files.exists(archivePath)) {
+      Files.createDirectories(archivePath);
+    }
+
     if (allowDirectIO) {
       blockSize = OIOUtils.calculateBlockSize(walLocation.toAbsolutePath().toString());
     } else {
@@ -410,6 +553,13 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
             new RecordsWriter(false, false, true), commitDelay, TimeUnit.MILLISECONDS);
 
     flush();
+
+    // segments of previous session are not changed anymore
+    for (final long segment : segments) {
+      if (segment < currentSegment) {
+        scheduleSegmentCompression(segment);
+      }
+    }
   }
 
   public int pageSize() {
@@ -791,9 +941,16 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
         final Path segmentPath = walLocation.resolve(segmentName);
 
         if (Files.exists(segmentPath)) {
-          try (final OWALFile file =
-              OWALFile.createReadWALFile(segmentPath, allowDirectIO, blockSize)) {
-            long chSize = Files.size(segmentPath);
+          final OWALFile segmentFile;
+          segmentReplaceLock.sharedLock();
+          try {
+            segmentFile = OWALFile.createReadWALFile(segmentPath, allowDirectIO, blockSize);
+          } finally {
+            segmentReplaceLock.sharedUnlock();
+          }
+
+          try (final OWALFile file = segmentFile) {
+            long chSize = file.size();
             final WrittenUpTo written = this.writtenUpTo.get();
 
             if (segment == written.lsn.getSegment()) {
@@ -1315,6 +1472,7 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
             }
 
             file.close();
+            scheduleSegmentCompression(pair.key);
             break;
           } else {
             file.close();
@@ -1334,7 +1492,7 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
             final Path segmentPath = walLocation.resolve(segmentName);
             if (Files.exists(segmentPath)) {
               final long length = Files.size(segmentPath);
-              Files.delete(segmentPath);
+              removeSegmentFile(segmentName, segmentPath);
               logSize.addAndGet(-length);
               removed = true;
             }
@@ -1352,6 +1510,145 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
     }
   }
 
+  private void removeSegmentFile(final String segmentName, final Path segmentPath)
+      throws IOException {
+    if (archivePath != null) {
+      try {
+        OFileUtils.atomicMoveWithFallback(segmentPath, archivePath.resolve(segmentName), this);
+        return;
+      } catch (final IOException e) {
+        OLogManager.instance()
+            .errorNoDb(
+                this,
+                "Can not move WAL segment %s to the archive %s, segment will be deleted",
+                e,
+                segmentPath,
+                archivePath);
+      }
+    }
+
+    Files.delete(segmentPath);
+  }
+
+  private void scheduleSegmentCompression(final long segment) {
+    if (!compressSegments || compressionStopped) {
+      return;
+    }
+
+    // executor is shared by all logs, so only futures of this log are tracked
+    compressionFutures.removeIf(Future::isDone);
+    compressionFutures.add(compressionExecutor.submit(() -> compressSegment(segment)));
+  }
+
+  /**
+   * Makes renames of the files inside of the WAL directory durable. Directories can not be opened
+   * on Windows, where renames are durable once they are completed.
+   */
+  private void forceWALDirectory() throws IOException {
+    if (Platform.getPlatform().getOS() == Platform.OS.WINDOWS) {
+      return;
+    }
+
+    try (final FileChannel channel = FileChannel.open(walLocation, StandardOpenOption.READ)) {
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Replaces filled segment by its compressed version if compression saves enough of space.
+   * Segment is compressed into the temporary file which atomically replaces segment, so segment
+   * either has original or compressed content even if process is terminated in the middle.
+   */
+  private void compressSegment(final long segment) {
+    if (compressionStopped || !segments.contains(segment)) {
+      return;
+    }
+
+    final String segmentName = getSegmentName(segment);
+    final Path segmentPath = walLocation.resolve(segmentName);
+    final Path compressedPath = walLocation.resolve(segmentName + COMPRESSED_SEGMENT_EXTENSION);
+
+    try {
+      if (!Files.exists(segmentPath) || OWALCompressedFile.isCompressed(segmentPath)) {
+        return;
+      }
+
+      final long segmentSize = Files.size(segmentPath);
+      final int compressionBlockSize = Math.max(COMPRESSION_BLOCK_SIZE / pageSize, 1) * pageSize;
+      final long compressedSize =
+          OWALCompressedFile.compress(segmentPath, compressedPath, compressionBlockSize);
+
+      if (compressedSize >= segmentSize * MAX_COMPRESSION_RATIO) {
+        return;
+      }
+
+      cuttingLock.sharedLock();
+      try {
+        // segment could be cut or log could be closed during compression
+        if (compressionStopped || !segments.contains(segment) || !Files.exists(segmentPath)) {
+          return;
+        }
+
+        segmentReplaceLock.exclusiveLock();
+        try {
+          Files.move(
+              compressedPath,
+              segmentPath,
+              StandardCopyOption.ATOMIC_MOVE,
+              StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+          segmentReplaceLock.exclusiveUnlock();
+        }
+
+        forceWALDirectory();
+
+        logSize.addAndGet(compressedSize - segmentSize);
+      } finally {
+        cuttingLock.sharedUnlock();
+      }
+    } catch (final IOException e) {
+      OLogManager.instance()
+          .errorNoDb(this, "Error during compression of WAL segment %s", e, segmentPath);
+    } finally {
+      try {
+        Files.deleteIfExists(compressedPath);
+      } catch (final IOException e) {
+        OLogManager.instance()
+            .errorNoDb(this, "Can not delete temporary WAL file %s", e, compressedPath);
+      }
+    }
+  }
+
+  private void stopSegmentCompression() {
+    cuttingLock.exclusiveLock();
+    try {
+      compressionStopped = true;
+    } finally {
+      cuttingLock.exclusiveUnlock();
+    }
+
+    // compressions which are not started yet are cancelled, running compression is awaited
+    Future<?> future;
+    while ((future = compressionFutures.poll()) != null) {
+      if (future.cancel(false)) {
+        continue;
+      }
+
+      try {
+        future.get();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw OException.wrapException(
+            new OStorageException("WAL segment compression was interrupted"), e);
+      } catch (final ExecutionException e) {
+        throw OException.wrapException(
+            new OStorageException("Error during compression of WAL segment"), e);
+      }
+    }
+
+    compressionExecutor.purge();
+  }
+
   public boolean cutTill(final OLogSequenceNumber lsn) throws IOException {
     final long segmentId = lsn.getSegment();
     return cutAllSegmentsSmallerThan(segmentId);
@@ -1502,6 +1799,132 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
     waitTillWriteWillBeFinished();
   }
 
+  /**
+   * Commits which are waiting to be synced form a group. The first of them becomes leader of the
+   * group, it waits for a while if other commits are expected to join the group, flushes WAL and
+   * releases all waiting threads records of which are synced. Time of waiting of the leader depends
+   * on the average interval between commits and on the average time of sync, so if commits arrive
+   * rarely they are synced immediately.
+   */
+  @Override
+  public void syncTill(final OLogSequenceNumber lsn) {
+    if (isSynced(lsn)) {
+      return;
+    }
+
+    groupCommitOperations.increment();
+
+    groupCommitLock.lock();
+    try {
+      final long ts = System.nanoTime();
+      if (lastCommitArrivalTs >= 0) {
+        avgCommitInterArrivalTime =
+            movingAverage(avgCommitInterArrivalTime, ts - lastCommitArrivalTs);
+      }
+      lastCommitArrivalTs = ts;
+
+      groupCommitWaiters++;
+      groupCommitJoined.signal();
+
+      while (groupCommitInProgress && !isSynced(lsn)) {
+        groupCommitCompleted.awaitUninterruptibly();
+      }
+
+      if (isSynced(lsn)) {
+        groupCommitWaiters--;
+        return;
+      }
+
+      groupCommitInProgress = true;
+      waitTillGroupIsFormed();
+    } finally {
+      groupCommitLock.unlock();
+    }
+
+    final long startTs = System.nanoTime();
+    try {
+      flush();
+    } finally {
+      final long syncTime = System.nanoTime() - startTs;
+
+      avgSyncTime = movingAverage(avgSyncTime, syncTime);
+      groupCommits.increment();
+      syncTimeHistogram.incrementAndGet(
+          Math.min(
+              SYNC_TIME_HISTOGRAM_BUCKETS - 1,
+              64 - Long.numberOfLeadingZeros(TimeUnit.NANOSECONDS.toMicros(syncTime))));
+
+      groupCommitLock.lock();
+      try {
+        groupCommitWaiters--;
+        groupCommitInProgress = false;
+        groupCommitCompleted.signalAll();
+      } finally {
+        groupCommitLock.unlock();
+      }
+    }
+  }
+
+  private void waitTillGroupIsFormed() {
+    final long syncTime = avgSyncTime;
+    final long interArrivalTime = avgCommitInterArrivalTime;
+
+    // commits arrive less often than WAL is synced, so there is nobody to wait for
+    if (syncTime == 0 || interArrivalTime == 0 || interArrivalTime >= syncTime) {
+      return;
+    }
+
+    final long expectedGroupSize = syncTime / interArrivalTime;
+    long lingerTime = Math.min(syncTime / 2, GROUP_COMMIT_MAX_LINGER_NANOS);
+
+    try {
+      while (groupCommitWaiters < expectedGroupSize && lingerTime > 0) {
+        lingerTime = groupCommitJoined.awaitNanos(lingerTime);
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean isSynced(final OLogSequenceNumber lsn) {
+    final OLogSequenceNumber flushedLSN = this.flushedLSN;
+    return flushedLSN != null && flushedLSN.compareTo(lsn) >= 0;
+  }
+
+  private static long movingAverage(final long average, final long value) {
+    if (average == 0) {
+      return value;
+    }
+
+    return average + (value - average) / 8;
+  }
+
+  /** @return Amount of groups of commits which were synced. */
+  public long getGroupCommits() {
+    return groupCommits.sum();
+  }
+
+  /**
+   * @return Amount of commits which waited for sync of WAL, average size of the group is the ratio
+   *     of this value to the amount of groups.
+   */
+  public long getGroupCommitOperations() {
+    return groupCommitOperations.sum();
+  }
+
+  /**
+   * @return Histogram of times of syncs of the groups of commits.
+   * @see #SYNC_TIME_HISTOGRAM_BUCKETS
+   */
+  public long[] getSyncTimeHistogram() {
+    final long[] histogram = new long[SYNC_TIME_HISTOGRAM_BUCKETS];
+    for (int i = 0; i < histogram.length; i++) {
+      histogram[i] = syncTimeHistogram.get(i);
+    }
+
+    return histogram;
+  }
+
   public void close() throws IOException {
     close(true);
   }
@@ -1554,6 +1977,8 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
       throw OException.wrapException(new OStorageException("Error during writint of WAL data"), e);
     }
 
+    stopSegmentCompression();
+
     for (final OPair<Long, OWALFile> pair : fileCloseQueue) {
       final OWALFile file = pair.value;
 
@@ -1764,6 +2189,30 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
     return end.get();
   }
 
+  @Override
+  public long distance(final OLogSequenceNumber from, final OLogSequenceNumber to) {
+    if (from.compareTo(to) >= 0) {
+      return 0;
+    }
+
+    if (from.getSegment() == to.getSegment()) {
+      return to.getPosition() - from.getPosition();
+    }
+
+    long distance = to.getPosition() - from.getPosition();
+    for (final long segment : segments.subSet(from.getSegment(), true, to.getSegment(), false)) {
+      final Path segmentPath = walLocation.resolve(getSegmentName(segment));
+      try {
+        distance += OWALCompressedFile.logicalSize(segmentPath);
+      } catch (final IOException e) {
+        // segment is removed concurrently
+        return -1;
+      }
+    }
+
+    return distance;
+  }
+
   private static long calculatePosition(
       final OWALRecord record, final OWALRecord prevRecord, int pageSize, int maxRecordSize) {
     assert prevRecord.getLsn().getSegment() <= record.getLsn().getSegment()
@@ -2234,6 +2683,7 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
                                   }
 
                                   file.close();
+                                  scheduleSegmentCompression(pair.key);
 
                                   fileCloseQueueSize.decrementAndGet();
                                 } else {
@@ -2478,6 +2928,38 @@ public final class CASDiskWriteAheadLog implements OWriteAheadLog {
         CASDiskWriteAheadLog.this.threadsWaitingSum.add(-threadsWaitingSum);
         CASDiskWriteAheadLog.this.threadsWaitingCount.add(-threadsWaitingCount);
 
+        final long groupCommits = CASDiskWriteAheadLog.this.groupCommits.sum();
+        if (groupCommits > 0) {
+          final long groupCommitOperations =
+              CASDiskWriteAheadLog.this.groupCommitOperations.sum();
+
+          final StringBuilder histogram = new StringBuilder();
+          for (int i = 0; i < SYNC_TIME_HISTOGRAM_BUCKETS; i++) {
+            final long syncs = syncTimeHistogram.get(i);
+            if (syncs > 0) {
+              if (histogram.length() > 0) {
+                histogram.append(", ");
+              }
+              histogram.append("<").append(1L << i).append(" us: ").append(syncs);
+
+              syncTimeHistogram.addAndGet(i, -syncs);
+            }
+          }
+
+          OLogManager.instance()
+              .infoNoDb(
+                  this,
+                  "WAL stat:%s: %d groups of commits were synced. Avg. size of group %d. "
+                      + "Sync time histogram: %s.",
+                  storageName,
+                  groupCommits,
+                  groupCommitOperations / groupCommits,
+                  histogram);
+
+          CASDiskWriteAheadLog.this.groupCommits.add(-groupCommits);
+          CASDiskWriteAheadLog.this.groupCommitOperations.add(-groupCommitOperations);
+        }
+
         reportTs = ts;
       }
     }
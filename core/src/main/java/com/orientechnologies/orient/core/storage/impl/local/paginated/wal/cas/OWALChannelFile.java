@@ -27,6 +27,11 @@ public class OWALChannelFile implements OWALFile {
     OIOUtils.readByteBuffer(buffer, channel);
   }
 
+  @Override
+  public long size() throws IOException {
+    return channel.size();
+  }
+
   @Override
   public void force(boolean forceMetadata) throws IOException {
     channel.force(forceMetadata);
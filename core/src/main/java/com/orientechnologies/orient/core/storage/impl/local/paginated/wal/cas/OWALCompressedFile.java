@@ -0,0 +1,339 @@
+package com.orientechnologies.orient.core.storage.impl.local.paginated.wal.cas;
+
+import com.orientechnologies.common.io.OIOUtils;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Read only view of WAL segment compressed by LZ4. Segment is split on blocks of fixed size which
+ * are compressed independently, so any page of the segment can be read without decompression of
+ * the whole segment. File consists of header, index of blocks and compressed blocks:
+ *
+ * <ol>
+ *   <li>Magic number (8 bytes)
+ *   <li>Version of format (4 bytes)
+ *   <li>Size of uncompressed block (4 bytes)
+ *   <li>Size of uncompressed segment (8 bytes)
+ *   <li>Amount of blocks (4 bytes)
+ *   <li>Position (8 bytes) and size (4 bytes) of each compressed block
+ * </ol>
+ *
+ * Content of the pages is not validated by this class, every WAL page contains its own checksum,
+ * so blocks which can not be decompressed are returned as zeros. Reader of the log detects them as
+ * broken pages and treats the first of them as the end of the log.
+ */
+public final class OWALCompressedFile implements OWALFile {
+  /** Magic number of compressed segment, it does not match magic number of any WAL page. */
+  private static final long MAGIC_NUMBER = 0x4F57414C5A345347L;
+
+  private static final int VERSION = 1;
+
+  private static final int MAGIC_NUMBER_OFFSET = 0;
+  private static final int VERSION_OFFSET = MAGIC_NUMBER_OFFSET + 8;
+  private static final int BLOCK_SIZE_OFFSET = VERSION_OFFSET + 4;
+  private static final int SIZE_OFFSET = BLOCK_SIZE_OFFSET + 4;
+  private static final int BLOCKS_OFFSET = SIZE_OFFSET + 8;
+  private static final int HEADER_SIZE = BLOCKS_OFFSET + 4;
+
+  private static final int INDEX_ENTRY_SIZE = 8 + 4;
+
+  private static final LZ4Compressor LZ_4_COMPRESSOR;
+  private static final LZ4SafeDecompressor LZ_4_DECOMPRESSOR;
+
+  static {
+    final LZ4Factory factory = LZ4Factory.fastestInstance();
+    LZ_4_COMPRESSOR = factory.fastCompressor();
+    LZ_4_DECOMPRESSOR = factory.safeDecompressor();
+  }
+
+  private final FileChannel channel;
+  private final int blockSize;
+  private final long size;
+
+  private final long[] blockPositions;
+  private final int[] blockSizes;
+
+  private final ByteBuffer block;
+  private int blockIndex = -1;
+
+  private long position;
+
+  private OWALCompressedFile(
+      final FileChannel channel,
+      final int blockSize,
+      final long size,
+      final long[] blockPositions,
+      final int[] blockSizes) {
+    this.channel = channel;
+    this.blockSize = blockSize;
+    this.size = size;
+    this.blockPositions = blockPositions;
+    this.blockSizes = blockSizes;
+
+    this.block = ByteBuffer.allocate(blockSize);
+  }
+
+  /**
+   * Checks whether segment stored at passed in path is compressed.
+   *
+   * @param path Path to the segment.
+   * @return <code>true</code> if file exists and has format of compressed segment.
+   */
+  public static boolean isCompressed(final Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return false;
+    }
+
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return isCompressed(channel);
+    }
+  }
+
+  private static boolean isCompressed(final FileChannel channel) throws IOException {
+    if (channel.size() < HEADER_SIZE) {
+      return false;
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate(8);
+    OIOUtils.readByteBuffer(buffer, channel, MAGIC_NUMBER_OFFSET, true);
+
+    return buffer.getLong(0) == MAGIC_NUMBER;
+  }
+
+  /**
+   * Returns size of the segment as it is seen by the readers of the log, which is size of the
+   * uncompressed content for compressed segments and size of the file for the rest of segments.
+   */
+  public static long logicalSize(final Path path) throws IOException {
+    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (!isCompressed(channel)) {
+        return channel.size();
+      }
+
+      final ByteBuffer buffer = ByteBuffer.allocate(8);
+      OIOUtils.readByteBuffer(buffer, channel, SIZE_OFFSET, true);
+
+      return buffer.getLong(0);
+    }
+  }
+
+  /**
+   * Opens compressed segment for reading.
+   *
+   * @param path Path to the segment.
+   * @return Opened segment or <code>null</code> if segment is not compressed.
+   */
+  static OWALCompressedFile open(final Path path) throws IOException {
+    final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      if (!isCompressed(channel)) {
+        channel.close();
+        return null;
+      }
+
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      OIOUtils.readByteBuffer(header, channel, 0, true);
+
+      final int version = header.getInt(VERSION_OFFSET);
+      if (version != VERSION) {
+        throw new IOException(
+            "Unsupported version " + version + " of compressed WAL segment " + path);
+      }
+
+      final int blockSize = header.getInt(BLOCK_SIZE_OFFSET);
+      final long size = header.getLong(SIZE_OFFSET);
+      final int blocks = header.getInt(BLOCKS_OFFSET);
+
+      if (blockSize <= 0 || size < 0 || blocks != (int) ((size + blockSize - 1) / blockSize)) {
+        throw new IOException("Header of compressed WAL segment " + path + " is broken");
+      }
+
+      final long[] blockPositions = new long[blocks];
+      final int[] blockSizes = new int[blocks];
+
+      if (blocks > 0) {
+        final ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY_SIZE);
+        OIOUtils.readByteBuffer(index, channel, HEADER_SIZE, true);
+        index.rewind();
+
+        for (int i = 0; i < blocks; i++) {
+          blockPositions[i] = index.getLong();
+          blockSizes[i] = index.getInt();
+        }
+      }
+
+      return new OWALCompressedFile(channel, blockSize, size, blockPositions, blockSizes);
+    } catch (final IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Writes compressed copy of the segment.
+   *
+   * @param segment Path to the segment which is compressed.
+   * @param compressedSegment Path to the file to which compressed segment is written, file is
+   *     overwritten if it exists.
+   * @param blockSize Size of blocks which are compressed independently, should be multiple of
+   *     size of WAL page.
+   * @return Size of the compressed segment.
+   */
+  static long compress(final Path segment, final Path compressedSegment, final int blockSize)
+      throws IOException {
+    try (final FileChannel source = FileChannel.open(segment, StandardOpenOption.READ);
+        final FileChannel target =
+            FileChannel.open(
+                compressedSegment,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+      final long size = source.size();
+      final int blocks = (int) ((size + blockSize - 1) / blockSize);
+
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + blocks * INDEX_ENTRY_SIZE);
+      header.putLong(MAGIC_NUMBER_OFFSET, MAGIC_NUMBER);
+      header.putInt(VERSION_OFFSET, VERSION);
+      header.putInt(BLOCK_SIZE_OFFSET, blockSize);
+      header.putLong(SIZE_OFFSET, size);
+      header.putInt(BLOCKS_OFFSET, blocks);
+      header.position(HEADER_SIZE);
+
+      final ByteBuffer block = ByteBuffer.allocate(blockSize);
+      final ByteBuffer compressedBlock =
+          ByteBuffer.allocate(LZ_4_COMPRESSOR.maxCompressedLength(blockSize));
+
+      long position = header.capacity();
+      for (int i = 0; i < blocks; i++) {
+        final int blockLength = (int) Math.min(blockSize, size - (long) i * blockSize);
+
+        block.clear();
+        block.limit(blockLength);
+        OIOUtils.readByteBuffer(block, source, (long) i * blockSize, true);
+
+        compressedBlock.clear();
+        final int compressedLength =
+            LZ_4_COMPRESSOR.compress(
+                block, 0, blockLength, compressedBlock, 0, compressedBlock.capacity());
+        compressedBlock.limit(compressedLength);
+
+        OIOUtils.writeByteBuffer(compressedBlock, target, position);
+
+        header.putLong(position);
+        header.putInt(compressedLength);
+
+        position += compressedLength;
+      }
+
+      header.rewind();
+      OIOUtils.writeByteBuffer(header, target, 0);
+
+      target.force(true);
+
+      return position;
+    }
+  }
+
+  /** @return Size of uncompressed segment. */
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public long position() {
+    return position;
+  }
+
+  @Override
+  public void position(final long position) {
+    this.position = position;
+  }
+
+  @Override
+  public void readBuffer(final ByteBuffer buffer) throws IOException {
+    if (position + buffer.remaining() > size) {
+      throw new EOFException("End of file is reached");
+    }
+
+    while (buffer.hasRemaining()) {
+      final int index = (int) (position / blockSize);
+      loadBlock(index);
+
+      final int offset = (int) (position - (long) index * blockSize);
+      final int length = Math.min(buffer.remaining(), block.limit() - offset);
+
+      final ByteBuffer source = block.duplicate();
+      source.position(offset);
+      source.limit(offset + length);
+      buffer.put(source);
+
+      position += length;
+    }
+  }
+
+  private void loadBlock(final int index) throws IOException {
+    if (blockIndex == index) {
+      return;
+    }
+
+    final int blockLength = (int) Math.min(blockSize, size - (long) index * blockSize);
+
+    block.clear();
+    block.limit(blockLength);
+
+    final int compressedLength = blockSizes[index];
+    final long compressedPosition = blockPositions[index];
+
+    boolean decompressed = false;
+    if (compressedLength > 0
+        && compressedPosition > 0
+        && compressedPosition + compressedLength <= channel.size()) {
+      final ByteBuffer compressedBlock = ByteBuffer.allocate(compressedLength);
+      OIOUtils.readByteBuffer(compressedBlock, channel, compressedPosition, true);
+
+      try {
+        // compressed data may be torn or corrupted, so decompressor which checks bounds is used
+        final int decompressedLength =
+            LZ_4_DECOMPRESSOR.decompress(
+                compressedBlock, 0, compressedLength, block, 0, blockLength);
+        decompressed = decompressedLength == blockLength;
+      } catch (final LZ4Exception ignore) {
+        // content of the block is broken
+      }
+    }
+
+    if (!decompressed) {
+      // pages of broken block will not pass validation of checksum
+      for (int i = 0; i < blockLength; i++) {
+        block.put(i, (byte) 0);
+      }
+    }
+
+    blockIndex = index;
+  }
+
+  @Override
+  public void force(final boolean forceMetadata) {
+    throw new UnsupportedOperationException("Compressed WAL segment can not be modified");
+  }
+
+  @Override
+  public int write(final ByteBuffer buffer) {
+    throw new UnsupportedOperationException("Compressed WAL segment can not be modified");
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -83,6 +83,18 @@ public class OWALFdFile implements OWALFile {
     OIOUtils.readByteBuffer(buffer, fd);
   }
 
+  @Override
+  public long size() throws IOException {
+    try {
+      final long position = ONative.instance().lseek(fd, 0, ONative.SEEK_CUR);
+      final long size = ONative.instance().lseek(fd, 0, ONative.SEEK_END);
+      ONative.instance().lseek(fd, position, ONative.SEEK_SET);
+      return size;
+    } catch (LastErrorException e) {
+      throw new IOException("Can not retrieve size of file", e);
+    }
+  }
+
   @Override
   public void close() throws IOException {
     try {
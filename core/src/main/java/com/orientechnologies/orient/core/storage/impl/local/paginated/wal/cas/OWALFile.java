@@ -22,6 +22,9 @@ public interface OWALFile extends Closeable {
 
   void readBuffer(ByteBuffer buffer) throws IOException;
 
+  /** @return Size of the segment as it is seen by the readers of the log. */
+  long size() throws IOException;
+
   static OWALFile createWriteWALFile(Path path, boolean allowDirectIO, int blockSize)
       throws IOException {
     if (allowDirectIO) {
@@ -57,6 +60,11 @@ public interface OWALFile extends Closeable {
 
   static OWALFile createReadWALFile(Path path, boolean allowDirectIO, int blockSize)
       throws IOException {
+    final OWALCompressedFile compressedFile = OWALCompressedFile.open(path);
+    if (compressedFile != null) {
+      return compressedFile;
+    }
+
     if (allowDirectIO) {
       try {
         final int fd =
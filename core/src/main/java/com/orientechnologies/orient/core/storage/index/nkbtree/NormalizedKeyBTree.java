@@ -1,9 +1,54 @@
-package com.orientechnologies.orient.core.storage.index.nkbtree;
-
-import com.orientechnologies.orient.core.index.OCompositeKey;
-
-public interface NormalizedKeyBTree<K> {
-  byte[] get(final OCompositeKey key);
-
-  void put(final OCompositeKey key, final byte[] value);
-}
+package com.orientechnologies.orient.core.storage.index.nkbtree;
+
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperation;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * B-tree which keys are arrays of bytes compared as unsigned values in lexicographic order. Keys of
+ * the indexes are converted to such form by {@link
+ * com.orientechnologies.orient.core.storage.index.nkbtree.normalizers.KeyNormalizer}, so search
+ * inside of the tree does not require deserialization of the keys.
+ */
+public interface NormalizedKeyBTree {
+  void create(OAtomicOperation atomicOperation);
+
+  void load();
+
+  void close();
+
+  void delete(OAtomicOperation atomicOperation);
+
+  byte[] get(byte[] key);
+
+  void put(OAtomicOperation atomicOperation, byte[] key, byte[] value);
+
+  /**
+   * Updates value stored under the given key.
+   *
+   * @param updater Function which accepts current value or <code>null</code> if there is no value
+   *     for the given key and returns new value of the key. If <code>null</code> is returned, key
+   *     is removed from the tree, if the same instance which was passed in is returned, tree is not
+   *     changed.
+   * @return <code>true</code> if the tree was changed.
+   */
+  boolean update(OAtomicOperation atomicOperation, byte[] key, UnaryOperator<byte[]> updater);
+
+  byte[] remove(OAtomicOperation atomicOperation, byte[] key);
+
+  long size();
+
+  /**
+   * Iterates over entries of the tree which keys are in the given range. <code>null</code> passed
+   * as boundary of the range means that the range is not bound from that side.
+   */
+  Stream<ORawPair<byte[], byte[]>> iterateEntriesBetween(
+      byte[] keyFrom, boolean fromInclusive, byte[] keyTo, boolean toInclusive, boolean ascOrder);
+
+  /**
+   * Acquires exclusive lock in the active atomic operation running on the current thread for this
+   * tree.
+   */
+  void acquireAtomicExclusiveLock();
+}
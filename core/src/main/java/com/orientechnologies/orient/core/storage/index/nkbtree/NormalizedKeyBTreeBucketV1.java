@@ -0,0 +1,344 @@
+package com.orientechnologies.orient.core.storage.index.nkbtree;
+
+import com.orientechnologies.common.serialization.types.OByteSerializer;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.base.ODurablePage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bucket of {@link NormalizedKeyBTreeV1}. Layout of the page is the same as layout of the buckets
+ * of cell B-tree, the array of offsets to the entries grows from the start of the page and entries
+ * itself grow from the end of the page. Keys are stored as arrays of bytes prefixed by their
+ * length, so key is compared with the content of the page without deserialization.
+ *
+ * <p>Leaf entry has format <code>[key length][key][value length][value]</code>, non-leaf entry has
+ * format <code>[left child][right child][key length][key]</code>.
+ */
+final class NormalizedKeyBTreeBucketV1 extends ODurablePage {
+  private static final int FREE_POINTER_OFFSET = NEXT_FREE_POSITION;
+  private static final int SIZE_OFFSET = FREE_POINTER_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int IS_LEAF_OFFSET = SIZE_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int LEFT_SIBLING_OFFSET = IS_LEAF_OFFSET + OByteSerializer.BYTE_SIZE;
+  private static final int RIGHT_SIBLING_OFFSET = LEFT_SIBLING_OFFSET + OLongSerializer.LONG_SIZE;
+
+  private static final int POSITIONS_ARRAY_OFFSET =
+      RIGHT_SIBLING_OFFSET + OLongSerializer.LONG_SIZE;
+
+  /**
+   * Maximum size of the entry, it is chosen so bucket always contains at least four entries, which
+   * guarantees that both buckets are not empty after split.
+   */
+  static final int MAX_ENTRY_SIZE =
+      (MAX_PAGE_SIZE_BYTES - POSITIONS_ARRAY_OFFSET) / 4 - OIntegerSerializer.INT_SIZE;
+
+  NormalizedKeyBTreeBucketV1(final OCacheEntry cacheEntry) {
+    super(cacheEntry);
+  }
+
+  void init(final boolean isLeaf) {
+    setIntValue(FREE_POINTER_OFFSET, MAX_PAGE_SIZE_BYTES);
+    setIntValue(SIZE_OFFSET, 0);
+
+    setByteValue(IS_LEAF_OFFSET, (byte) (isLeaf ? 1 : 0));
+    setLongValue(LEFT_SIBLING_OFFSET, -1);
+    setLongValue(RIGHT_SIBLING_OFFSET, -1);
+  }
+
+  void switchBucketType() {
+    if (!isEmpty()) {
+      throw new IllegalStateException(
+          "Type of bucket can be changed only bucket if bucket is empty");
+    }
+
+    setByteValue(IS_LEAF_OFFSET, (byte) (isLeaf() ? 0 : 1));
+  }
+
+  boolean isLeaf() {
+    return getByteValue(IS_LEAF_OFFSET) > 0;
+  }
+
+  boolean isEmpty() {
+    return size() == 0;
+  }
+
+  int size() {
+    return getIntValue(SIZE_OFFSET);
+  }
+
+  /** @return Amount of bytes available for the new entry and its offset in positions array. */
+  int getFreeSpace() {
+    return getIntValue(FREE_POINTER_OFFSET)
+        - size() * OIntegerSerializer.INT_SIZE
+        - POSITIONS_ARRAY_OFFSET;
+  }
+
+  int find(final byte[] key) {
+    final boolean isLeaf = isLeaf();
+
+    int low = 0;
+    int high = size() - 1;
+
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int keyPosition = keyPosition(mid, isLeaf);
+      final int cmp =
+          compareBinaryValue(
+              keyPosition + OIntegerSerializer.INT_SIZE, getIntValue(keyPosition), key);
+
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid; // key found
+      }
+    }
+
+    return -(low + 1); // key not found.
+  }
+
+  byte[] getKey(final int index) {
+    final int keyPosition = keyPosition(index, isLeaf());
+    return getBinaryValue(keyPosition + OIntegerSerializer.INT_SIZE, getIntValue(keyPosition));
+  }
+
+  byte[] getValue(final int index) {
+    assert isLeaf();
+
+    final int entryPosition = entryPosition(index);
+    final int valuePosition =
+        entryPosition + OIntegerSerializer.INT_SIZE + getIntValue(entryPosition);
+
+    return getBinaryValue(valuePosition + OIntegerSerializer.INT_SIZE, getIntValue(valuePosition));
+  }
+
+  int getLeft(final int index) {
+    assert !isLeaf();
+
+    return getIntValue(entryPosition(index));
+  }
+
+  int getRight(final int index) {
+    assert !isLeaf();
+
+    return getIntValue(entryPosition(index) + OIntegerSerializer.INT_SIZE);
+  }
+
+  byte[] getRawEntry(final int index) {
+    final int entryPosition = entryPosition(index);
+    return getBinaryValue(entryPosition, entrySize(entryPosition, isLeaf()));
+  }
+
+  int getRawEntrySize(final int index) {
+    return entrySize(entryPosition(index), isLeaf());
+  }
+
+  boolean addLeafEntry(final int index, final byte[] key, final byte[] value) {
+    assert isLeaf();
+
+    final byte[] entry = new byte[leafEntrySize(key.length, value.length)];
+    OIntegerSerializer.INSTANCE.serializeNative(key.length, entry, 0);
+    System.arraycopy(key, 0, entry, OIntegerSerializer.INT_SIZE, key.length);
+    OIntegerSerializer.INSTANCE.serializeNative(
+        value.length, entry, OIntegerSerializer.INT_SIZE + key.length);
+    System.arraycopy(
+        value, 0, entry, 2 * OIntegerSerializer.INT_SIZE + key.length, value.length);
+
+    return insertRawEntry(index, entry);
+  }
+
+  boolean addNonLeafEntry(
+      final int index,
+      final int leftChild,
+      final int rightChild,
+      final byte[] key,
+      final boolean updateNeighbors) {
+    assert !isLeaf();
+
+    final byte[] entry = new byte[nonLeafEntrySize(key.length)];
+    OIntegerSerializer.INSTANCE.serializeNative(leftChild, entry, 0);
+    OIntegerSerializer.INSTANCE.serializeNative(rightChild, entry, OIntegerSerializer.INT_SIZE);
+    OIntegerSerializer.INSTANCE.serializeNative(key.length, entry, 2 * OIntegerSerializer.INT_SIZE);
+    System.arraycopy(key, 0, entry, 3 * OIntegerSerializer.INT_SIZE, key.length);
+
+    if (!insertRawEntry(index, entry)) {
+      return false;
+    }
+
+    final int size = size();
+    if (updateNeighbors && size > 1) {
+      if (index < size - 1) {
+        setIntValue(entryPosition(index + 1), rightChild);
+      }
+
+      if (index > 0) {
+        setIntValue(entryPosition(index - 1) + OIntegerSerializer.INT_SIZE, leftChild);
+      }
+    }
+
+    return true;
+  }
+
+  void removeLeafEntry(final int index) {
+    if (!isLeaf()) {
+      throw new IllegalStateException("Remove is applies to leaf buckets only");
+    }
+
+    final int entryPosition = entryPosition(index);
+    final int entrySize = entrySize(entryPosition, true);
+
+    int size = size();
+    if (index < size - 1) {
+      moveData(
+          POSITIONS_ARRAY_OFFSET + (index + 1) * OIntegerSerializer.INT_SIZE,
+          POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE,
+          (size - index - 1) * OIntegerSerializer.INT_SIZE);
+    }
+
+    size--;
+    setIntValue(SIZE_OFFSET, size);
+
+    final int freePointer = getIntValue(FREE_POINTER_OFFSET);
+    if (size > 0 && entryPosition > freePointer) {
+      moveData(freePointer, freePointer + entrySize, entryPosition - freePointer);
+    }
+
+    setIntValue(FREE_POINTER_OFFSET, freePointer + entrySize);
+
+    int currentPositionOffset = POSITIONS_ARRAY_OFFSET;
+
+    for (int i = 0; i < size; i++) {
+      final int currentEntryPosition = getIntValue(currentPositionOffset);
+      if (currentEntryPosition < entryPosition) {
+        setIntValue(currentPositionOffset, currentEntryPosition + entrySize);
+      }
+      currentPositionOffset += OIntegerSerializer.INT_SIZE;
+    }
+  }
+
+  /** Replaces value of the entry, new value should have the same length as the old one. */
+  void updateValue(final int index, final byte[] value) {
+    assert isLeaf();
+
+    final int entryPosition = entryPosition(index);
+    final int valuePosition =
+        entryPosition + OIntegerSerializer.INT_SIZE + getIntValue(entryPosition);
+    assert getIntValue(valuePosition) == value.length;
+
+    setBinaryValue(valuePosition + OIntegerSerializer.INT_SIZE, value);
+  }
+
+  void addAll(final List<byte[]> rawEntries) {
+    final int currentSize = size();
+    for (int i = 0; i < rawEntries.size(); i++) {
+      appendRawEntry(i + currentSize, rawEntries.get(i));
+    }
+
+    setIntValue(SIZE_OFFSET, rawEntries.size() + currentSize);
+  }
+
+  void shrink(final int newSize) {
+    final List<byte[]> rawEntries = new ArrayList<>(newSize);
+
+    for (int i = 0; i < newSize; i++) {
+      rawEntries.add(getRawEntry(i));
+    }
+
+    setIntValue(FREE_POINTER_OFFSET, MAX_PAGE_SIZE_BYTES);
+
+    for (int i = 0; i < newSize; i++) {
+      appendRawEntry(i, rawEntries.get(i));
+    }
+
+    setIntValue(SIZE_OFFSET, newSize);
+  }
+
+  void setLeftSibling(final long pageIndex) {
+    setLongValue(LEFT_SIBLING_OFFSET, pageIndex);
+  }
+
+  long getLeftSibling() {
+    return getLongValue(LEFT_SIBLING_OFFSET);
+  }
+
+  void setRightSibling(final long pageIndex) {
+    setLongValue(RIGHT_SIBLING_OFFSET, pageIndex);
+  }
+
+  long getRightSibling() {
+    return getLongValue(RIGHT_SIBLING_OFFSET);
+  }
+
+  static int leafEntrySize(final int keyLength, final int valueLength) {
+    return 2 * OIntegerSerializer.INT_SIZE + keyLength + valueLength;
+  }
+
+  static int nonLeafEntrySize(final int keyLength) {
+    return 3 * OIntegerSerializer.INT_SIZE + keyLength;
+  }
+
+  private boolean insertRawEntry(final int index, final byte[] entry) {
+    final int size = size();
+
+    int freePointer = getIntValue(FREE_POINTER_OFFSET);
+    if (freePointer - entry.length
+        < (size + 1) * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET) {
+      return false;
+    }
+
+    if (index <= size - 1) {
+      moveData(
+          POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE,
+          POSITIONS_ARRAY_OFFSET + (index + 1) * OIntegerSerializer.INT_SIZE,
+          (size - index) * OIntegerSerializer.INT_SIZE);
+    }
+
+    freePointer -= entry.length;
+
+    setIntValue(FREE_POINTER_OFFSET, freePointer);
+    setIntValue(POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE, freePointer);
+    setIntValue(SIZE_OFFSET, size + 1);
+
+    setBinaryValue(freePointer, entry);
+
+    return true;
+  }
+
+  private void appendRawEntry(final int index, final byte[] rawEntry) {
+    int freePointer = getIntValue(FREE_POINTER_OFFSET);
+    freePointer -= rawEntry.length;
+
+    setIntValue(FREE_POINTER_OFFSET, freePointer);
+    setIntValue(POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE, freePointer);
+
+    setBinaryValue(freePointer, rawEntry);
+  }
+
+  private int entryPosition(final int index) {
+    return getIntValue(POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE);
+  }
+
+  private int keyPosition(final int index, final boolean isLeaf) {
+    final int entryPosition = entryPosition(index);
+    if (isLeaf) {
+      return entryPosition;
+    }
+
+    return entryPosition + 2 * OIntegerSerializer.INT_SIZE;
+  }
+
+  private int entrySize(final int entryPosition, final boolean isLeaf) {
+    if (isLeaf) {
+      final int keyLength = getIntValue(entryPosition);
+      final int valueLength =
+          getIntValue(entryPosition + OIntegerSerializer.INT_SIZE + keyLength);
+
+      return leafEntrySize(keyLength, valueLength);
+    }
+
+    return nonLeafEntrySize(getIntValue(entryPosition + 2 * OIntegerSerializer.INT_SIZE));
+  }
+}
@@ -0,0 +1,24 @@
+package com.orientechnologies.orient.core.storage.index.nkbtree;
+
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.base.ODurablePage;
+
+final class NormalizedKeyBTreeEntryPointV1 extends ODurablePage {
+  private static final int TREE_SIZE_OFFSET = NEXT_FREE_POSITION;
+
+  NormalizedKeyBTreeEntryPointV1(final OCacheEntry cacheEntry) {
+    super(cacheEntry);
+  }
+
+  void init() {
+    setLongValue(TREE_SIZE_OFFSET, 0);
+  }
+
+  void setTreeSize(final long size) {
+    setLongValue(TREE_SIZE_OFFSET, size);
+  }
+
+  long getTreeSize() {
+    return getLongValue(TREE_SIZE_OFFSET);
+  }
+}
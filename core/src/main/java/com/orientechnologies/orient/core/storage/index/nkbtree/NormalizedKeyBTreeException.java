@@ -0,0 +1,15 @@
+package com.orientechnologies.orient.core.storage.index.nkbtree;
+
+import com.orientechnologies.orient.core.exception.ODurableComponentException;
+
+public final class NormalizedKeyBTreeException extends ODurableComponentException {
+
+  @SuppressWarnings("unused")
+  public NormalizedKeyBTreeException(final NormalizedKeyBTreeException exception) {
+    super(exception);
+  }
+
+  NormalizedKeyBTreeException(final String message, final NormalizedKeyBTreeV1 component) {
+    super(message, component);
+  }
+}
@@ -0,0 +1,931 @@
+package com.orientechnologies.orient.core.storage.index.nkbtree;
+
+import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.exception.NotEmptyComponentCanNotBeRemovedException;
+import com.orientechnologies.orient.core.exception.OTooBigIndexKeyException;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperation;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperationsManager;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.base.ODurableComponent;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.base.ODurablePage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implementation of {@link NormalizedKeyBTree} which is based on B+-tree. The main differences
+ * from classic B+-tree are:
+ *
+ * <ol>
+ *   <li>Buckets are split preemptively during the descent from the root to the leaf, if bucket
+ *       does not have enough space to hold entry of maximum size it is split before the search
+ *       continues. Because of that parent bucket always has space for the separator key and split
+ *       never propagates up to the root.
+ *   <li>Only the shortest prefix of the first key of the right bucket which is still bigger than
+ *       the last key of the left bucket is moved to the parent bucket during the split of the leaf,
+ *       so non-leaf buckets contain short separators and tree has less levels.
+ *   <li>Buckets are not merged if they are empty after deletion of item. They reused later when
+ *       new items are added.
+ * </ol>
+ */
+public final class NormalizedKeyBTreeV1 extends ODurableComponent implements NormalizedKeyBTree {
+  private static final int SPLITERATOR_CACHE_SIZE =
+      OGlobalConfiguration.INDEX_CURSOR_PREFETCH_SIZE.getValueAsInteger();
+  private static final int MAX_PATH_LENGTH =
+      OGlobalConfiguration.SBTREE_MAX_DEPTH.getValueAsInteger();
+
+  private static final int ENTRY_POINT_INDEX = 0;
+  private static final long ROOT_INDEX = 1;
+
+  private static final byte[] EMPTY_KEY = new byte[0];
+
+  private long fileId;
+
+  public NormalizedKeyBTreeV1(
+      final String name, final String dataFileExtension, final OAbstractPaginatedStorage storage) {
+    super(storage, name, dataFileExtension, name + dataFileExtension);
+  }
+
+  @Override
+  public void create(final OAtomicOperation atomicOperation) {
+    executeInsideComponentOperation(
+        atomicOperation,
+        operation -> {
+          acquireExclusiveLock();
+          try {
+            fileId = addFile(atomicOperation, getFullName());
+
+            final OCacheEntry entryPointCacheEntry = addPage(atomicOperation, fileId);
+            try {
+              final NormalizedKeyBTreeEntryPointV1 entryPoint =
+                  new NormalizedKeyBTreeEntryPointV1(entryPointCacheEntry);
+              entryPoint.init();
+            } finally {
+              releasePageFromWrite(atomicOperation, entryPointCacheEntry);
+            }
+
+            final OCacheEntry rootCacheEntry = addPage(atomicOperation, fileId);
+            try {
+              final NormalizedKeyBTreeBucketV1 rootBucket =
+                  new NormalizedKeyBTreeBucketV1(rootCacheEntry);
+              rootBucket.init(true);
+            } finally {
+              releasePageFromWrite(atomicOperation, rootCacheEntry);
+            }
+          } finally {
+            releaseExclusiveLock();
+          }
+        });
+  }
+
+  @Override
+  public void load() {
+    acquireExclusiveLock();
+    try {
+      final OAtomicOperation atomicOperation = OAtomicOperationsManager.getCurrentOperation();
+      fileId = openFile(atomicOperation, getFullName());
+    } catch (final IOException e) {
+      throw OException.wrapException(
+          new NormalizedKeyBTreeException("Exception during loading of tree " + getName(), this),
+          e);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public void close() {
+    acquireExclusiveLock();
+    try {
+      readCache.closeFile(fileId, true, writeCache);
+    } finally {
+      releaseExclusiveLock();
+    }
+  }
+
+  @Override
+  public void delete(final OAtomicOperation atomicOperation) {
+    executeInsideComponentOperation(
+        atomicOperation,
+        operation -> {
+          acquireExclusiveLock();
+          try {
+            final long size = size();
+            if (size > 0) {
+              throw new NotEmptyComponentCanNotBeRemovedException(
+                  getName()
+                      + " : Not empty index can not be deleted. Index has "
+                      + size
+                      + " records");
+            }
+
+            deleteFile(atomicOperation, fileId);
+          } finally {
+            releaseExclusiveLock();
+          }
+        });
+  }
+
+  @Override
+  public byte[] get(final byte[] key) {
+    atomicOperationsManager.acquireReadLock(this);
+    try {
+      acquireSharedLock();
+      try {
+        final OAtomicOperation atomicOperation = OAtomicOperationsManager.getCurrentOperation();
+        final BucketSearchResult bucketSearchResult = findBucket(key, atomicOperation);
+        if (bucketSearchResult.itemIndex < 0) {
+          return null;
+        }
+
+        final OCacheEntry cacheEntry =
+            loadPageForRead(atomicOperation, fileId, bucketSearchResult.pageIndex, false);
+        try {
+          final NormalizedKeyBTreeBucketV1 bucket = new NormalizedKeyBTreeBucketV1(cacheEntry);
+          return bucket.getValue(bucketSearchResult.itemIndex);
+        } finally {
+          releasePageFromRead(atomicOperation, cacheEntry);
+        }
+      } finally {
+        releaseSharedLock();
+      }
+    } catch (final IOException e) {
+      throw OException.wrapException(
+          new NormalizedKeyBTreeException(
+              "Error during retrieving of value from tree " + getName(), this),
+          e);
+    } finally {
+      atomicOperationsManager.releaseReadLock(this);
+    }
+  }
+
+  @Override
+  public void put(final OAtomicOperation atomicOperation, final byte[] key, final byte[] value) {
+    update(atomicOperation, key, oldValue -> value);
+  }
+
+  @Override
+  public boolean update(
+      final OAtomicOperation atomicOperation,
+      final byte[] key,
+      final UnaryOperator<byte[]> updater) {
+    return calculateInsideComponentOperation(
+        atomicOperation,
+        operation -> {
+          acquireExclusiveLock();
+          try {
+            checkEntrySize(key, EMPTY_KEY);
+
+            final BucketSearchResult bucketSearchResult =
+                findBucketForUpdate(key, atomicOperation);
+            final OCacheEntry cacheEntry =
+                loadPageForWrite(
+                    atomicOperation, fileId, bucketSearchResult.pageIndex, false, true);
+            final int sizeDiff;
+            try {
+              final NormalizedKeyBTreeBucketV1 bucket = new NormalizedKeyBTreeBucketV1(cacheEntry);
+              final int itemIndex = bucketSearchResult.itemIndex;
+
+              final byte[] oldValue = itemIndex >= 0 ? bucket.getValue(itemIndex) : null;
+              final byte[] value = updater.apply(oldValue);
+
+              if (value == oldValue) {
+                return false;
+              }
+
+              if (value == null) {
+                bucket.removeLeafEntry(itemIndex);
+                sizeDiff = -1;
+              } else {
+                checkEntrySize(key, value);
+
+                if (oldValue == null) {
+                  final boolean added = bucket.addLeafEntry(-itemIndex - 1, key, value);
+                  assert added;
+                  sizeDiff = 1;
+                } else if (oldValue.length == value.length) {
+                  bucket.updateValue(itemIndex, value);
+                  sizeDiff = 0;
+                } else {
+                  bucket.removeLeafEntry(itemIndex);
+                  final boolean added = bucket.addLeafEntry(itemIndex, key, value);
+                  assert added;
+                  sizeDiff = 0;
+                }
+              }
+            } finally {
+              releasePageFromWrite(atomicOperation, cacheEntry);
+            }
+
+            if (sizeDiff != 0) {
+              updateSize(sizeDiff, atomicOperation);
+            }
+
+            return true;
+          } finally {
+            releaseExclusiveLock();
+          }
+        });
+  }
+
+  @Override
+  public byte[] remove(final OAtomicOperation atomicOperation, final byte[] key) {
+    return calculateInsideComponentOperation(
+        atomicOperation,
+        operation -> {
+          acquireExclusiveLock();
+          try {
+            final BucketSearchResult bucketSearchResult = findBucket(key, atomicOperation);
+            if (bucketSearchResult.itemIndex < 0) {
+              return null;
+            }
+
+            final byte[] removedValue;
+            final OCacheEntry cacheEntry =
+                loadPageForWrite(
+                    atomicOperation, fileId, bucketSearchResult.pageIndex, false, true);
+            try {
+              final NormalizedKeyBTreeBucketV1 bucket = new NormalizedKeyBTreeBucketV1(cacheEntry);
+              removedValue = bucket.getValue(bucketSearchResult.itemIndex);
+              bucket.removeLeafEntry(bucketSearchResult.itemIndex);
+            } finally {
+              releasePageFromWrite(atomicOperation, cacheEntry);
+            }
+
+            updateSize(-1, atomicOperation);
+            return removedValue;
+          } finally {
+            releaseExclusiveLock();
+          }
+        });
+  }
+
+  @Override
+  public long size() {
+    atomicOperationsManager.acquireReadLock(this);
+    try {
+      acquireSharedLock();
+      try {
+        final OAtomicOperation atomicOperation = OAtomicOperationsManager.getCurrentOperation();
+
+        final OCacheEntry entryPointCacheEntry =
+            loadPageForRead(atomicOperation, fileId, ENTRY_POINT_INDEX, false);
+        try {
+          final NormalizedKeyBTreeEntryPointV1 entryPoint =
+              new NormalizedKeyBTreeEntryPointV1(entryPointCacheEntry);
+          return entryPoint.getTreeSize();
+        } finally {
+          releasePageFromRead(atomicOperation, entryPointCacheEntry);
+        }
+      } finally {
+        releaseSharedLock();
+      }
+    } catch (final IOException e) {
+      throw OException.wrapException(
+          new NormalizedKeyBTreeException(
+              "Error during retrieving of size of tree " + getName(), this),
+          e);
+    } finally {
+      atomicOperationsManager.releaseReadLock(this);
+    }
+  }
+
+  @Override
+  public Stream<ORawPair<byte[], byte[]>> iterateEntriesBetween(
+      final byte[] keyFrom,
+      final boolean fromInclusive,
+      final byte[] keyTo,
+      final boolean toInclusive,
+      final boolean ascOrder) {
+    if (ascOrder) {
+      return StreamSupport.stream(
+          new SpliteratorForward(keyFrom, keyTo, fromInclusive, toInclusive), false);
+    }
+
+    return StreamSupport.stream(
+        new SpliteratorBackward(keyFrom, keyTo, fromInclusive, toInclusive), false);
+  }
+
+  @Override
+  public void acquireAtomicExclusiveLock() {
+    atomicOperationsManager.acquireExclusiveLockTillOperationComplete(this);
+  }
+
+  private void checkEntrySize(final byte[] key, final byte[] value) {
+    final int entrySize =
+        Math.max(
+            NormalizedKeyBTreeBucketV1.leafEntrySize(key.length, value.length),
+            NormalizedKeyBTreeBucketV1.nonLeafEntrySize(key.length));
+
+    if (entrySize > NormalizedKeyBTreeBucketV1.MAX_ENTRY_SIZE) {
+      throw new OTooBigIndexKeyException(
+          "Key size is more than allowed, operation was canceled. Current size of entry "
+              + entrySize
+              + ", allowed  "
+              + NormalizedKeyBTreeBucketV1.MAX_ENTRY_SIZE,
+          getName());
+    }
+  }
+
+  private void updateSize(final long diffSize, final OAtomicOperation atomicOperation)
+      throws IOException {
+    final OCacheEntry entryPointCacheEntry =
+        loadPageForWrite(atomicOperation, fileId, ENTRY_POINT_INDEX, false, true);
+    try {
+      final NormalizedKeyBTreeEntryPointV1 entryPoint =
+          new NormalizedKeyBTreeEntryPointV1(entryPointCacheEntry);
+      entryPoint.setTreeSize(entryPoint.getTreeSize() + diffSize);
+    } finally {
+      releasePageFromWrite(atomicOperation, entryPointCacheEntry);
+    }
+  }
+
+  private BucketSearchResult findBucket(final byte[] key, final OAtomicOperation atomicOperation)
+      throws IOException {
+    long pageIndex = ROOT_INDEX;
+
+    int depth = 0;
+    while (true) {
+      depth++;
+      if (depth > MAX_PATH_LENGTH) {
+        throw new NormalizedKeyBTreeException(
+            "We reached max level of depth of tree but still found nothing, seems like tree is in corrupted state. You should rebuild index related to given query.",
+            this);
+      }
+
+      final OCacheEntry bucketEntry = loadPageForRead(atomicOperation, fileId, pageIndex, false);
+      try {
+        @SuppressWarnings("ObjectAllocationInLoop")
+        final NormalizedKeyBTreeBucketV1 bucket = new NormalizedKeyBTreeBucketV1(bucketEntry);
+        final int index = bucket.find(key);
+
+        if (bucket.isLeaf()) {
+          return new BucketSearchResult(index, pageIndex);
+        }
+
+        pageIndex = childIndex(bucket, index);
+      } finally {
+        releasePageFromRead(atomicOperation, bucketEntry);
+      }
+    }
+  }
+
+  /**
+   * Finds leaf bucket which should contain the given key. All buckets which do not have space for
+   * the entry of maximum size are split on the way from the root to the leaf, so the found leaf
+   * bucket always has space for the new entry.
+   */
+  private BucketSearchResult findBucketForUpdate(
+      final byte[] key, final OAtomicOperation atomicOperation) throws IOException {
+    search:
+    while (true) {
+      long pageIndex = ROOT_INDEX;
+      long parentIndex = -1;
+      int parentItemIndex = -1;
+
+      int depth = 0;
+      while (true) {
+        depth++;
+        if (depth > MAX_PATH_LENGTH) {
+          throw new NormalizedKeyBTreeException(
+              "We reached max level of depth of tree but still found nothing, seems like tree is in corrupted state. You should rebuild index related to given query.",
+              this);
+        }
+
+        final boolean split;
+        int index = -1;
+        long childIndex = -1;
+
+        final OCacheEntry bucketEntry = loadPageForRead(atomicOperation, fileId, pageIndex, false);
+        try {
+          @SuppressWarnings("ObjectAllocationInLoop")
+          final NormalizedKeyBTreeBucketV1 bucket = new NormalizedKeyBTreeBucketV1(bucketEntry);
+          split =
+              bucket.getFreeSpace()
+                  < NormalizedKeyBTreeBucketV1.MAX_ENTRY_SIZE + OIntegerSerializer.INT_SIZE;
+
+          if (!split) {
+            index = bucket.find(key);
+            if (bucket.isLeaf()) {
+              return new BucketSearchResult(index, pageIndex);
+            }
+
+            childIndex = childIndex(bucket, index);
+          }
+        } finally {
+          releasePageFromRead(atomicOperation, bucketEntry);
+        }
+
+        if (split) {
+          splitBucket(pageIndex, parentIndex, parentItemIndex, atomicOperation);
+          // structure of the tree is changed, so search is started from the root again
+          continue search;
+        }
+
+        parentIndex = pageIndex;
+        parentItemIndex = index >= 0 ? index + 1 : -index - 1;
+        pageIndex = childIndex;
+      }
+    }
+  }
+
+  private static long childIndex(final NormalizedKeyBTreeBucketV1 bucket, final int index) {
+    if (index >= 0) {
+      return bucket.getRight(index);
+    }
+
+    final int insertionIndex = -index - 1;
+    if (insertionIndex >= bucket.size()) {
+      return bucket.getRight(insertionIndex - 1);
+    }
+
+    return bucket.getLeft(insertionIndex);
+  }
+
+  private void splitBucket(
+      final long pageIndex,
+      final long parentIndex,
+      final int parentItemIndex,
+      final OAtomicOperation atomicOperation)
+      throws IOException {
+    final OCacheEntry cacheEntry =
+        loadPageForWrite(atomicOperation, fileId, pageIndex, false, true);
+    try {
+      final NormalizedKeyBTreeBucketV1 bucket = new NormalizedKeyBTreeBucketV1(cacheEntry);
+      final boolean splitLeaf = bucket.isLeaf();
+      final int bucketSize = bucket.size();
+      final int indexToSplit = indexToSplit(bucket);
+
+      final byte[] separationKey;
+      if (splitLeaf) {
+        separationKey =
+            separationKey(bucket.getKey(indexToSplit - 1), bucket.getKey(indexToSplit));
+      } else {
+        separationKey = bucket.getKey(indexToSplit);
+      }
+
+      final int startRightIndex = splitLeaf ? indexToSplit : indexToSplit + 1;
+      final List<byte[]> rightEntries = new ArrayList<>(bucketSize - startRightIndex);
+      for (int i = startRightIndex; i < bucketSize; i++) {
+        rightEntries.add(bucket.getRawEntry(i));
+      }
+
+      if (pageIndex != ROOT_INDEX) {
+        splitNonRootBucket(
+            pageIndex,
+            bucket,
+            splitLeaf,
+            indexToSplit,
+            separationKey,
+            rightEntries,
+            parentIndex,
+            parentItemIndex,
+            atomicOperation);
+      } else {
+        splitRootBucket(
+            bucket, splitLeaf, indexToSplit, separationKey, rightEntries, atomicOperation);
+      }
+    } finally {
+      releasePageFromWrite(atomicOperation, cacheEntry);
+    }
+  }
+
+  private void splitNonRootBucket(
+      final long pageIndex,
+      final NormalizedKeyBTreeBucketV1 bucketToSplit,
+      final boolean splitLeaf,
+      final int indexToSplit,
+      final byte[] separationKey,
+      final List<byte[]> rightEntries,
+      final long parentIndex,
+      final int parentItemIndex,
+      final OAtomicOperation atomicOperation)
+      throws IOException {
+    final OCacheEntry rightBucketEntry = addPage(atomicOperation, fileId);
+    try {
+      final NormalizedKeyBTreeBucketV1 newRightBucket =
+          new NormalizedKeyBTreeBucketV1(rightBucketEntry);
+      newRightBucket.init(splitLeaf);
+      newRightBucket.addAll(rightEntries);
+
+      bucketToSplit.shrink(indexToSplit);
+
+      if (splitLeaf) {
+        final long rightSiblingPageIndex = bucketToSplit.getRightSibling();
+
+        newRightBucket.setRightSibling(rightSiblingPageIndex);
+        newRightBucket.setLeftSibling(pageIndex);
+
+        bucketToSplit.setRightSibling(rightBucketEntry.getPageIndex());
+
+        if (rightSiblingPageIndex >= 0) {
+          final OCacheEntry rightSiblingBucketEntry =
+              loadPageForWrite(atomicOperation, fileId, rightSiblingPageIndex, false, true);
+          try {
+            final NormalizedKeyBTreeBucketV1 rightSiblingBucket =
+                new NormalizedKeyBTreeBucketV1(rightSiblingBucketEntry);
+            rightSiblingBucket.setLeftSibling(rightBucketEntry.getPageIndex());
+          } finally {
+            releasePageFromWrite(atomicOperation, rightSiblingBucketEntry);
+          }
+        }
+      }
+
+      final OCacheEntry parentCacheEntry =
+          loadPageForWrite(atomicOperation, fileId, parentIndex, false, true);
+      try {
+        final NormalizedKeyBTreeBucketV1 parentBucket =
+            new NormalizedKeyBTreeBucketV1(parentCacheEntry);
+        final boolean added =
+            parentBucket.addNonLeafEntry(
+                parentItemIndex,
+                (int) pageIndex,
+                rightBucketEntry.getPageIndex(),
+                separationKey,
+                true);
+        // parent bucket is split before we descend to its children if it does not have enough space
+        if (!added) {
+          throw new NormalizedKeyBTreeException(
+              "Parent bucket of tree " + getName() + " does not have space for separation key",
+              this);
+        }
+      } finally {
+        releasePageFromWrite(atomicOperation, parentCacheEntry);
+      }
+    } finally {
+      releasePageFromWrite(atomicOperation, rightBucketEntry);
+    }
+  }
+
+  private void splitRootBucket(
+      final NormalizedKeyBTreeBucketV1 bucketToSplit,
+      final boolean splitLeaf,
+      final int indexToSplit,
+      final byte[] separationKey,
+      final List<byte[]> rightEntries,
+      final OAtomicOperation atomicOperation)
+      throws IOException {
+    final List<byte[]> leftEntries = new ArrayList<>(indexToSplit);
+    for (int i = 0; i < indexToSplit; i++) {
+      leftEntries.add(bucketToSplit.getRawEntry(i));
+    }
+
+    final OCacheEntry leftBucketEntry = addPage(atomicOperation, fileId);
+    final OCacheEntry rightBucketEntry;
+    try {
+      rightBucketEntry = addPage(atomicOperation, fileId);
+      try {
+        final NormalizedKeyBTreeBucketV1 newLeftBucket =
+            new NormalizedKeyBTreeBucketV1(leftBucketEntry);
+        newLeftBucket.init(splitLeaf);
+        newLeftBucket.addAll(leftEntries);
+
+        final NormalizedKeyBTreeBucketV1 newRightBucket =
+            new NormalizedKeyBTreeBucketV1(rightBucketEntry);
+        newRightBucket.init(splitLeaf);
+        newRightBucket.addAll(rightEntries);
+
+        if (splitLeaf) {
+          newLeftBucket.setRightSibling(rightBucketEntry.getPageIndex());
+          newRightBucket.setLeftSibling(leftBucketEntry.getPageIndex());
+        }
+      } finally {
+        releasePageFromWrite(atomicOperation, rightBucketEntry);
+      }
+    } finally {
+      releasePageFromWrite(atomicOperation, leftBucketEntry);
+    }
+
+    bucketToSplit.shrink(0);
+    if (splitLeaf) {
+      bucketToSplit.switchBucketType();
+    }
+
+    bucketToSplit.addNonLeafEntry(
+        0, leftBucketEntry.getPageIndex(), rightBucketEntry.getPageIndex(), separationKey, false);
+  }
+
+  /**
+   * Bucket is split by the amount of bytes occupied by the entries rather than by their count,
+   * because size of the normalized keys may vary a lot. Both buckets are guaranteed to be not
+   * empty, and non-leaf bucket keeps at least one entry in each half after the separator is moved
+   * up to the parent.
+   */
+  private static int indexToSplit(final NormalizedKeyBTreeBucketV1 bucket) {
+    final int size = bucket.size();
+    final int[] entrySizes = new int[size];
+
+    int totalSize = 0;
+    for (int i = 0; i < size; i++) {
+      entrySizes[i] = bucket.getRawEntrySize(i) + OIntegerSerializer.INT_SIZE;
+      totalSize += entrySizes[i];
+    }
+
+    int index = 0;
+    int leftSize = 0;
+    while (index < size && leftSize + entrySizes[index] <= totalSize / 2) {
+      leftSize += entrySizes[index];
+      index++;
+    }
+
+    final int maxIndex = bucket.isLeaf() ? size - 1 : size - 2;
+    return Math.max(1, Math.min(index, maxIndex));
+  }
+
+  /**
+   * @return Shortest prefix of the right key which is still bigger than the left key. Such prefix
+   *     is enough to route search between two buckets, but occupies less space in non-leaf bucket.
+   */
+  static byte[] separationKey(final byte[] leftKey, final byte[] rightKey) {
+    assert ODurablePage.compareBinaryValues(leftKey, rightKey) < 0;
+
+    int commonPrefix = 0;
+    while (commonPrefix < leftKey.length && leftKey[commonPrefix] == rightKey[commonPrefix]) {
+      commonPrefix++;
+    }
+
+    return Arrays.copyOf(rightKey, commonPrefix + 1);
+  }
+
+  private long lastLeafIndex(final OAtomicOperation atomicOperation) throws IOException {
+    long pageIndex = ROOT_INDEX;
+
+    int depth = 0;
+    while (true) {
+      depth++;
+      if (depth > MAX_PATH_LENGTH) {
+        throw new NormalizedKeyBTreeException(
+            "We reached max level of depth of tree but still found nothing, seems like tree is in corrupted state. You should rebuild index related to given query.",
+            this);
+      }
+
+      final OCacheEntry bucketEntry = loadPageForRead(atomicOperation, fileId, pageIndex, false);
+      try {
+        @SuppressWarnings("ObjectAllocationInLoop")
+        final NormalizedKeyBTreeBucketV1 bucket = new NormalizedKeyBTreeBucketV1(bucketEntry);
+        if (bucket.isLeaf()) {
+          return pageIndex;
+        }
+
+        pageIndex = bucket.getRight(bucket.size() - 1);
+      } finally {
+        releasePageFromRead(atomicOperation, bucketEntry);
+      }
+    }
+  }
+
+  private static final class BucketSearchResult {
+    private final int itemIndex;
+    private final long pageIndex;
+
+    private BucketSearchResult(final int itemIndex, final long pageIndex) {
+      this.itemIndex = itemIndex;
+      this.pageIndex = pageIndex;
+    }
+  }
+
+  /**
+   * Base class of spliterators of the tree. Entries are read by portions, each portion is read by
+   * search of the last returned key from the root of the tree, so tree may be changed between
+   * reads of portions.
+   */
+  private abstract class AbstractSpliterator implements Spliterator<ORawPair<byte[], byte[]>> {
+    final byte[] fromKey;
+    final byte[] toKey;
+    final boolean fromKeyInclusive;
+    final boolean toKeyInclusive;
+
+    final List<ORawPair<byte[], byte[]>> dataCache = new ArrayList<>();
+    private Iterator<ORawPair<byte[], byte[]>> cacheIterator = Collections.emptyIterator();
+
+    AbstractSpliterator(
+        final byte[] fromKey,
+        final byte[] toKey,
+        final boolean fromKeyInclusive,
+        final boolean toKeyInclusive) {
+      this.fromKey = fromKey;
+      this.toKey = toKey;
+      this.fromKeyInclusive = fromKeyInclusive;
+      this.toKeyInclusive = toKeyInclusive;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super ORawPair<byte[], byte[]>> action) {
+      if (cacheIterator == null) {
+        return false;
+      }
+
+      if (cacheIterator.hasNext()) {
+        action.accept(cacheIterator.next());
+        return true;
+      }
+
+      final byte[] lastKey = dataCache.isEmpty() ? null : dataCache.get(dataCache.size() - 1).first;
+      dataCache.clear();
+
+      atomicOperationsManager.acquireReadLock(NormalizedKeyBTreeV1.this);
+      try {
+        acquireSharedLock();
+        try {
+          readEntries(OAtomicOperationsManager.getCurrentOperation(), lastKey);
+        } finally {
+          releaseSharedLock();
+        }
+      } catch (final IOException e) {
+        throw OException.wrapException(
+            new NormalizedKeyBTreeException(
+                "Error during element iteration", NormalizedKeyBTreeV1.this),
+            e);
+      } finally {
+        atomicOperationsManager.releaseReadLock(NormalizedKeyBTreeV1.this);
+      }
+
+      cacheIterator = dataCache.iterator();
+
+      if (cacheIterator.hasNext()) {
+        action.accept(cacheIterator.next());
+        return true;
+      }
+
+      cacheIterator = null;
+      return false;
+    }
+
+    /**
+     * Reads next portion of entries into the data cache.
+     *
+     * @param lastKey Last key returned by spliterator or <code>null</code> if iteration is just
+     *     started.
+     */
+    abstract void readEntries(OAtomicOperation atomicOperation, byte[] lastKey)
+        throws IOException;
+
+    @Override
+    public Spliterator<ORawPair<byte[], byte[]>> trySplit() {
+      return null;
+    }
+
+    @Override
+    public long estimateSize() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+      return NONNULL | ORDERED;
+    }
+  }
+
+  private final class SpliteratorForward extends AbstractSpliterator {
+    private SpliteratorForward(
+        final byte[] fromKey,
+        final byte[] toKey,
+        final boolean fromKeyInclusive,
+        final boolean toKeyInclusive) {
+      super(fromKey, toKey, fromKeyInclusive, toKeyInclusive);
+    }
+
+    @Override
+    void readEntries(final OAtomicOperation atomicOperation, final byte[] lastKey)
+        throws IOException {
+      final byte[] startKey;
+      final boolean startInclusive;
+      if (lastKey != null) {
+        startKey = lastKey;
+        startInclusive = false;
+      } else if (fromKey != null) {
+        startKey = fromKey;
+        startInclusive = fromKeyInclusive;
+      } else {
+        startKey = EMPTY_KEY;
+        startInclusive = true;
+      }
+
+      final BucketSearchResult searchResult = findBucket(startKey, atomicOperation);
+      long pageIndex = searchResult.pageIndex;
+      int itemIndex;
+      if (searchResult.itemIndex >= 0) {
+        itemIndex = startInclusive ? searchResult.itemIndex : searchResult.itemIndex + 1;
+      } else {
+        itemIndex = -searchResult.itemIndex - 1;
+      }
+
+      while (dataCache.size() < SPLITERATOR_CACHE_SIZE) {
+        final OCacheEntry cacheEntry = loadPageForRead(atomicOperation, fileId, pageIndex, false);
+        try {
+          @SuppressWarnings("ObjectAllocationInLoop")
+          final NormalizedKeyBTreeBucketV1 bucket = new NormalizedKeyBTreeBucketV1(cacheEntry);
+          final int bucketSize = bucket.size();
+
+          for (; itemIndex < bucketSize && dataCache.size() < SPLITERATOR_CACHE_SIZE; itemIndex++) {
+            final byte[] key = bucket.getKey(itemIndex);
+            if (toKey != null) {
+              final int cmp = ODurablePage.compareBinaryValues(key, toKey);
+              if (cmp > 0 || (cmp == 0 && !toKeyInclusive)) {
+                return;
+              }
+            }
+
+            //noinspection ObjectAllocationInLoop
+            dataCache.add(new ORawPair<>(key, bucket.getValue(itemIndex)));
+          }
+
+          if (itemIndex >= bucketSize) {
+            pageIndex = bucket.getRightSibling();
+            itemIndex = 0;
+
+            if (pageIndex < 0) {
+              return;
+            }
+          }
+        } finally {
+          releasePageFromRead(atomicOperation, cacheEntry);
+        }
+      }
+    }
+  }
+
+  private final class SpliteratorBackward extends AbstractSpliterator {
+    private SpliteratorBackward(
+        final byte[] fromKey,
+        final byte[] toKey,
+        final boolean fromKeyInclusive,
+        final boolean toKeyInclusive) {
+      super(fromKey, toKey, fromKeyInclusive, toKeyInclusive);
+    }
+
+    @Override
+    void readEntries(final OAtomicOperation atomicOperation, final byte[] lastKey)
+        throws IOException {
+      final byte[] startKey;
+      final boolean startInclusive;
+      if (lastKey != null) {
+        startKey = lastKey;
+        startInclusive = false;
+      } else {
+        startKey = toKey;
+        startInclusive = toKeyInclusive;
+      }
+
+      long pageIndex;
+      int itemIndex;
+      if (startKey != null) {
+        final BucketSearchResult searchResult = findBucket(startKey, atomicOperation);
+        pageIndex = searchResult.pageIndex;
+        if (searchResult.itemIndex >= 0) {
+          itemIndex = startInclusive ? searchResult.itemIndex : searchResult.itemIndex - 1;
+        } else {
+          itemIndex = -searchResult.itemIndex - 2;
+        }
+      } else {
+        pageIndex = lastLeafIndex(atomicOperation);
+        itemIndex = Integer.MAX_VALUE;
+      }
+
+      while (dataCache.size() < SPLITERATOR_CACHE_SIZE) {
+        final OCacheEntry cacheEntry = loadPageForRead(atomicOperation, fileId, pageIndex, false);
+        try {
+          @SuppressWarnings("ObjectAllocationInLoop")
+          final NormalizedKeyBTreeBucketV1 bucket = new NormalizedKeyBTreeBucketV1(cacheEntry);
+          itemIndex = Math.min(itemIndex, bucket.size() - 1);
+
+          for (; itemIndex >= 0 && dataCache.size() < SPLITERATOR_CACHE_SIZE; itemIndex--) {
+            final byte[] key = bucket.getKey(itemIndex);
+            if (fromKey != null) {
+              final int cmp = ODurablePage.compareBinaryValues(key, fromKey);
+              if (cmp < 0 || (cmp == 0 && !fromKeyInclusive)) {
+                return;
+              }
+            }
+
+            //noinspection ObjectAllocationInLoop
+            dataCache.add(new ORawPair<>(key, bucket.getValue(itemIndex)));
+          }
+
+          if (itemIndex < 0) {
+            pageIndex = bucket.getLeftSibling();
+            itemIndex = Integer.MAX_VALUE;
+
+            if (pageIndex < 0) {
+              return;
+            }
+          }
+        } finally {
+          releasePageFromRead(atomicOperation, cacheEntry);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package com.orientechnologies.orient.core.storage.index.nkbtree;
+
+import com.ibm.icu.text.Collator;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.common.serialization.types.OShortSerializer;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.index.OCompositeKey;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.storage.index.nkbtree.normalizers.KeyNormalizer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Converts keys of the index into the keys of {@link NormalizedKeyBTree}. Normalized form of the
+ * key is not guaranteed to be unique, so index engines keep original serialized keys together with
+ * values to distinguish keys which have the same normalized form.
+ */
+public final class NormalizedKeyEncoder {
+  /** Size of the order preserving presentation of the record id appended to the key. */
+  public static final int RID_SIZE = OShortSerializer.SHORT_SIZE + OLongSerializer.LONG_SIZE;
+
+  // key normalizers share collator which is not thread safe
+  private static final ThreadLocal<KeyNormalizer> KEY_NORMALIZER =
+      ThreadLocal.withInitial(KeyNormalizer::new);
+
+  private final OType[] keyTypes;
+  private final OBinarySerializer<Object> keySerializer;
+
+  public NormalizedKeyEncoder(
+      final OType[] keyTypes, final OBinarySerializer<Object> keySerializer) {
+    this.keyTypes = keyTypes;
+    this.keySerializer = keySerializer;
+  }
+
+  /** @return <code>true</code> if keys of all passed in types can be normalized. */
+  public static boolean isSupported(final OType[] keyTypes) {
+    if (keyTypes == null || keyTypes.length == 0) {
+      return false;
+    }
+
+    final KeyNormalizer keyNormalizer = KEY_NORMALIZER.get();
+    for (final OType keyType : keyTypes) {
+      if (!keyNormalizer.supportsType(keyType)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  public Object preprocess(final Object key) {
+    if (key == null) {
+      return null;
+    }
+
+    //noinspection RedundantCast
+    return keySerializer.preprocess(key, (Object[]) keyTypes);
+  }
+
+  /**
+   * Converts preprocessed key into normalized form. If composite key contains less items than
+   * amount of types of index, normalized form of such key is prefix of normalized forms of all
+   * keys which start from the same items.
+   */
+  public byte[] normalize(final Object key) {
+    final List<Object> keys;
+    if (key instanceof OCompositeKey) {
+      keys = ((OCompositeKey) key).getKeys();
+    } else {
+      keys = Arrays.asList(key);
+    }
+
+    if (keys.size() > keyTypes.length) {
+      throw new IllegalArgumentException(
+          "Key " + key + " contains more items than amount of types of index " + keyTypes.length);
+    }
+
+    final OCompositeKey compositeKey = new OCompositeKey();
+    for (int i = 0; i < keys.size(); i++) {
+      final Object item = keys.get(i);
+      if (item == null) {
+        compositeKey.addKey(null);
+      } else {
+        compositeKey.addKey(OType.convert(item, keyTypes[i].getDefaultJavaType()));
+      }
+    }
+
+    final OType[] types =
+        keys.size() == keyTypes.length ? keyTypes : Arrays.copyOf(keyTypes, keys.size());
+    return KEY_NORMALIZER.get().normalize(compositeKey, types, Collator.NO_DECOMPOSITION);
+  }
+
+  /**
+   * Iterates over entries of the tree which keys start from normalized forms of the keys in the
+   * given range. Because normalized form of partial composite key is prefix of normalized forms of
+   * the complete keys, inclusive boundary includes all keys which start from the given items.
+   * <code>null</code> passed as boundary of the range means that the range is not bound from that
+   * side.
+   */
+  public Stream<ORawPair<byte[], byte[]>> iterateEntriesBetween(
+      final NormalizedKeyBTree tree,
+      final Object keyFrom,
+      final boolean fromInclusive,
+      final Object keyTo,
+      final boolean toInclusive,
+      final boolean ascOrder) {
+    byte[] from = null;
+    boolean normalizedFromInclusive = true;
+    if (keyFrom != null) {
+      from = normalize(preprocess(keyFrom));
+      if (!fromInclusive) {
+        final byte[] successor = successor(from);
+        if (successor != null) {
+          from = successor;
+        } else {
+          normalizedFromInclusive = false;
+        }
+      }
+    }
+
+    byte[] to = null;
+    if (keyTo != null) {
+      to = normalize(preprocess(keyTo));
+      if (toInclusive) {
+        to = successor(to);
+      }
+    }
+
+    return tree.iterateEntriesBetween(from, normalizedFromInclusive, to, false, ascOrder);
+  }
+
+  /**
+   * Serializes original key, serialized key is prefixed by its length, length of the
+   * <code>null</code> key is <code>-1</code>.
+   */
+  public byte[] serialize(final Object key) {
+    if (key == null) {
+      final byte[] result = new byte[OIntegerSerializer.INT_SIZE];
+      OIntegerSerializer.INSTANCE.serializeNative(-1, result, 0);
+      return result;
+    }
+
+    //noinspection RedundantCast
+    final byte[] serializedKey = keySerializer.serializeNativeAsWhole(key, (Object[]) keyTypes);
+    final byte[] result = new byte[OIntegerSerializer.INT_SIZE + serializedKey.length];
+    OIntegerSerializer.INSTANCE.serializeNative(serializedKey.length, result, 0);
+    System.arraycopy(serializedKey, 0, result, OIntegerSerializer.INT_SIZE, serializedKey.length);
+
+    return result;
+  }
+
+  /** @return Size of the key serialized by {@link #serialize(Object)} at the given position. */
+  public static int serializedSize(final byte[] content, final int position) {
+    final int size = OIntegerSerializer.INSTANCE.deserializeNative(content, position);
+    return OIntegerSerializer.INT_SIZE + Math.max(size, 0);
+  }
+
+  public Object deserialize(final byte[] content, final int position) {
+    final int size = OIntegerSerializer.INSTANCE.deserializeNative(content, position);
+    if (size < 0) {
+      return null;
+    }
+
+    return keySerializer.deserializeNativeObject(content, position + OIntegerSerializer.INT_SIZE);
+  }
+
+  /**
+   * @return The smallest key which is bigger than all keys which have given prefix, or <code>null
+   *     </code> if there is no such key.
+   */
+  public static byte[] successor(final byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; i--) {
+      if (prefix[i] != (byte) 0xFF) {
+        final byte[] result = Arrays.copyOf(prefix, i + 1);
+        result[i]++;
+        return result;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Appends record id to the normalized key, record ids are written in big endian order with
+   * flipped sign bits, so keys which differ only by record ids are sorted by record ids.
+   */
+  public static byte[] appendRid(final byte[] key, final ORID rid) {
+    final byte[] result = Arrays.copyOf(key, key.length + RID_SIZE);
+
+    final int clusterId = rid.getClusterId() ^ Short.MIN_VALUE;
+    result[key.length] = (byte) (clusterId >>> 8);
+    result[key.length + 1] = (byte) clusterId;
+
+    final long clusterPosition = rid.getClusterPosition() ^ Long.MIN_VALUE;
+    for (int i = 0; i < OLongSerializer.LONG_SIZE; i++) {
+      result[key.length + OShortSerializer.SHORT_SIZE + i] =
+          (byte) (clusterPosition >>> (8 * (OLongSerializer.LONG_SIZE - 1 - i)));
+    }
+
+    return result;
+  }
+
+  /** Extracts record id appended to the key by {@link #appendRid(byte[], ORID)}. */
+  public static ORID extractRid(final byte[] key) {
+    final int offset = key.length - RID_SIZE;
+
+    final int clusterId =
+        (short) (((key[offset] & 0xFF) << 8 | (key[offset + 1] & 0xFF)) ^ Short.MIN_VALUE);
+
+    long clusterPosition = 0;
+    for (int i = 0; i < OLongSerializer.LONG_SIZE; i++) {
+      clusterPosition =
+          (clusterPosition << 8) | (key[offset + OShortSerializer.SHORT_SIZE + i] & 0xFF);
+    }
+
+    return new ORecordId(clusterId, clusterPosition ^ Long.MIN_VALUE);
+  }
+}
@@ -27,6 +27,11 @@ public class KeyNormalizer {
     normalizers.put(OType.BINARY, new BinaryKeyNormalizer());
   }
 
+  /** @return <code>true</code> if values of given type can be normalized. */
+  public boolean supportsType(final OType keyType) {
+    return keyType != null && normalizers.containsKey(keyType);
+  }
+
   public byte[] normalize(
       final OCompositeKey keys, final OType[] keyTypes, final int decompositon) {
     if (keys == null) {
@@ -57,7 +62,9 @@ public class KeyNormalizer {
       final OType keyType,
       final int decompositon) {
     try {
-      final KeyNormalizers keyNormalizer = normalizers.get(keyType);
+      // null values of typed keys are normalized in the same way as keys of unknown type
+      final KeyNormalizers keyNormalizer =
+          key == null ? normalizers.get(null) : normalizers.get(keyType);
       if (keyNormalizer == null) {
         throw new UnsupportedOperationException(
             "Type " + key.getClass().getTypeName() + " is currently not supported");
@@ -8,6 +8,8 @@ import com.orientechnologies.orient.core.index.engine.OBaseIndexEngine;
 import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperation;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
 public interface OCellBTreeSingleValue<K> {
@@ -30,6 +32,33 @@ public interface OCellBTreeSingleValue<K> {
       OBaseIndexEngine.Validator<K, ORID> validator)
       throws IOException;
 
+  /**
+   * Looks up several keys at once.
+   *
+   * @return Values of the keys in the same order as keys are passed, <code>null</code> is returned
+   *     for absent keys.
+   */
+  default List<ORID> getAll(List<K> keys) {
+    final List<ORID> result = new ArrayList<>(keys.size());
+    for (final K key : keys) {
+      result.add(get(key));
+    }
+    return result;
+  }
+
+  /**
+   * Adds entries to the end of the tree. Entries are added until the first one which key is not
+   * bigger than the last key of the tree or the key of previous entry, so it is used to load
+   * entries sorted in ascending order of keys. Trees which do not support this operation do not
+   * add any entries.
+   *
+   * @return Amount of added entries, the rest of entries should be added by {@link #put}.
+   */
+  default int append(OAtomicOperation atomicOperation, List<ORawPair<K, ORID>> entries)
+      throws IOException {
+    return 0;
+  }
+
   void close();
 
   void delete(OAtomicOperation atomicOperation) throws IOException;
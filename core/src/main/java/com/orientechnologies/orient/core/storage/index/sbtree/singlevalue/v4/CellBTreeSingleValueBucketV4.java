@@ -0,0 +1,779 @@
+/*
+ *
+ *  *  Copyright 2010-2016 OrientDB LTD (http://orientdb.com)
+ *  *
+ *  *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  you may not use this file except in compliance with the License.
+ *  *  You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *  Unless required by applicable law or agreed to in writing, software
+ *  *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  See the License for the specific language governing permissions and
+ *  *  limitations under the License.
+ *  *
+ *  * For more information: http://orientdb.com
+ *
+ */
+
+package com.orientechnologies.orient.core.storage.index.sbtree.singlevalue.v4;
+
+import com.orientechnologies.common.comparator.ODefaultComparator;
+import com.orientechnologies.common.serialization.types.OBinarySerializer;
+import com.orientechnologies.common.serialization.types.OByteSerializer;
+import com.orientechnologies.common.serialization.types.OIntegerSerializer;
+import com.orientechnologies.common.serialization.types.OLongSerializer;
+import com.orientechnologies.common.serialization.types.OShortSerializer;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.base.ODurablePage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bucket of {@link CellBTreeSingleValueV4}. Layout of the bucket is the same as layout of the
+ * bucket of V3 version of the tree with the exception of leaf buckets which use prefix compression
+ * of the keys.
+ *
+ * <p>Bytes which have the same value at the same position in all serialized keys of the leaf bucket
+ * are stored only once at the end of the page, and entries of the bucket contain only remaining
+ * bytes of the keys. Serializers write size of the key before its content, so shared bytes do not
+ * always start from the beginning of the key, instead the longest run of the shared bytes is used.
+ * Shared bytes are calculated when content of the bucket is rebuilt during split of the bucket and
+ * are reduced once key which does not contain them is added to the bucket.
+ */
+public final class CellBTreeSingleValueBucketV4<K> extends ODurablePage {
+  private static final int RID_SIZE = OShortSerializer.SHORT_SIZE + OLongSerializer.LONG_SIZE;
+
+  private static final int FREE_POINTER_OFFSET = NEXT_FREE_POSITION;
+  private static final int SIZE_OFFSET = FREE_POINTER_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int IS_LEAF_OFFSET = SIZE_OFFSET + OIntegerSerializer.INT_SIZE;
+  private static final int LEFT_SIBLING_OFFSET = IS_LEAF_OFFSET + OByteSerializer.BYTE_SIZE;
+  private static final int RIGHT_SIBLING_OFFSET = LEFT_SIBLING_OFFSET + OLongSerializer.LONG_SIZE;
+  private static final int SHARED_BYTES_POSITION_OFFSET =
+      RIGHT_SIBLING_OFFSET + OLongSerializer.LONG_SIZE;
+  private static final int SHARED_BYTES_LENGTH_OFFSET =
+      SHARED_BYTES_POSITION_OFFSET + OIntegerSerializer.INT_SIZE;
+
+  private static final int POSITIONS_ARRAY_OFFSET =
+      SHARED_BYTES_LENGTH_OFFSET + OIntegerSerializer.INT_SIZE;
+
+  private final Comparator<? super K> comparator = ODefaultComparator.INSTANCE;
+
+  public CellBTreeSingleValueBucketV4(final OCacheEntry cacheEntry) {
+    super(cacheEntry);
+  }
+
+  public void switchBucketType() {
+    if (!isEmpty()) {
+      throw new IllegalStateException(
+          "Type of bucket can be changed only bucket if bucket is empty");
+    }
+
+    final boolean isLeaf = isLeaf();
+    if (isLeaf) {
+      setByteValue(IS_LEAF_OFFSET, (byte) 0);
+    } else {
+      setByteValue(IS_LEAF_OFFSET, (byte) 1);
+    }
+  }
+
+  public void init(boolean isLeaf) {
+    setIntValue(FREE_POINTER_OFFSET, MAX_PAGE_SIZE_BYTES);
+    setIntValue(SIZE_OFFSET, 0);
+
+    setByteValue(IS_LEAF_OFFSET, (byte) (isLeaf ? 1 : 0));
+    setLongValue(LEFT_SIBLING_OFFSET, -1);
+    setLongValue(RIGHT_SIBLING_OFFSET, -1);
+
+    setIntValue(SHARED_BYTES_POSITION_OFFSET, 0);
+    setIntValue(SHARED_BYTES_LENGTH_OFFSET, 0);
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public int find(final K key, final OBinarySerializer<K> keySerializer) {
+    final int sharedBytesLength = isLeaf() ? getIntValue(SHARED_BYTES_LENGTH_OFFSET) : 0;
+    final int sharedBytesPosition =
+        sharedBytesLength > 0 ? getIntValue(SHARED_BYTES_POSITION_OFFSET) : 0;
+
+    // keys are restored in the same buffer, shared bytes are copied into it only once
+    byte[] keyBuffer = null;
+
+    int low = 0;
+    int high = size() - 1;
+
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+
+      final K midVal;
+      if (sharedBytesLength == 0) {
+        midVal = getKey(mid, keySerializer);
+      } else {
+        final int entryPosition =
+            getIntValue(mid * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET);
+        final int keySize = storedKeySize(entryPosition) + sharedBytesLength;
+        if (keyBuffer == null || keyBuffer.length < keySize) {
+          keyBuffer = new byte[Math.max(keySize, keyBuffer == null ? 0 : 2 * keyBuffer.length)];
+          getBinaryValue(
+              MAX_PAGE_SIZE_BYTES - sharedBytesLength,
+              keyBuffer,
+              sharedBytesPosition,
+              sharedBytesLength);
+        }
+
+        readStoredKeyBytes(entryPosition, keyBuffer, sharedBytesPosition, sharedBytesLength);
+        midVal = keySerializer.deserializeNativeObject(keyBuffer, 0);
+      }
+
+      final int cmp = comparator.compare(midVal, key);
+
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid; // key found
+      }
+    }
+
+    return -(low + 1); // key not found.
+  }
+
+  public void removeLeafEntry(final int entryIndex) {
+    if (!isLeaf()) {
+      throw new IllegalStateException("Remove is applies to leaf buckets only");
+    }
+
+    final int entryPosition =
+        getIntValue(POSITIONS_ARRAY_OFFSET + entryIndex * OIntegerSerializer.INT_SIZE);
+    final int entrySize = OShortSerializer.SHORT_SIZE + storedKeySize(entryPosition) + RID_SIZE;
+
+    int size = getIntValue(SIZE_OFFSET);
+    if (entryIndex < size - 1) {
+      moveData(
+          POSITIONS_ARRAY_OFFSET + (entryIndex + 1) * OIntegerSerializer.INT_SIZE,
+          POSITIONS_ARRAY_OFFSET + entryIndex * OIntegerSerializer.INT_SIZE,
+          (size - entryIndex - 1) * OIntegerSerializer.INT_SIZE);
+    }
+
+    size--;
+    setIntValue(SIZE_OFFSET, size);
+
+    final int freePointer = getIntValue(FREE_POINTER_OFFSET);
+    if (size > 0 && entryPosition > freePointer) {
+      moveData(freePointer, freePointer + entrySize, entryPosition - freePointer);
+    }
+
+    setIntValue(FREE_POINTER_OFFSET, freePointer + entrySize);
+
+    int currentPositionOffset = POSITIONS_ARRAY_OFFSET;
+
+    for (int i = 0; i < size; i++) {
+      final int currentEntryPosition = getIntValue(currentPositionOffset);
+      if (currentEntryPosition < entryPosition) {
+        setIntValue(currentPositionOffset, currentEntryPosition + entrySize);
+      }
+      currentPositionOffset += OIntegerSerializer.INT_SIZE;
+    }
+  }
+
+  public int size() {
+    return getIntValue(SIZE_OFFSET);
+  }
+
+  public CellBTreeEntry<K> getEntry(
+      final int entryIndex, final OBinarySerializer<K> keySerializer) {
+    int entryPosition =
+        getIntValue(entryIndex * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET);
+
+    if (isLeaf()) {
+      final K key = deserializeLeafKey(entryPosition, keySerializer);
+
+      entryPosition += OShortSerializer.SHORT_SIZE + storedKeySize(entryPosition);
+
+      final int clusterId = getShortValue(entryPosition);
+      final long clusterPosition = getLongValue(entryPosition + OShortSerializer.SHORT_SIZE);
+
+      return new CellBTreeEntry<>(-1, -1, key, new ORecordId(clusterId, clusterPosition));
+    } else {
+      final int leftChild = getIntValue(entryPosition);
+      entryPosition += OIntegerSerializer.INT_SIZE;
+
+      final int rightChild = getIntValue(entryPosition);
+      entryPosition += OIntegerSerializer.INT_SIZE;
+
+      final K key = deserializeFromDirectMemory(keySerializer, entryPosition);
+
+      return new CellBTreeEntry<>(leftChild, rightChild, key, null);
+    }
+  }
+
+  public int getLeft(final int entryIndex) {
+    assert !isLeaf();
+
+    final int entryPosition =
+        getIntValue(entryIndex * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET);
+
+    return getIntValue(entryPosition);
+  }
+
+  public int getRight(final int entryIndex) {
+    assert !isLeaf();
+
+    final int entryPosition =
+        getIntValue(entryIndex * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET);
+
+    return getIntValue(entryPosition + OIntegerSerializer.INT_SIZE);
+  }
+
+  /**
+   * Returns raw presentation of the entry. Keys of the leaf entries are returned in uncompressed
+   * form, so entries can be moved into buckets with different shared bytes of the keys.
+   */
+  public byte[] getRawEntry(final int entryIndex, final OBinarySerializer<K> keySerializer) {
+    int entryPosition =
+        getIntValue(entryIndex * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET);
+    final int startEntryPosition = entryPosition;
+
+    if (isLeaf()) {
+      final byte[] key = getLeafKey(entryPosition);
+      final byte[] rawEntry = new byte[key.length + RID_SIZE];
+
+      System.arraycopy(key, 0, rawEntry, 0, key.length);
+      entryPosition += OShortSerializer.SHORT_SIZE + storedKeySize(entryPosition);
+      System.arraycopy(getBinaryValue(entryPosition, RID_SIZE), 0, rawEntry, key.length, RID_SIZE);
+
+      return rawEntry;
+    } else {
+      entryPosition += 2 * OIntegerSerializer.INT_SIZE;
+
+      final int keySize = getObjectSizeInDirectMemory(keySerializer, entryPosition);
+
+      return getBinaryValue(startEntryPosition, keySize + 2 * OIntegerSerializer.INT_SIZE);
+    }
+  }
+
+  /**
+   * Obtains the value stored under the given entry index in this bucket.
+   *
+   * @param entryIndex the value entry index.
+   * @return the obtained value.
+   */
+  public ORID getValue(final int entryIndex) {
+    assert isLeaf();
+
+    int entryPosition =
+        getIntValue(entryIndex * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET);
+
+    // skip key
+    entryPosition += OShortSerializer.SHORT_SIZE + storedKeySize(entryPosition);
+
+    final int clusterId = getShortValue(entryPosition);
+    final long clusterPosition = getLongValue(entryPosition + OShortSerializer.SHORT_SIZE);
+
+    return new ORecordId(clusterId, clusterPosition);
+  }
+
+  byte[] getRawValue(final int entryIndex) {
+    assert isLeaf();
+
+    int entryPosition =
+        getIntValue(entryIndex * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET);
+
+    // skip key
+    entryPosition += OShortSerializer.SHORT_SIZE + storedKeySize(entryPosition);
+
+    return getBinaryValue(entryPosition, RID_SIZE);
+  }
+
+  public K getKey(final int index, final OBinarySerializer<K> keySerializer) {
+    final int entryPosition =
+        getIntValue(index * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET);
+
+    if (isLeaf()) {
+      return deserializeLeafKey(entryPosition, keySerializer);
+    }
+
+    return deserializeFromDirectMemory(
+        keySerializer, entryPosition + 2 * OIntegerSerializer.INT_SIZE);
+  }
+
+  public boolean isLeaf() {
+    return getByteValue(IS_LEAF_OFFSET) > 0;
+  }
+
+  /** @return Amount of bytes of the keys which are stored only once for all leaf entries. */
+  int getSharedBytesLength() {
+    return getIntValue(SHARED_BYTES_LENGTH_OFFSET);
+  }
+
+  public void addAll(final List<byte[]> rawEntries, final OBinarySerializer<K> keySerializer) {
+    final int currentSize = size();
+
+    if (isLeaf()) {
+      final List<byte[]> keys = new ArrayList<>(currentSize + rawEntries.size());
+      final List<byte[]> values = new ArrayList<>(currentSize + rawEntries.size());
+
+      readLeafEntries(0, currentSize, keys, values);
+      for (final byte[] rawEntry : rawEntries) {
+        final int keySize = rawEntry.length - RID_SIZE;
+
+        final byte[] key = new byte[keySize];
+        System.arraycopy(rawEntry, 0, key, 0, keySize);
+
+        final byte[] value = new byte[RID_SIZE];
+        System.arraycopy(rawEntry, keySize, value, 0, RID_SIZE);
+
+        keys.add(key);
+        values.add(value);
+      }
+
+      if (!rebuildLeaf(keys, values)) {
+        throw new IllegalStateException("Entries do not fit into the bucket");
+      }
+
+      return;
+    }
+
+    for (int i = 0; i < rawEntries.size(); i++) {
+      appendRawEntry(i + currentSize, rawEntries.get(i));
+    }
+
+    setIntValue(SIZE_OFFSET, rawEntries.size() + currentSize);
+  }
+
+  public void shrink(final int newSize, final OBinarySerializer<K> keySerializer) {
+    if (isLeaf()) {
+      final List<byte[]> keys = new ArrayList<>(newSize);
+      final List<byte[]> values = new ArrayList<>(newSize);
+
+      readLeafEntries(0, newSize, keys, values);
+
+      // subset of the keys can not have less shared bytes than the whole set
+      final boolean rebuilt = rebuildLeaf(keys, values);
+      assert rebuilt;
+
+      return;
+    }
+
+    final List<byte[]> rawEntries = new ArrayList<>(newSize);
+
+    for (int i = 0; i < newSize; i++) {
+      rawEntries.add(getRawEntry(i, keySerializer));
+    }
+
+    setIntValue(FREE_POINTER_OFFSET, MAX_PAGE_SIZE_BYTES);
+
+    for (int i = 0; i < newSize; i++) {
+      appendRawEntry(i, rawEntries.get(i));
+    }
+
+    setIntValue(SIZE_OFFSET, newSize);
+  }
+
+  public boolean addLeafEntry(
+      final int index, final byte[] serializedKey, final byte[] serializedValue) {
+    assert isLeaf();
+
+    final int sharedBytesPosition = getIntValue(SHARED_BYTES_POSITION_OFFSET);
+    final int sharedBytesLength = getIntValue(SHARED_BYTES_LENGTH_OFFSET);
+
+    if (!containsSharedBytes(serializedKey, sharedBytesPosition, sharedBytesLength)) {
+      // shared bytes of the bucket are recalculated, content of the bucket is changed only if all
+      // entries still fit into the bucket
+      final int size = size();
+      final List<byte[]> keys = new ArrayList<>(size + 1);
+      final List<byte[]> values = new ArrayList<>(size + 1);
+
+      readLeafEntries(0, size, keys, values);
+      keys.add(index, serializedKey);
+      values.add(index, serializedValue);
+
+      return rebuildLeaf(keys, values);
+    }
+
+    final byte[] entry =
+        leafEntry(serializedKey, serializedValue, sharedBytesPosition, sharedBytesLength);
+
+    final int size = getIntValue(SIZE_OFFSET);
+
+    int freePointer = getIntValue(FREE_POINTER_OFFSET);
+    if (freePointer - entry.length
+        < (size + 1) * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET) {
+      return false;
+    }
+
+    if (index <= size - 1) {
+      moveData(
+          POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE,
+          POSITIONS_ARRAY_OFFSET + (index + 1) * OIntegerSerializer.INT_SIZE,
+          (size - index) * OIntegerSerializer.INT_SIZE);
+    }
+
+    freePointer -= entry.length;
+
+    setIntValue(FREE_POINTER_OFFSET, freePointer);
+    setIntValue(POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE, freePointer);
+    setIntValue(SIZE_OFFSET, size + 1);
+
+    setBinaryValue(freePointer, entry);
+
+    return true;
+  }
+
+  private void appendRawEntry(final int index, final byte[] rawEntry) {
+    int freePointer = getIntValue(FREE_POINTER_OFFSET);
+    freePointer -= rawEntry.length;
+
+    setIntValue(FREE_POINTER_OFFSET, freePointer);
+    setIntValue(POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE, freePointer);
+
+    setBinaryValue(freePointer, rawEntry);
+  }
+
+  public boolean addNonLeafEntry(
+      final int index,
+      final int leftChild,
+      final int rightChild,
+      final byte[] key,
+      final boolean updateNeighbors) {
+    assert !isLeaf();
+
+    final int keySize = key.length;
+
+    final int entrySize = keySize + 2 * OIntegerSerializer.INT_SIZE;
+
+    int size = size();
+    int freePointer = getIntValue(FREE_POINTER_OFFSET);
+    if (freePointer - entrySize
+        < (size + 1) * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET) {
+      return false;
+    }
+
+    if (index <= size - 1) {
+      moveData(
+          POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE,
+          POSITIONS_ARRAY_OFFSET + (index + 1) * OIntegerSerializer.INT_SIZE,
+          (size - index) * OIntegerSerializer.INT_SIZE);
+    }
+
+    freePointer -= entrySize;
+
+    setIntValue(FREE_POINTER_OFFSET, freePointer);
+    setIntValue(POSITIONS_ARRAY_OFFSET + index * OIntegerSerializer.INT_SIZE, freePointer);
+    setIntValue(SIZE_OFFSET, size + 1);
+
+    freePointer += setIntValue(freePointer, leftChild);
+    freePointer += setIntValue(freePointer, rightChild);
+
+    setBinaryValue(freePointer, key);
+
+    size++;
+
+    if (updateNeighbors && size > 1) {
+      if (index < size - 1) {
+        final int nextEntryPosition =
+            getIntValue(POSITIONS_ARRAY_OFFSET + (index + 1) * OIntegerSerializer.INT_SIZE);
+        setIntValue(nextEntryPosition, rightChild);
+      }
+
+      if (index > 0) {
+        final int prevEntryPosition =
+            getIntValue(POSITIONS_ARRAY_OFFSET + (index - 1) * OIntegerSerializer.INT_SIZE);
+        setIntValue(prevEntryPosition + OIntegerSerializer.INT_SIZE, leftChild);
+      }
+    }
+
+    return true;
+  }
+
+  public void updateValue(final int index, final byte[] value) {
+    int entryPosition = getIntValue(index * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET);
+    entryPosition += OShortSerializer.SHORT_SIZE + storedKeySize(entryPosition);
+
+    setBinaryValue(entryPosition, value);
+  }
+
+  public void setLeftSibling(final long pageIndex) {
+    setLongValue(LEFT_SIBLING_OFFSET, pageIndex);
+  }
+
+  public long getLeftSibling() {
+    return getLongValue(LEFT_SIBLING_OFFSET);
+  }
+
+  public void setRightSibling(final long pageIndex) {
+    setLongValue(RIGHT_SIBLING_OFFSET, pageIndex);
+  }
+
+  public long getRightSibling() {
+    return getLongValue(RIGHT_SIBLING_OFFSET);
+  }
+
+  private int storedKeySize(final int entryPosition) {
+    return getShortValue(entryPosition) & 0xFFFF;
+  }
+
+  private K deserializeLeafKey(final int entryPosition, final OBinarySerializer<K> keySerializer) {
+    if (getIntValue(SHARED_BYTES_LENGTH_OFFSET) == 0) {
+      return deserializeFromDirectMemory(
+          keySerializer, entryPosition + OShortSerializer.SHORT_SIZE);
+    }
+
+    return keySerializer.deserializeNativeObject(getLeafKey(entryPosition), 0);
+  }
+
+  /** @return Serialized key of the leaf entry restored from the shared and stored bytes. */
+  private byte[] getLeafKey(final int entryPosition) {
+    final int storedKeySize = storedKeySize(entryPosition);
+
+    final int sharedBytesLength = getIntValue(SHARED_BYTES_LENGTH_OFFSET);
+    if (sharedBytesLength == 0) {
+      return getBinaryValue(entryPosition + OShortSerializer.SHORT_SIZE, storedKeySize);
+    }
+
+    final int sharedBytesPosition = getIntValue(SHARED_BYTES_POSITION_OFFSET);
+    final byte[] key = new byte[storedKeySize + sharedBytesLength];
+    getBinaryValue(
+        MAX_PAGE_SIZE_BYTES - sharedBytesLength, key, sharedBytesPosition, sharedBytesLength);
+    readStoredKeyBytes(entryPosition, key, sharedBytesPosition, sharedBytesLength);
+
+    return key;
+  }
+
+  /**
+   * Copies bytes of the key stored in the leaf entry around the place of the shared bytes, which
+   * have to be already copied into the passed in array.
+   */
+  private void readStoredKeyBytes(
+      final int entryPosition,
+      final byte[] key,
+      final int sharedBytesPosition,
+      final int sharedBytesLength) {
+    final int storedKeySize = storedKeySize(entryPosition);
+    final int storedKeyPosition = entryPosition + OShortSerializer.SHORT_SIZE;
+
+    getBinaryValue(storedKeyPosition, key, 0, sharedBytesPosition);
+    getBinaryValue(
+        storedKeyPosition + sharedBytesPosition,
+        key,
+        sharedBytesPosition + sharedBytesLength,
+        storedKeySize - sharedBytesPosition);
+  }
+
+  private void readLeafEntries(
+      final int from, final int to, final List<byte[]> keys, final List<byte[]> values) {
+    for (int i = from; i < to; i++) {
+      final int entryPosition =
+          getIntValue(i * OIntegerSerializer.INT_SIZE + POSITIONS_ARRAY_OFFSET);
+
+      keys.add(getLeafKey(entryPosition));
+      values.add(
+          getBinaryValue(
+              entryPosition + OShortSerializer.SHORT_SIZE + storedKeySize(entryPosition),
+              RID_SIZE));
+    }
+  }
+
+  /**
+   * Replaces content of the leaf bucket by the given entries, shared bytes of the keys are
+   * calculated for the passed in keys.
+   *
+   * @return <code>false</code> if entries do not fit into the bucket, in such case bucket is not
+   *     changed.
+   */
+  private boolean rebuildLeaf(final List<byte[]> keys, final List<byte[]> values) {
+    final int[] sharedBytes = findSharedBytes(keys);
+    final int sharedBytesPosition = sharedBytes[0];
+    final int sharedBytesLength = sharedBytes[1];
+
+    int pageSize = POSITIONS_ARRAY_OFFSET + sharedBytesLength;
+    for (final byte[] key : keys) {
+      pageSize +=
+          OIntegerSerializer.INT_SIZE
+              + OShortSerializer.SHORT_SIZE
+              + key.length
+              - sharedBytesLength
+              + RID_SIZE;
+    }
+
+    if (pageSize > MAX_PAGE_SIZE_BYTES) {
+      return false;
+    }
+
+    int freePointer = MAX_PAGE_SIZE_BYTES - sharedBytesLength;
+    if (sharedBytesLength > 0) {
+      final byte[] shared = new byte[sharedBytesLength];
+      System.arraycopy(keys.get(0), sharedBytesPosition, shared, 0, sharedBytesLength);
+      setBinaryValue(freePointer, shared);
+    }
+
+    setIntValue(SHARED_BYTES_POSITION_OFFSET, sharedBytesPosition);
+    setIntValue(SHARED_BYTES_LENGTH_OFFSET, sharedBytesLength);
+    setIntValue(FREE_POINTER_OFFSET, freePointer);
+
+    for (int i = 0; i < keys.size(); i++) {
+      appendRawEntry(
+          i, leafEntry(keys.get(i), values.get(i), sharedBytesPosition, sharedBytesLength));
+    }
+
+    setIntValue(SIZE_OFFSET, keys.size());
+
+    return true;
+  }
+
+  private static byte[] leafEntry(
+      final byte[] key,
+      final byte[] value,
+      final int sharedBytesPosition,
+      final int sharedBytesLength) {
+    final int storedKeySize = key.length - sharedBytesLength;
+    final byte[] entry = new byte[OShortSerializer.SHORT_SIZE + storedKeySize + value.length];
+
+    OShortSerializer.INSTANCE.serializeNative((short) storedKeySize, entry, 0);
+
+    int position = OShortSerializer.SHORT_SIZE;
+    System.arraycopy(key, 0, entry, position, sharedBytesPosition);
+    position += sharedBytesPosition;
+
+    System.arraycopy(
+        key,
+        sharedBytesPosition + sharedBytesLength,
+        entry,
+        position,
+        key.length - sharedBytesPosition - sharedBytesLength);
+    position += key.length - sharedBytesPosition - sharedBytesLength;
+
+    System.arraycopy(value, 0, entry, position, value.length);
+
+    return entry;
+  }
+
+  private boolean containsSharedBytes(
+      final byte[] key, final int sharedBytesPosition, final int sharedBytesLength) {
+    if (sharedBytesLength == 0) {
+      return true;
+    }
+
+    if (key.length < sharedBytesPosition + sharedBytesLength) {
+      return false;
+    }
+
+    final byte[] sharedBytes =
+        getBinaryValue(MAX_PAGE_SIZE_BYTES - sharedBytesLength, sharedBytesLength);
+    for (int i = 0; i < sharedBytesLength; i++) {
+      if (sharedBytes[i] != key[sharedBytesPosition + i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Finds the longest run of bytes which have the same values at the same positions in all passed
+   * in keys.
+   *
+   * @return Array which contains position of the run inside of the key and its length.
+   */
+  static int[] findSharedBytes(final List<byte[]> keys) {
+    if (keys.size() < 2) {
+      return new int[] {0, 0};
+    }
+
+    final byte[] firstKey = keys.get(0);
+    int minKeyLength = firstKey.length;
+    for (final byte[] key : keys) {
+      minKeyLength = Math.min(minKeyLength, key.length);
+    }
+
+    int bestPosition = 0;
+    int bestLength = 0;
+
+    int runPosition = 0;
+    for (int i = 0; i < minKeyLength; i++) {
+      boolean shared = true;
+      for (final byte[] key : keys) {
+        if (key[i] != firstKey[i]) {
+          shared = false;
+          break;
+        }
+      }
+
+      if (shared) {
+        if (i - runPosition + 1 > bestLength) {
+          bestPosition = runPosition;
+          bestLength = i - runPosition + 1;
+        }
+      } else {
+        runPosition = i + 1;
+      }
+    }
+
+    return new int[] {bestPosition, bestLength};
+  }
+
+  public static final class CellBTreeEntry<K> implements Comparable<CellBTreeEntry<K>> {
+    private final Comparator<? super K> comparator = ODefaultComparator.INSTANCE;
+
+    protected final int leftChild;
+    protected final int rightChild;
+    public final K key;
+    public final ORID value;
+
+    public CellBTreeEntry(
+        final int leftChild, final int rightChild, final K key, final ORID value) {
+      this.leftChild = leftChild;
+      this.rightChild = rightChild;
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final CellBTreeEntry<?> that = (CellBTreeEntry<?>) o;
+      return leftChild == that.leftChild
+          && rightChild == that.rightChild
+          && Objects.equals(key, that.key)
+          && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(leftChild, rightChild, key, value);
+    }
+
+    @Override
+    public String toString() {
+      return "CellBTreeEntry{"
+          + "leftChild="
+          + leftChild
+          + ", rightChild="
+          + rightChild
+          + ", key="
+          + key
+          + ", value="
+          + value
+          + '}';
+    }
+
+    @Override
+    public int compareTo(final CellBTreeEntry<K> other) {
+      return comparator.compare(key, other.key);
+    }
+  }
+}
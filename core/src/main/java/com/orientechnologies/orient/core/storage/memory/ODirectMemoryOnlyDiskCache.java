@@ -570,6 +570,12 @@ public final class ODirectMemoryOnlyDiskCache extends OAbstractWriteCache
     return totalPages * pageSize;
   }
 
+  /** Pages of in-memory storage are never evicted, so amount of memory is not limited. */
+  @Override
+  public final long getMaxMemory() {
+    return Long.MAX_VALUE;
+  }
+
   @Override
   public final boolean checkLowDiskSpace() {
     return true;
@@ -0,0 +1,145 @@
+package com.orientechnologies.common.collection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OExternalSorterTest {
+  private static final Comparator<int[]> BY_KEY = Comparator.comparingInt(entry -> entry[0]);
+
+  /** Entries are pairs of key and sequence number, entries with negative keys are kept in heap */
+  private static final OExternalSorter.Codec<int[]> CODEC =
+      new OExternalSorter.Codec<int[]>() {
+        @Override
+        public byte[] serialize(int[] entry) {
+          if (entry[0] < 0) {
+            return null;
+          }
+          return ByteBuffer.allocate(8).putInt(entry[0]).putInt(entry[1]).array();
+        }
+
+        @Override
+        public int[] deserialize(byte[] bytes) {
+          ByteBuffer buffer = ByteBuffer.wrap(bytes);
+          return new int[] {buffer.getInt(), buffer.getInt()};
+        }
+      };
+
+  private File directory;
+
+  @Before
+  public void before() throws IOException {
+    directory = Files.createTempDirectory("externalSorterTest").toFile();
+  }
+
+  @After
+  public void after() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testSortInHeap() throws IOException {
+    try (OExternalSorter<int[]> sorter =
+        new OExternalSorter<>(BY_KEY, CODEC, 0, 4, directory, "sort-")) {
+      for (int i = 0; i < 100; i++) {
+        sorter.add(new int[] {99 - i, i});
+      }
+      Assert.assertEquals(100, sorter.heapSize());
+      Assert.assertEquals(0, directory.list().length);
+
+      Iterator<int[]> iterator = sorter.sortedIterator();
+      for (int i = 0; i < 100; i++) {
+        Assert.assertEquals(i, iterator.next()[0]);
+      }
+      Assert.assertFalse(iterator.hasNext());
+    }
+  }
+
+  @Test
+  public void testFilesAreMergedWhileAdding() throws IOException {
+    final int maxFanIn = 3;
+    final Random random = new Random(42);
+    try (OExternalSorter<int[]> sorter =
+        new OExternalSorter<>(BY_KEY, CODEC, 10, maxFanIn, directory, "sort-")) {
+      int levels = 0;
+      for (int i = 0; i < 10_000; i++) {
+        sorter.add(new int[] {random.nextInt(100), i});
+
+        // at most maxFanIn - 1 runs of each level are kept
+        levels = Math.max(levels, 1 + (int) (Math.log(i / 10 + 1) / Math.log(maxFanIn)));
+        Assert.assertTrue(directory.list().length <= (maxFanIn - 1) * levels);
+      }
+      Assert.assertTrue(sorter.heapSize() < 10);
+
+      assertSorted(sorter.sortedIterator(), 10_000);
+      Assert.assertEquals(0, directory.list().length);
+    }
+  }
+
+  @Test
+  public void testElementsKeptInHeap() throws IOException {
+    final Random random = new Random(42);
+    try (OExternalSorter<int[]> sorter =
+        new OExternalSorter<>(BY_KEY, CODEC, 10, 4, directory, "sort-")) {
+      for (int i = 0; i < 1_000; i++) {
+        sorter.add(new int[] {random.nextInt(100) - 10, i});
+      }
+
+      List<int[]> sorted = new ArrayList<>();
+      sorter.sortedIterator().forEachRemaining(sorted::add);
+      Assert.assertEquals(1_000, sorted.size());
+      for (int i = 1; i < sorted.size(); i++) {
+        Assert.assertTrue(sorted.get(i - 1)[0] <= sorted.get(i)[0]);
+      }
+      Assert.assertEquals(0, directory.list().length);
+    }
+  }
+
+  @Test
+  public void testCloseDeletesFiles() throws IOException {
+    OExternalSorter<int[]> sorter =
+        new OExternalSorter<>(BY_KEY, CODEC, 10, 4, directory, "sort-");
+    for (int i = 0; i < 1_000; i++) {
+      sorter.add(new int[] {i % 7, i});
+    }
+    Iterator<int[]> iterator = sorter.sortedIterator();
+    iterator.next();
+    Assert.assertTrue(directory.list().length > 0);
+
+    sorter.close();
+    Assert.assertEquals(0, directory.list().length);
+  }
+
+  private static void assertSorted(Iterator<int[]> iterator, int size) {
+    int[] previous = null;
+    for (int i = 0; i < size; i++) {
+      Assert.assertTrue(iterator.hasNext());
+      int[] entry = iterator.next();
+      if (previous != null) {
+        Assert.assertTrue(previous[0] <= entry[0]);
+        if (previous[0] == entry[0]) {
+          // equal keys keep the order they were added
+          Assert.assertTrue(previous[1] < entry[1]);
+        }
+      }
+      previous = entry;
+    }
+    Assert.assertFalse(iterator.hasNext());
+  }
+}
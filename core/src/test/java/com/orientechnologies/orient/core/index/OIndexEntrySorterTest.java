@@ -0,0 +1,83 @@
+package com.orientechnologies.orient.core.index;
+
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OIndexEntrySorterTest {
+
+  @Test
+  public void testSortInMemory() throws Exception {
+    assertSort(new OType[] {OType.INTEGER}, 100_000, 10_000, false);
+  }
+
+  @Test
+  public void testSortRuns() throws Exception {
+    assertSort(new OType[] {OType.INTEGER}, 1_000, 10_500, false);
+  }
+
+  @Test
+  public void testSortCompositeKeyRuns() throws Exception {
+    assertSort(new OType[] {OType.STRING, OType.LONG}, 1_000, 10_500, true);
+  }
+
+  @Test
+  public void testIsSupported() {
+    Assert.assertTrue(OIndexEntrySorter.isSupported(new OType[] {OType.STRING, OType.DATE}));
+    Assert.assertFalse(OIndexEntrySorter.isSupported(new OType[] {OType.EMBEDDED}));
+    Assert.assertFalse(OIndexEntrySorter.isSupported(new OType[0]));
+    Assert.assertFalse(OIndexEntrySorter.isSupported(null));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void assertSort(
+      final OType[] keyTypes, final int bufferSize, final int entriesCount, final boolean composite)
+      throws Exception {
+    final Random random = new Random();
+    final long seed = random.nextLong();
+    System.out.println("assertSort seed : " + seed);
+    random.setSeed(seed);
+
+    final List<ORawPair<Object, ORID>> entries = new ArrayList<>();
+    try (final OIndexEntrySorter sorter = new OIndexEntrySorter(keyTypes, bufferSize)) {
+      for (int i = 0; i < entriesCount; i++) {
+        // small range of keys makes sure that entries with the same key are sorted by rid
+        final int value = random.nextInt(1_000);
+        final Object key =
+            composite ? new OCompositeKey("key" + value % 10, (long) value) : (Object) value;
+        final ORID rid = new ORecordId(random.nextInt(10), random.nextInt(100_000));
+
+        sorter.add(key, rid);
+        entries.add(new ORawPair<>(key, rid));
+      }
+
+      entries.sort(
+          (entryOne, entryTwo) -> {
+            final int result = ((Comparable) entryOne.first).compareTo(entryTwo.first);
+            if (result != 0) {
+              return result;
+            }
+
+            return entryOne.second.compareTo(entryTwo.second);
+          });
+
+      final Iterator<ORawPair<Object, ORID>> sortedEntries = sorter.sortedEntries();
+      for (final ORawPair<Object, ORID> entry : entries) {
+        Assert.assertTrue(sortedEntries.hasNext());
+
+        final ORawPair<Object, ORID> sortedEntry = sortedEntries.next();
+        Assert.assertEquals(entry.first, sortedEntry.first);
+        Assert.assertEquals(entry.second, sortedEntry.second);
+      }
+
+      Assert.assertFalse(sortedEntries.hasNext());
+    }
+  }
+}
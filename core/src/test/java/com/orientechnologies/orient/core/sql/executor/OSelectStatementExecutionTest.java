@@ -25,10 +25,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -3988,6 +3990,243 @@ public class OSelectStatementExecutionTest {
     }
   }
 
+  @Test
+  public void testOrderByWithLimitOnLargeResult() {
+    String className = "testOrderByWithLimitOnLargeResult";
+    db.createClassIfNotExist(className);
+    for (int i = 0; i < 1000; i++) {
+      db.command("INSERT INTO " + className + " set name = ?, surname = ?", i % 10, i).close();
+    }
+
+    List<Object> expected = new ArrayList<>();
+    try (OResultSet result = db.query("select from " + className + " ORDER BY name DESC")) {
+      result.stream().skip(5).limit(20).forEach(x -> expected.add(x.getProperty("surname")));
+    }
+    try (OResultSet result =
+        db.query("select from " + className + " ORDER BY name DESC SKIP 5 LIMIT 20")) {
+      List<Object> found = new ArrayList<>();
+      result.forEachRemaining(x -> found.add(x.getProperty("surname")));
+      // equal elements keep the order they have in the input, as with the full sort
+      Assert.assertEquals(expected, found);
+    }
+    Assert.assertEquals(20, expected.size());
+  }
+
+  @Test
+  public void testOrderBySpillToTemporaryFiles() {
+    Integer oldValue = OGlobalConfiguration.QUERY_ORDER_BY_SPILL_THRESHOLD.getValueAsInteger();
+    try {
+      OGlobalConfiguration.QUERY_ORDER_BY_SPILL_THRESHOLD.setValue(7);
+
+      String className = "testOrderBySpillToTemporaryFiles";
+      db.createClassIfNotExist(className);
+      for (int i = 0; i < 1000; i++) {
+        db.command("INSERT INTO " + className + " set name = ?, surname = ?", (i * 37) % 1000, i)
+            .close();
+      }
+
+      try (OResultSet result =
+          db.query("select name, surname from " + className + " ORDER BY name")) {
+        for (int i = 0; i < 1000; i++) {
+          Assert.assertTrue(result.hasNext());
+          OResult item = result.next();
+          Assert.assertEquals(i, (int) item.getProperty("name"));
+        }
+        Assert.assertFalse(result.hasNext());
+      }
+
+      try (OResultSet result = db.query("select from " + className + " ORDER BY name DESC")) {
+        for (int i = 999; i >= 0; i--) {
+          Assert.assertTrue(result.hasNext());
+          OResult item = result.next();
+          Assert.assertTrue(item.isElement());
+          Assert.assertEquals(i, (int) item.getProperty("name"));
+        }
+        Assert.assertFalse(result.hasNext());
+      }
+    } finally {
+      OGlobalConfiguration.QUERY_ORDER_BY_SPILL_THRESHOLD.setValue(oldValue);
+    }
+  }
+
+  @Test
+  public void testOrderBySpillEmbeddedValues() {
+    Integer oldValue = OGlobalConfiguration.QUERY_ORDER_BY_SPILL_THRESHOLD.getValueAsInteger();
+    try {
+      OGlobalConfiguration.QUERY_ORDER_BY_SPILL_THRESHOLD.setValue(7);
+
+      String className = "testOrderBySpillEmbeddedValues";
+      db.createClassIfNotExist(className);
+      for (int i = 0; i < 1000; i++) {
+        ODocument address = new ODocument();
+        address.setProperty("city", "city" + i);
+        ODocument doc = db.newInstance(className);
+        doc.setProperty("name", (i * 37) % 1000);
+        doc.setProperty("address", address, OType.EMBEDDED);
+        doc.save();
+      }
+
+      try (OResultSet result =
+          db.query(
+              "select name, address, {\"key\": name, \"values\": [address.city]} as nested from "
+                  + className
+                  + " ORDER BY name")) {
+        for (int i = 0; i < 1000; i++) {
+          Assert.assertTrue(result.hasNext());
+          OResult item = result.next();
+          int name = item.getProperty("name");
+          Assert.assertEquals(i, name);
+          String city = "city" + ((name * 973) % 1000);
+
+          Object address = item.getProperty("address");
+          Assert.assertTrue(address instanceof OResult);
+          Assert.assertEquals(city, ((OResult) address).getProperty("city"));
+
+          Map<String, Object> nested = item.getProperty("nested");
+          Assert.assertEquals(i, nested.get("key"));
+          Assert.assertEquals(Arrays.asList(city), nested.get("values"));
+        }
+        Assert.assertFalse(result.hasNext());
+      }
+
+      try (OResultSet result = db.query("select from " + className + " ORDER BY name")) {
+        // records deleted after the sort are still returned as they were read
+        db.command("delete from " + className).close();
+        for (int i = 0; i < 1000; i++) {
+          Assert.assertTrue(result.hasNext());
+          OResult item = result.next();
+          Assert.assertTrue(item.isElement());
+          Assert.assertEquals(i, (int) item.getProperty("name"));
+        }
+        Assert.assertFalse(result.hasNext());
+      }
+    } finally {
+      OGlobalConfiguration.QUERY_ORDER_BY_SPILL_THRESHOLD.setValue(oldValue);
+    }
+  }
+
+  @Test
+  public void testGroupBySpillToTemporaryFiles() {
+    Integer oldValue = OGlobalConfiguration.QUERY_GROUP_BY_SPILL_THRESHOLD.getValueAsInteger();
+    try {
+      OGlobalConfiguration.QUERY_GROUP_BY_SPILL_THRESHOLD.setValue(5);
+
+      String className = "testGroupBySpillToTemporaryFiles";
+      db.createClassIfNotExist(className);
+      for (int i = 0; i < 1000; i++) {
+        db.command("INSERT INTO " + className + " set type = ?, val = ?", i % 100, i).close();
+      }
+
+      try (OResultSet result =
+          db.query(
+              "select type, count(*) as cnt, sum(val) as total from "
+                  + className
+                  + " group by type")) {
+        Map<Integer, Long> totals = new HashMap<>();
+        while (result.hasNext()) {
+          OResult item = result.next();
+          int type = item.getProperty("type");
+          Assert.assertEquals(10L, (long) item.getProperty("cnt"));
+          Assert.assertNull(totals.put(type, ((Number) item.getProperty("total")).longValue()));
+        }
+        Assert.assertEquals(100, totals.size());
+        for (int type = 0; type < 100; type++) {
+          Assert.assertEquals(type * 10 + 4500L, (long) totals.get(type));
+        }
+      }
+    } finally {
+      OGlobalConfiguration.QUERY_GROUP_BY_SPILL_THRESHOLD.setValue(oldValue);
+    }
+  }
+
+  @Test
+  public void testGroupBySpillKeepsArrivalOrder() {
+    Integer oldValue = OGlobalConfiguration.QUERY_GROUP_BY_SPILL_THRESHOLD.getValueAsInteger();
+    try {
+      OGlobalConfiguration.QUERY_GROUP_BY_SPILL_THRESHOLD.setValue(5);
+
+      String className = "testGroupBySpillKeepsArrivalOrder";
+      db.createClassIfNotExist(className);
+      for (int i = 0; i < 1000; i += 200) {
+        for (int j = i; j < i + 100; j++) {
+          db.command("INSERT INTO " + className + " set type = ?, val = ?", j % 100, j).close();
+        }
+      }
+
+      // ids of the records which are not saved yet cannot be spilled, they are kept in heap
+      db.begin();
+      try {
+        for (int i = 100; i < 1000; i += 200) {
+          for (int j = i; j < i + 100; j++) {
+            db.command("INSERT INTO " + className + " set type = ?, val = ?", j % 100, j).close();
+          }
+        }
+
+        String ordered = "select type, @rid as rid from " + className + " order by val";
+        Map<Integer, List<Object>> expected = new HashMap<>();
+        try (OResultSet result = db.query(ordered)) {
+          while (result.hasNext()) {
+            OResult item = result.next();
+            expected
+                .computeIfAbsent(item.getProperty("type"), type -> new ArrayList<>())
+                .add(item.getProperty("rid"));
+          }
+        }
+
+        try (OResultSet result =
+            db.query("select type, list(rid) as rids from (" + ordered + ") group by type")) {
+          int groups = 0;
+          while (result.hasNext()) {
+            OResult item = result.next();
+            Assert.assertEquals(expected.get(item.getProperty("type")), item.getProperty("rids"));
+            groups++;
+          }
+          Assert.assertEquals(100, groups);
+        }
+      } finally {
+        db.rollback();
+      }
+    } finally {
+      OGlobalConfiguration.QUERY_GROUP_BY_SPILL_THRESHOLD.setValue(oldValue);
+    }
+  }
+
+  @Test
+  public void testDistinctSpillToTemporaryFiles() {
+    Integer oldValue = OGlobalConfiguration.QUERY_DISTINCT_SPILL_THRESHOLD.getValueAsInteger();
+    try {
+      OGlobalConfiguration.QUERY_DISTINCT_SPILL_THRESHOLD.setValue(10);
+
+      String className = "testDistinctSpillToTemporaryFiles";
+      db.createClassIfNotExist(className);
+      for (int i = 0; i < 1000; i++) {
+        db.command("INSERT INTO " + className + " set name = ?, val = ?", i % 100, i).close();
+      }
+
+      try (OResultSet result =
+          db.query("select distinct name from " + className + " order by name desc")) {
+        for (int i = 99; i >= 0; i--) {
+          Assert.assertTrue(result.hasNext());
+          Assert.assertEquals(i, (int) result.next().getProperty("name"));
+        }
+        Assert.assertFalse(result.hasNext());
+      }
+
+      try (OResultSet result =
+          db.query("select distinct name, val % 2 as odd from " + className + " order by val")) {
+        for (int i = 0; i < 100; i++) {
+          Assert.assertTrue(result.hasNext());
+          OResult item = result.next();
+          Assert.assertEquals(i, (int) item.getProperty("name"));
+          Assert.assertEquals(i % 2, (int) item.getProperty("odd"));
+        }
+        Assert.assertFalse(result.hasNext());
+      }
+    } finally {
+      OGlobalConfiguration.QUERY_DISTINCT_SPILL_THRESHOLD.setValue(oldValue);
+    }
+  }
+
   @Test
   public void testXor() {
     try (OResultSet result = db.query("select 15 ^ 4 as foo")) {
@@ -4062,4 +4301,200 @@ public class OSelectStatementExecutionTest {
     Assert.assertFalse(result.hasNext());
     result.close();
   }
+
+  @Test
+  public void testBatchFilterAndOrNot() {
+    String className = "testBatchFilterAndOrNot";
+    db.getMetadata().getSchema().createClass(className);
+    int expected = 0;
+    for (int i = 0; i < 1000; i++) {
+      ODocument doc = db.newInstance(className);
+      doc.setProperty("val", i);
+      doc.setProperty("mod", i % 7);
+      if (i % 3 != 0) {
+        doc.setProperty("name", "n" + i);
+      }
+      doc.save();
+      if ((i < 500 || i % 7 == 3) && i % 7 != 1 && i % 3 != 0) {
+        expected++;
+      }
+    }
+
+    String query =
+        "select from "
+            + className
+            + " where (val < 500 or mod = 3) and not (mod = 1) and name is not null";
+    try (OResultSet result = db.query(query)) {
+      printExecutionPlan(result);
+      int count = 0;
+      while (result.hasNext()) {
+        int val = result.next().getProperty("val");
+        Assert.assertTrue(val < 500 || val % 7 == 3);
+        Assert.assertNotEquals(1, val % 7);
+        Assert.assertNotEquals(0, val % 3);
+        count++;
+      }
+      Assert.assertEquals(expected, count);
+    }
+
+    try (OResultSet result = db.query(query + " limit 250")) {
+      Set<Integer> vals = new HashSet<>();
+      while (result.hasNext()) {
+        vals.add(result.next().getProperty("val"));
+      }
+      Assert.assertEquals(250, vals.size());
+    }
+
+    try (OResultSet result = db.query(query + " skip 100 limit 1000")) {
+      int count = 0;
+      while (result.hasNext()) {
+        result.next();
+        count++;
+      }
+      Assert.assertEquals(expected - 100, count);
+    }
+  }
+
+  @Test
+  public void testBatchFilterWithMethodCall() {
+    String className = "testBatchFilterWithMethodCall";
+    db.getMetadata().getSchema().createClass(className);
+    for (int i = 0; i < 300; i++) {
+      ODocument doc = db.newInstance(className);
+      doc.setProperty("name", "n" + i);
+      doc.setProperty("prefix", i % 2 == 0 ? "n1" : "n2");
+      doc.save();
+    }
+
+    try (OResultSet result =
+        db.query(
+            "select name, name.left(prefix.length()) as p from "
+                + className
+                + " where name.left(prefix.length()) = prefix and name.length() = 3")) {
+      printExecutionPlan(result);
+      int count = 0;
+      while (result.hasNext()) {
+        OResult item = result.next();
+        String name = item.getProperty("name");
+        Assert.assertEquals(3, name.length());
+        Assert.assertEquals(name.substring(0, 2), item.getProperty("p"));
+        count++;
+      }
+      // even values from n10 to n18 and odd values from n21 to n29
+      Assert.assertEquals(10, count);
+    }
+  }
+
+  @Test
+  public void testIndexInManyKeys() {
+    String className = "testIndexInManyKeys";
+    OClass clazz = db.getMetadata().getSchema().createClass(className);
+    clazz.createProperty("name", OType.STRING);
+    clazz.createProperty("a", OType.INTEGER);
+    clazz.createProperty("b", OType.INTEGER);
+    clazz.createIndex(className + ".name", OClass.INDEX_TYPE.UNIQUE, "name");
+    clazz.createIndex(className + ".a_b", OClass.INDEX_TYPE.NOTUNIQUE, "a", "b");
+
+    for (int i = 0; i < 3000; i++) {
+      ODocument doc = db.newInstance(className);
+      doc.setProperty("name", "name" + i);
+      doc.setProperty("a", i % 10);
+      doc.setProperty("b", i % 30);
+      doc.save();
+    }
+
+    // keys are looked up by several batches, some of them are absent
+    List<String> names = new ArrayList<>();
+    for (int i = 4000; i >= 0; i -= 2) {
+      names.add("name" + i);
+    }
+
+    try (OResultSet result =
+        db.query("select from " + className + " where name in ? order by name", names)) {
+      printExecutionPlan(result);
+      String prev = null;
+      int count = 0;
+      while (result.hasNext()) {
+        String name = result.next().getProperty("name");
+        Assert.assertEquals(0, Integer.parseInt(name.substring("name".length())) % 2);
+        if (prev != null) {
+          Assert.assertTrue(prev.compareTo(name) < 0);
+        }
+        prev = name;
+        count++;
+      }
+      Assert.assertEquals(1500, count);
+    }
+
+    try (OResultSet result =
+        db.query(
+            "select from " + className + " where a in [1, 3, 11] and b in [1, 3, 11, 13, 23]")) {
+      printExecutionPlan(result);
+      int count = 0;
+      while (result.hasNext()) {
+        OResult item = result.next();
+        int a = item.getProperty("a");
+        int b = item.getProperty("b");
+        Assert.assertTrue(a == 1 || a == 3);
+        Assert.assertEquals(a, b % 10);
+        count++;
+      }
+      Assert.assertEquals(500, count);
+    }
+  }
+
+  @Test
+  public void testIndexOnlyProjection() {
+    String className = "testIndexOnlyProjection";
+    OClass clazz = db.getMetadata().getSchema().createClass(className);
+    clazz.createProperty("name", OType.STRING);
+    clazz.createProperty("surname", OType.STRING);
+    clazz.createProperty("foo", OType.INTEGER);
+    clazz.createIndex(className + ".name_surname", OClass.INDEX_TYPE.NOTUNIQUE, "name", "surname");
+
+    for (int i = 0; i < 10; i++) {
+      ODocument doc = db.newInstance(className);
+      doc.setProperty("name", "name" + (i % 3));
+      doc.setProperty("surname", "surname" + i);
+      doc.setProperty("foo", i);
+      doc.save();
+    }
+
+    try (OResultSet result =
+        db.query(
+            "select surname as s, name from "
+                + className
+                + " where name in ['name1', 'name2', 'name1'] order by s")) {
+      printExecutionPlan(result);
+      for (int i : new int[] {1, 2, 4, 5, 7, 8}) {
+        Assert.assertTrue(result.hasNext());
+        OResult item = result.next();
+        Assert.assertEquals("surname" + i, item.getProperty("s"));
+        Assert.assertEquals("name" + (i % 3), item.getProperty("name"));
+        Assert.assertFalse(item.isElement());
+      }
+      Assert.assertFalse(result.hasNext());
+
+      OSelectExecutionPlan plan = (OSelectExecutionPlan) result.getExecutionPlan().get();
+      Assert.assertEquals(
+          1,
+          plan.getSteps().stream()
+              .filter(step -> step instanceof GetValueFromIndexKeyStep)
+              .count());
+    }
+
+    // records are loaded if projections need fields which are not in the index
+    try (OResultSet result =
+        db.query("select name, foo from " + className + " where name = 'name1'")) {
+      printExecutionPlan(result);
+      Assert.assertEquals(3, result.stream().count());
+
+      OSelectExecutionPlan plan = (OSelectExecutionPlan) result.getExecutionPlan().get();
+      Assert.assertEquals(
+          0,
+          plan.getSteps().stream()
+              .filter(step -> step instanceof GetValueFromIndexKeyStep)
+              .count());
+    }
+  }
 }
@@ -2,14 +2,23 @@ package com.orientechnologies.orient.core.sql.executor;
 
 import com.orientechnologies.orient.core.command.OBasicCommandContext;
 import com.orientechnologies.orient.core.command.OCommandContext;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.exception.OCommandExecutionException;
+import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
 import org.junit.Test;
 
 /** Created by luigidellaquila on 26/07/16. */
-public class ParallelExecStepTest {
+public class ParallelExecStepTest extends TestUtilsFixture {
 
   @Test
   public void test() {
@@ -35,4 +44,241 @@ public class ParallelExecStepTest {
     plan.getSteps()
         .add(new FetchFromRidsStep(Collections.singleton(new ORecordId(12, 100)), ctx, false));
   }
+
+  @Test
+  public void shouldReturnAllResultsOfParallelSubPlans() {
+    OClass clazz = createClassInstance();
+    clazz.createProperty("name", OType.STRING);
+    clazz.createProperty("surname", OType.STRING);
+    clazz.createProperty("nick", OType.STRING);
+    clazz.createIndex(clazz.getName() + ".name", OClass.INDEX_TYPE.NOTUNIQUE, "name");
+    clazz.createIndex(clazz.getName() + ".surname", OClass.INDEX_TYPE.NOTUNIQUE, "surname");
+    clazz.createIndex(clazz.getName() + ".nick", OClass.INDEX_TYPE.NOTUNIQUE, "nick");
+
+    int expected = 0;
+    for (int i = 0; i < 1000; i++) {
+      ODocument doc = new ODocument(clazz.getName());
+      doc.setProperty("name", "name" + (i % 10));
+      doc.setProperty("surname", "surname" + (i % 7));
+      doc.setProperty("nick", "nick" + (i % 13));
+      doc.save();
+      if (i % 10 == 1 || i % 7 == 2 || i % 13 == 3) {
+        expected++;
+      }
+    }
+
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_AUTO, true);
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS, 4);
+    try {
+      OResultSet result =
+          database.query(
+              "select from "
+                  + clazz.getName()
+                  + " where name = 'name1' or surname = 'surname2' or nick = 'nick3'");
+      Set<ORID> rids = new HashSet<>();
+      while (result.hasNext()) {
+        rids.add(result.next().getIdentity().get());
+      }
+      result.close();
+      Assert.assertEquals(expected, rids.size());
+    } finally {
+      database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_AUTO, false);
+      database
+          .getConfiguration()
+          .setValue(
+              OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS,
+              OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS.getDefValue());
+    }
+  }
+
+  @Test
+  public void shouldPreserveSubPlanOrder() {
+    OClass clazz = createClassInstance();
+    for (int i = 0; i < 3; i++) {
+      clazz.addCluster(clazz.getName() + "_" + i);
+    }
+    for (int i = 0; i < 500; i++) {
+      ODocument doc = new ODocument(clazz.getName());
+      doc.setProperty("value", i);
+      doc.save();
+    }
+
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_AUTO, true);
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS, 4);
+    try {
+      List<ORID> sequential = fetchAll(clazz, false);
+      List<ORID> parallel = fetchAll(clazz, true);
+      Assert.assertEquals(500, parallel.size());
+      Assert.assertEquals(sequential, parallel);
+    } finally {
+      database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_AUTO, false);
+      database
+          .getConfiguration()
+          .setValue(
+              OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS,
+              OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS.getDefValue());
+    }
+  }
+
+  @Test
+  public void shouldScanClassPartitionsInParallel() {
+    OClass clazz = createClassInstance();
+    clazz.addCluster(clazz.getName() + "_extra");
+    for (int i = 0; i < 1000; i++) {
+      ODocument doc = new ODocument(clazz.getName());
+      doc.setProperty("value", i);
+      doc.save();
+    }
+
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_AUTO, true);
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS, 4);
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_MINIMUM_RECORDS, 100);
+    try {
+      OResultSet result =
+          database.query("select value from " + clazz.getName() + " where value % 3 = 0");
+      OSelectExecutionPlan plan = (OSelectExecutionPlan) result.getExecutionPlan().get();
+      Assert.assertTrue(plan.getSteps().get(0) instanceof ParallelExecStep);
+      Assert.assertTrue(
+          ((ParallelExecStep) plan.getSteps().get(0)).getSubExecutionPlans().size() > 2);
+
+      Set<Integer> values = new HashSet<>();
+      while (result.hasNext()) {
+        int value = result.next().getProperty("value");
+        Assert.assertEquals(0, value % 3);
+        Assert.assertTrue(values.add(value));
+      }
+      result.close();
+      Assert.assertEquals(334, values.size());
+
+      database.begin();
+      for (int i = 1000; i < 1010; i++) {
+        ODocument doc = new ODocument(clazz.getName());
+        doc.setProperty("value", i);
+        doc.save();
+      }
+      result = database.query("select value from " + clazz.getName() + " where value % 3 = 0");
+      values.clear();
+      while (result.hasNext()) {
+        Assert.assertTrue(values.add(result.next().getProperty("value")));
+      }
+      result.close();
+      database.rollback();
+      Assert.assertEquals(337, values.size());
+    } finally {
+      database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_AUTO, false);
+      database
+          .getConfiguration()
+          .setValue(
+              OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS,
+              OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS.getDefValue());
+      database
+          .getConfiguration()
+          .setValue(
+              OGlobalConfiguration.QUERY_PARALLEL_MINIMUM_RECORDS,
+              OGlobalConfiguration.QUERY_PARALLEL_MINIMUM_RECORDS.getDefValue());
+    }
+  }
+
+  @Test
+  public void shouldReleaseWorkersOfUnclosedResultSet() throws Exception {
+    OClass clazz = createClassInstance();
+    for (int i = 0; i < 3; i++) {
+      clazz.addCluster(clazz.getName() + "_" + i);
+    }
+    for (int i = 0; i < 2000; i++) {
+      ODocument doc = new ODocument(clazz.getName());
+      doc.setProperty("value", i);
+      doc.save();
+    }
+
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_AUTO, true);
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS, 4);
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_RESULT_QUEUE_SIZE, 1);
+    database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_CONSUMER_TIMEOUT, 200);
+    try {
+      OBasicCommandContext ctx = new OBasicCommandContext();
+      ctx.setDatabase(database);
+      List<OInternalExecutionPlan> subPlans = new ArrayList<>();
+      for (int clusterId : clazz.getClusterIds()) {
+        OSelectExecutionPlan subPlan = new OSelectExecutionPlan(ctx);
+        subPlan.chain(new FetchFromClusterExecutionStep(clusterId, ctx, false));
+        subPlans.add(subPlan);
+      }
+
+      // results are not consumed till the end and the step is never closed
+      ParallelExecStep step = new ParallelExecStep(subPlans, ctx, false, false);
+      OResultSet rs = step.syncPull(ctx, 10);
+      while (rs.hasNext()) {
+        rs.next();
+      }
+
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (step.getRunningWorkers() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      Assert.assertEquals(0, step.getRunningWorkers());
+
+      try {
+        rs = step.syncPull(ctx, 100);
+        while (rs.hasNext()) {
+          while (rs.hasNext()) {
+            rs.next();
+          }
+          rs = step.syncPull(ctx, 100);
+        }
+        Assert.fail("Results of stopped workers are reported as complete");
+      } catch (OCommandExecutionException expected) {
+      }
+    } finally {
+      database.getConfiguration().setValue(OGlobalConfiguration.QUERY_PARALLEL_AUTO, false);
+      database
+          .getConfiguration()
+          .setValue(
+              OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS,
+              OGlobalConfiguration.QUERY_PARALLEL_MAX_THREADS.getDefValue());
+      database
+          .getConfiguration()
+          .setValue(
+              OGlobalConfiguration.QUERY_PARALLEL_RESULT_QUEUE_SIZE,
+              OGlobalConfiguration.QUERY_PARALLEL_RESULT_QUEUE_SIZE.getDefValue());
+      database
+          .getConfiguration()
+          .setValue(
+              OGlobalConfiguration.QUERY_PARALLEL_CONSUMER_TIMEOUT,
+              OGlobalConfiguration.QUERY_PARALLEL_CONSUMER_TIMEOUT.getDefValue());
+    }
+  }
+
+  private List<ORID> fetchAll(OClass clazz, boolean parallel) {
+    OBasicCommandContext ctx = new OBasicCommandContext();
+    ctx.setDatabase(database);
+    List<OInternalExecutionPlan> subPlans = new ArrayList<>();
+    for (int clusterId : clazz.getClusterIds()) {
+      OSelectExecutionPlan subPlan = new OSelectExecutionPlan(ctx);
+      subPlan.chain(new FetchFromClusterExecutionStep(clusterId, ctx, false));
+      subPlans.add(subPlan);
+    }
+    if (!parallel) {
+      List<ORID> result = new ArrayList<>();
+      for (OInternalExecutionPlan subPlan : subPlans) {
+        OResultSet rs = subPlan.fetchNext(Integer.MAX_VALUE);
+        while (rs.hasNext()) {
+          result.add(rs.next().getIdentity().get());
+        }
+      }
+      return result;
+    }
+
+    ParallelExecStep step = new ParallelExecStep(subPlans, ctx, true, false);
+    List<ORID> result = new ArrayList<>();
+    OResultSet rs = step.syncPull(ctx, 10);
+    while (rs.hasNext()) {
+      while (rs.hasNext()) {
+        result.add(rs.next().getIdentity().get());
+      }
+      rs = step.syncPull(ctx, 10);
+    }
+    step.close();
+    return result;
+  }
 }
@@ -9,7 +9,10 @@ import com.orientechnologies.orient.core.db.OrientDBConfig;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.record.OEdge;
 import com.orientechnologies.orient.core.record.OVertex;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -84,4 +87,111 @@ public class OSQLFunctionDijkstraTest {
     assertEquals(v3, result.get(2));
     assertEquals(v4, result.get(3));
   }
+
+  @Test
+  public void testExecuteWithDirection() throws Exception {
+    final List<OVertex> result =
+        functionDijkstra.execute(
+            null, null, null, new Object[] {v4, v1, "'weight'", "IN"}, new OBasicCommandContext());
+
+    assertEquals(4, result.size());
+    assertEquals(v4, result.get(0));
+    assertEquals(v3, result.get(1));
+    assertEquals(v2, result.get(2));
+    assertEquals(v1, result.get(3));
+  }
+
+  @Test
+  public void testNoPath() throws Exception {
+    final List<OVertex> result =
+        functionDijkstra.execute(
+            null, null, null, new Object[] {v4, v1, "'weight'"}, new OBasicCommandContext());
+
+    assertEquals(0, result.size());
+  }
+
+  @Test
+  public void testNegativeWeight() throws Exception {
+    OEdge e5 = graph.newEdge(v2, v4, "weight");
+    e5.setProperty("weight", -5.0f);
+    e5.save();
+
+    final List<OVertex> result =
+        functionDijkstra.execute(
+            null, null, null, new Object[] {v1, v4, "'weight'"}, new OBasicCommandContext());
+
+    assertEquals(3, result.size());
+    assertEquals(v1, result.get(0));
+    assertEquals(v2, result.get(1));
+    assertEquals(v4, result.get(2));
+  }
+
+  @Test
+  public void testGrid() throws Exception {
+    final int size = 10;
+    final Random random = new Random(42);
+    final OVertex[] grid = new OVertex[size * size];
+    for (int i = 0; i < grid.length; i++) {
+      grid[i] = graph.newVertex();
+      grid[i].save();
+    }
+    final double[][] weights = new double[grid.length][grid.length];
+    for (double[] row : weights) {
+      Arrays.fill(row, Double.POSITIVE_INFINITY);
+    }
+    for (int i = 0; i < grid.length; i++) {
+      final List<Integer> neighbors = new ArrayList<>();
+      if (i % size < size - 1) {
+        neighbors.add(i + 1);
+      }
+      if (i + size < grid.length) {
+        neighbors.add(i + size);
+      }
+      for (int j : neighbors) {
+        final float weight = 1 + random.nextInt(20);
+        OEdge edge = graph.newEdge(grid[i], grid[j], "weight");
+        edge.setProperty("weight", weight);
+        edge.save();
+        weights[i][j] = weight;
+        weights[j][i] = weight;
+      }
+    }
+
+    final List<OVertex> result =
+        functionDijkstra.execute(
+            null,
+            null,
+            null,
+            new Object[] {grid[0], grid[grid.length - 1], "'weight'", "BOTH"},
+            new OBasicCommandContext());
+
+    assertEquals(grid[0], result.get(0));
+    assertEquals(grid[grid.length - 1], result.get(result.size() - 1));
+    final List<OVertex> vertices = Arrays.asList(grid);
+    double cost = 0;
+    for (int i = 1; i < result.size(); i++) {
+      cost += weights[vertices.indexOf(result.get(i - 1))][vertices.indexOf(result.get(i))];
+    }
+    assertEquals(shortestDistance(weights, 0, grid.length - 1), cost, 0);
+  }
+
+  private static double shortestDistance(double[][] weights, int from, int to) {
+    final double[] distances = new double[weights.length];
+    final boolean[] settled = new boolean[weights.length];
+    Arrays.fill(distances, Double.POSITIVE_INFINITY);
+    distances[from] = 0;
+    for (int step = 0; step < weights.length; step++) {
+      int current = -1;
+      for (int i = 0; i < weights.length; i++) {
+        if (!settled[i] && (current < 0 || distances[i] < distances[current])) {
+          current = i;
+        }
+      }
+      settled[current] = true;
+      for (int i = 0; i < weights.length; i++) {
+        distances[i] = Math.min(distances[i], distances[current] + weights[current][i]);
+      }
+    }
+    return distances[to];
+  }
 }
@@ -6,6 +6,7 @@ import com.orientechnologies.orient.core.db.OrientDB;
 import com.orientechnologies.orient.core.db.OrientDBConfig;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.OEdge;
 import com.orientechnologies.orient.core.record.OVertex;
 import java.util.HashMap;
 import java.util.List;
@@ -198,4 +199,24 @@ public class OSQLFunctionShortestPathTest {
 
     Assert.assertEquals(0, result.size());
   }
+
+  @Test
+  public void testWithEdges() throws Exception {
+    Map<String, Object> additionalParams = new HashMap<String, Object>();
+    additionalParams.put("edge", true);
+    final List<ORID> result =
+        function.execute(
+            null,
+            null,
+            null,
+            new Object[] {vertices.get(1), vertices.get(4), null, null, additionalParams},
+            new OBasicCommandContext());
+
+    Assert.assertEquals(5, result.size());
+    Assert.assertEquals(vertices.get(1).getIdentity(), result.get(0));
+    Assert.assertTrue(graph.load(result.get(1)) instanceof OEdge);
+    Assert.assertEquals(vertices.get(3).getIdentity(), result.get(2));
+    Assert.assertTrue(graph.load(result.get(3)) instanceof OEdge);
+    Assert.assertEquals(vertices.get(4).getIdentity(), result.get(4));
+  }
 }
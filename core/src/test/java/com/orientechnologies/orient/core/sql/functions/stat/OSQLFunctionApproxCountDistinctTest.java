@@ -0,0 +1,72 @@
+package com.orientechnologies.orient.core.sql.functions.stat;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OSQLFunctionApproxCountDistinctTest {
+
+  private OSQLFunctionApproxCountDistinct countDistinct;
+
+  @Before
+  public void beforeMethod() {
+    countDistinct = newCountDistinct(false);
+  }
+
+  private OSQLFunctionApproxCountDistinct newCountDistinct(boolean distributed) {
+    return new OSQLFunctionApproxCountDistinct() {
+      @Override
+      protected boolean returnDistributedResult() {
+        return distributed;
+      }
+    };
+  }
+
+  @Test
+  public void testEmpty() {
+    assertEquals(0L, countDistinct.getResult());
+  }
+
+  @Test
+  public void testFewValues() {
+    Object[] values = {null, 1, 2L, "a", null, 1, 2, "a", "b", 3.5};
+
+    for (Object value : values) {
+      countDistinct.execute(null, null, null, new Object[] {value}, null);
+    }
+
+    assertEquals(5L, countDistinct.getResult());
+  }
+
+  @Test
+  public void testManyValues() {
+    for (int i = 0; i < 1_000_000; i++) {
+      countDistinct.execute(null, null, null, new Object[] {"user" + (i % 300_000)}, null);
+    }
+
+    long result = (Long) countDistinct.getResult();
+    assertEquals(300_000, result, 300_000 * 0.03);
+  }
+
+  @Test
+  public void testMergeDistributedResult() {
+    List<Object> partials = new ArrayList<>();
+    for (int node = 0; node < 3; node++) {
+      OSQLFunctionApproxCountDistinct nodeCountDistinct = newCountDistinct(true);
+      // values overlap between nodes
+      for (int i = node * 10_000; i < node * 10_000 + 50_000; i++) {
+        nodeCountDistinct.execute(null, null, null, new Object[] {i}, null);
+      }
+      partials.add(nodeCountDistinct.getResult());
+    }
+    OSQLFunctionApproxCountDistinct small = newCountDistinct(true);
+    small.execute(null, null, null, new Object[] {1_000_000}, null);
+    partials.add(small.getResult());
+
+    Object result = newCountDistinct(true).mergeDistributedResult(partials);
+    assertEquals(70_001, (Long) result, 70_001 * 0.03);
+  }
+}
@@ -0,0 +1,107 @@
+package com.orientechnologies.orient.core.sql.functions.stat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OSQLFunctionPercentileApproxTest {
+
+  private OSQLFunctionPercentileApprox percentile;
+
+  @Before
+  public void beforeMethod() {
+    percentile = newPercentile(false);
+  }
+
+  private OSQLFunctionPercentileApprox newPercentile(boolean distributed) {
+    return new OSQLFunctionPercentileApprox() {
+      @Override
+      protected boolean returnDistributedResult() {
+        return distributed;
+      }
+    };
+  }
+
+  @Test
+  public void testEmpty() {
+    Object result = percentile.getResult();
+    assertNull(result);
+  }
+
+  @Test
+  public void testSingleValue() {
+    percentile.execute(null, null, null, new Object[] {10, .25}, null);
+    assertEquals(10.0, percentile.getResult());
+  }
+
+  @Test
+  public void testFewValuesAreExact() {
+    Integer[] scores = {null, 1, 2, null, 3, 4, null, 5};
+
+    for (Integer s : scores) {
+      percentile.execute(null, null, null, new Object[] {s, .25, .5, .75}, null);
+    }
+
+    List<Number> result = (List<Number>) percentile.getResult();
+    assertEquals(1.5, result.get(0).doubleValue(), 0);
+    assertEquals(3.0, result.get(1).doubleValue(), 0);
+    assertEquals(4.5, result.get(2).doubleValue(), 0);
+  }
+
+  @Test
+  public void testMedian() {
+    OSQLFunctionMedianApprox median =
+        new OSQLFunctionMedianApprox() {
+          @Override
+          protected boolean returnDistributedResult() {
+            return false;
+          }
+        };
+    for (int s : new int[] {1, 2, 4, 5}) {
+      median.execute(null, null, null, new Object[] {s}, null);
+    }
+    assertEquals(3.0, median.getResult());
+  }
+
+  @Test
+  public void testLargeDistribution() {
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      values.add(i);
+    }
+    Collections.shuffle(values, new Random(42));
+    for (Integer value : values) {
+      percentile.execute(null, null, null, new Object[] {value, .5, .99, .999}, null);
+    }
+
+    List<Number> result = (List<Number>) percentile.getResult();
+    assertEquals(50_000, result.get(0).doubleValue(), 500);
+    assertEquals(99_000, result.get(1).doubleValue(), 100);
+    assertEquals(99_900, result.get(2).doubleValue(), 20);
+  }
+
+  @Test
+  public void testMergeDistributedResult() {
+    Random random = new Random(42);
+    List<Object> partials = new ArrayList<>();
+    for (int node = 0; node < 3; node++) {
+      OSQLFunctionPercentileApprox nodePercentile = newPercentile(true);
+      for (int i = 0; i < 10_000; i++) {
+        nodePercentile.execute(
+            null, null, null, new Object[] {random.nextDouble() * 1000, .9}, null);
+      }
+      partials.add(nodePercentile.getResult());
+    }
+
+    OSQLFunctionPercentileApprox merger = newPercentile(true);
+    merger.execute(null, null, null, new Object[] {null, .9}, null);
+    Object result = merger.mergeDistributedResult(partials);
+    assertEquals(900, ((Number) result).doubleValue(), 10);
+  }
+}
@@ -717,6 +717,26 @@ public class OSelectStatementTest {
     System.out.println(stm2);
   }
 
+  @Test
+  public void testBatchEvaluable() {
+    assertTrue(isBatchEvaluable("select from V where a = 'foo' and (b > 1 or not (c < 2))"));
+    assertTrue(isBatchEvaluable("select from V where name = 'pay$(x)' and `a$b` = 1"));
+    assertTrue(isBatchEvaluable("select from V where out('E') contains #12:0"));
+    assertFalse(isBatchEvaluable("select from V where out('E').size() > 0"));
+    assertFalse(isBatchEvaluable("select from V where name.length() = 3"));
+    assertFalse(isBatchEvaluable("select from V where foo(name) = 3"));
+    assertFalse(isBatchEvaluable("select from V where $current.name = 'foo'"));
+    assertFalse(isBatchEvaluable("select from V where name = $CURRENT.surname"));
+    assertFalse(
+        isBatchEvaluable(
+            "select from V where name in (select name from W where a = $parent.$current.a)"));
+  }
+
+  private boolean isBatchEvaluable(String query) {
+    OSelectStatement stm = (OSelectStatement) checkRightSyntax(query);
+    return stm.whereClause.isBatchEvaluable();
+  }
+
   @Test
   public void testTranslateLucene() {
     OSelectStatement stm =
@@ -0,0 +1,182 @@
+package com.orientechnologies.orient.core.storage.cache.chm;
+
+import com.orientechnologies.common.directmemory.OByteBufferPool;
+import com.orientechnologies.common.directmemory.ODirectMemoryAllocator;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.cache.OCachePointer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncReadCacheReadAheadTest {
+  private static final int PAGE_SIZE = 4 * 1024;
+
+  @Test
+  public void testSequentialReadIsPrefetched() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final ArrayDeque<Runnable> prefetchTasks = new ArrayDeque<>();
+    final AsyncReadCache readCache =
+        new AsyncReadCache(
+            byteBufferPool, 64L * 1024 * 1024, PAGE_SIZE, true, 32, 0, 1, prefetchTasks::add);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+
+    final int pages = 2048;
+    for (int i = 0; i < pages; i++) {
+      final OCacheEntry cacheEntry = readCache.loadForRead(1, i, true, writeCache, true);
+      readCache.releaseFromRead(cacheEntry, writeCache);
+
+      // prefetch is completed before the next page is requested
+      drain(prefetchTasks);
+    }
+
+    // read-ahead starts after three missed pages, size of the group is doubled up to the limit,
+    // the next group is requested once the first page of the previous one is read
+    final List<String> expected = new ArrayList<>();
+    int start = 3;
+    int count = 8;
+    expected.add(start + ":" + count);
+    while (start < pages) {
+      start += count;
+      count = Math.min(2 * count, 32);
+      expected.add(start + ":" + count);
+    }
+
+    Assert.assertEquals(expected, requests(writeCache));
+    Assert.assertEquals(3, writeCache.loadedPages.sum() - writeCache.prefetchedPages.sum());
+
+    readCache.clear();
+    readCache.assertSize();
+    Assert.assertEquals(0, readCache.getUsedMemory());
+  }
+
+  @Test
+  public void testPrefetchedPageIsReplacedByPageOfWriteCache() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final ArrayDeque<Runnable> prefetchTasks = new ArrayDeque<>();
+    final AsyncReadCache readCache =
+        new AsyncReadCache(
+            byteBufferPool, 64L * 1024 * 1024, PAGE_SIZE, true, 32, 0, 1, prefetchTasks::add);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+
+    final OCachePointer changedPage =
+        new OCachePointer(byteBufferPool.acquireDirect(true), byteBufferPool, 1, 5);
+    changedPage.incrementReadersReferrer();
+
+    // page is changed and stored in write cache while the group of pages is loaded
+    writeCache.afterLoadPages = () -> writeCache.cachedPages.put(5L, changedPage);
+
+    for (int i = 0; i < 3; i++) {
+      final OCacheEntry cacheEntry = readCache.loadForRead(1, i, true, writeCache, true);
+      readCache.releaseFromRead(cacheEntry, writeCache);
+    }
+    drain(prefetchTasks);
+    Assert.assertEquals(Collections.singletonList("3:8"), requests(writeCache));
+
+    final long loadedPages = writeCache.loadedPages.sum();
+    final OCacheEntry cacheEntry = readCache.loadForRead(1, 5, true, writeCache, true);
+    Assert.assertSame(changedPage, cacheEntry.getCachePointer());
+    Assert.assertEquals(loadedPages, writeCache.loadedPages.sum());
+    readCache.releaseFromRead(cacheEntry, writeCache);
+
+    readCache.clear();
+    changedPage.decrementReadersReferrer();
+    Assert.assertEquals(0, readCache.getUsedMemory());
+  }
+
+  @Test
+  public void testPrefetchedPagesAreSkippedIfPagesWereFlushed() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final ArrayDeque<Runnable> prefetchTasks = new ArrayDeque<>();
+    final AsyncReadCache readCache =
+        new AsyncReadCache(
+            byteBufferPool, 64L * 1024 * 1024, PAGE_SIZE, true, 32, 0, 1, prefetchTasks::add);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+
+    // changed pages are flushed and removed from write cache while the group of pages is loaded
+    writeCache.afterLoadPages = () -> writeCache.removedPages++;
+
+    for (int i = 0; i < 3; i++) {
+      final OCacheEntry cacheEntry = readCache.loadForRead(1, i, true, writeCache, true);
+      readCache.releaseFromRead(cacheEntry, writeCache);
+    }
+    drain(prefetchTasks);
+    Assert.assertEquals(Collections.singletonList("3:8"), requests(writeCache));
+
+    // loaded pages could be stale, so they are loaded again once they are requested
+    final long loadedPages = writeCache.loadedPages.sum();
+    final OCacheEntry cacheEntry = readCache.loadForRead(1, 5, true, writeCache, true);
+    Assert.assertEquals(loadedPages + 1, writeCache.loadedPages.sum());
+    readCache.releaseFromRead(cacheEntry, writeCache);
+
+    readCache.clear();
+    Assert.assertEquals(0, readCache.getUsedMemory());
+  }
+
+  @Test
+  public void testRandomReadIsNotPrefetched() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final AsyncReadCache readCache =
+        new AsyncReadCache(byteBufferPool, 64L * 1024 * 1024, PAGE_SIZE, true, 32, 0, 1);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < 2048; i++) {
+      // pages are never adjacent
+      final OCacheEntry cacheEntry =
+          readCache.loadForRead(1, 4 * random.nextInt(1 << 20), true, writeCache, true);
+      readCache.releaseFromRead(cacheEntry, writeCache);
+    }
+
+    Assert.assertEquals(0, writeCache.prefetchedPages.sum());
+
+    readCache.clear();
+    Assert.assertEquals(0, readCache.getUsedMemory());
+  }
+
+  @Test
+  public void testReadAheadIsSwitchedOff() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final AsyncReadCache readCache =
+        new AsyncReadCache(byteBufferPool, 64L * 1024 * 1024, PAGE_SIZE, true);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+
+    for (int i = 0; i < 1024; i++) {
+      final OCacheEntry cacheEntry = readCache.loadForRead(1, i, true, writeCache, true);
+      readCache.releaseFromRead(cacheEntry, writeCache);
+    }
+
+    Assert.assertEquals(0, writeCache.prefetchedPages.sum());
+    Assert.assertEquals(1024, writeCache.loadedPages.sum());
+
+    readCache.clear();
+  }
+
+  private static void drain(final ArrayDeque<Runnable> tasks) {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private static List<String> requests(final TrackingWriteCache writeCache) {
+    final List<String> requests = new ArrayList<>();
+    for (final long[] request : writeCache.prefetchRequests) {
+      requests.add(request[0] + ":" + request[1]);
+    }
+    return requests;
+  }
+}
@@ -0,0 +1,113 @@
+package com.orientechnologies.orient.core.storage.cache.chm;
+
+import com.orientechnologies.common.directmemory.OByteBufferPool;
+import com.orientechnologies.common.directmemory.ODirectMemoryAllocator;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.cache.OPageAccessIntent;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncReadCacheScanTest {
+  private static final int PAGE_SIZE = 4 * 1024;
+  private static final int CACHE_PAGES = 1024;
+  private static final int SCAN_RING_PAGES = 64;
+
+  @Test
+  public void testScanDoesNotFlushWorkingSet() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final AsyncReadCache readCache =
+        new AsyncReadCache(
+            byteBufferPool, (long) CACHE_PAGES * PAGE_SIZE, PAGE_SIZE, true, 0, SCAN_RING_PAGES, 1);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+
+    final int hotPages = 400;
+    for (int n = 0; n < 3; n++) {
+      for (int i = 0; i < hotPages; i++) {
+        final OCacheEntry cacheEntry = readCache.loadForRead(1, i, true, writeCache, true);
+        readCache.releaseFromRead(cacheEntry, writeCache);
+      }
+    }
+
+    Assert.assertEquals(hotPages, writeCache.loadedPages.sum());
+
+    final OPageAccessIntent prevIntent = readCache.setAccessIntent(OPageAccessIntent.SCAN);
+    Assert.assertEquals(OPageAccessIntent.NORMAL, prevIntent);
+    try {
+      for (int i = 0; i < 10 * CACHE_PAGES; i++) {
+        final OCacheEntry cacheEntry = readCache.loadForRead(2, i, true, writeCache, true);
+        readCache.releaseFromRead(cacheEntry, writeCache);
+      }
+    } finally {
+      readCache.setAccessIntent(prevIntent);
+    }
+
+    readCache.assertSize();
+    readCache.assertConsistency();
+    Assert.assertTrue(
+        readCache.getUsedMemory() <= (long) (hotPages + SCAN_RING_PAGES) * PAGE_SIZE);
+
+    final long loadedPages = writeCache.loadedPages.sum();
+    for (int i = 0; i < hotPages; i++) {
+      final OCacheEntry cacheEntry = readCache.loadForRead(1, i, true, writeCache, true);
+      readCache.releaseFromRead(cacheEntry, writeCache);
+    }
+
+    Assert.assertEquals(loadedPages, writeCache.loadedPages.sum());
+
+    readCache.clear();
+    readCache.assertSize();
+    Assert.assertEquals(0, readCache.getUsedMemory());
+  }
+
+  @Test
+  public void testScannedPageRequestedByOtherOperationIsKept() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final AsyncReadCache readCache =
+        new AsyncReadCache(
+            byteBufferPool, (long) CACHE_PAGES * PAGE_SIZE, PAGE_SIZE, true, 0, SCAN_RING_PAGES, 1);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+
+    // initializes buffer of read events, the first event is consumed by its creation
+    for (int i = 0; i < 2; i++) {
+      final OCacheEntry cacheEntry = readCache.loadForRead(3, 0, true, writeCache, true);
+      readCache.releaseFromRead(cacheEntry, writeCache);
+    }
+
+    OPageAccessIntent prevIntent = readCache.setAccessIntent(OPageAccessIntent.SCAN);
+    try {
+      final OCacheEntry cacheEntry = readCache.loadForRead(1, 0, true, writeCache, true);
+      readCache.releaseFromRead(cacheEntry, writeCache);
+    } finally {
+      readCache.setAccessIntent(prevIntent);
+    }
+
+    OCacheEntry cacheEntry = readCache.loadForRead(1, 0, true, writeCache, true);
+    readCache.releaseFromRead(cacheEntry, writeCache);
+
+    prevIntent = readCache.setAccessIntent(OPageAccessIntent.SCAN);
+    try {
+      for (int i = 0; i < 10 * SCAN_RING_PAGES; i++) {
+        cacheEntry = readCache.loadForRead(2, i, true, writeCache, true);
+        readCache.releaseFromRead(cacheEntry, writeCache);
+      }
+    } finally {
+      readCache.setAccessIntent(prevIntent);
+    }
+
+    readCache.assertSize();
+    readCache.assertConsistency();
+
+    final long loadedPages = writeCache.loadedPages.sum();
+    cacheEntry = readCache.loadForRead(1, 0, true, writeCache, true);
+    readCache.releaseFromRead(cacheEntry, writeCache);
+
+    Assert.assertEquals(loadedPages, writeCache.loadedPages.sum());
+
+    readCache.clear();
+    Assert.assertEquals(0, readCache.getUsedMemory());
+  }
+}
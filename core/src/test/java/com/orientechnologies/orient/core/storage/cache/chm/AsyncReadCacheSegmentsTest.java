@@ -0,0 +1,108 @@
+package com.orientechnologies.orient.core.storage.cache.chm;
+
+import com.orientechnologies.common.directmemory.OByteBufferPool;
+import com.orientechnologies.common.directmemory.ODirectMemoryAllocator;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AsyncReadCacheSegmentsTest {
+  private static final int PAGE_SIZE = 4 * 1024;
+  private static final int SEGMENTS = 8;
+
+  @Test
+  public void testPagesAreSpreadOverSegments() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+    final long maxMemory = 16L * 1024 * 1024;
+
+    final AsyncReadCache readCache =
+        new AsyncReadCache(byteBufferPool, maxMemory, PAGE_SIZE, true, 0, 0, SEGMENTS);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+
+    Assert.assertEquals(SEGMENTS, readCache.getSegments());
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    final List<Future<Void>> futures = new ArrayList<>();
+    for (int n = 0; n < 4; n++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 100_000; i++) {
+                  final OCacheEntry cacheEntry =
+                      readCache.loadForRead(
+                          random.nextInt(4), random.nextInt(8 * 1024), true, writeCache, true);
+                  readCache.releaseFromRead(cacheEntry, writeCache);
+                }
+
+                return null;
+              }));
+    }
+
+    for (final Future<Void> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    readCache.assertSize();
+    readCache.assertConsistency();
+
+    Assert.assertTrue(readCache.getUsedMemory() <= maxMemory);
+
+    long requests = 0;
+    long cachedPages = 0;
+    for (int i = 0; i < SEGMENTS; i++) {
+      Assert.assertTrue(readCache.getSize(i) > 0);
+      Assert.assertTrue(readCache.getEvictions(i) > 0);
+
+      requests += readCache.getHits(i) + readCache.getMisses(i);
+      cachedPages += readCache.getSize(i);
+    }
+
+    Assert.assertEquals(4 * 100_000, requests);
+    Assert.assertEquals(readCache.getUsedMemory(), cachedPages * PAGE_SIZE);
+
+    readCache.clear();
+    Assert.assertEquals(0, readCache.getUsedMemory());
+    Assert.assertEquals(
+        0, allocator.getMemoryConsumption() - byteBufferPool.getPoolSize() * PAGE_SIZE);
+  }
+
+  @Test
+  public void testClearFileRemovesPagesFromAllSegments() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final AsyncReadCache readCache =
+        new AsyncReadCache(byteBufferPool, 16L * 1024 * 1024, PAGE_SIZE, true, 0, 0, SEGMENTS);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+
+    for (int i = 0; i < 1024; i++) {
+      final OCacheEntry cacheEntry = readCache.loadForRead(1, i, true, writeCache, true);
+      readCache.releaseFromRead(cacheEntry, writeCache);
+    }
+
+    Assert.assertEquals(1024L * PAGE_SIZE, readCache.getUsedMemory());
+
+    writeCache.filledUpTo = 1024;
+    readCache.truncateFile(1, writeCache);
+
+    readCache.assertSize();
+    Assert.assertEquals(0, readCache.getUsedMemory());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAmountOfSegmentsShouldBePowerOfTwo() {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    new AsyncReadCache(byteBufferPool, 16L * 1024 * 1024, PAGE_SIZE, true, 0, 0, 3);
+  }
+}
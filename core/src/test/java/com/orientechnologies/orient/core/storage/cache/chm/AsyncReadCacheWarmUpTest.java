@@ -0,0 +1,200 @@
+package com.orientechnologies.orient.core.storage.cache.chm;
+
+import com.orientechnologies.common.directmemory.OByteBufferPool;
+import com.orientechnologies.common.directmemory.ODirectMemoryAllocator;
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.cache.OPageAccessIntent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AsyncReadCacheWarmUpTest {
+  private static final int PAGE_SIZE = 4 * 1024;
+  private static final int CACHE_PAGES = 1024;
+
+  private static Path buildDirectoryPath;
+
+  @BeforeClass
+  public static void beforeClass() {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null || buildDirectory.isEmpty()) buildDirectory = ".";
+
+    buildDirectory += File.separator + AsyncReadCacheWarmUpTest.class.getSimpleName();
+    buildDirectoryPath = Paths.get(buildDirectory);
+  }
+
+  @Before
+  public void before() throws Exception {
+    OFileUtils.deleteRecursively(buildDirectoryPath.toFile());
+    Files.createDirectories(buildDirectoryPath);
+  }
+
+  @Test
+  public void testHotPagesAreLoadedAfterRestart() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final AsyncReadCache readCache =
+        new AsyncReadCache(
+            byteBufferPool, (long) CACHE_PAGES * PAGE_SIZE, PAGE_SIZE, true, 0, 64, 2);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+    writeCache.rootDirectory = buildDirectoryPath;
+
+    final int hotPages = 300;
+    for (int n = 0; n < 3; n++) {
+      for (int i = 0; i < hotPages; i++) {
+        final OCacheEntry cacheEntry =
+            readCache.loadForRead(1 + i % 2, i / 2, true, writeCache, true);
+        readCache.releaseFromRead(cacheEntry, writeCache);
+      }
+    }
+
+    final OPageAccessIntent prevIntent = readCache.setAccessIntent(OPageAccessIntent.SCAN);
+    try {
+      for (int i = 0; i < 32; i++) {
+        final OCacheEntry cacheEntry = readCache.loadForRead(3, i, true, writeCache, true);
+        readCache.releaseFromRead(cacheEntry, writeCache);
+      }
+    } finally {
+      readCache.setAccessIntent(prevIntent);
+    }
+
+    readCache.storeCacheState(writeCache);
+    Assert.assertTrue(Files.exists(buildDirectoryPath.resolve(AsyncReadCache.CACHE_STATE_FILE)));
+
+    readCache.clear();
+
+    final AsyncReadCache nextReadCache =
+        new AsyncReadCache(
+            byteBufferPool, (long) CACHE_PAGES * PAGE_SIZE, PAGE_SIZE, true, 0, 64, 2);
+    final TrackingWriteCache nextWriteCache = new TrackingWriteCache(byteBufferPool);
+    nextWriteCache.rootDirectory = buildDirectoryPath;
+
+    nextReadCache.loadCacheState(nextWriteCache);
+    nextReadCache.waitForWarmUp(nextWriteCache);
+
+    nextReadCache.assertSize();
+    nextReadCache.assertConsistency();
+
+    Assert.assertEquals(hotPages, nextWriteCache.loadedPages.sum());
+    Assert.assertEquals((long) hotPages * PAGE_SIZE, nextReadCache.getUsedMemory());
+
+    for (int i = 0; i < hotPages; i++) {
+      final OCacheEntry cacheEntry =
+          nextReadCache.loadForRead(1 + i % 2, i / 2, true, nextWriteCache, true);
+      nextReadCache.releaseFromRead(cacheEntry, nextWriteCache);
+    }
+
+    Assert.assertEquals(hotPages, nextWriteCache.loadedPages.sum());
+
+    // pages loaded by scan are not part of the working set
+    final OCacheEntry cacheEntry = nextReadCache.loadForRead(3, 0, true, nextWriteCache, true);
+    nextReadCache.releaseFromRead(cacheEntry, nextWriteCache);
+
+    Assert.assertEquals(hotPages + 1, nextWriteCache.loadedPages.sum());
+
+    nextReadCache.clear();
+    Assert.assertEquals(0, nextReadCache.getUsedMemory());
+  }
+
+  @Test
+  public void testTruncationStopsWarmUpOfSingleFile() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final AsyncReadCache readCache =
+        new AsyncReadCache(
+            byteBufferPool, (long) CACHE_PAGES * PAGE_SIZE, PAGE_SIZE, true, 0, 0, 1);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+    writeCache.rootDirectory = buildDirectoryPath;
+
+    final int filePages = 100;
+    for (int n = 0; n < 3; n++) {
+      for (int i = 0; i < 2 * filePages; i++) {
+        final OCacheEntry cacheEntry =
+            readCache.loadForRead(1 + i / filePages, i % filePages, true, writeCache, true);
+        readCache.releaseFromRead(cacheEntry, writeCache);
+      }
+    }
+
+    readCache.storeCacheState(writeCache);
+    readCache.clear();
+
+    final AsyncReadCache nextReadCache =
+        new AsyncReadCache(
+            byteBufferPool, (long) CACHE_PAGES * PAGE_SIZE, PAGE_SIZE, true, 0, 0, 1);
+    final TrackingWriteCache nextWriteCache = new TrackingWriteCache(byteBufferPool);
+    nextWriteCache.rootDirectory = buildDirectoryPath;
+
+    // pages are loaded in file order, so the second file is truncated before its pages are loaded
+    final AtomicBoolean truncated = new AtomicBoolean();
+    nextWriteCache.afterLoadPages =
+        () -> {
+          if (truncated.compareAndSet(false, true)) {
+            try {
+              nextReadCache.truncateFile(2, nextWriteCache);
+            } catch (final IOException e) {
+              throw new IllegalStateException(e);
+            }
+          }
+        };
+
+    nextReadCache.loadCacheState(nextWriteCache);
+    nextReadCache.waitForWarmUp(nextWriteCache);
+
+    Assert.assertTrue(truncated.get());
+    Assert.assertEquals(filePages, nextWriteCache.loadedPages.sum());
+    Assert.assertEquals((long) filePages * PAGE_SIZE, nextReadCache.getUsedMemory());
+
+    for (int i = 0; i < filePages; i++) {
+      final OCacheEntry cacheEntry = nextReadCache.loadForRead(1, i, true, nextWriteCache, true);
+      nextReadCache.releaseFromRead(cacheEntry, nextWriteCache);
+    }
+
+    Assert.assertEquals(filePages, nextWriteCache.loadedPages.sum());
+
+    nextReadCache.clear();
+    Assert.assertEquals(0, nextReadCache.getUsedMemory());
+  }
+
+  @Test
+  public void testBrokenStateIsIgnored() throws Exception {
+    final ODirectMemoryAllocator allocator = new ODirectMemoryAllocator();
+    final OByteBufferPool byteBufferPool = new OByteBufferPool(PAGE_SIZE, allocator, 256);
+
+    final AsyncReadCache readCache =
+        new AsyncReadCache(
+            byteBufferPool, (long) CACHE_PAGES * PAGE_SIZE, PAGE_SIZE, true, 0, 0, 1);
+    final TrackingWriteCache writeCache = new TrackingWriteCache(byteBufferPool);
+    writeCache.rootDirectory = buildDirectoryPath;
+
+    for (int i = 0; i < 16; i++) {
+      final OCacheEntry cacheEntry = readCache.loadForRead(1, i, true, writeCache, true);
+      readCache.releaseFromRead(cacheEntry, writeCache);
+    }
+
+    readCache.storeCacheState(writeCache);
+    readCache.clear();
+
+    final Path stateFile = buildDirectoryPath.resolve(AsyncReadCache.CACHE_STATE_FILE);
+    final byte[] state = Files.readAllBytes(stateFile);
+    state[state.length / 2]++;
+    Files.write(stateFile, state);
+
+    final long loadedPages = writeCache.loadedPages.sum();
+
+    readCache.loadCacheState(writeCache);
+    readCache.waitForWarmUp(writeCache);
+
+    Assert.assertEquals(loadedPages, writeCache.loadedPages.sum());
+    Assert.assertEquals(0, readCache.getUsedMemory());
+  }
+}
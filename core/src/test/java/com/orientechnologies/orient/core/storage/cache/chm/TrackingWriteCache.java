@@ -0,0 +1,295 @@
+package com.orientechnologies.orient.core.storage.cache.chm;
+
+import com.orientechnologies.common.directmemory.OByteBufferPool;
+import com.orientechnologies.common.directmemory.OPointer;
+import com.orientechnologies.common.types.OModifiableBoolean;
+import com.orientechnologies.orient.core.command.OCommandOutputListener;
+import com.orientechnologies.orient.core.storage.cache.OCachePointer;
+import com.orientechnologies.orient.core.storage.cache.OPageDataVerificationError;
+import com.orientechnologies.orient.core.storage.cache.OWriteCache;
+import com.orientechnologies.orient.core.storage.cache.local.OBackgroundExceptionListener;
+import com.orientechnologies.orient.core.storage.impl.local.OLowDiskSpaceListener;
+import com.orientechnologies.orient.core.storage.impl.local.OPageIsBrokenListener;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write cache which keeps pages only in memory and counts loaded pages, so tests can check which
+ * pages are read by read-ahead, scans and warm up of read cache.
+ */
+final class TrackingWriteCache implements OWriteCache {
+  private final OByteBufferPool byteBufferPool;
+
+  final LongAdder loadedPages = new LongAdder();
+  final LongAdder prefetchedPages = new LongAdder();
+
+  /** Start page index and amount of pages of each call of {@link #loadPages}. */
+  final List<long[]> prefetchRequests = new CopyOnWriteArrayList<>();
+
+  /** Pages held by write cache, keys are page indexes. */
+  final Map<Long, OCachePointer> cachedPages = new ConcurrentHashMap<>();
+
+  volatile long removedPages;
+  volatile Runnable afterLoadPages;
+
+  volatile long filledUpTo;
+
+  volatile Path rootDirectory;
+
+  TrackingWriteCache(final OByteBufferPool byteBufferPool) {
+    this.byteBufferPool = byteBufferPool;
+  }
+
+  @Override
+  public void addPageIsBrokenListener(final OPageIsBrokenListener listener) {}
+
+  @Override
+  public void removePageIsBrokenListener(final OPageIsBrokenListener listener) {}
+
+  @Override
+  public void addLowDiskSpaceListener(final OLowDiskSpaceListener listener) {}
+
+  @Override
+  public void removeLowDiskSpaceListener(final OLowDiskSpaceListener listener) {}
+
+  @Override
+  public long bookFileId(final String fileName) {
+    return 0;
+  }
+
+  @Override
+  public long loadFile(final String fileName) {
+    return 0;
+  }
+
+  @Override
+  public long addFile(final String fileName) {
+    return 0;
+  }
+
+  @Override
+  public long addFile(final String fileName, final long fileId) {
+    return 0;
+  }
+
+  @Override
+  public long fileIdByName(final String fileName) {
+    return 0;
+  }
+
+  @Override
+  public boolean checkLowDiskSpace() {
+    return false;
+  }
+
+  @Override
+  public void makeFuzzyCheckpoint(long segmentId, byte[] lastMetadata) throws IOException {}
+
+  @Override
+  public void flushTillSegment(final long segmentId) {}
+
+  @Override
+  public boolean exists(final String fileName) {
+    return false;
+  }
+
+  @Override
+  public boolean exists(final long fileId) {
+    return true;
+  }
+
+  @Override
+  public void restoreModeOn() {}
+
+  @Override
+  public void restoreModeOff() {}
+
+  @Override
+  public void store(final long fileId, final long pageIndex, final OCachePointer dataPointer) {}
+
+  @Override
+  public void checkCacheOverflow() {}
+
+  @Override
+  public int allocateNewPage(final long fileId) {
+    return 0;
+  }
+
+  @Override
+  public OCachePointer load(
+      final long fileId,
+      final long startPageIndex,
+      final OModifiableBoolean cacheHit,
+      final boolean verifyChecksums) {
+    loadedPages.increment();
+
+    final OCachePointer cachedPointer = cachedPages.get(startPageIndex);
+    if (cachedPointer != null) {
+      cachedPointer.incrementReadersReferrer();
+      return cachedPointer;
+    }
+
+    final OPointer pointer = byteBufferPool.acquireDirect(true);
+    final OCachePointer cachePointer =
+        new OCachePointer(pointer, byteBufferPool, fileId, (int) startPageIndex);
+    cachePointer.incrementReadersReferrer();
+    return cachePointer;
+  }
+
+  @Override
+  public List<OCachePointer> loadPages(
+      final long fileId,
+      final long startPageIndex,
+      final int pageCount,
+      final boolean verifyChecksums)
+      throws IOException {
+    prefetchedPages.add(pageCount);
+    prefetchRequests.add(new long[] {startPageIndex, pageCount});
+
+    final List<OCachePointer> pointers =
+        OWriteCache.super.loadPages(fileId, startPageIndex, pageCount, verifyChecksums);
+
+    final Runnable listener = afterLoadPages;
+    if (listener != null) {
+      listener.run();
+    }
+
+    return pointers;
+  }
+
+  @Override
+  public OCachePointer loadIfCached(final long fileId, final long pageIndex) {
+    final OCachePointer pointer = cachedPages.get(pageIndex);
+    if (pointer != null) {
+      pointer.incrementReadersReferrer();
+    }
+
+    return pointer;
+  }
+
+  @Override
+  public long getRemovedPagesCount() {
+    return removedPages;
+  }
+
+  @Override
+  public void flush(final long fileId) {}
+
+  @Override
+  public void flush() {}
+
+  @Override
+  public long getFilledUpTo(final long fileId) {
+    return filledUpTo;
+  }
+
+  @Override
+  public long getExclusiveWriteCachePagesSize() {
+    return 0;
+  }
+
+  @Override
+  public void deleteFile(final long fileId) {}
+
+  @Override
+  public void truncateFile(final long fileId) {}
+
+  @Override
+  public void renameFile(final long fileId, final String newFileName) {}
+
+  @Override
+  public long[] close() {
+    return new long[0];
+  }
+
+  @Override
+  public void close(final long fileId, final boolean flush) {}
+
+  @Override
+  public OPageDataVerificationError[] checkStoredPages(
+      final OCommandOutputListener commandOutputListener) {
+    return new OPageDataVerificationError[0];
+  }
+
+  @Override
+  public long[] delete() {
+    return new long[0];
+  }
+
+  @Override
+  public String fileNameById(final long fileId) {
+    return null;
+  }
+
+  @Override
+  public String nativeFileNameById(final long fileId) {
+    return null;
+  }
+
+  @Override
+  public int getId() {
+    return 0;
+  }
+
+  @Override
+  public Map<String, Long> files() {
+    return null;
+  }
+
+  @Override
+  public int pageSize() {
+    return 0;
+  }
+
+  @Override
+  public boolean fileIdsAreEqual(final long firsId, final long secondId) {
+    return false;
+  }
+
+  @Override
+  public String restoreFileById(final long fileId) {
+    return null;
+  }
+
+  @Override
+  public void addBackgroundExceptionListener(final OBackgroundExceptionListener listener) {}
+
+  @Override
+  public void removeBackgroundExceptionListener(final OBackgroundExceptionListener listener) {}
+
+  @Override
+  public Path getRootDirectory() {
+    return rootDirectory;
+  }
+
+  @Override
+  public int internalFileId(final long fileId) {
+    return (int) fileId;
+  }
+
+  @Override
+  public long externalFileId(final int fileId) {
+    return fileId;
+  }
+
+  @Override
+  public Long getMinimalNotFlushedSegment() {
+    return null;
+  }
+
+  @Override
+  public void updateDirtyPagesTable(
+      final OCachePointer pointer, final OLogSequenceNumber startLSN) {}
+
+  @Override
+  public void create() throws IOException {}
+
+  @Override
+  public void open() throws IOException {}
+}
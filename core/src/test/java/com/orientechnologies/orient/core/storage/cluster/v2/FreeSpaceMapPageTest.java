@@ -0,0 +1,107 @@
+package com.orientechnologies.orient.core.storage.cluster.v2;
+
+import com.orientechnologies.common.directmemory.OByteBufferPool;
+import com.orientechnologies.common.directmemory.OPointer;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntryImpl;
+import com.orientechnologies.orient.core.storage.cache.OCachePointer;
+import com.orientechnologies.orient.core.storage.cluster.OClusterPage;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FreeSpaceMapPageTest {
+  @Test
+  public void testEmptyPage() {
+    final OByteBufferPool bufferPool = OByteBufferPool.instance(null);
+    final OPointer pointer = bufferPool.acquireDirect(true);
+
+    final OCachePointer cachePointer = new OCachePointer(pointer, bufferPool, 0, 0);
+    cachePointer.incrementReferrer();
+
+    final OCacheEntry cacheEntry = new OCacheEntryImpl(0, 0, cachePointer);
+    cacheEntry.acquireExclusiveLock();
+    try {
+      final FreeSpaceMapPage page = new FreeSpaceMapPage(cacheEntry);
+      page.init();
+
+      Assert.assertEquals(0, page.getMaxCategory());
+      Assert.assertEquals(-1, page.findCell(1));
+      Assert.assertEquals(0, page.findCell(0));
+    } finally {
+      cacheEntry.releaseExclusiveLock();
+      cachePointer.decrementReferrer();
+    }
+  }
+
+  @Test
+  public void testFindCell() {
+    final OByteBufferPool bufferPool = OByteBufferPool.instance(null);
+    final OPointer pointer = bufferPool.acquireDirect(true);
+
+    final OCachePointer cachePointer = new OCachePointer(pointer, bufferPool, 0, 0);
+    cachePointer.incrementReferrer();
+
+    final OCacheEntry cacheEntry = new OCacheEntryImpl(0, 0, cachePointer);
+    cacheEntry.acquireExclusiveLock();
+    try {
+      final FreeSpaceMapPage page = new FreeSpaceMapPage(cacheEntry);
+      page.init();
+
+      final long seed = System.nanoTime();
+      System.out.println("testFindCell seed : " + seed);
+      final Random random = new Random(seed);
+
+      final int[] categories = new int[FreeSpaceMapPage.CELLS_PER_PAGE];
+      for (int i = 0; i < 100_000; i++) {
+        final int cell = random.nextInt(categories.length);
+        final int category = random.nextInt(256);
+
+        categories[cell] = category;
+        final int maxCategory = page.setCategory(cell, category);
+
+        int expectedMax = 0;
+        for (final int c : categories) {
+          expectedMax = Math.max(expectedMax, c);
+        }
+        Assert.assertEquals(expectedMax, maxCategory);
+        Assert.assertEquals(category, page.getCategory(cell));
+
+        final int requested = random.nextInt(256);
+        int expectedCell = -1;
+        for (int n = 0; n < categories.length; n++) {
+          if (categories[n] >= requested) {
+            expectedCell = n;
+            break;
+          }
+        }
+
+        Assert.assertEquals(expectedCell, page.findCell(requested));
+      }
+    } finally {
+      cacheEntry.releaseExclusiveLock();
+      cachePointer.decrementReferrer();
+    }
+  }
+
+  @Test
+  public void testCategories() {
+    Assert.assertEquals(255, FreeSpaceMap.category(OClusterPage.MAX_RECORD_SIZE));
+    Assert.assertEquals(255, FreeSpaceMap.requiredCategory(OClusterPage.MAX_RECORD_SIZE));
+    Assert.assertEquals(1, FreeSpaceMap.requiredCategory(0));
+
+    for (int size = 0; size <= OClusterPage.MAX_RECORD_SIZE; size++) {
+      // page is found only if it can hold entry of required size
+      final int requiredCategory = FreeSpaceMap.requiredCategory(size);
+      for (int freeSpace = Math.max(0, size - 2 * FreeSpaceMap.NORMALIZATION_INTERVAL);
+          freeSpace <= Math.min(OClusterPage.MAX_RECORD_SIZE, size + 1);
+          freeSpace++) {
+        if (FreeSpaceMap.category(freeSpace) >= requiredCategory) {
+          Assert.assertTrue(freeSpace >= size);
+        }
+      }
+
+      Assert.assertTrue(FreeSpaceMap.category(size) <= 255);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package com.orientechnologies.orient.core.storage.cluster.v2;
+
+import com.orientechnologies.orient.core.storage.cluster.OClusterPage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FreeSpaceMapTest {
+  @Test
+  public void testCategory() {
+    final int interval = FreeSpaceMap.NORMALIZATION_INTERVAL;
+
+    Assert.assertEquals(0, FreeSpaceMap.category(0));
+    Assert.assertEquals(0, FreeSpaceMap.category(interval - 1));
+
+    for (int category = 1; category * interval < OClusterPage.MAX_RECORD_SIZE; category++) {
+      Assert.assertEquals(category, FreeSpaceMap.category(category * interval));
+      Assert.assertEquals(category - 1, FreeSpaceMap.category(category * interval - 1));
+    }
+
+    Assert.assertTrue(FreeSpaceMap.category(OClusterPage.MAX_RECORD_SIZE - 1) < 255);
+    Assert.assertEquals(255, FreeSpaceMap.category(OClusterPage.MAX_RECORD_SIZE));
+  }
+
+  @Test
+  public void testRequiredCategory() {
+    final int interval = FreeSpaceMap.NORMALIZATION_INTERVAL;
+
+    Assert.assertEquals(1, FreeSpaceMap.requiredCategory(0));
+    Assert.assertEquals(1, FreeSpaceMap.requiredCategory(1));
+    Assert.assertEquals(1, FreeSpaceMap.requiredCategory(interval));
+    Assert.assertEquals(2, FreeSpaceMap.requiredCategory(interval + 1));
+    Assert.assertEquals(255, FreeSpaceMap.requiredCategory(OClusterPage.MAX_RECORD_SIZE));
+  }
+
+  @Test
+  public void testPageOfRequiredCategoryHasEnoughSpace() {
+    for (int size = 1; size <= OClusterPage.MAX_RECORD_SIZE; size++) {
+      final int requiredCategory = FreeSpaceMap.requiredCategory(size);
+
+      // category grows with free space, so it is enough to check the largest space which is too
+      // small for the entry
+      Assert.assertTrue(FreeSpaceMap.category(size - 1) < requiredCategory);
+      Assert.assertTrue(
+          requiredCategory == 255
+              || requiredCategory * FreeSpaceMap.NORMALIZATION_INTERVAL >= size);
+    }
+  }
+}
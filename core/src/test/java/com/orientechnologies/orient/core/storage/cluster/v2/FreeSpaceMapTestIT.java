@@ -0,0 +1,244 @@
+package com.orientechnologies.orient.core.storage.cluster.v2;
+
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.storage.OPhysicalPosition;
+import com.orientechnologies.orient.core.storage.ORawBuffer;
+import com.orientechnologies.orient.core.storage.cache.OCacheEntry;
+import com.orientechnologies.orient.core.storage.cluster.OClusterPage;
+import com.orientechnologies.orient.core.storage.cluster.OPaginatedCluster;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperationsManager;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FreeSpaceMapTestIT {
+  private static final int INTERVAL = FreeSpaceMap.NORMALIZATION_INTERVAL;
+
+  private static String buildDirectory;
+  private static OrientDB orientDB;
+  private static ODatabaseDocumentInternal databaseDocumentTx;
+  private static OAbstractPaginatedStorage storage;
+  private static OAtomicOperationsManager atomicOperationsManager;
+
+  @BeforeClass
+  public static void beforeClass() {
+    buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null || buildDirectory.isEmpty()) buildDirectory = ".";
+
+    buildDirectory += File.separator + FreeSpaceMapTestIT.class.getSimpleName();
+    OFileUtils.deleteRecursively(new File(buildDirectory));
+
+    orientDB = new OrientDB("plocal:" + buildDirectory, OrientDBConfig.defaultConfig());
+    orientDB.create("freeSpaceMapTest", ODatabaseType.PLOCAL);
+
+    databaseDocumentTx =
+        (ODatabaseDocumentInternal) orientDB.open("freeSpaceMapTest", "admin", "admin");
+    storage = (OAbstractPaginatedStorage) databaseDocumentTx.getStorage();
+    atomicOperationsManager = storage.getAtomicOperationsManager();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    databaseDocumentTx.close();
+    orientDB.drop("freeSpaceMapTest");
+    orientDB.close();
+
+    OFileUtils.deleteRecursively(new File(buildDirectory));
+  }
+
+  @Test
+  public void testFindFreePage() throws IOException {
+    final FreeSpaceMap freeSpaceMap =
+        new FreeSpaceMap(storage, "findFreePage", "findFreePage", FreeSpaceMap.DEF_EXTENSION);
+    atomicOperationsManager.executeInsideAtomicOperation(null, freeSpaceMap::create);
+
+    try {
+      Assert.assertEquals(-1, findFreePage(freeSpaceMap, 1));
+
+      updatePageFreeSpace(freeSpaceMap, 3, 10 * INTERVAL);
+      Assert.assertEquals(3, findFreePage(freeSpaceMap, 1));
+      Assert.assertEquals(3, findFreePage(freeSpaceMap, 10 * INTERVAL));
+      Assert.assertEquals(-1, findFreePage(freeSpaceMap, 10 * INTERVAL + 1));
+
+      // page with the lowest index is preferred
+      updatePageFreeSpace(freeSpaceMap, 1, 20 * INTERVAL);
+      Assert.assertEquals(1, findFreePage(freeSpaceMap, 5 * INTERVAL));
+      Assert.assertEquals(1, findFreePage(freeSpaceMap, 10 * INTERVAL + 1));
+
+      // pages which are tracked by the second page of the second level
+      final long farPage = 2L * FreeSpaceMapPage.CELLS_PER_PAGE + 5;
+      updatePageFreeSpace(freeSpaceMap, farPage, OClusterPage.MAX_RECORD_SIZE);
+      Assert.assertEquals(farPage, findFreePage(freeSpaceMap, 20 * INTERVAL + 1));
+      Assert.assertEquals(farPage, findFreePage(freeSpaceMap, OClusterPage.MAX_RECORD_SIZE));
+
+      updatePageFreeSpace(freeSpaceMap, 1, 0);
+      Assert.assertEquals(3, findFreePage(freeSpaceMap, 5 * INTERVAL));
+      Assert.assertEquals(farPage, findFreePage(freeSpaceMap, 15 * INTERVAL));
+
+      // pages which do not fit into the map are not tracked
+      final long untrackedPage =
+          (long) FreeSpaceMapPage.CELLS_PER_PAGE * FreeSpaceMapPage.CELLS_PER_PAGE;
+      updatePageFreeSpace(freeSpaceMap, untrackedPage, OClusterPage.MAX_RECORD_SIZE);
+      updatePageFreeSpace(freeSpaceMap, farPage, 0);
+      Assert.assertEquals(-1, findFreePage(freeSpaceMap, 15 * INTERVAL));
+    } finally {
+      atomicOperationsManager.executeInsideAtomicOperation(null, freeSpaceMap::delete);
+    }
+  }
+
+  @Test
+  public void testOpenClusterWithoutFreeSpaceMap() throws IOException {
+    final OPaginatedClusterV2 cluster = new OPaginatedClusterV2("freeSpaceMapMigration", storage);
+    cluster.configure(43, "freeSpaceMapMigration");
+    atomicOperationsManager.executeInsideAtomicOperation(null, cluster::create);
+
+    final Random random = new Random(42);
+    final List<byte[]> records = new ArrayList<>();
+    final List<Long> positions = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      final byte[] record = new byte[3_000];
+      random.nextBytes(record);
+
+      final OPhysicalPosition position = createRecord(cluster, record);
+      records.add(record);
+      positions.add(position.clusterPosition);
+    }
+
+    // every second record is removed to leave free space on all pages
+    for (int i = 0; i < records.size(); i += 2) {
+      final long position = positions.get(i);
+      atomicOperationsManager.executeInsideAtomicOperation(
+          null, atomicOperation -> cluster.deleteRecord(atomicOperation, position));
+    }
+
+    // free lists of the previous versions of the cluster
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null,
+        atomicOperation -> {
+          final long fileId = cluster.getFileId();
+          OCacheEntry cacheEntry = atomicOperation.loadPageForWrite(fileId, 0, false, 1, true);
+          try {
+            new OPaginatedClusterStateV2(cacheEntry).setFreeListPage(0, 1);
+          } finally {
+            atomicOperation.releasePageFromWrite(cacheEntry);
+          }
+
+          cacheEntry = atomicOperation.loadPageForWrite(fileId, 1, false, 1, true);
+          try {
+            new OClusterPage(cacheEntry).setNextPage(2);
+          } finally {
+            atomicOperation.releasePageFromWrite(cacheEntry);
+          }
+
+          cacheEntry = atomicOperation.loadPageForWrite(fileId, 2, false, 1, true);
+          try {
+            new OClusterPage(cacheEntry).setPrevPage(1);
+          } finally {
+            atomicOperation.releasePageFromWrite(cacheEntry);
+          }
+        });
+
+    cluster.close();
+
+    final FreeSpaceMap freeSpaceMap =
+        new FreeSpaceMap(
+            storage,
+            "freeSpaceMapMigration",
+            "freeSpaceMapMigration" + OPaginatedCluster.DEF_EXTENSION,
+            FreeSpaceMap.DEF_EXTENSION);
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null,
+        atomicOperation -> {
+          freeSpaceMap.open(atomicOperation);
+          freeSpaceMap.delete(atomicOperation);
+        });
+    Assert.assertFalse(storage.getWriteCache().exists(freeSpaceMap.getFullName()));
+
+    cluster.open();
+    Assert.assertTrue(storage.getWriteCache().exists(freeSpaceMap.getFullName()));
+
+    // pages are added to the map after the open, and the build is resumed after the reopen
+    cluster.close();
+    cluster.open();
+    cluster.buildFreeSpaceMap();
+
+    for (int i = 1; i < records.size(); i += 2) {
+      final ORawBuffer rawBuffer = cluster.readRecord(positions.get(i), false);
+      Assert.assertNotNull(rawBuffer);
+      Assert.assertArrayEquals(records.get(i), rawBuffer.buffer);
+    }
+
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null,
+        atomicOperation -> {
+          final long fileId = cluster.getFileId();
+          OCacheEntry cacheEntry = atomicOperation.loadPageForRead(fileId, 0, false, 1);
+          try {
+            final OPaginatedClusterStateV2 state = new OPaginatedClusterStateV2(cacheEntry);
+            Assert.assertEquals(-1, state.getFreeListPage(0));
+          } finally {
+            atomicOperation.releasePageFromRead(cacheEntry);
+          }
+
+          for (long pageIndex = 1; pageIndex <= 2; pageIndex++) {
+            cacheEntry = atomicOperation.loadPageForRead(fileId, pageIndex, false, 1);
+            try {
+              final OClusterPage page = new OClusterPage(cacheEntry);
+              Assert.assertEquals(-1, page.getNextPage());
+              Assert.assertEquals(-1, page.getPrevPage());
+            } finally {
+              atomicOperation.releasePageFromRead(cacheEntry);
+            }
+          }
+        });
+
+    // free space of the pages which were filled before the map was built is reused
+    final long filledUpTo = storage.getWriteCache().getFilledUpTo(cluster.getFileId());
+    for (int i = 0; i < records.size(); i += 2) {
+      final byte[] record = new byte[3_000];
+      random.nextBytes(record);
+
+      final OPhysicalPosition position = createRecord(cluster, record);
+      Assert.assertArrayEquals(record, cluster.readRecord(position.clusterPosition, false).buffer);
+      positions.set(i, position.clusterPosition);
+    }
+    Assert.assertEquals(filledUpTo, storage.getWriteCache().getFilledUpTo(cluster.getFileId()));
+
+    for (final long position : positions) {
+      atomicOperationsManager.executeInsideAtomicOperation(
+          null, atomicOperation -> cluster.deleteRecord(atomicOperation, position));
+    }
+    atomicOperationsManager.executeInsideAtomicOperation(null, cluster::delete);
+  }
+
+  private static OPhysicalPosition createRecord(
+      final OPaginatedClusterV2 cluster, final byte[] record) throws IOException {
+    return atomicOperationsManager.calculateInsideAtomicOperation(
+        null, atomicOperation -> cluster.createRecord(record, 1, (byte) 1, null, atomicOperation));
+  }
+
+  private static long findFreePage(final FreeSpaceMap freeSpaceMap, final int requiredSize)
+      throws IOException {
+    return atomicOperationsManager.calculateInsideAtomicOperation(
+        null, atomicOperation -> freeSpaceMap.findFreePage(atomicOperation, requiredSize));
+  }
+
+  private static void updatePageFreeSpace(
+      final FreeSpaceMap freeSpaceMap, final long pageIndex, final int freeSpace)
+      throws IOException {
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null,
+        atomicOperation -> freeSpaceMap.updatePageFreeSpace(atomicOperation, pageIndex, freeSpace));
+  }
+}
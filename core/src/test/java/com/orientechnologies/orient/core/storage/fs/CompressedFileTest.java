@@ -0,0 +1,406 @@
+package com.orientechnologies.orient.core.storage.fs;
+
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.common.util.ORawPair;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CompressedFileTest {
+  private static final int PAGE_SIZE = 4 * 1024;
+
+  /** Offsets of position and checksum of the stored map of slots in the header of the file. */
+  private static final int MAP_POSITION_OFFSET = OFile.HEADER_SIZE + 24;
+
+  private static final int MAP_CHECKSUM_OFFSET = OFile.HEADER_SIZE + 36;
+
+  private static Path buildDirectoryPath;
+  private static Path filePath;
+
+  @BeforeClass
+  public static void beforeClass() {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null || buildDirectory.isEmpty()) buildDirectory = ".";
+
+    buildDirectory += File.separator + "compressedFileTest";
+    buildDirectoryPath = Paths.get(buildDirectory);
+    filePath = buildDirectoryPath.resolve("file.pcl");
+  }
+
+  @Before
+  public void before() throws Exception {
+    OFileUtils.deleteRecursively(buildDirectoryPath.toFile());
+    Files.createDirectories(buildDirectoryPath);
+  }
+
+  @Test
+  public void testWriteRead() throws Exception {
+    final CompressedFile file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.create();
+
+    Assert.assertEquals(0, file.allocateSpace(PAGE_SIZE));
+    Assert.assertEquals(PAGE_SIZE, file.allocateSpace(2 * PAGE_SIZE));
+    Assert.assertEquals(3 * PAGE_SIZE, file.getFileSize());
+
+    final Random random = new Random();
+    final byte[] compressible = compressiblePage(random);
+    final byte[] notCompressible = randomPage(random);
+
+    file.write(0, ByteBuffer.wrap(compressible));
+    file.write(PAGE_SIZE, ByteBuffer.wrap(notCompressible));
+
+    Assert.assertArrayEquals(compressible, readPage(file, 0));
+    Assert.assertArrayEquals(notCompressible, readPage(file, 1));
+    Assert.assertArrayEquals(new byte[PAGE_SIZE], readPage(file, 2));
+
+    file.close();
+  }
+
+  @Test
+  public void testWriteSeveralChunksReopen() throws Exception {
+    CompressedFile file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.create();
+
+    file.allocateSpace(8 * PAGE_SIZE);
+
+    final Random random = new Random();
+    final byte[][] pages = new byte[8][];
+    for (int i = 0; i < pages.length; i++) {
+      pages[i] = i % 2 == 0 ? compressiblePage(random) : randomPage(random);
+    }
+
+    final ByteBuffer chunk =
+        ByteBuffer.allocateDirect(4 * PAGE_SIZE).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < 4; i++) {
+      chunk.put(pages[i]);
+    }
+
+    final List<ORawPair<Long, ByteBuffer>> buffers = new ArrayList<>();
+    buffers.add(new ORawPair<>(0L, chunk));
+    for (int i = 4; i < pages.length; i++) {
+      buffers.add(new ORawPair<>((long) i * PAGE_SIZE, ByteBuffer.wrap(pages[i])));
+    }
+
+    file.write(buffers).await();
+    file.close();
+
+    Assert.assertTrue(CompressedFile.isCompressed(filePath));
+    Assert.assertTrue(
+        Files.size(filePath) < OFile.HEADER_SIZE + (long) pages.length * PAGE_SIZE);
+
+    file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.open();
+
+    Assert.assertEquals(pages.length * PAGE_SIZE, file.getFileSize());
+    for (int i = 0; i < pages.length; i++) {
+      Assert.assertArrayEquals(pages[i], readPage(file, i));
+    }
+
+    file.close();
+  }
+
+  @Test
+  public void testRewriteWithDifferentSizeReopen() throws Exception {
+    CompressedFile file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.create();
+
+    file.allocateSpace(2 * PAGE_SIZE);
+
+    final Random random = new Random();
+    file.write(0, ByteBuffer.wrap(compressiblePage(random)));
+    file.write(PAGE_SIZE, ByteBuffer.wrap(compressiblePage(random)));
+
+    // page is moved to the bigger slot, then back to the free slot of the same size
+    final byte[] notCompressible = randomPage(random);
+    file.write(0, ByteBuffer.wrap(notCompressible));
+    Assert.assertArrayEquals(notCompressible, readPage(file, 0));
+
+    final byte[] compressible = compressiblePage(random);
+    file.write(0, ByteBuffer.wrap(compressible));
+    Assert.assertArrayEquals(compressible, readPage(file, 0));
+
+    final byte[] second = randomPage(random);
+    file.write(PAGE_SIZE, ByteBuffer.wrap(second));
+
+    file.close();
+
+    file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.open();
+
+    Assert.assertEquals(2 * PAGE_SIZE, file.getFileSize());
+    Assert.assertArrayEquals(compressible, readPage(file, 0));
+    Assert.assertArrayEquals(second, readPage(file, 1));
+
+    file.close();
+  }
+
+  @Test
+  public void testAllocatedPagesAreKeptAfterReopen() throws Exception {
+    CompressedFile file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.create();
+
+    file.allocateSpace(5 * PAGE_SIZE);
+    file.write(PAGE_SIZE, ByteBuffer.wrap(compressiblePage(new Random())));
+    file.close();
+
+    file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.open();
+
+    Assert.assertEquals(5 * PAGE_SIZE, file.getFileSize());
+    Assert.assertArrayEquals(new byte[PAGE_SIZE], readPage(file, 4));
+
+    file.close();
+  }
+
+  @Test
+  public void testShrink() throws Exception {
+    CompressedFile file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.create();
+
+    file.allocateSpace(2 * PAGE_SIZE);
+    final Random random = new Random();
+    file.write(0, ByteBuffer.wrap(randomPage(random)));
+    file.write(PAGE_SIZE, ByteBuffer.wrap(randomPage(random)));
+
+    file.shrink(0);
+    Assert.assertEquals(0, file.getFileSize());
+
+    Assert.assertEquals(0, file.allocateSpace(PAGE_SIZE));
+    Assert.assertArrayEquals(new byte[PAGE_SIZE], readPage(file, 0));
+
+    final byte[] page = compressiblePage(random);
+    file.write(0, ByteBuffer.wrap(page));
+    file.close();
+
+    file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.open();
+
+    Assert.assertEquals(PAGE_SIZE, file.getFileSize());
+    Assert.assertArrayEquals(page, readPage(file, 0));
+
+    file.close();
+  }
+
+  @Test
+  public void testSlotMapIsStoredOnClose() throws Exception {
+    CompressedFile file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.create();
+
+    file.allocateSpace(8 * PAGE_SIZE);
+
+    final Random random = new Random();
+    final byte[][] pages = new byte[8][];
+    for (int i = 0; i < pages.length; i++) {
+      pages[i] = i % 2 == 0 ? compressiblePage(random) : randomPage(random);
+      file.write((long) i * PAGE_SIZE, ByteBuffer.wrap(pages[i]));
+    }
+    file.close();
+
+    Assert.assertTrue(readHeaderLong(MAP_POSITION_OFFSET) > 0);
+
+    file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.open();
+    for (int i = 0; i < pages.length; i++) {
+      Assert.assertArrayEquals(pages[i], readPage(file, i));
+    }
+    file.close();
+
+    // broken map is ignored and map of slots is rebuilt by the scan
+    writeHeaderInt(MAP_CHECKSUM_OFFSET, readHeaderInt(MAP_CHECKSUM_OFFSET) + 1);
+
+    file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.open();
+    Assert.assertEquals(pages.length * PAGE_SIZE, file.getFileSize());
+    for (int i = 0; i < pages.length; i++) {
+      Assert.assertArrayEquals(pages[i], readPage(file, i));
+    }
+    file.close();
+  }
+
+  @Test
+  public void testSlotMapIsRemovedBeforeWrite() throws Exception {
+    AsyncFile asyncFile = new AsyncFile(filePath, true);
+    CompressedFile file = new CompressedFile(asyncFile, PAGE_SIZE);
+    file.create();
+
+    file.allocateSpace(2 * PAGE_SIZE);
+
+    final Random random = new Random();
+    file.write(0, ByteBuffer.wrap(compressiblePage(random)));
+    final byte[] second = compressiblePage(random);
+    file.write(PAGE_SIZE, ByteBuffer.wrap(second));
+
+    file.synch();
+    Assert.assertTrue(readHeaderLong(MAP_POSITION_OFFSET) > 0);
+
+    // page is moved to the bigger slot, so stored map becomes stale
+    final byte[] first = randomPage(random);
+    file.write(0, ByteBuffer.wrap(first));
+    Assert.assertEquals(0, readHeaderLong(MAP_POSITION_OFFSET));
+
+    // file is not closed properly, so map is rebuilt by the scan
+    asyncFile.close();
+
+    file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.open();
+
+    Assert.assertEquals(2 * PAGE_SIZE, file.getFileSize());
+    Assert.assertArrayEquals(first, readPage(file, 0));
+    Assert.assertArrayEquals(second, readPage(file, 1));
+
+    file.close();
+  }
+
+  @Test
+  public void testLargerFreeRunIsReused() throws Exception {
+    final AsyncFile asyncFile = new AsyncFile(filePath, true);
+    CompressedFile file = new CompressedFile(asyncFile, PAGE_SIZE);
+    file.create();
+
+    file.allocateSpace(4 * PAGE_SIZE);
+
+    final Random random = new Random();
+    file.write(0, ByteBuffer.wrap(randomPage(random)));
+    file.write(PAGE_SIZE, ByteBuffer.wrap(compressiblePage(random)));
+
+    // page is moved to the smaller slot, units of its previous slot are free once file is synced
+    final byte[] first = compressiblePage(random);
+    file.write(0, ByteBuffer.wrap(first));
+    file.synch();
+    final long fileSize = asyncFile.getFileSize();
+
+    // both pages are placed in the free run of units of the not compressible page
+    final byte[] third = compressiblePage(random);
+    final byte[] fourth = compressiblePage(random);
+    file.write(2 * PAGE_SIZE, ByteBuffer.wrap(third));
+    file.write(3 * PAGE_SIZE, ByteBuffer.wrap(fourth));
+    Assert.assertEquals(fileSize, asyncFile.getFileSize());
+
+    file.close();
+
+    file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.open();
+
+    Assert.assertArrayEquals(first, readPage(file, 0));
+    Assert.assertArrayEquals(third, readPage(file, 2));
+    Assert.assertArrayEquals(fourth, readPage(file, 3));
+
+    file.close();
+  }
+
+  @Test
+  public void testSlotIsReusedOnlyAfterSync() throws Exception {
+    final AsyncFile asyncFile = new AsyncFile(filePath, true);
+    CompressedFile file = new CompressedFile(asyncFile, PAGE_SIZE);
+    file.create();
+
+    file.allocateSpace(3 * PAGE_SIZE);
+
+    final Random random = new Random();
+    file.write(0, ByteBuffer.wrap(randomPage(random)));
+    file.synch();
+
+    // page is never overwritten in place even if its slot has the same size
+    long fileSize = asyncFile.getFileSize();
+    final byte[] first = randomPage(random);
+    file.write(0, ByteBuffer.wrap(first));
+    Assert.assertTrue(asyncFile.getFileSize() > fileSize);
+
+    // previous slot of the page is not reused till the file is synced
+    fileSize = asyncFile.getFileSize();
+    file.write(PAGE_SIZE, ByteBuffer.wrap(randomPage(random)));
+    Assert.assertTrue(asyncFile.getFileSize() > fileSize);
+
+    file.synch();
+
+    fileSize = asyncFile.getFileSize();
+    final byte[] third = randomPage(random);
+    file.write(2 * PAGE_SIZE, ByteBuffer.wrap(third));
+    Assert.assertEquals(fileSize, asyncFile.getFileSize());
+
+    // file is not closed properly, so map is rebuilt by the scan
+    asyncFile.close();
+
+    file = new CompressedFile(new AsyncFile(filePath, true), PAGE_SIZE);
+    file.open();
+
+    Assert.assertArrayEquals(first, readPage(file, 0));
+    Assert.assertArrayEquals(third, readPage(file, 2));
+
+    file.close();
+  }
+
+  @Test
+  public void testNotCompressedFile() throws Exception {
+    final AsyncFile file = new AsyncFile(filePath, true);
+    file.create();
+
+    file.allocateSpace(PAGE_SIZE);
+    file.write(0, ByteBuffer.wrap(randomPage(new Random())));
+    file.close();
+
+    Assert.assertFalse(CompressedFile.isCompressed(filePath));
+    Assert.assertFalse(CompressedFile.isCompressed(buildDirectoryPath.resolve("absent.pcl")));
+  }
+
+  private static byte[] readPage(final CompressedFile file, final long pageIndex)
+      throws Exception {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(PAGE_SIZE).order(ByteOrder.nativeOrder());
+    file.read(pageIndex * PAGE_SIZE, buffer, true);
+
+    final byte[] page = new byte[PAGE_SIZE];
+    buffer.position(0);
+    buffer.get(page);
+    return page;
+  }
+
+  private static long readHeaderLong(final int offset) throws Exception {
+    try (final FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+      final ByteBuffer buffer = ByteBuffer.allocate(8);
+      channel.read(buffer, offset);
+      return buffer.getLong(0);
+    }
+  }
+
+  private static int readHeaderInt(final int offset) throws Exception {
+    try (final FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+      final ByteBuffer buffer = ByteBuffer.allocate(4);
+      channel.read(buffer, offset);
+      return buffer.getInt(0);
+    }
+  }
+
+  private static void writeHeaderInt(final int offset, final int value) throws Exception {
+    try (final FileChannel channel = FileChannel.open(filePath, StandardOpenOption.WRITE)) {
+      final ByteBuffer buffer = ByteBuffer.allocate(4);
+      buffer.putInt(0, value);
+      channel.write(buffer, offset);
+    }
+  }
+
+  private static byte[] compressiblePage(final Random random) {
+    final byte[] page = new byte[PAGE_SIZE];
+    final byte[] header = new byte[64];
+    random.nextBytes(header);
+    System.arraycopy(header, 0, page, 0, header.length);
+    return page;
+  }
+
+  private static byte[] randomPage(final Random random) {
+    final byte[] page = new byte[PAGE_SIZE];
+    random.nextBytes(page);
+    return page;
+  }
+}
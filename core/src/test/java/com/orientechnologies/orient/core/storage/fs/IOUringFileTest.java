@@ -0,0 +1,181 @@
+package com.orientechnologies.orient.core.storage.fs;
+
+import com.orientechnologies.common.directmemory.OByteBufferPool;
+import com.orientechnologies.common.directmemory.OPointer;
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class IOUringFileTest {
+  private static Path buildDirectoryPath;
+  private static Path filePath;
+
+  @BeforeClass
+  public static void beforeClass() {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null || buildDirectory.isEmpty()) buildDirectory = ".";
+
+    buildDirectory += File.separator + "ioUringFileTest";
+    buildDirectoryPath = Paths.get(buildDirectory);
+    filePath = buildDirectoryPath.resolve("file.pcl");
+  }
+
+  @Before
+  public void before() throws Exception {
+    Assume.assumeTrue(IOUringFile.isSupported());
+
+    OFileUtils.deleteRecursively(buildDirectoryPath.toFile());
+    Files.createDirectories(buildDirectoryPath);
+  }
+
+  @Test
+  public void testWrite() throws Exception {
+    final IOUringFile file = new IOUringFile(filePath);
+    file.create();
+
+    file.allocateSpace(128);
+    file.allocateSpace(256);
+
+    final long position = file.allocateSpace(1024);
+    Assert.assertEquals(128 + 256, position);
+
+    final byte[] data = new byte[1024];
+    final Random random = new Random();
+
+    random.nextBytes(data);
+
+    file.write(position, ByteBuffer.wrap(data));
+
+    final ByteBuffer result = ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder());
+    file.read(position, result, true);
+
+    Assert.assertArrayEquals(data, result.array());
+    file.close();
+  }
+
+  @Test
+  public void testHeapBufferLargerThanPageOfPool() throws Exception {
+    final IOUringFile file = new IOUringFile(filePath);
+    file.create();
+
+    // content of the heap buffer is split between several pages of the pool
+    final int size = 3 * OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * 1024 + 100;
+    final long position = file.allocateSpace(size + 128) + 128;
+
+    final byte[] data = new byte[size];
+    new Random().nextBytes(data);
+
+    file.write(position, ByteBuffer.wrap(data));
+
+    final ByteBuffer result = ByteBuffer.allocate(size);
+    file.read(position, result, true);
+
+    Assert.assertEquals(0, result.position());
+    Assert.assertArrayEquals(data, result.array());
+    file.close();
+  }
+
+  @Test
+  public void testPagesOfPoolAreReleasedWithoutAwait() throws Exception {
+    final IOUringFile file = new IOUringFile(filePath);
+    file.create();
+
+    final int size = 3 * OGlobalConfiguration.DISK_CACHE_PAGE_SIZE.getValueAsInteger() * 1024;
+    final long position = file.allocateSpace(size);
+
+    // pages used for the copy of the heap buffer are taken from the pool
+    final OByteBufferPool pool = OByteBufferPool.instance(null);
+    final List<OPointer> pointers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      pointers.add(pool.acquireDirect(false));
+    }
+    for (final OPointer pointer : pointers) {
+      pool.release(pointer);
+    }
+    final int poolSize = pool.getPoolSize();
+
+    final byte[] data = new byte[size];
+    new Random().nextBytes(data);
+    file.write(Collections.singletonList(new ORawPair<>(position, ByteBuffer.wrap(data))));
+
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (pool.getPoolSize() < poolSize) {
+      Assert.assertTrue(System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+
+    final ByteBuffer result = ByteBuffer.allocate(size);
+    file.read(position, result, true);
+    Assert.assertArrayEquals(data, result.array());
+    file.close();
+  }
+
+  @Test
+  public void testOpenWriteSeveralChunks() throws Exception {
+    IOUringFile file = new IOUringFile(filePath);
+    file.create();
+
+    final int chunks = 2048;
+    final int chunkSize = 4096;
+    file.allocateSpace(chunks * chunkSize);
+
+    final Random random = new Random();
+    final List<ORawPair<Long, ByteBuffer>> buffers = new ArrayList<>();
+    final byte[][] data = new byte[chunks][];
+
+    for (int i = 0; i < chunks; i++) {
+      data[i] = new byte[chunkSize];
+      random.nextBytes(data[i]);
+
+      final ByteBuffer buffer =
+          ByteBuffer.allocateDirect(chunkSize).order(ByteOrder.nativeOrder());
+      buffer.put(data[i]);
+      buffers.add(new ORawPair<>((long) i * chunkSize, buffer));
+    }
+
+    file.write(buffers).await();
+    file.close();
+
+    file = new IOUringFile(filePath);
+    file.open();
+
+    Assert.assertEquals(chunks * chunkSize, file.getFileSize());
+
+    final List<ORawPair<Long, ByteBuffer>> readBuffers = new ArrayList<>();
+    for (int i = 0; i < chunks; i++) {
+      readBuffers.add(
+          new ORawPair<>(
+              (long) i * chunkSize,
+              ByteBuffer.allocateDirect(chunkSize).order(ByteOrder.nativeOrder())));
+    }
+
+    file.read(readBuffers).await();
+
+    for (int i = 0; i < chunks; i++) {
+      final byte[] result = new byte[chunkSize];
+      final ByteBuffer buffer = readBuffers.get(i).second;
+      buffer.position(0);
+      buffer.get(result);
+
+      Assert.assertArrayEquals(data[i], result);
+    }
+
+    file.close();
+  }
+}
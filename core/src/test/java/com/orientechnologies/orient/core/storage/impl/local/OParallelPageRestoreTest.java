@@ -0,0 +1,97 @@
+package com.orientechnologies.orient.core.storage.impl.local;
+
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OLogSequenceNumber;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.wal.OUpdatePageRecord;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OParallelPageRestoreTest {
+  @Test
+  public void testChangesOfPageAreAppliedInOrder() throws Exception {
+    final Map<Long, OLogSequenceNumber> lastLsns = new ConcurrentHashMap<>();
+    final Map<Long, Long> pageThreads = new ConcurrentHashMap<>();
+    final AtomicInteger applied = new AtomicInteger();
+    final AtomicInteger outOfOrder = new AtomicInteger();
+
+    final int changes = 100_000;
+    try (final OParallelPageRestore pageRestore =
+        new OParallelPageRestore(
+            4,
+            (updatePageRecord) -> {
+              final long page =
+                  updatePageRecord.getFileId() << 32 | updatePageRecord.getPageIndex();
+              final OLogSequenceNumber prevLsn = lastLsns.put(page, updatePageRecord.getLsn());
+              if (prevLsn != null && prevLsn.compareTo(updatePageRecord.getLsn()) >= 0) {
+                outOfOrder.incrementAndGet();
+              }
+
+              final Long prevThread = pageThreads.put(page, Thread.currentThread().getId());
+              if (prevThread != null && prevThread != Thread.currentThread().getId()) {
+                outOfOrder.incrementAndGet();
+              }
+
+              applied.incrementAndGet();
+            })) {
+      for (int i = 0; i < changes; i++) {
+        final int fileId = i % 3;
+        final OUpdatePageRecord updatePageRecord = new OUpdatePageRecord(i % 128, fileId, i, null);
+        updatePageRecord.setLsn(new OLogSequenceNumber(1, i));
+
+        pageRestore.restorePage(fileId, updatePageRecord);
+
+        if (i % 10_000 == 0) {
+          pageRestore.await();
+          Assert.assertEquals(i + 1, applied.get());
+        }
+      }
+
+      pageRestore.await();
+    }
+
+    Assert.assertEquals(changes, applied.get());
+    Assert.assertEquals(0, outOfOrder.get());
+    Assert.assertEquals(3 * 128, lastLsns.size());
+  }
+
+  @Test
+  public void testErrorIsThrownOnce() throws Exception {
+    final AtomicInteger applied = new AtomicInteger();
+
+    try (final OParallelPageRestore pageRestore =
+        new OParallelPageRestore(
+            2,
+            (updatePageRecord) -> {
+              if (updatePageRecord.getPageIndex() == 10) {
+                throw new IOException("Page can not be restored");
+              }
+
+              applied.incrementAndGet();
+            })) {
+      for (int i = 0; i < 10; i++) {
+        final OUpdatePageRecord updatePageRecord = new OUpdatePageRecord(i, 1, i, null);
+        updatePageRecord.setLsn(new OLogSequenceNumber(1, i));
+        pageRestore.restorePage(1, updatePageRecord);
+      }
+
+      pageRestore.await();
+      Assert.assertEquals(10, applied.get());
+
+      final OUpdatePageRecord brokenRecord = new OUpdatePageRecord(10, 1, 10, null);
+      brokenRecord.setLsn(new OLogSequenceNumber(1, 10));
+      pageRestore.restorePage(1, brokenRecord);
+
+      try {
+        pageRestore.await();
+        Assert.fail();
+      } catch (final IOException e) {
+        Assert.assertTrue(e.getCause() instanceof IOException);
+      }
+
+      pageRestore.await();
+    }
+  }
+}
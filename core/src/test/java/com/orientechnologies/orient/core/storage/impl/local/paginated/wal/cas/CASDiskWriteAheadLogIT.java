@@ -7573,6 +7573,185 @@ public class CASDiskWriteAheadLogIT {
     }
   }
 
+  @Test
+  public void testSyncTillConcurrentCommits() throws Exception {
+    final CASDiskWriteAheadLog wal =
+        new CASDiskWriteAheadLog(
+            "walTest",
+            testDirectory,
+            testDirectory,
+            100,
+            64,
+            null,
+            null,
+            Integer.MAX_VALUE,
+            Integer.MAX_VALUE,
+            20,
+            true,
+            Locale.US,
+            -1,
+            -1,
+            1000,
+            false,
+            false,
+            true,
+            false,
+            10);
+
+    final int threads = 8;
+    final int commits = 100;
+
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<Void>> futures = new ArrayList<>();
+      for (int n = 0; n < threads; n++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  final Random random = new Random(ThreadLocalRandom.current().nextLong());
+                  for (int i = 0; i < commits; i++) {
+                    final OLogSequenceNumber lsn =
+                        wal.log(new TestRecord(random, wal.pageSize(), 1));
+                    wal.syncTill(lsn);
+
+                    Assert.assertTrue(wal.getFlushedLsn().compareTo(lsn) >= 0);
+                  }
+
+                  return null;
+                }));
+      }
+
+      for (final Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    final long groupCommits = wal.getGroupCommits();
+    Assert.assertTrue(groupCommits > 0);
+    Assert.assertTrue(groupCommits <= wal.getGroupCommitOperations());
+    Assert.assertTrue(wal.getGroupCommitOperations() <= threads * commits);
+
+    long syncs = 0;
+    for (final long bucket : wal.getSyncTimeHistogram()) {
+      syncs += bucket;
+    }
+    Assert.assertEquals(groupCommits, syncs);
+
+    wal.close();
+  }
+
+  @Test
+  public void testCompressedSegmentsAreReadable() throws Exception {
+    final Path archivePath = testDirectory.resolve("archive");
+
+    CASDiskWriteAheadLog wal =
+        new CASDiskWriteAheadLog(
+            "walTest",
+            testDirectory,
+            testDirectory,
+            100,
+            64,
+            null,
+            null,
+            Integer.MAX_VALUE,
+            Integer.MAX_VALUE,
+            20,
+            true,
+            Locale.US,
+            -1,
+            -1,
+            1000,
+            false,
+            false,
+            false,
+            false,
+            10,
+            true,
+            archivePath);
+
+    final Random random = new Random();
+    final List<OLogSequenceNumber> lsns = new ArrayList<>();
+    final List<byte[]> data = new ArrayList<>();
+
+    for (int i = 0; i < 5_000; i++) {
+      // content of the records should be compressible
+      final byte[] recordData = new byte[random.nextInt(2 * wal.pageSize()) + 1];
+      Arrays.fill(recordData, (byte) random.nextInt(4));
+
+      lsns.add(wal.log(new TestRecord(recordData)));
+      data.add(recordData);
+
+      if (i % 1_000 == 999) {
+        wal.appendNewSegment();
+      }
+    }
+
+    wal.flush();
+    Assert.assertTrue(wal.activeSegment() > 2);
+
+    final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+    for (final long segment : wal.nonActiveSegments()) {
+      final Path segmentPath = testDirectory.resolve(getSegmentName(segment));
+      while (!OWALCompressedFile.isCompressed(segmentPath)) {
+        Assert.assertTrue(System.nanoTime() < deadline);
+        Thread.sleep(10);
+      }
+
+      Assert.assertTrue(OWALCompressedFile.logicalSize(segmentPath) > 2 * Files.size(segmentPath));
+    }
+
+    assertRecords(wal, lsns, data);
+    wal.close();
+
+    wal =
+        new CASDiskWriteAheadLog(
+            "walTest",
+            testDirectory,
+            testDirectory,
+            100,
+            64,
+            null,
+            null,
+            Integer.MAX_VALUE,
+            Integer.MAX_VALUE,
+            20,
+            true,
+            Locale.US,
+            -1,
+            -1,
+            1000,
+            false,
+            false,
+            false,
+            false,
+            10,
+            false,
+            archivePath);
+
+    assertRecords(wal, lsns, data);
+
+    final long firstSegment = wal.begin().getSegment();
+    Assert.assertTrue(wal.cutTill(lsns.get(lsns.size() - 1)));
+    Assert.assertTrue(Files.exists(archivePath.resolve(getSegmentName(firstSegment))));
+    Assert.assertFalse(Files.exists(testDirectory.resolve(getSegmentName(firstSegment))));
+
+    wal.close();
+  }
+
+  private static void assertRecords(
+      final CASDiskWriteAheadLog wal, final List<OLogSequenceNumber> lsns, final List<byte[]> data)
+      throws IOException {
+    for (int i = 0; i < lsns.size(); i++) {
+      final List<WriteableWALRecord> records = wal.read(lsns.get(i), 1);
+      final TestRecord record = (TestRecord) records.get(0);
+
+      Assert.assertEquals(lsns.get(i), record.getLsn());
+      Assert.assertArrayEquals(data.get(i), record.data);
+    }
+  }
+
   private String getSegmentName(long segment) {
     return "walTest." + segment + ".wal";
   }
@@ -0,0 +1,122 @@
+package com.orientechnologies.orient.core.storage.impl.local.paginated.wal.cas;
+
+import com.orientechnologies.common.io.OFileUtils;
+import java.io.EOFException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class OWALCompressedFileTest {
+  private static final int PAGE_SIZE = 4 * 1024;
+  private static final int BLOCK_SIZE = 16 * PAGE_SIZE;
+
+  private static Path buildDirectoryPath;
+
+  @BeforeClass
+  public static void beforeClass() {
+    String buildDirectory = System.getProperty("buildDirectory");
+    if (buildDirectory == null || buildDirectory.isEmpty()) buildDirectory = ".";
+
+    buildDirectory += File.separator + OWALCompressedFileTest.class.getSimpleName();
+    buildDirectoryPath = Paths.get(buildDirectory);
+  }
+
+  @Before
+  public void before() throws Exception {
+    OFileUtils.deleteRecursively(buildDirectoryPath.toFile());
+    Files.createDirectories(buildDirectoryPath);
+  }
+
+  @Test
+  public void testPagesAreReadAtRandomPositions() throws Exception {
+    final long seed = System.nanoTime();
+    System.out.println("testPagesAreReadAtRandomPositions seed : " + seed);
+    final Random random = new Random(seed);
+
+    final int pages = 100;
+    final byte[] content = new byte[pages * PAGE_SIZE];
+    for (int i = 0; i < pages; i++) {
+      Arrays.fill(content, i * PAGE_SIZE, (i + 1) * PAGE_SIZE, (byte) random.nextInt(8));
+    }
+
+    final Path segment = buildDirectoryPath.resolve("test.1.wal");
+    final Path compressedSegment = buildDirectoryPath.resolve("test.1.wal.lz4");
+    Files.write(segment, content);
+
+    Assert.assertFalse(OWALCompressedFile.isCompressed(segment));
+    Assert.assertEquals(content.length, OWALCompressedFile.logicalSize(segment));
+
+    final long compressedSize = OWALCompressedFile.compress(segment, compressedSegment, BLOCK_SIZE);
+    Assert.assertEquals(compressedSize, Files.size(compressedSegment));
+    Assert.assertTrue(compressedSize < content.length / 10);
+
+    Assert.assertTrue(OWALCompressedFile.isCompressed(compressedSegment));
+    Assert.assertEquals(content.length, OWALCompressedFile.logicalSize(compressedSegment));
+
+    try (final OWALFile file = OWALFile.createReadWALFile(compressedSegment, false, -1)) {
+      Assert.assertTrue(file instanceof OWALCompressedFile);
+      Assert.assertEquals(content.length, file.size());
+
+      for (int i = 0; i < 1_000; i++) {
+        final int pageIndex = random.nextInt(pages);
+        final int length = (random.nextInt(3) + 1) * PAGE_SIZE;
+        final int position = pageIndex * PAGE_SIZE;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(Math.min(length, content.length - position));
+        file.position(position);
+        file.readBuffer(buffer);
+
+        Assert.assertEquals(position + buffer.capacity(), file.position());
+        Assert.assertArrayEquals(
+            Arrays.copyOfRange(content, position, position + buffer.capacity()), buffer.array());
+      }
+
+      file.position(content.length - PAGE_SIZE);
+      try {
+        file.readBuffer(ByteBuffer.allocate(2 * PAGE_SIZE));
+        Assert.fail();
+      } catch (final EOFException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testBrokenBlockIsReadAsZeros() throws Exception {
+    final int pages = 40;
+    final byte[] content = new byte[pages * PAGE_SIZE];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) (i / 1024);
+    }
+
+    final Path segment = buildDirectoryPath.resolve("test.1.wal");
+    final Path compressedSegment = buildDirectoryPath.resolve("test.1.wal.lz4");
+    Files.write(segment, content);
+
+    final long compressedSize = OWALCompressedFile.compress(segment, compressedSegment, BLOCK_SIZE);
+
+    // truncation breaks the last block only
+    final byte[] compressedContent = Files.readAllBytes(compressedSegment);
+    Files.write(compressedSegment, Arrays.copyOf(compressedContent, (int) compressedSize - 1));
+
+    try (final OWALFile file = OWALFile.createReadWALFile(compressedSegment, false, -1)) {
+      final ByteBuffer firstBlock = ByteBuffer.allocate(BLOCK_SIZE);
+      file.readBuffer(firstBlock);
+      Assert.assertArrayEquals(Arrays.copyOf(content, BLOCK_SIZE), firstBlock.array());
+
+      final int lastBlockPosition = 2 * BLOCK_SIZE;
+      final ByteBuffer lastBlock = ByteBuffer.allocate(content.length - lastBlockPosition);
+      file.position(lastBlockPosition);
+      file.readBuffer(lastBlock);
+      Assert.assertArrayEquals(new byte[lastBlock.capacity()], lastBlock.array());
+    }
+  }
+}
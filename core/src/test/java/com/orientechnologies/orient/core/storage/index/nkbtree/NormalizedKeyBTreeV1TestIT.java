@@ -0,0 +1,305 @@
+package com.orientechnologies.orient.core.storage.index.nkbtree;
+
+import com.orientechnologies.common.exception.OException;
+import com.orientechnologies.common.exception.OHighLevelException;
+import com.orientechnologies.common.io.OFileUtils;
+import com.orientechnologies.common.util.ORawPair;
+import com.orientechnologies.orient.core.db.ODatabaseInternal;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.storage.impl.local.OAbstractPaginatedStorage;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.atomicoperations.OAtomicOperationsManager;
+import com.orientechnologies.orient.core.storage.impl.local.paginated.base.ODurablePage;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NormalizedKeyBTreeV1TestIT {
+  private OAtomicOperationsManager atomicOperationsManager;
+  private NormalizedKeyBTreeV1 tree;
+  private OrientDB orientDB;
+
+  private String dbName;
+
+  @Before
+  public void before() throws Exception {
+    final String buildDirectory =
+        System.getProperty("buildDirectory", ".")
+            + File.separator
+            + NormalizedKeyBTreeV1TestIT.class.getSimpleName();
+
+    dbName = "localNormalizedKeyBTreeTest";
+    final File dbDirectory = new File(buildDirectory, dbName);
+    OFileUtils.deleteRecursively(dbDirectory);
+
+    orientDB = new OrientDB("plocal:" + buildDirectory, OrientDBConfig.defaultConfig());
+    orientDB.create(dbName, ODatabaseType.PLOCAL);
+
+    OAbstractPaginatedStorage storage;
+    try (ODatabaseSession databaseDocumentTx = orientDB.open(dbName, "admin", "admin")) {
+      storage = (OAbstractPaginatedStorage) ((ODatabaseInternal) databaseDocumentTx).getStorage();
+    }
+    tree = new NormalizedKeyBTreeV1("normalizedKeyBTree", ".nkt", storage);
+    atomicOperationsManager = storage.getAtomicOperationsManager();
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null, atomicOperation -> tree.create(atomicOperation));
+  }
+
+  @After
+  public void afterMethod() {
+    orientDB.drop(dbName);
+    orientDB.close();
+  }
+
+  @Test
+  public void testKeyPutRandom() throws Exception {
+    final NavigableMap<byte[], byte[]> keyValues = new TreeMap<>(ODurablePage::compareBinaryValues);
+    final Random random = new Random();
+    final long seed = random.nextLong();
+    System.out.println("testKeyPutRandom seed : " + seed);
+    random.setSeed(seed);
+
+    final int keysCount = 100_000;
+    final int rollbackInterval = 100;
+
+    for (int i = 0; i < keysCount / rollbackInterval; i++) {
+      for (int n = 0; n < 2; n++) {
+        final int rollbackCounter = n;
+        final NavigableMap<byte[], byte[]> batch =
+            new TreeMap<>(ODurablePage::compareBinaryValues);
+        for (int j = 0; j < rollbackInterval; j++) {
+          batch.put(randomKey(random), randomValue(random));
+        }
+
+        try {
+          atomicOperationsManager.executeInsideAtomicOperation(
+              null,
+              atomicOperation -> {
+                for (final Map.Entry<byte[], byte[]> entry : batch.entrySet()) {
+                  tree.put(atomicOperation, entry.getKey(), entry.getValue());
+                }
+
+                if (rollbackCounter == 0) {
+                  throw new RollbackException();
+                }
+              });
+        } catch (RollbackException ignore) {
+        }
+
+        if (rollbackCounter == 1) {
+          keyValues.putAll(batch);
+        }
+      }
+    }
+
+    Assert.assertEquals(keyValues.size(), tree.size());
+    for (final Map.Entry<byte[], byte[]> entry : keyValues.entrySet()) {
+      Assert.assertArrayEquals(entry.getValue(), tree.get(entry.getKey()));
+    }
+
+    assertIterateEntriesBetween(keyValues, random);
+  }
+
+  @Test
+  public void testKeyDeleteRandom() throws Exception {
+    final NavigableMap<byte[], byte[]> keyValues = new TreeMap<>(ODurablePage::compareBinaryValues);
+    final Random random = new Random();
+    final long seed = random.nextLong();
+    System.out.println("testKeyDeleteRandom seed : " + seed);
+    random.setSeed(seed);
+
+    final int keysCount = 100_000;
+    while (keyValues.size() < keysCount) {
+      keyValues.put(randomKey(random), randomValue(random));
+    }
+
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null,
+        atomicOperation -> {
+          for (final Map.Entry<byte[], byte[]> entry : keyValues.entrySet()) {
+            tree.put(atomicOperation, entry.getKey(), entry.getValue());
+          }
+        });
+
+    final Iterator<Map.Entry<byte[], byte[]>> iterator = keyValues.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<byte[], byte[]> entry = iterator.next();
+      if (random.nextInt(3) == 0) {
+        try {
+          atomicOperationsManager.executeInsideAtomicOperation(
+              null,
+              atomicOperation -> {
+                Assert.assertArrayEquals(
+                    entry.getValue(), tree.remove(atomicOperation, entry.getKey()));
+                throw new RollbackException();
+              });
+        } catch (RollbackException ignore) {
+        }
+
+        atomicOperationsManager.executeInsideAtomicOperation(
+            null,
+            atomicOperation ->
+                Assert.assertArrayEquals(
+                    entry.getValue(), tree.remove(atomicOperation, entry.getKey())));
+        iterator.remove();
+      }
+    }
+
+    Assert.assertEquals(keyValues.size(), tree.size());
+    for (final Map.Entry<byte[], byte[]> entry : keyValues.entrySet()) {
+      Assert.assertArrayEquals(entry.getValue(), tree.get(entry.getKey()));
+    }
+
+    assertIterateEntriesBetween(keyValues, random);
+  }
+
+  @Test
+  public void testUpdate() throws Exception {
+    final byte[] key = "key".getBytes(StandardCharsets.UTF_8);
+    final byte[] value = "value".getBytes(StandardCharsets.UTF_8);
+    final byte[] longValue = "longer value".getBytes(StandardCharsets.UTF_8);
+
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null,
+        atomicOperation -> {
+          Assert.assertTrue(
+              tree.update(
+                  atomicOperation,
+                  key,
+                  (oldValue) -> {
+                    Assert.assertNull(oldValue);
+                    return value;
+                  }));
+          Assert.assertFalse(tree.update(atomicOperation, key, (oldValue) -> oldValue));
+        });
+
+    Assert.assertArrayEquals(value, tree.get(key));
+    Assert.assertEquals(1, tree.size());
+
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null,
+        atomicOperation -> tree.update(atomicOperation, key, (oldValue) -> longValue));
+    Assert.assertArrayEquals(longValue, tree.get(key));
+    Assert.assertEquals(1, tree.size());
+
+    atomicOperationsManager.executeInsideAtomicOperation(
+        null, atomicOperation -> tree.update(atomicOperation, key, (oldValue) -> null));
+    Assert.assertNull(tree.get(key));
+    Assert.assertEquals(0, tree.size());
+  }
+
+  @Test
+  public void testSeparationKey() {
+    assertSeparationKey("abc", "abd", "abd");
+    assertSeparationKey("abc", "b", "b");
+    assertSeparationKey("abc", "bcd", "b");
+    assertSeparationKey("ab", "abcd", "abc");
+  }
+
+  private static void assertSeparationKey(
+      final String left, final String right, final String separator) {
+    final byte[] separationKey =
+        NormalizedKeyBTreeV1.separationKey(
+            left.getBytes(StandardCharsets.UTF_8), right.getBytes(StandardCharsets.UTF_8));
+    Assert.assertEquals(separator, new String(separationKey, StandardCharsets.UTF_8));
+  }
+
+  private void assertIterateEntriesBetween(
+      final NavigableMap<byte[], byte[]> keyValues, final Random random) {
+    for (int i = 0; i < 100; i++) {
+      byte[] from = randomKey(random);
+      byte[] to = randomKey(random);
+      if (ODurablePage.compareBinaryValues(from, to) > 0) {
+        final byte[] tmp = from;
+        from = to;
+        to = tmp;
+      }
+
+      final boolean fromInclusive = random.nextBoolean();
+      final boolean toInclusive = random.nextBoolean();
+
+      assertRange(
+          keyValues.subMap(from, fromInclusive, to, toInclusive),
+          from,
+          fromInclusive,
+          to,
+          toInclusive,
+          true);
+      assertRange(
+          keyValues.subMap(from, fromInclusive, to, toInclusive).descendingMap(),
+          from,
+          fromInclusive,
+          to,
+          toInclusive,
+          false);
+    }
+
+    assertRange(keyValues, null, true, null, true, true);
+    assertRange(keyValues.descendingMap(), null, true, null, true, false);
+  }
+
+  private void assertRange(
+      final NavigableMap<byte[], byte[]> expected,
+      final byte[] from,
+      final boolean fromInclusive,
+      final byte[] to,
+      final boolean toInclusive,
+      final boolean ascOrder) {
+    try (final Stream<ORawPair<byte[], byte[]>> stream =
+        tree.iterateEntriesBetween(from, fromInclusive, to, toInclusive, ascOrder)) {
+      final Iterator<ORawPair<byte[], byte[]>> indexIterator = stream.iterator();
+      for (final Map.Entry<byte[], byte[]> entry : expected.entrySet()) {
+        Assert.assertTrue(indexIterator.hasNext());
+
+        final ORawPair<byte[], byte[]> indexEntry = indexIterator.next();
+        Assert.assertArrayEquals(entry.getKey(), indexEntry.first);
+        Assert.assertArrayEquals(entry.getValue(), indexEntry.second);
+      }
+
+      Assert.assertFalse(indexIterator.hasNext());
+    }
+  }
+
+  private static byte[] randomKey(final Random random) {
+    // short common prefixes make sure that separation keys are truncated
+    final byte[] key = new byte[1 + random.nextInt(24)];
+    for (int i = 0; i < key.length; i++) {
+      key[i] = (byte) random.nextInt(i < 2 ? 4 : 256);
+    }
+    return key;
+  }
+
+  private static byte[] randomValue(final Random random) {
+    final byte[] value = new byte[random.nextInt(16)];
+    random.nextBytes(value);
+    return value;
+  }
+
+  static final class RollbackException extends OException implements OHighLevelException {
+    @SuppressWarnings("WeakerAccess")
+    public RollbackException() {
+      this("");
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    public RollbackException(String message) {
+      super(message);
+    }
+
+    @SuppressWarnings("unused")
+    public RollbackException(RollbackException exception) {
+      super(exception);
+    }
+  }
+}